@@ -0,0 +1,144 @@
+"""
+Benchmark of the MoreLikeThis queries by an existing document (used by the '/recommend/{id}'
+and '/search/byOpportunity/{id}' endpoints of the backend).
+
+Loads the bundled Crowdhelix data, multiplied by the scale factor, into a benchmark index created
+the same way as the backend creates the opportunities index, i.e. with the 'title' and 'description'
+fields analyzed by the MoreLikeThis analyzer and their term vectors stored. Then runs the same MLT
+queries in two modes and reports the Elasticsearch CPU time and the 'took' time per query:
+
+- reanalyze: the like-document has a per-field analyzer (the behaviour before the term vectors were
+  used), so Elasticsearch re-analyzes the referenced document on every query
+- stored: the stored term vectors of the referenced document are read
+
+Run against an otherwise idle Elasticsearch node, the CPU time is measured for the whole node process:
+```python3 benchmark_mlt.py --scale 20 --queries 500```
+"""
+import argparse
+import copy
+import csv
+import random
+import time
+from typing import Any, Dict, List
+
+from elasticsearch import Elasticsearch, helpers
+
+from es.esConfig import elastic_config, es_schema_ch
+from es.esDataLoader import EsDataLoader
+
+BENCHMARK_INDEX: str = "benchmark_mlt"
+MLT_ANALYZER: str = "mlt_english"
+MLT_FIELDS: List[str] = ["description", "title"]
+
+
+def create_index(es: Elasticsearch, stopwords: List[str]) -> None:
+    """
+    Creates the benchmark index with the mapping of the backend (see IndexAnalysisManager).
+    """
+    config: Dict[str, Any] = copy.deepcopy(es_schema_ch.get('es'))
+    analysis: Dict[str, Any] = config["settings"]["analysis"]
+    analysis["filter"] = {
+        "mlt_stop": {"type": "stop", "stopwords": stopwords},
+        "mlt_possessive_stemmer": {"type": "stemmer", "language": "possessive_english"},
+        "mlt_stemmer": {"type": "stemmer", "language": "english"}
+    }
+    analysis["analyzer"][MLT_ANALYZER] = {
+        "type": "custom",
+        "tokenizer": "standard",
+        "filter": ["mlt_possessive_stemmer", "lowercase", "mlt_stop", "mlt_stemmer"]
+    }
+    for field in MLT_FIELDS:
+        config["mappings"]["properties"][field]["analyzer"] = MLT_ANALYZER
+    es.indices.delete(index=BENCHMARK_INDEX, ignore_unavailable=True)
+    es.indices.create(index=BENCHMARK_INDEX, **config)
+
+
+def load_data(es: Elasticsearch, csv_path: str, scale: int) -> List[str]:
+    """
+    Loads the CSV data 'scale' times into the benchmark index.
+
+    Returns:
+        List[str]: The ids of the loaded documents.
+    """
+    ids: List[str] = []
+    for _ in range(scale):
+        with open(csv_path, encoding="utf-8", newline=None) as file:
+            csv_reader = csv.DictReader(file, delimiter=';')
+            upload_result = EsDataLoader.create_ch_bulk_request(csv_reader, BENCHMARK_INDEX)
+        helpers.bulk(es, upload_result.actions)
+        ids.extend(action["_id"] for action in upload_result.actions)
+    es.indices.refresh(index=BENCHMARK_INDEX)
+    return ids
+
+
+def mlt_query(doc_id: str, reanalyze: bool) -> Dict[str, Any]:
+    """
+    Same query as built by QueryBuilder.getMoreLikeThisQuery(id, index) of the backend.
+    """
+    like: Dict[str, Any] = {"_index": BENCHMARK_INDEX, "_id": doc_id}
+    if reanalyze:
+        like["per_field_analyzer"] = {field: MLT_ANALYZER for field in MLT_FIELDS}
+    return {
+        "more_like_this": {
+            "fields": MLT_FIELDS,
+            "like": [like],
+            "max_query_terms": 50,
+            "min_doc_freq": 1,
+            "min_term_freq": 1,
+            "minimum_should_match": "10%"
+        }
+    }
+
+
+def node_cpu_millis(es: Elasticsearch) -> int:
+    stats = es.nodes.stats(metric="process")
+    return sum(node["process"]["cpu"]["total_in_millis"] for node in stats["nodes"].values())
+
+
+def run(es: Elasticsearch, doc_ids: List[str], reanalyze: bool) -> None:
+    # warm up the caches and the JIT
+    for doc_id in doc_ids[:50]:
+        es.search(index=BENCHMARK_INDEX, query=mlt_query(doc_id, reanalyze), size=20, request_cache=False)
+
+    took: int = 0
+    cpu_before: int = node_cpu_millis(es)
+    start: float = time.perf_counter()
+    for doc_id in doc_ids:
+        response = es.search(index=BENCHMARK_INDEX, query=mlt_query(doc_id, reanalyze), size=20, request_cache=False)
+        took += response["took"]
+    elapsed: float = time.perf_counter() - start
+    cpu: int = node_cpu_millis(es) - cpu_before
+
+    mode: str = "reanalyze" if reanalyze else "stored"
+    print(f"{mode:>10}: {cpu / len(doc_ids):.2f} ms CPU/query, {took / len(doc_ids):.2f} ms took/query, "
+          f"{len(doc_ids) / elapsed:.1f} queries/s")
+
+
+def main() -> None:
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--csv", default="../../data/CH_data/crowdhelix-example-data.csv")
+    parser.add_argument("--stopwords", default="../web-backend/bl/src/main/resources/stopwords.txt")
+    parser.add_argument("--scale", type=int, default=20, help="how many times the CSV data is loaded")
+    parser.add_argument("--queries", type=int, default=500)
+    parser.add_argument("--keep", action="store_true", help="don't delete the benchmark index")
+    args = parser.parse_args()
+
+    with open(args.stopwords, encoding="utf-8") as file:
+        stopwords: List[str] = [line.strip() for line in file if line.strip()]
+
+    es: Elasticsearch = Elasticsearch([elastic_config], request_timeout=60)
+    try:
+        create_index(es, stopwords)
+        ids: List[str] = load_data(es, args.csv, args.scale)
+        print(f"Loaded {len(ids)} documents")
+        doc_ids: List[str] = random.Random(42).choices(ids, k=args.queries)
+        run(es, doc_ids, reanalyze=True)
+        run(es, doc_ids, reanalyze=False)
+    finally:
+        if not args.keep:
+            es.indices.delete(index=BENCHMARK_INDEX, ignore_unavailable=True)
+        es.close()
+
+
+if __name__ == "__main__":
+    main()
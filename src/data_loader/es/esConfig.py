@@ -1,6 +1,18 @@
 import os
 from typing import Dict, Any
 
+# Subfield indexed by trigrams, used for substring filtering without leading-wildcard queries.
+# Must match the 'search.ngram-filter-fields' property of the backend
+ngram_subfield: Dict[str, Any] = {
+    "ngram": {
+        "type": "text",
+        "analyzer": "trigram"
+    }
+}
+
+# Schemas of the indices, used when the index doesn't exist yet. The backend creates the indices before loading
+# the data, with the 'title' and 'description' fields analyzed by its MoreLikeThis analyzer (see IndexAnalysisManager)
+
 # Schema for the Elastic index for Crowdhelix data
 es_schema_ch: Dict[str, Any] = {
     "index": "crowdhelix_data",
@@ -10,33 +22,56 @@ es_schema_ch: Dict[str, Any] = {
             "index": {
                 "number_of_shards": "1",
                 "number_of_replicas": "0",
+            },
+            "analysis": {
+                "tokenizer": {
+                    "trigram": {
+                        "type": "ngram",
+                        "min_gram": 3,
+                        "max_gram": 3,
+                        "token_chars": ["letter", "digit", "whitespace", "punctuation", "symbol"]
+                    }
+                },
+                "analyzer": {
+                    "trigram": {
+                        "type": "custom",
+                        "tokenizer": "trigram",
+                        "filter": ["lowercase"]
+                    }
+                }
             }
         },
         "mappings": {
             "dynamic": False,
             "properties": {
                 "helix": {
-                    "type": "keyword"
+                    "type": "keyword",
+                    "fields": ngram_subfield
                 },
                 "role": {
-                    "type": "keyword"
+                    "type": "keyword",
+                    "fields": ngram_subfield
                 },
                 "expertise": {
-                    "type": "keyword"
+                    "type": "keyword",
+                    "fields": ngram_subfield
                 },
                 "title": {
                     "type": "text",
                     "term_vector": "yes",
-                    "analyzer": "english"
+                    "analyzer": "english",
+                    "fields": ngram_subfield
                 },
                 "url": {
                     "type": "keyword"
                 },
                 "author": {
-                    "type": "keyword"
+                    "type": "keyword",
+                    "fields": ngram_subfield
                 },
                 "institutionName": {
-                    "type": "keyword"
+                    "type": "keyword",
+                    "fields": ngram_subfield
                 },
                 "institutionUrl": {
                     "type": "keyword"
@@ -108,7 +108,7 @@ class EsDataLoader:
 
                 action = {
                     "_index": index,
-                    "_id": str(uuid.uuid4()),
+                    "_id": EsDataLoader.get_ch_id(data_line),
                     "_source": data_line
                 }
                 actions.append(action)
@@ -119,6 +119,22 @@ class EsDataLoader:
         logger.info(f'Processed {line_count} lines.')
         return EsUploadResult(line_count + failed, line_count, failed, actions)
 
+    @staticmethod
+    def get_ch_id(data: Dict[str, Any]) -> str:
+        """
+        Derives the document id of a Crowdhelix opportunity from its url, so a reloaded opportunity
+        replaces its previous version instead of being added again under a new id.
+
+        Args:
+            data (Dict[str, Any]): A dictionary containing the opportunity.
+        Returns:
+            str: The document id, random if the opportunity has no url.
+        """
+        url = data.get("url")
+        if not url:
+            return str(uuid.uuid4())
+        return str(uuid.uuid5(uuid.NAMESPACE_URL, url))
+
     @staticmethod
     def create_mu_bulk_request(csv_reader: csv.DictReader, index: str) -> EsUploadResult:
         """
@@ -12,5 +12,6 @@ export const apiRoutes = {
 	departmentsUrl: `${baseUrl}/departments`,
 	searchUrl: `${baseUrl}/search`,
 	searchAll: `${baseUrl}/search/all`,
-	recommendUrl: `${baseUrl}/recommend`
+	recommendUrl: `${baseUrl}/recommend`,
+	importJobsUrl: `${baseUrl}/jobs`
 };
@@ -0,0 +1,55 @@
+import { AxiosError } from 'axios';
+
+import {
+	ImportJobDto,
+	ImportJobType,
+	ImportPhase
+} from '../../types/ImportJob.Types';
+import { ErrorResponse } from '../../types/Alert.Types';
+
+import { apiRoutes } from './apiRoutes';
+import { getObjects, postObjectParams } from './useApi';
+
+const POLL_INTERVAL_MS = 2000;
+
+const sleep = (ms: number) =>
+	new Promise(resolve => {
+		setTimeout(resolve, ms);
+	});
+
+/**
+ * Submit a file import processed in the background and wait until it finishes.
+ * The import job is polled, so no request is held open for the whole import
+ * @param formData The form data with the file to import
+ * @param type What to import and how
+ * @param token The bearer token
+ * @returns The result message of the import
+ */
+export const importFile = async (
+	formData: FormData,
+	type: ImportJobType,
+	token: string
+) => {
+	let job = await postObjectParams<ImportJobDto, FormData>(
+		apiRoutes.importJobsUrl,
+		formData,
+		token,
+		{ type }
+	);
+	while (
+		job.phase !== ImportPhase.Finished &&
+		job.phase !== ImportPhase.Failed
+	) {
+		await sleep(POLL_INTERVAL_MS);
+		job = (
+			await getObjects<ImportJobDto>(
+				`${apiRoutes.importJobsUrl}/${job.id}`,
+				token
+			)
+		).data;
+	}
+	if (job.phase === ImportPhase.Failed) {
+		throw new AxiosError<ErrorResponse>(job.error ?? 'Import has failed');
+	}
+	return job.message ?? '';
+};
@@ -7,14 +7,15 @@ import {
 	AppAlertTypes,
 	ErrorResponse
 } from '../../types/Alert.Types';
+import { ImportJobType } from '../../types/ImportJob.Types';
 
 import { apiRoutes } from './apiRoutes';
+import { importFile } from './useImportJobApi';
 import {
 	deleteObject,
 	getBlob,
 	getObjects,
-	getObjectsQueryParams,
-	postObject
+	getObjectsQueryParams
 } from './useApi';
 
 /**
@@ -117,7 +118,7 @@ export const useUploadNewOpportunities = (
 ) =>
 	useMutation<string, AxiosError<ErrorResponse>, FormData>(
 		['uploadAllO'],
-		(r: FormData) => postObject(`${apiRoutes.opportunitiesUrl}/load`, r, token),
+		(r: FormData) => importFile(r, ImportJobType.OpportunitiesAppend, token),
 		{
 			onSuccess: async () => {
 				await qc.invalidateQueries(['list', 'opportunities']);
@@ -154,7 +155,7 @@ export const useUploadAndReplaceOpportunities = (
 	useMutation<string, AxiosError<ErrorResponse>, FormData>(
 		['uploadAllOR'],
 		(r: FormData) =>
-			postObject(`${apiRoutes.opportunitiesUrl}/load-all`, r, token),
+			importFile(r, ImportJobType.OpportunitiesReplace, token),
 		{
 			onSuccess: async () => {
 				await qc.invalidateQueries(['list', 'opportunities']);
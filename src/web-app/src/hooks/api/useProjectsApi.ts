@@ -12,14 +12,15 @@ import {
 	AppAlertTypes,
 	ErrorResponse
 } from '../../types/Alert.Types';
+import { ImportJobType } from '../../types/ImportJob.Types';
 
 import { apiRoutes } from './apiRoutes';
+import { importFile } from './useImportJobApi';
 import {
 	deleteObject,
 	getBlob,
 	getObjects,
 	getObjectsQueryParams,
-	postObject,
 	putObject
 } from './useApi';
 
@@ -233,7 +234,7 @@ export const useUploadNewProjects = (
 ) =>
 	useMutation<string, AxiosError<ErrorResponse>, FormData>(
 		['uploadAllP'],
-		(r: FormData) => postObject(`${apiRoutes.projectsUrl}/load`, r, token),
+		(r: FormData) => importFile(r, ImportJobType.ProjectsAppend, token),
 		{
 			onSuccess: async () => {
 				await qc.invalidateQueries(['list', 'projects']);
@@ -269,7 +270,7 @@ export const useUploadAndReplaceProjects = (
 ) =>
 	useMutation<string, AxiosError<ErrorResponse>, FormData>(
 		['uploadAllPR'],
-		(r: FormData) => postObject(`${apiRoutes.projectsUrl}/load-all`, r, token),
+		(r: FormData) => importFile(r, ImportJobType.ProjectsReplace, token),
 		{
 			onSuccess: async () => {
 				await qc.invalidateQueries(['list', 'projects']);
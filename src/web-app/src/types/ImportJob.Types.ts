@@ -0,0 +1,30 @@
+export enum ImportJobType {
+	ProjectsAppend = 'PROJECTS_APPEND',
+	ProjectsReplace = 'PROJECTS_REPLACE',
+	ProjectsSync = 'PROJECTS_SYNC',
+	OpportunitiesAppend = 'OPPORTUNITIES_APPEND',
+	OpportunitiesReplace = 'OPPORTUNITIES_REPLACE'
+}
+
+export enum ImportPhase {
+	Queued = 'QUEUED',
+	Loading = 'LOADING',
+	Indexing = 'INDEXING',
+	Finished = 'FINISHED',
+	Failed = 'FAILED'
+}
+
+export type ImportJobDto = {
+	id: string;
+	type: ImportJobType;
+	fileName: string;
+	phase: ImportPhase;
+	rowsProcessed: number;
+	rowsFailed: number;
+	throughput: number;
+	submittedAt: string;
+	startedAt?: string;
+	finishedAt?: string;
+	message?: string;
+	error?: string;
+};
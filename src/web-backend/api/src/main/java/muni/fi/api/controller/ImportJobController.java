@@ -0,0 +1,63 @@
+package muni.fi.api.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.service.ImportJobService;
+import muni.fi.dtos.ImportJobDto;
+import muni.fi.enums.ImportJobType;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/jobs")
+@PreAuthorize("hasRole('ADMIN')")
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+
+    public ImportJobController(ImportJobService importJobService) {
+        this.importJobService = importJobService;
+    }
+
+    @Operation(summary = "Submit a file import processed in the background, returns the queued job")
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ImportJobDto submit(
+            @Parameter(description = "File containing the MU projects or the opportunities")
+            @RequestParam("file") MultipartFile importFile,
+            @Parameter(description = "What to import and how")
+            @RequestParam ImportJobType type,
+            @Parameter(description = "Delete the projects missing in the file, for PROJECTS_SYNC only (default = false)")
+            @RequestParam(defaultValue = "false") boolean deleteMissing) throws IOException {
+        log.info("Submitting {} import job for file {}", type, importFile.getOriginalFilename());
+        return importJobService.submit(type, importFile.getOriginalFilename(), importFile.getInputStream(), deleteMissing);
+    }
+
+    @Operation(summary = "Retrieve the queued, running and recently finished import jobs")
+    @GetMapping
+    public List<ImportJobDto> getAll() {
+        return importJobService.getAll();
+    }
+
+    @Operation(summary = "Retrieve the progress of an import job")
+    @GetMapping("/{id}")
+    public ImportJobDto getOne(
+            @Parameter(description = "ID of the import job")
+            @PathVariable("id") String id) {
+        return importJobService.get(id);
+    }
+}
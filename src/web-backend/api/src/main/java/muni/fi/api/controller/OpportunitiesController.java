@@ -4,7 +4,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.service.ImportJobService;
 import muni.fi.bl.service.OpportunityService;
+import muni.fi.enums.ImportJobType;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -17,6 +19,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import static muni.fi.api.helper.ResponseHandlerHelper.writeContentToOutputStream;
 
@@ -27,9 +30,12 @@ import static muni.fi.api.helper.ResponseHandlerHelper.writeContentToOutputStrea
 public class OpportunitiesController {
 
     private final OpportunityService opportunityService;
+    private final ImportJobService importJobService;
 
-    public OpportunitiesController(OpportunityService opportunityService) {
+    public OpportunitiesController(OpportunityService opportunityService,
+                                   ImportJobService importJobService) {
         this.opportunityService = opportunityService;
+        this.importJobService = importJobService;
     }
 
     @Operation(summary = "Delete an opportunity by ID")
@@ -43,23 +49,24 @@ public class OpportunitiesController {
 
     @Operation(summary = "Load new opportunities from a CSV file")
     @PostMapping(path = "/load", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String loadNew(
+    public CompletableFuture<String> loadNew(
             @Parameter(description = "CSV file containing new opportunities to be loaded")
             @RequestParam("file") MultipartFile importFile) throws IOException {
         log.info("Loading new crowdHelix opportunities");
 
-        return opportunityService.load(importFile.getOriginalFilename(), importFile.getBytes());
+        return importJobService.submitAsync(ImportJobType.OPPORTUNITIES_APPEND, importFile.getOriginalFilename(),
+                importFile.getInputStream(), false);
     }
 
     @Operation(summary = "Load and replace all existing opportunities with new ones from a CSV file")
     @PostMapping(path = "/load-all", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String loadAndReplace(
+    public CompletableFuture<String> loadAndReplace(
             @Parameter(description = "CSV file containing new opportunities to be loaded and replace all existing ones")
             @RequestParam("file") MultipartFile importFile) throws IOException {
         log.info("Loading new and replacing old crowdHelix opportunities");
 
-        opportunityService.deleteAll();
-        return opportunityService.load(importFile.getOriginalFilename(), importFile.getBytes());
+        return importJobService.submitAsync(ImportJobType.OPPORTUNITIES_REPLACE, importFile.getOriginalFilename(),
+                importFile.getInputStream(), false);
     }
 
     @Operation(summary = "Download an example CSV file containing the opportunity schema")
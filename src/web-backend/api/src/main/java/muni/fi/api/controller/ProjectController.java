@@ -4,16 +4,15 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import muni.fi.bl.ProjectLoadResult;
 import muni.fi.bl.exceptions.AppException;
+import muni.fi.bl.service.ImportJobService;
 import muni.fi.bl.service.ProjectService;
 import muni.fi.dtos.ProjectDto;
 import muni.fi.dtos.ProjectUpdateDto;
-import org.apache.commons.io.FilenameUtils;
+import muni.fi.enums.ImportJobType;
 import org.springframework.data.domain.Page;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -28,7 +27,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static muni.fi.api.helper.ResponseHandlerHelper.writeContentToOutputStream;
 
@@ -38,11 +37,13 @@ import static muni.fi.api.helper.ResponseHandlerHelper.writeContentToOutputStrea
 @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
 public class ProjectController {
 
-    public static final String CSV = "csv";
     private final ProjectService projectService;
+    private final ImportJobService importJobService;
 
-    public ProjectController(ProjectService projectService) {
+    public ProjectController(ProjectService projectService,
+                             ImportJobService importJobService) {
         this.projectService = projectService;
+        this.importJobService = importJobService;
     }
 
     @Operation(summary = "Retrieve all projects based on the filter, sort, and paging parameters")
@@ -116,27 +117,36 @@ public class ProjectController {
     @Operation(summary = "Upload new MU projects from a file")
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping(path = "/load", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String loadNew(
+    public CompletableFuture<String> loadNew(
             @Parameter(description = "File containing MU projects to upload")
             @RequestParam("file") MultipartFile importFile) {
         log.info("Uploading MU projects from file {}", importFile.getOriginalFilename());
-        String fileExtension = FilenameUtils.getExtension(importFile.getOriginalFilename());
-        InputStream inputStream = getInputStream(importFile);
-        return upload(fileExtension, inputStream, importFile.getOriginalFilename());
+        return importJobService.submitAsync(ImportJobType.PROJECTS_APPEND, importFile.getOriginalFilename(),
+                getInputStream(importFile), false);
     }
 
     @Operation(summary = "Upload and replace all existing MU projects from a file")
     @PreAuthorize("hasRole('ADMIN')")
-    @Transactional
     @PostMapping(path = "/load-all", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String loadAndReplace(
+    public CompletableFuture<String> loadAndReplace(
             @Parameter(description = "File containing MU projects to upload")
             @RequestParam("file") MultipartFile importFile) {
         log.info("Uploading and replacing MU projects from file {}", importFile.getOriginalFilename());
-        String fileExtension = FilenameUtils.getExtension(importFile.getOriginalFilename());
-        InputStream inputStream = getInputStream(importFile);
-        projectService.deleteAll();
-        return upload(fileExtension, inputStream, importFile.getOriginalFilename());
+        return importJobService.submitAsync(ImportJobType.PROJECTS_REPLACE, importFile.getOriginalFilename(),
+                getInputStream(importFile), false);
+    }
+
+    @Operation(summary = "Synchronize MU projects with a file, only the new and changed projects are loaded")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(path = "/sync", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<String> sync(
+            @Parameter(description = "File containing all the MU projects")
+            @RequestParam("file") MultipartFile importFile,
+            @Parameter(description = "Delete the projects missing in the file (default = false)")
+            @RequestParam(defaultValue = "false") boolean deleteMissing) {
+        log.info("Synchronizing MU projects with file {}", importFile.getOriginalFilename());
+        return importJobService.submitAsync(ImportJobType.PROJECTS_SYNC, importFile.getOriginalFilename(),
+                getInputStream(importFile), deleteMissing);
     }
 
     @Operation(summary = "Download an example CSV file for MU projects")
@@ -160,21 +170,4 @@ public class ProjectController {
         }
         return inputStream;
     }
-
-    private String upload(String fileExtension, InputStream inputStream, String originalFilename) {
-        if (Objects.equals(fileExtension, CSV)) {
-            return getSuccessMessage(projectService.loadProjectsFromCsv(inputStream, originalFilename));
-        } else {
-            String message = "Invalid file extension, please use csv or json";
-            log.warn(message);
-            throw new AppException(message);
-        }
-    }
-
-
-    private String getSuccessMessage(ProjectLoadResult projectsUploadedFile) {
-        return String.format("Successfully loaded %d/%d project records (%d failed)",
-                projectsUploadedFile.successful(), projectsUploadedFile.total(), projectsUploadedFile.failed());
-    }
-
 }
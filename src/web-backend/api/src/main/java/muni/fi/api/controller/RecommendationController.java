@@ -3,7 +3,7 @@ package muni.fi.api.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import lombok.extern.slf4j.Slf4j;
-import muni.fi.bl.service.RecommendationService;
+import muni.fi.bl.service.AsyncRecommendationService;
 import muni.fi.dtos.OpportunityDto;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -19,17 +20,17 @@ import java.util.List;
 @RequestMapping("/recommend")
 public class RecommendationController {
 
-    private final RecommendationService recommendationService;
+    private final AsyncRecommendationService asyncRecommendationService;
 
-    public RecommendationController(RecommendationService recommendationService) {
-        this.recommendationService = recommendationService;
+    public RecommendationController(AsyncRecommendationService asyncRecommendationService) {
+        this.asyncRecommendationService = asyncRecommendationService;
     }
 
     @Operation(summary = "Recommend similar opportunities based on the given opportunity ID")
     @GetMapping("/{id}")
-    public List<OpportunityDto> recommendMoreLikeThis(
+    public CompletableFuture<List<OpportunityDto>> recommendMoreLikeThis(
             @Parameter(description = "The Elasticsearch ID of the opportunity") @PathVariable("id") String id) {
         log.info("Recommending similar opportunities for opportunity with id {}", id);
-        return recommendationService.recommendMoreLikeThis(id);
+        return asyncRecommendationService.recommendMoreLikeThisAsync(id);
     }
 }
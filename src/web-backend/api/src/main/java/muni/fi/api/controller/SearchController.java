@@ -4,10 +4,14 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import lombok.extern.slf4j.Slf4j;
 import muni.fi.bl.service.AggregationService;
-import muni.fi.bl.service.SearchService;
+import muni.fi.bl.service.AsyncSearchService;
+import muni.fi.bl.service.SearchStatsService;
 import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.CursorPageDto;
 import muni.fi.dtos.OpportunityDto;
+import muni.fi.dtos.OpportunityMatchStatsDto;
 import muni.fi.dtos.OpportunitySearchResultDto;
+import muni.fi.dtos.SearchCacheStatsDto;
 import muni.fi.query.SearchInfo;
 import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -21,6 +25,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -28,18 +33,21 @@ import java.util.Map;
 @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
 public class SearchController {
 
-    private final SearchService searchService;
+    private final AsyncSearchService searchService;
     private final AggregationService aggregationService;
+    private final SearchStatsService searchStatsService;
 
-    public SearchController(SearchService searchService,
-                            AggregationService aggregationService) {
+    public SearchController(AsyncSearchService searchService,
+                            AggregationService aggregationService,
+                            SearchStatsService searchStatsService) {
         this.searchService = searchService;
         this.aggregationService = aggregationService;
+        this.searchStatsService = searchStatsService;
     }
 
     @GetMapping("/all")
     @Operation(summary = "Search for all opportunities based on the filter, sort, and paging parameters")
-    public Page<OpportunityDto> searchAll(
+    public CompletableFuture<Page<OpportunityDto>> searchAll(
             @Parameter(description = "Page number (default = 0)")
             @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Number of items per page (default = 10)")
@@ -53,44 +61,64 @@ public class SearchController {
             @Parameter(description = "Filter value (optional)")
             @RequestParam(required = false) String filterValue) {
         log.info("Searching for all opportunities");
-        return searchService.searchForAll(page, size, sortBy, desc, filterField, filterValue);
+        return searchService.searchForAllAsync(page, size, sortBy, desc, filterField, filterValue);
+    }
+
+    @GetMapping("/all/cursor")
+    @Operation(summary = "Search for all opportunities page by page using a continuation cursor. " +
+            "Suitable for deep paging, the cost of a page does not depend on its depth")
+    public CompletableFuture<CursorPageDto<OpportunityDto>> searchAllByCursor(
+            @Parameter(description = "Cursor returned with the previous page (omit for the first page)")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Number of items per page (default = 10)")
+            @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "Sort field (optional)")
+            @RequestParam(required = false) String sortBy,
+            @Parameter(description = "Sort in descending order (default = false)")
+            @RequestParam(defaultValue = "false") Boolean desc,
+            @Parameter(description = "Filter field (optional)")
+            @RequestParam(required = false) String filterField,
+            @Parameter(description = "Filter value (optional)")
+            @RequestParam(required = false) String filterValue) {
+        log.info("Searching for all opportunities by cursor");
+        return searchService.searchForAllByCursorAsync(cursor, size, sortBy, desc, filterField, filterValue);
     }
 
     @Operation(summary = "Search for opportunities by projects")
     @PostMapping("/byProjects")
-    public List<OpportunityDto> searchByProjects(
+    public CompletableFuture<List<OpportunityDto>> searchByProjects(
             @Parameter(description = "Search information")
             @RequestBody SearchInfo info) {
         log.info("Searching for opportunities by projects with search info: {}", info);
-        return searchService.searchByProjects(info);
+        return searchService.searchByProjectsAsync(info);
     }
 
     @Operation(summary = "Search for opportunities by authors")
     @PostMapping("/byAuthors")
-    public List<OpportunityDto> searchByAuthors(
+    public CompletableFuture<List<OpportunityDto>> searchByAuthors(
             @Parameter(description = "Search information")
             @RequestBody SearchInfo info) {
         log.info("Searching for opportunities by author with search info: {}", info);
-        return searchService.searchByAuthors(info);
+        return searchService.searchByAuthorsAsync(info);
     }
 
     @Operation(summary = "Search for opportunities by search phrase")
     @PostMapping("/byPhrase")
-    public List<OpportunityDto> searchByPhrase(
+    public CompletableFuture<List<OpportunityDto>> searchByPhrase(
             @Parameter(description = "Search information")
             @RequestBody SearchInfo info) {
         log.info("Searching for opportunities by search phrase with search info: {}", info);
-        return searchService.searchByPhrase(info);
+        return searchService.searchByPhraseAsync(info);
     }
 
     @PostMapping("/byOpportunity/{id}")
-    public List<OpportunitySearchResultDto> searchByOpportunity(
+    public CompletableFuture<List<OpportunitySearchResultDto>> searchByOpportunity(
             @Parameter(description = "Opportunity ElasticSearch id to search by")
             @PathVariable("id") String id,
             @RequestParam(defaultValue = "10") int maxResults,
             @RequestParam(defaultValue = "SUM") AuthorProjectsSortType sortBy) {
         log.info("Searching for relevant authors for opportunity with id: {}", id);
-        return searchService.searchByOpportunity(id, maxResults, sortBy);
+        return searchService.searchByOpportunityAsync(id, maxResults, sortBy);
     }
 
     @Operation(summary = "Get unique filters")
@@ -99,4 +127,25 @@ public class SearchController {
         log.info("Searching for unique filters map");
         return aggregationService.searchUniqueAggAll();
     }
+
+    @Operation(summary = "Get unique filters with the number of opportunities containing them")
+    @GetMapping("/unique-filters/counts")
+    public Map<String, Map<String, Long>> aggUniqueTermCounts() {
+        log.info("Searching for unique filters counts map");
+        return aggregationService.searchUniqueAggCountsAll();
+    }
+
+    @Operation(summary = "Get the search result cache statistics")
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public SearchCacheStatsDto cacheStats() {
+        return searchStatsService.getCacheStats();
+    }
+
+    @Operation(summary = "Get the statistics of the precomputed opportunity matches")
+    @GetMapping("/opportunity-matches/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public OpportunityMatchStatsDto opportunityMatchesStats() {
+        return searchStatsService.getOpportunityMatchStats();
+    }
 }
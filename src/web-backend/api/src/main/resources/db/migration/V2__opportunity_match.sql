@@ -0,0 +1,26 @@
+CREATE TABLE opportunity_match
+(
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    opportunity_id VARCHAR(255)                            NOT NULL,
+    author_uco     VARCHAR(255)                            NOT NULL,
+    sum_score      DOUBLE PRECISION                        NOT NULL,
+    max_score      DOUBLE PRECISION                        NOT NULL,
+    avg_score      DOUBLE PRECISION                        NOT NULL,
+    project_count  BIGINT                                  NOT NULL,
+    computed_at    TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT pk_opportunity_match PRIMARY KEY (id)
+);
+
+CREATE TABLE opportunity_match_project
+(
+    opportunity_match_id BIGINT           NOT NULL,
+    proj_id              VARCHAR(255),
+    score                DOUBLE PRECISION NOT NULL,
+    project_order        INTEGER          NOT NULL,
+    CONSTRAINT pk_opportunity_match_project PRIMARY KEY (opportunity_match_id, project_order)
+);
+
+CREATE INDEX idx_opportunity_match_opportunity_id ON opportunity_match (opportunity_id);
+
+ALTER TABLE opportunity_match_project
+    ADD CONSTRAINT FK_OPPORTUNITY_MATCH_PROJECT_ON_OPPORTUNITY_MATCH FOREIGN KEY (opportunity_match_id) REFERENCES opportunity_match (id) ON DELETE CASCADE;
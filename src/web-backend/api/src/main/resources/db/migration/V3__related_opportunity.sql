@@ -0,0 +1,22 @@
+CREATE TABLE opportunity_snapshot
+(
+    opportunity_id      VARCHAR(255) NOT NULL,
+    content_hash        VARCHAR(255) NOT NULL,
+    document            TEXT         NOT NULL,
+    related_computed_at TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT pk_opportunity_snapshot PRIMARY KEY (opportunity_id)
+);
+
+CREATE TABLE related_opportunity
+(
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    opportunity_id VARCHAR(255)                            NOT NULL,
+    related_id     VARCHAR(255)                            NOT NULL,
+    score          DOUBLE PRECISION                        NOT NULL,
+    position       INTEGER                                 NOT NULL,
+    CONSTRAINT pk_related_opportunity PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_related_opportunity_opportunity_id ON related_opportunity (opportunity_id);
+
+CREATE INDEX idx_related_opportunity_related_id ON related_opportunity (related_id);
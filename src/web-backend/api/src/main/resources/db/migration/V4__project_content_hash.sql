@@ -0,0 +1,4 @@
+ALTER TABLE project
+    ADD content_hash VARCHAR(255);
+
+CREATE INDEX idx_project_proj_id ON project (proj_id);
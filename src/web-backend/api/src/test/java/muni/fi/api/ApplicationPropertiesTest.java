@@ -0,0 +1,34 @@
+package muni.fi.api;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * Loads the application properties the same way as the application does on startup,
+ * the context itself isn't started as it requires database connection (see {@link WebBackendApplicationTests})
+ */
+class ApplicationPropertiesTest {
+
+    @Test
+    void loadApplicationYaml() throws IOException {
+        // tested method
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"));
+
+        // verify
+        assertThat(sources, hasSize(1));
+        PropertySource<?> source = sources.get(0);
+        assertThat(source.getProperty("spring.mvc.log-request-details"), equalTo(true));
+        assertThat(String.valueOf(source.getProperty("spring.mvc.async.request-timeout")),
+                equalTo("${APP_ASYNC_REQUEST_TIMEOUT:30m}"));
+    }
+}
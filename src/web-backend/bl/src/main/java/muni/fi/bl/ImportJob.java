@@ -0,0 +1,87 @@
+package muni.fi.bl;
+
+import lombok.Getter;
+import muni.fi.dtos.ImportJobDto;
+import muni.fi.enums.ImportJobType;
+import muni.fi.enums.ImportPhase;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The state of an import processed in the background, updated by the import while it runs
+ */
+@Getter
+public class ImportJob implements ImportProgress {
+
+    private final String id = UUID.randomUUID().toString();
+    private final ImportJobType type;
+    private final String fileName;
+    private final Instant submittedAt = Instant.now();
+    // completed with the result message when the job finishes
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private volatile ImportPhase phase = ImportPhase.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    public ImportJob(ImportJobType type, String fileName) {
+        this.type = type;
+        this.fileName = fileName;
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        phase = ImportPhase.LOADING;
+    }
+
+    public void finish(String message) {
+        finishedAt = Instant.now();
+        phase = ImportPhase.FINISHED;
+        result.complete(message);
+    }
+
+    public void fail(RuntimeException e) {
+        finishedAt = Instant.now();
+        phase = ImportPhase.FAILED;
+        result.completeExceptionally(e);
+    }
+
+    public boolean isFinished() {
+        return result.isDone();
+    }
+
+    @Override
+    public void setPhase(ImportPhase phase) {
+        this.phase = phase;
+    }
+
+    @Override
+    public void addProcessed(int rows) {
+        rowsProcessed.addAndGet(rows);
+    }
+
+    @Override
+    public void addFailed(int rows) {
+        rowsFailed.addAndGet(rows);
+    }
+
+    public ImportJobDto toDto() {
+        Instant started = startedAt;
+        Instant finished = finishedAt;
+        long processed = rowsProcessed.get();
+        double throughput = 0;
+        if (started != null) {
+            long durationMs = Duration.between(started, finished != null ? finished : Instant.now()).toMillis();
+            throughput = durationMs > 0 ? processed * 1000.0 / durationMs : 0;
+        }
+        String message = result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+        String error = result.isCompletedExceptionally() ? result.handle((r, e) -> e.getMessage()).join() : null;
+        return new ImportJobDto(id, type, fileName, phase, processed, rowsFailed.get(), throughput,
+                submittedAt, started, finished, message, error);
+    }
+}
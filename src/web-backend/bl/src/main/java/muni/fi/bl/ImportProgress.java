@@ -0,0 +1,33 @@
+package muni.fi.bl;
+
+import muni.fi.enums.ImportPhase;
+
+/**
+ * Receives the progress of a running import, e.g. to report it by the import job
+ */
+public interface ImportProgress {
+
+    /**
+     * Ignores the progress, for the imports not run as a job
+     */
+    ImportProgress NONE = new ImportProgress() {
+    };
+
+    /**
+     * @param phase The phase the import entered
+     */
+    default void setPhase(ImportPhase phase) {
+    }
+
+    /**
+     * @param rows The number of the records processed since the last call
+     */
+    default void addProcessed(int rows) {
+    }
+
+    /**
+     * @param rows The number of the records failed since the last call
+     */
+    default void addFailed(int rows) {
+    }
+}
@@ -0,0 +1,4 @@
+package muni.fi.bl;
+
+public record ProjectSyncResult(int total, int successful, int failed, int changed, int deleted) {
+}
@@ -0,0 +1,253 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.dal.entity.Project;
+import muni.fi.dal.repository.ProjectRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+
+/**
+ * Maintains the author profiles index. Every author has one profile document (identified by the author's UCO)
+ * with the deduplicated titles and the most discriminative annotation terms of all the author's projects.
+ * The searches by authors then reference the profile documents in the MoreLikeThis queries, so the size of the query
+ * doesn't depend on the number of the author's projects, and the projects don't have to be loaded from the database.
+ * <p>
+ * The profiles are rebuilt on startup if the index is missing and updated whenever the author's projects change
+ */
+@Slf4j
+@Component
+public class AuthorProfiles {
+
+    public static final String UCO_FIELD = "uco";
+
+    static final int BULK_SIZE = 500;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ProjectRepository projectRepository;
+    private final TermStatistics termStatistics;
+    private final IndexAnalysisManager indexAnalysisManager;
+    private final boolean enabled;
+    private final int termsBudget;
+    private final AtomicBoolean ready = new AtomicBoolean();
+
+    public AuthorProfiles(ElasticsearchClient elasticsearchClient,
+                          ProjectRepository projectRepository,
+                          TermStatistics termStatistics,
+                          IndexAnalysisManager indexAnalysisManager,
+                          SearchConfigProperties searchProperties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.projectRepository = projectRepository;
+        this.termStatistics = termStatistics;
+        this.indexAnalysisManager = indexAnalysisManager;
+        this.enabled = searchProperties.isAuthorProfiles();
+        this.termsBudget = searchProperties.getLikeTermsBudget();
+    }
+
+    /**
+     * Builds the profiles on startup if the profiles index doesn't exist yet. When ElasticSearch is unavailable,
+     * the searches use the authors' projects until the profiles are built by the next project load
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyProfiles() {
+        if (!enabled) {
+            log.info("Author profiles are disabled");
+            return;
+        }
+        try {
+            if (elasticsearchClient.indices().exists(ExistsRequest.of(e -> e.index(AUTHOR_PROFILE_INDEX))).value()) {
+                ready.set(true);
+            } else {
+                rebuildAll();
+            }
+        } catch (IOException | ElasticsearchException | ConnectionException e) {
+            log.warn("Couldn't verify the author profiles, searching by the authors' projects");
+        }
+    }
+
+    /**
+     * @return true if the searches by authors should use the profile documents
+     */
+    public boolean isReady() {
+        return enabled && ready.get();
+    }
+
+    /**
+     * Recomputes the profiles of all the authors from the projects stored in the database. The authors are processed
+     * in batches of BULK_SIZE, so only the projects of one batch are held in memory. The profiles are used by
+     * the searches only if all of them were indexed
+     *
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public void rebuildAll() {
+        if (!enabled) {
+            return;
+        }
+        indexAnalysisManager.ensureIndex(AUTHOR_PROFILE_INDEX);
+        List<String> ucos = projectRepository.findAllAuthorUcos();
+        boolean complete = indexProfiles(ucos);
+        ready.set(complete);
+        if (complete) {
+            log.info("Author profiles rebuilt for {} authors", ucos.size());
+        } else {
+            log.warn("Author profiles of {} authors not rebuilt completely, searching by the authors' projects", ucos.size());
+        }
+    }
+
+    /**
+     * Recomputes the profiles of the given authors, the profiles of the authors without any projects are deleted
+     *
+     * @param ucos The UCOs of the authors whose projects were changed
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public void updateProfiles(Collection<String> ucos) {
+        if (!enabled || ucos.isEmpty()) {
+            return;
+        }
+        if (indexAnalysisManager.ensureIndex(AUTHOR_PROFILE_INDEX) || !ready.get()) {
+            // the other authors' profiles are missing as well
+            rebuildAll();
+            return;
+        }
+        List<String> changedUcos = ucos.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (!indexProfiles(changedUcos)) {
+            // some profiles are outdated, they are all rebuilt by the next update
+            ready.set(false);
+            log.warn("Author profiles of {} authors not updated completely, searching by the authors' projects", changedUcos.size());
+            return;
+        }
+        log.debug("Author profiles updated for {} authors", changedUcos.size());
+    }
+
+    /**
+     * Deletes the profiles index, it is created again by the next project load
+     *
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public void deleteAll() {
+        ready.set(false);
+        try {
+            elasticsearchClient.indices().delete(DeleteIndexRequest.of(d -> d
+                    .index(AUTHOR_PROFILE_INDEX)
+                    .ignoreUnavailable(true)));
+        } catch (IOException | ElasticsearchException e) {
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    /**
+     * Indexes the profiles of the authors in batches of BULK_SIZE, the profiles of the authors without any projects
+     * are deleted
+     *
+     * @return true if all the bulk operations succeeded
+     */
+    private boolean indexProfiles(List<String> ucos) {
+        boolean complete = true;
+        for (int from = 0; from < ucos.size(); from += BULK_SIZE) {
+            List<String> batch = ucos.subList(from, Math.min(from + BULK_SIZE, ucos.size()));
+            Map<String, List<Project>> projectsByAuthor = groupByAuthor(projectRepository.findByAuthorUcoIn(batch));
+            List<BulkOperation> operations = new ArrayList<>(batch.size());
+            for (String uco : batch) {
+                List<Project> projects = projectsByAuthor.get(uco);
+                if (projects != null) {
+                    operations.add(BulkOperation.of(b -> b
+                            .index(i -> i
+                                    .index(AUTHOR_PROFILE_INDEX)
+                                    .id(uco)
+                                    .document(getProfile(uco, projects)))));
+                } else {
+                    operations.add(BulkOperation.of(b -> b
+                            .delete(d -> d
+                                    .index(AUTHOR_PROFILE_INDEX)
+                                    .id(uco))));
+                }
+            }
+            complete &= sendBulk(BulkRequest.of(r -> r.operations(operations)));
+        }
+        return complete;
+    }
+
+    private boolean sendBulk(BulkRequest request) {
+        try {
+            BulkResponse response = elasticsearchClient.bulk(request);
+            if (response.errors()) {
+                long failed = response.items().stream()
+                        .filter(item -> item.error() != null)
+                        .count();
+                log.warn("{} of {} author profile operations failed", failed, response.items().size());
+                return false;
+            }
+            return true;
+        } catch (IOException | ElasticsearchException e) {
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    private Map<String, Object> getProfile(String uco, List<Project> projects) {
+        Set<String> titles = new LinkedHashSet<>();
+        List<String> annotations = new ArrayList<>();
+        for (Project project : projects) {
+            if (project.getTitle() != null) {
+                titles.add(project.getTitle().trim());
+            }
+            if (project.getProcessedAnnotation() != null) {
+                annotations.add(project.getProcessedAnnotation());
+            }
+        }
+        Map<String, Object> profile = new HashMap<>();
+        profile.put(UCO_FIELD, uco);
+        profile.put(TITLE_FIELD, String.join("\n", titles));
+        profile.put(DESCRIPTION_FIELD, getProfileTerms(annotations));
+        return profile;
+    }
+
+    /**
+     * Same reduction as of the 'like' annotations of the MoreLikeThis queries, see {@link QueryBuilder#getLikeTexts(List)}
+     */
+    private String getProfileTerms(List<String> annotations) {
+        if (annotations.isEmpty()) {
+            return "";
+        }
+        if (termsBudget <= 0) {
+            return String.join("\n", annotations);
+        }
+        return termStatistics.getTopTermsDocument(annotations, termsBudget);
+    }
+
+    private static Map<String, List<Project>> groupByAuthor(List<Project> projects) {
+        return projects.stream()
+                .filter(p -> p.getAuthor() != null && p.getAuthor().getUco() != null)
+                .collect(Collectors.groupingBy(p -> p.getAuthor().getUco()));
+    }
+}
@@ -0,0 +1,32 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.ProjectEsDto;
+
+import java.util.List;
+
+/**
+ * Ranking of an author by the author's projects matching a search
+ *
+ * @param uco      The UCO of the author
+ * @param sum      The sum of the scores of the author's matching projects
+ * @param max      The best score of the author's matching projects
+ * @param avg      The average score of the author's matching projects
+ * @param count    The number of the author's matching projects
+ * @param projects The author's best matching projects, ordered by the score
+ */
+public record AuthorRanking(String uco, double sum, double max, double avg, long count, List<ProjectEsDto> projects) {
+
+    /**
+     * @param sortBy The score the authors are ranked by
+     * @return The score of the author used for the ranking
+     */
+    public double getScore(AuthorProjectsSortType sortBy) {
+        return switch (sortBy) {
+            case SUM -> sum;
+            case MAX -> max;
+            case AVG -> avg;
+            case COUNT -> count;
+        };
+    }
+}
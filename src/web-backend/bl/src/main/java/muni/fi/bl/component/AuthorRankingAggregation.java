@@ -0,0 +1,165 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.util.NamedValue;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.ProjectEsDto;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static muni.fi.bl.component.AuthorProfiles.UCO_FIELD;
+
+/**
+ * Ranks the authors of the projects matching a search directly in ElasticSearch. The matching projects are grouped
+ * by a terms aggregation on the author's UCO with the sum, max and average of the project scores per author,
+ * the buckets are ordered by the requested {@link AuthorProjectsSortType} and carry the author's best projects
+ * as top hits. The ranking therefore covers all the matching projects, not only the top hits of the search
+ */
+@Component
+public class AuthorRankingAggregation {
+
+    public static final String AUTHORS_AGG = "authors";
+    public static final String SUM_AGG = "score_sum";
+    public static final String MAX_AGG = "score_max";
+    public static final String AVG_AGG = "score_avg";
+    public static final String PROJECTS_AGG = "projects";
+    public static final String COUNT_ORDER = "_count";
+
+    private static final Script SCORE_SCRIPT = Script.of(s -> s.inline(i -> i.source("_score")));
+
+    private final boolean enabled;
+    private final int projectsSize;
+
+    public AuthorRankingAggregation(SearchConfigProperties searchProperties) {
+        this.enabled = searchProperties.isAuthorAggregation();
+        this.projectsSize = Math.max(1, searchProperties.getAuthorAggregationProjects());
+    }
+
+    /**
+     * @return true if the authors should be ranked by the aggregation instead of by the top project hits
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Creates the aggregation ranking the authors of the matching projects
+     *
+     * @param maxResults   The maximal number of the ranked authors
+     * @param sortBy       The score the authors are ranked by
+     * @param sourceFields The project fields returned with the top hits, whole documents if null
+     * @return The aggregations of the search request keyed by their names
+     */
+    public Map<String, Aggregation> getAggregations(int maxResults, AuthorProjectsSortType sortBy, List<String> sourceFields) {
+        return getAggregations(maxResults, List.of(sortBy), sourceFields);
+    }
+
+    /**
+     * Creates one aggregation per sort type, so the best authors by all the sort types are ranked by one search
+     *
+     * @param maxResults   The maximal number of the ranked authors per sort type
+     * @param sortTypes    The scores the authors are ranked by
+     * @param sourceFields The project fields returned with the top hits, whole documents if null
+     * @return The aggregations of the search request keyed by their names
+     */
+    public Map<String, Aggregation> getAggregations(int maxResults, Collection<AuthorProjectsSortType> sortTypes, List<String> sourceFields) {
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+        for (AuthorProjectsSortType sortBy : sortTypes) {
+            aggregations.put(getAggName(sortBy), getAuthorsAggregation(maxResults, sortBy, sourceFields));
+        }
+        return aggregations;
+    }
+
+    /**
+     * @param sortBy The score the authors are ranked by
+     * @return The name of the aggregation ranking the authors by the score
+     */
+    public static String getAggName(AuthorProjectsSortType sortBy) {
+        return AUTHORS_AGG + "-" + sortBy.name().toLowerCase(Locale.ROOT);
+    }
+
+    private Aggregation getAuthorsAggregation(int maxResults, AuthorProjectsSortType sortBy, List<String> sourceFields) {
+        return Aggregation.of(a -> a
+                .terms(t -> t
+                        .field(UCO_FIELD)
+                        .size(maxResults)
+                        .order(List.of(NamedValue.of(getOrder(sortBy), SortOrder.Desc))))
+                .aggregations(SUM_AGG, s -> s.sum(m -> m.script(SCORE_SCRIPT)))
+                .aggregations(MAX_AGG, s -> s.max(m -> m.script(SCORE_SCRIPT)))
+                .aggregations(AVG_AGG, s -> s.avg(m -> m.script(SCORE_SCRIPT)))
+                .aggregations(PROJECTS_AGG, s -> s.topHits(h -> {
+                    h.size(projectsSize);
+                    if (sourceFields != null) {
+                        h.source(c -> c.filter(f -> f.includes(sourceFields)));
+                    }
+                    return h;
+                })));
+    }
+
+    /**
+     * Reads the ranked authors from the aggregations of the search response. The authors ranked by multiple
+     * aggregations are returned once, in the order of the first aggregation they appear in
+     *
+     * @param aggregations The aggregations of the search response
+     * @return The ranked authors in the order of the ranking
+     */
+    public List<AuthorRanking> getRankings(Map<String, Aggregate> aggregations) {
+        Map<String, AuthorRanking> rankings = new LinkedHashMap<>();
+        for (AuthorProjectsSortType sortBy : AuthorProjectsSortType.values()) {
+            Aggregate authors = aggregations.get(getAggName(sortBy));
+            if (authors != null) {
+                for (StringTermsBucket bucket : authors.sterms().buckets().array()) {
+                    rankings.putIfAbsent(bucket.key().stringValue(), getRanking(bucket));
+                }
+            }
+        }
+        return new ArrayList<>(rankings.values());
+    }
+
+    private static AuthorRanking getRanking(StringTermsBucket bucket) {
+        Map<String, Aggregate> scores = bucket.aggregations();
+        return new AuthorRanking(
+                bucket.key().stringValue(),
+                scores.get(SUM_AGG).sum().value(),
+                scores.get(MAX_AGG).max().value(),
+                scores.get(AVG_AGG).avg().value(),
+                bucket.docCount(),
+                getProjects(scores.get(PROJECTS_AGG).topHits().hits().hits()));
+    }
+
+    private static String getOrder(AuthorProjectsSortType sortBy) {
+        return switch (sortBy) {
+            case SUM -> SUM_AGG;
+            case MAX -> MAX_AGG;
+            case AVG -> AVG_AGG;
+            case COUNT -> COUNT_ORDER;
+        };
+    }
+
+    private static List<ProjectEsDto> getProjects(List<Hit<JsonData>> hits) {
+        List<ProjectEsDto> projects = new ArrayList<>(hits.size());
+        for (var hit : hits) {
+            if (hit.source() == null) {
+                continue;
+            }
+            ProjectEsDto project = hit.source().to(ProjectEsDto.class);
+            project.setEsId(hit.id());
+            project.setScore(hit.score());
+            projects.add(project);
+        }
+        return projects;
+    }
+}
@@ -0,0 +1,111 @@
+package muni.fi.bl.component;
+
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.service.AsyncRecommendationService;
+import muni.fi.dtos.OpportunityDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static muni.fi.bl.config.ServiceConfiguration.RECOMMENDATION_EXECUTOR;
+
+/**
+ * Used for collecting personalized recommendations of multiple authors concurrently
+ */
+@Component
+@Slf4j
+public class AuthorRecommendationsCollector {
+
+    private final AsyncRecommendationService recommendationService;
+    private final Executor recommendationExecutor;
+    private final SearchConfigProperties searchConfigProperties;
+
+    public AuthorRecommendationsCollector(AsyncRecommendationService recommendationService,
+                                          @Qualifier(RECOMMENDATION_EXECUTOR) Executor recommendationExecutor,
+                                          SearchConfigProperties searchConfigProperties) {
+        this.recommendationService = recommendationService;
+        this.recommendationExecutor = recommendationExecutor;
+        this.searchConfigProperties = searchConfigProperties;
+    }
+
+    /**
+     * Collects the recommendations for all the given authors. At most 'recommendationConcurrency' authors are processed
+     * at the same time. Recommendations of the authors that fail or don't complete within 'recommendationTimeoutMs'
+     * are dropped, so the returned future always completes normally and no later than the timeout.
+     *
+     * @param ucos           The UCOs of the authors to recommend for
+     * @param excludeProjIds The ids of the projects to exclude from the authors' projects
+     * @return Future of the recommendations of all the authors that completed in time
+     */
+    public CompletableFuture<List<OpportunityDto>> recommendForAuthors(Collection<String> ucos, List<Long> excludeProjIds) {
+        if (ucos.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        long timeoutMs = searchConfigProperties.getRecommendationTimeoutMs();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Queue<String> pending = new ConcurrentLinkedQueue<>(ucos);
+        Queue<OpportunityDto> collected = new ConcurrentLinkedQueue<>();
+
+        int lanesCount = Math.min(Math.max(1, searchConfigProperties.getRecommendationConcurrency()), ucos.size());
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[lanesCount];
+        for (int i = 0; i < lanesCount; i++) {
+            lanes[i] = recommendNext(pending, excludeProjIds, collected, deadline);
+        }
+        return CompletableFuture.allOf(lanes)
+                .completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                .thenApply(v -> {
+                    if (!pending.isEmpty()) {
+                        log.warn("Recommendations for {} authors were not started within {} ms", pending.size(), timeoutMs);
+                    }
+                    return List.copyOf(collected);
+                });
+    }
+
+    /**
+     * Recommends for the next pending author and continues with the following one once done,
+     * so every lane processes at most one author at a time
+     */
+    private CompletableFuture<Void> recommendNext(Queue<String> pending, List<Long> excludeProjIds,
+                                                  Queue<OpportunityDto> collected, long deadline) {
+        if (System.nanoTime() - deadline >= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String uco = pending.poll();
+        if (uco == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return recommendForAuthor(uco, excludeProjIds)
+                .handle((recommendations, e) -> {
+                    if (e != null) {
+                        log.warn("Failed to recommend opportunities for author {}", uco, e);
+                    } else if (System.nanoTime() - deadline < 0) {
+                        collected.addAll(recommendations);
+                    } else {
+                        log.warn("Recommendations for author {} missed the deadline and were dropped", uco);
+                    }
+                    return null;
+                })
+                .thenCompose(v -> recommendNext(pending, excludeProjIds, collected, deadline));
+    }
+
+    private CompletableFuture<List<OpportunityDto>> recommendForAuthor(String uco, List<Long> excludeProjIds) {
+        try {
+            // the author projects are loaded from the database, so the call itself must not block the caller
+            return CompletableFuture
+                    .supplyAsync(() -> recommendationService.recommendForAuthorAsync(uco, excludeProjIds), recommendationExecutor)
+                    .thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -3,9 +3,11 @@ package muni.fi.bl.component;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
 import com.opencsv.exceptions.CsvException;
 import lombok.extern.slf4j.Slf4j;
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.config.ImportConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.dal.entity.Author;
 import muni.fi.dal.entity.Department;
@@ -13,14 +15,27 @@ import muni.fi.dal.entity.Project;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static muni.fi.bl.config.ServiceConfiguration.PROJECT_IMPORT_EXECUTOR;
 
 @Component
 @Slf4j
@@ -29,41 +44,80 @@ public class CsvProjectParser implements ProjectParser {
     public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormat.forPattern("dd.MM.yyyy");
     public static final CSVParserBuilder CSV_PARSER = new CSVParserBuilder().withSeparator(';');
 
+    private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+    // not expected in the column values
+    private static final String CONTENT_SEPARATOR = "\u001f";
+
     private final TextNormalizer textNormalizer;
+    private final Executor executor;
+    private final int chunkSize;
 
-    public CsvProjectParser(TextNormalizer textNormalizer) {
+    public CsvProjectParser(TextNormalizer textNormalizer,
+                            ImportConfigProperties importProperties,
+                            @Qualifier(PROJECT_IMPORT_EXECUTOR) Executor executor) {
         this.textNormalizer = textNormalizer;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, importProperties.getChunkSize());
+    }
+
+    @Override
+    public ProjectLoadResult parseProjects(InputStream stream, Consumer<List<Project>> chunkConsumer) {
+        try (Reader reader = new InputStreamReader(stream);
+             CSVReader csvReader = new CSVReaderBuilder(reader)
+                     .withCSVParser(CSV_PARSER.build())
+                     .build()) {
+            String[] header = csvReader.readNext();
+            if (header == null) {
+                return new ProjectLoadResult(0, 0, 0, List.of());
+            }
+            log.info("Loaded project CSV columns: " + String.join(",", header));
+            int columnCount = header.length;
+
+            ChunkPipeline pipeline = new ChunkPipeline(chunkConsumer);
+            int total = 0;
+            int failed = 0;
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                total++;
+                if (line.length != columnCount) {
+                    log.error("Project record has invalid number of columns (should be {} but is {}): {}", columnCount, line.length, line);
+                    failed++;
+                } else if (line[13].equals("EN")) {
+                    pipeline.add(line);
+                }
+            }
+            pipeline.finish();
+            return new ProjectLoadResult(total, pipeline.successful, failed + pipeline.failed, List.of());
+        } catch (IOException | CsvException e) {
+            String message = "Error reading csv file";
+            log.error(message, e);
+            throw new AppException(message, e);
+        }
     }
 
     @Override
-    public ProjectLoadResult parseProjects(InputStream stream) {
-        var lines = readAllLines(stream);
-        List<Project> projects = new ArrayList<>();
-        int i = 0;
-        int failed = 0;
-        int successful = 0;
-        int columnCount = 0;
-        for (var line : lines) {
-            if (i == 0) {
-                log.info("Loaded project CSV columns: " + String.join(",", line));
-                columnCount = line.length;
-            } else if (line.length != columnCount) {
-                log.error("Project record has invalid number of columns (should be {} but is {}): {}", columnCount, line.length, line);
-                failed++;
-            } else {
-                if (line[13].equals("EN")) {
-                    try {
-                        projects.add(resolveCsvProject(line));
-                        successful++;
-                    } catch (RuntimeException e) {
-                        log.error("Failed to process project record: {}", line, e);
-                        failed++;
-                    }
+    public void selectProjects(InputStream stream, Set<String> projIds, OutputStream output) {
+        try (Reader reader = new InputStreamReader(stream);
+             CSVReader csvReader = new CSVReaderBuilder(reader)
+                     .withCSVParser(CSV_PARSER.build())
+                     .build();
+             CSVWriter csvWriter = new CSVWriter(new OutputStreamWriter(output), ';',
+                     CSVWriter.DEFAULT_QUOTE_CHARACTER, CSVWriter.DEFAULT_ESCAPE_CHARACTER, CSVWriter.DEFAULT_LINE_END)) {
+            String[] line = csvReader.readNext();
+            if (line != null) {
+                // header
+                csvWriter.writeNext(line);
+            }
+            while ((line = csvReader.readNext()) != null) {
+                if (line.length > 0 && projIds.contains(line[0])) {
+                    csvWriter.writeNext(line);
                 }
             }
-            i++;
+        } catch (IOException | CsvException e) {
+            String message = "Error reading csv file";
+            log.error(message, e);
+            throw new AppException(message, e);
         }
-        return new ProjectLoadResult(i - 1, successful, failed, projects);
     }
 
     @Override
@@ -75,17 +129,15 @@ public class CsvProjectParser implements ProjectParser {
                 """;
     }
 
-    private List<String[]> readAllLines(InputStream stream) {
-        try (Reader reader = new InputStreamReader(stream)) {
-            try (CSVReader csvReader = new CSVReaderBuilder(reader)
-                    .withCSVParser(CSV_PARSER.build())
-                    .build()) {
-                return csvReader.readAll();
-            }
-        } catch (IOException | CsvException e) {
-            String message = "Error reading csv file";
-            log.error(message, e);
-            throw new AppException(message, e);
+    /**
+     * @return The project, null if the record is invalid
+     */
+    private Project tryResolveCsvProject(String[] line) {
+        try {
+            return resolveCsvProject(line);
+        } catch (RuntimeException e) {
+            log.error("Failed to process project record: {}", line, e);
+            return null;
         }
     }
 
@@ -102,6 +154,7 @@ public class CsvProjectParser implements ProjectParser {
         project.setInvestor(line[9]);
         project.setAnnotation(line[12]);
         project.setProcessedAnnotation(textNormalizer.normalize(line[12]));
+        project.setContentHash(getContentHash(line));
 
         Author author = new Author();
         author.setName(line[3]);
@@ -116,4 +169,65 @@ public class CsvProjectParser implements ProjectParser {
 
         return project;
     }
+
+    /**
+     * @return The hash of all the record columns, tells whether the project changed since the last load
+     */
+    private static String getContentHash(String[] line) {
+        String content = String.join(CONTENT_SEPARATOR, line);
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Resolves the records on the import executor in chunks. The chunks are passed to the consumer on the calling
+     * thread in the order of the records, while the following chunks are still being resolved. At most
+     * MAX_CHUNKS_IN_FLIGHT resolved or resolving chunks are held in memory, the reading waits for the oldest one otherwise
+     */
+    private class ChunkPipeline {
+
+        private final Consumer<List<Project>> chunkConsumer;
+        private final Deque<List<CompletableFuture<Project>>> inFlight = new ArrayDeque<>();
+        private List<CompletableFuture<Project>> chunk = new ArrayList<>(chunkSize);
+        private int successful;
+        private int failed;
+
+        ChunkPipeline(Consumer<List<Project>> chunkConsumer) {
+            this.chunkConsumer = chunkConsumer;
+        }
+
+        void add(String[] line) {
+            chunk.add(CompletableFuture.supplyAsync(() -> tryResolveCsvProject(line), executor));
+            if (chunk.size() >= chunkSize) {
+                inFlight.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+                if (inFlight.size() >= MAX_CHUNKS_IN_FLIGHT) {
+                    consume(inFlight.poll());
+                }
+            }
+        }
+
+        void finish() {
+            if (!chunk.isEmpty()) {
+                inFlight.add(chunk);
+            }
+            while (!inFlight.isEmpty()) {
+                consume(inFlight.poll());
+            }
+        }
+
+        private void consume(List<CompletableFuture<Project>> resolving) {
+            List<Project> projects = new ArrayList<>(resolving.size());
+            for (var future : resolving) {
+                Project project = future.join();
+                if (project != null) {
+                    projects.add(project);
+                }
+            }
+            successful += projects.size();
+            failed += resolving.size() - projects.size();
+            if (!projects.isEmpty()) {
+                chunkConsumer.accept(projects);
+            }
+        }
+    }
 }
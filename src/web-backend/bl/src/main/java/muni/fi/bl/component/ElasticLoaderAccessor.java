@@ -4,7 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import muni.fi.bl.config.ApiConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -17,6 +17,8 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.file.Path;
+
 @Component
 @Slf4j
 public class ElasticLoaderAccessor {
@@ -38,17 +40,17 @@ public class ElasticLoaderAccessor {
      * Loads opportunities to ElasticSearch index
      *
      * @param fileName    Source file name
-     * @param data        Source file data
+     * @param data        Source file, streamed to the loader without reading it into memory
      * @param endpointUri Loader endpoint to send the data to (e.g. "/load")
      * @return Load response message
      * @throws muni.fi.bl.exceptions.ConnectionException When connection with Elastic fails
      */
-    public String sendDataToElasticLoader(String fileName, byte[] data, String endpointUri) {
+    public String sendDataToElasticLoader(String fileName, Path data, String endpointUri) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
 
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", new ByteArrayResource(data) {
+        body.add("file", new FileSystemResource(data) {
             @Override
             public String getFilename() {
                 return fileName;
@@ -0,0 +1,339 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.analysis.TokenChar;
+import co.elastic.clients.elasticsearch._types.analysis.TokenFilter;
+import co.elastic.clients.elasticsearch._types.mapping.DynamicMapping;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.PropertyBase;
+import co.elastic.clients.elasticsearch._types.mapping.TermVectorOption;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.CloseIndexRequest;
+import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.GetMappingRequest;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexSettingsAnalysis;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.OpenRequest;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
+import co.elastic.clients.util.ObjectBuilder;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.FilesConfigProperties;
+import muni.fi.bl.exceptions.ConnectionException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static muni.fi.bl.component.QueryBuilder.NGRAM_SIZE;
+import static muni.fi.bl.component.QueryBuilder.NGRAM_SUBFIELD;
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.EXPERTISE_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.HELIX_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.ROLE_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+
+/**
+ * Manages the analysis settings and mappings of the ElasticSearch indices. Installs the analyzer used by the
+ * MoreLikeThis queries, which removes the bundled stopwords at the index level, so the queries don't have to carry
+ * the stopwords list.
+ * <p>
+ * The indices are created by the backend before the data load, with the 'title' and 'description' fields analyzed
+ * by the MoreLikeThis analyzer and their term vectors stored. The MoreLikeThis queries by an existing document then
+ * read the stored term vectors instead of re-analyzing the document on every query.
+ * Indices created by an older version of the data loader only get the analyzer installed on startup and after
+ * every data load; they need to be deleted and loaded again to benefit from the stored term vectors and
+ * the n-gram subfields. Until then, the queries fall back to re-analyzing the documents and to the wildcard filters
+ */
+@Slf4j
+@Component
+public class IndexAnalysisManager {
+
+    public static final String MLT_ANALYZER = "mlt_english";
+    public static final String MLT_STOP_FILTER = "mlt_stop";
+    public static final String MLT_POSSESSIVE_FILTER = "mlt_possessive_stemmer";
+    public static final String MLT_STEMMER_FILTER = "mlt_stemmer";
+    public static final String TRIGRAM_ANALYZER = "trigram";
+
+    private static final List<String> MANAGED_INDICES = List.of(CROWDHELIX_INDEX, MU_INDEX, AUTHOR_PROFILE_INDEX);
+    private static final List<String> TERM_VECTOR_FIELDS = List.of(TITLE_FIELD, DESCRIPTION_FIELD);
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final List<String> stopWords;
+    // indices whose term vectors are stored already analyzed by the MoreLikeThis analyzer
+    private final Map<String, Boolean> storedTermVectors = new ConcurrentHashMap<>();
+    // fields of the indices having the n-gram subfield analyzed by the trigram analyzer
+    private final Map<String, Set<String>> ngramFields = new ConcurrentHashMap<>();
+
+    public IndexAnalysisManager(ElasticsearchClient elasticsearchClient,
+                                StopWordsReader stopWordsReader,
+                                FilesConfigProperties filesProperties) throws IOException {
+        this.elasticsearchClient = elasticsearchClient;
+        ClassPathResource resource = new ClassPathResource(filesProperties.getStopWords());
+        InputStreamReader inputStreamReader = new InputStreamReader(resource.getInputStream());
+        this.stopWords = stopWordsReader.loadStopWords(inputStreamReader);
+    }
+
+    /**
+     * Checks on startup that all the managed indices have the MoreLikeThis analyzer with the bundled stopwords.
+     * ElasticSearch being unavailable doesn't prevent the startup, the check is repeated after the next data load
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyAnalyzers() {
+        for (String index : MANAGED_INDICES) {
+            try {
+                ensureAnalyzer(index);
+            } catch (ConnectionException e) {
+                log.warn("Couldn't verify the analyzer of index '{}'", index);
+            }
+        }
+    }
+
+    /**
+     * Installs the MoreLikeThis analyzer to the index if it's missing or its stopwords don't match the bundled ones.
+     * Analysis settings can only be changed on a closed index, so the index is unavailable for a moment while installing
+     *
+     * @param index The name of the ElasticSearch index
+     * @return true if the index has the up-to-date analyzer, false if the index doesn't exist
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public boolean ensureAnalyzer(String index) {
+        try {
+            if (!elasticsearchClient.indices().exists(ExistsRequest.of(e -> e.index(index))).value()) {
+                log.info("Index '{}' doesn't exist, skipping analyzer installation", index);
+                storedTermVectors.remove(index);
+                ngramFields.remove(index);
+                return false;
+            }
+            Map<String, Property> properties = getMappingProperties(index);
+            storedTermVectors.put(index, hasMltTermVectors(index, properties));
+            ngramFields.put(index, getNgramFields(properties));
+            if (hasBundledStopWords(index)) {
+                log.debug("Index '{}' has up-to-date analyzer '{}'", index, MLT_ANALYZER);
+                return true;
+            }
+            installAnalyzer(index);
+            return true;
+        } catch (IOException | ElasticsearchException e) {
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    /**
+     * Creates the index with the backend settings and mappings, if it doesn't exist yet.
+     * Called before the data load, so the data loader finds the index already created
+     *
+     * @param index The name of the ElasticSearch index, the opportunities, the MU projects or the author profiles one
+     * @return true if the index was created, false if it already existed
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public boolean ensureIndex(String index) {
+        try {
+            if (elasticsearchClient.indices().exists(ExistsRequest.of(e -> e.index(index))).value()) {
+                return false;
+            }
+            log.info("Creating index '{}' with stored term vectors of fields {}", index, TERM_VECTOR_FIELDS);
+            elasticsearchClient.indices().create(CreateIndexRequest.of(c -> c
+                    .index(index)
+                    .settings(s -> s
+                            .numberOfShards("1")
+                            .numberOfReplicas("0")
+                            .analysis(a -> withMltAnalyzer(a, CROWDHELIX_INDEX.equals(index))))
+                    .mappings(getMapping(index))));
+            storedTermVectors.put(index, true);
+            ngramFields.put(index, getNgramFields(getMapping(index).properties()));
+            return true;
+        } catch (IOException | ElasticsearchException e) {
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    /**
+     * @param index The name of the ElasticSearch index
+     * @return true if the MoreLikeThis queries can use the term vectors stored in the index. When false,
+     * the documents of the index have to be re-analyzed by the MoreLikeThis analyzer on every query
+     */
+    public boolean hasStoredTermVectors(String index) {
+        return storedTermVectors.getOrDefault(index, false);
+    }
+
+    /**
+     * @param index The name of the ElasticSearch index
+     * @param field The name of the field
+     * @return true if the field has the n-gram subfield, so it can be filtered by the n-gram phrase queries.
+     * When false, the field has to be filtered by the wildcard queries
+     */
+    public boolean hasNgramSubfield(String index, String field) {
+        return ngramFields.getOrDefault(index, Set.of()).contains(field);
+    }
+
+    private Map<String, Property> getMappingProperties(String index) throws IOException {
+        IndexMappingRecord mapping = elasticsearchClient.indices()
+                .getMapping(GetMappingRequest.of(g -> g.index(index)))
+                .result().get(index);
+        return mapping == null ? Map.of() : mapping.mappings().properties();
+    }
+
+    private static boolean hasMltTermVectors(String index, Map<String, Property> properties) {
+        for (String field : TERM_VECTOR_FIELDS) {
+            Property property = properties.get(field);
+            if (property == null || !property.isText()
+                    || !MLT_ANALYZER.equals(property.text().analyzer())
+                    || property.text().termVector() != TermVectorOption.Yes) {
+                log.warn("Index '{}' doesn't store term vectors of field '{}' analyzed by '{}', delete and load the index again to use them",
+                        index, field, MLT_ANALYZER);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> getNgramFields(Map<String, Property> properties) {
+        Set<String> fields = new HashSet<>();
+        properties.forEach((field, property) -> {
+            Property ngram = property._get() instanceof PropertyBase base ? base.fields().get(NGRAM_SUBFIELD) : null;
+            if (ngram != null && ngram.isText() && TRIGRAM_ANALYZER.equals(ngram.text().analyzer())) {
+                fields.add(field);
+            }
+        });
+        return Set.copyOf(fields);
+    }
+
+    private boolean hasBundledStopWords(String index) throws IOException {
+        IndexState state = elasticsearchClient.indices()
+                .getSettings(GetIndicesSettingsRequest.of(g -> g.index(index)))
+                .result().get(index);
+        IndexSettingsAnalysis analysis = getAnalysis(state == null ? null : state.settings());
+        if (analysis == null || !analysis.analyzer().containsKey(MLT_ANALYZER)) {
+            return false;
+        }
+        TokenFilter stopFilter = analysis.filter().get(MLT_STOP_FILTER);
+        if (stopFilter == null || !stopFilter.isDefinition() || !stopFilter.definition().isStop()) {
+            return false;
+        }
+        return new HashSet<>(stopFilter.definition().stop().stopwords()).equals(Set.copyOf(stopWords));
+    }
+
+    private static IndexSettingsAnalysis getAnalysis(IndexSettings settings) {
+        if (settings == null) {
+            return null;
+        }
+        // the settings are nested under the 'index' key when read from the cluster
+        if (settings.index() != null && settings.index().analysis() != null) {
+            return settings.index().analysis();
+        }
+        return settings.analysis();
+    }
+
+    private void installAnalyzer(String index) throws IOException {
+        log.info("Installing analyzer '{}' with {} stopwords to index '{}'", MLT_ANALYZER, stopWords.size(), index);
+        elasticsearchClient.indices().close(CloseIndexRequest.of(c -> c.index(index)));
+        try {
+            PutIndicesSettingsRequest request = PutIndicesSettingsRequest.of(p -> p
+                    .index(index)
+                    .settings(s -> s
+                            .analysis(a -> withMltAnalyzer(a, false))));
+            elasticsearchClient.indices().putSettings(request);
+        } finally {
+            elasticsearchClient.indices().open(OpenRequest.of(o -> o.index(index)));
+        }
+    }
+
+    private IndexSettingsAnalysis.Builder withMltAnalyzer(IndexSettingsAnalysis.Builder analysis, boolean withTrigram) {
+        analysis
+                .filter(MLT_STOP_FILTER, f -> f.definition(d -> d
+                        .stop(st -> st.stopwords(stopWords))))
+                .filter(MLT_POSSESSIVE_FILTER, f -> f.definition(d -> d
+                        .stemmer(st -> st.language("possessive_english"))))
+                .filter(MLT_STEMMER_FILTER, f -> f.definition(d -> d
+                        .stemmer(st -> st.language("english"))))
+                .analyzer(MLT_ANALYZER, an -> an
+                        .custom(c -> c
+                                .tokenizer("standard")
+                                .filter(MLT_POSSESSIVE_FILTER, "lowercase",
+                                        MLT_STOP_FILTER, MLT_STEMMER_FILTER)));
+        if (withTrigram) {
+            // used by the n-gram subfields for the substring filtering
+            analysis
+                    .tokenizer(TRIGRAM_ANALYZER, t -> t.definition(d -> d
+                            .ngram(n -> n
+                                    .minGram(NGRAM_SIZE)
+                                    .maxGram(NGRAM_SIZE)
+                                    .tokenChars(TokenChar.Letter, TokenChar.Digit, TokenChar.Whitespace,
+                                            TokenChar.Punctuation, TokenChar.Symbol))))
+                    .analyzer(TRIGRAM_ANALYZER, an -> an
+                            .custom(c -> c
+                                    .tokenizer(TRIGRAM_ANALYZER)
+                                    .filter("lowercase")));
+        }
+        return analysis;
+    }
+
+    /**
+     * Same mappings as created by the data loader, except for the analyzer of the 'title' and 'description' fields.
+     * The author profiles index is maintained by the backend only
+     */
+    private static TypeMapping getMapping(String index) {
+        if (AUTHOR_PROFILE_INDEX.equals(index)) {
+            return TypeMapping.of(m -> m
+                    .dynamic(DynamicMapping.False)
+                    .properties("uco", p -> p.keyword(k -> k))
+                    .properties(TITLE_FIELD, IndexAnalysisManager::mltText)
+                    .properties(DESCRIPTION_FIELD, IndexAnalysisManager::mltText));
+        }
+        if (CROWDHELIX_INDEX.equals(index)) {
+            return TypeMapping.of(m -> m
+                    .dynamic(DynamicMapping.False)
+                    .properties(HELIX_FIELD, IndexAnalysisManager::ngramKeyword)
+                    .properties(ROLE_FIELD, IndexAnalysisManager::ngramKeyword)
+                    .properties(EXPERTISE_FIELD, IndexAnalysisManager::ngramKeyword)
+                    .properties(TITLE_FIELD, p -> p.text(t -> t
+                            .analyzer(MLT_ANALYZER)
+                            .termVector(TermVectorOption.Yes)
+                            .fields(NGRAM_SUBFIELD, f -> f.text(n -> n.analyzer(TRIGRAM_ANALYZER)))))
+                    .properties("url", p -> p.keyword(k -> k))
+                    .properties("author", IndexAnalysisManager::ngramKeyword)
+                    .properties("institutionName", IndexAnalysisManager::ngramKeyword)
+                    .properties("institutionUrl", p -> p.keyword(k -> k))
+                    .properties(DESCRIPTION_FIELD, IndexAnalysisManager::mltText)
+                    .properties("appendixUrl", p -> p.keyword(k -> k))
+                    .properties("ID", p -> p.integer(i -> i)));
+        }
+        return TypeMapping.of(m -> m
+                .dynamic(DynamicMapping.False)
+                .properties("regCode", p -> p.keyword(k -> k))
+                .properties(TITLE_FIELD, IndexAnalysisManager::mltText)
+                .properties(DESCRIPTION_FIELD, IndexAnalysisManager::mltText)
+                .properties("uco", p -> p.keyword(k -> k))
+                .properties("projId", p -> p.keyword(k -> k)));
+    }
+
+    private static ObjectBuilder<Property> mltText(Property.Builder property) {
+        return property.text(t -> t
+                .analyzer(MLT_ANALYZER)
+                .termVector(TermVectorOption.Yes));
+    }
+
+    private static ObjectBuilder<Property> ngramKeyword(Property.Builder property) {
+        return property.keyword(k -> k
+                .fields(NGRAM_SUBFIELD, f -> f.text(n -> n.analyzer(TRIGRAM_ANALYZER))));
+    }
+}
@@ -0,0 +1,111 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.dtos.OpportunityDto;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static muni.fi.bl.component.SearchPerformer.PIT_KEEP_ALIVE;
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.SHARD_DOC_FIELD;
+
+/**
+ * Reads all the opportunities from a point-in-time snapshot of the opportunities index, page by page,
+ * for the background jobs precomputing the search results
+ */
+@Slf4j
+@Component
+public class OpportunityIndexScanner {
+
+    public static final int PAGE_SIZE = 1000;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    public OpportunityIndexScanner(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * @return The ElasticSearch ids of all the opportunities, empty if the index doesn't exist
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public List<String> getIds() {
+        List<String> ids = new ArrayList<>();
+        scan(false, Void.class, hit -> ids.add(hit.id()));
+        return ids;
+    }
+
+    /**
+     * @return All the opportunities keyed by their ElasticSearch id, empty if the index doesn't exist
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public Map<String, OpportunityDto> getDocuments() {
+        Map<String, OpportunityDto> documents = new LinkedHashMap<>();
+        scan(true, OpportunityDto.class, hit -> {
+            if (hit.source() != null) {
+                documents.put(hit.id(), hit.source());
+            }
+        });
+        return documents;
+    }
+
+    private <T> void scan(boolean fetchSource, Class<T> documentClass, Consumer<Hit<T>> consumer) {
+        try {
+            if (!elasticsearchClient.indices().exists(ExistsRequest.of(e -> e.index(CROWDHELIX_INDEX))).value()) {
+                return;
+            }
+            String pitId = elasticsearchClient.openPointInTime(OpenPointInTimeRequest.of(o -> o
+                    .index(CROWDHELIX_INDEX)
+                    .keepAlive(t -> t.time(PIT_KEEP_ALIVE)))).id();
+            try {
+                scan(pitId, fetchSource, documentClass, consumer);
+            } finally {
+                elasticsearchClient.closePointInTime(ClosePointInTimeRequest.of(c -> c.id(pitId)));
+            }
+        } catch (IOException e) {
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    private <T> void scan(String pitId, boolean fetchSource, Class<T> documentClass, Consumer<Hit<T>> consumer) throws IOException {
+        List<FieldValue> searchAfter = List.of();
+        while (true) {
+            List<FieldValue> after = searchAfter;
+            SearchRequest request = SearchRequest.of(s -> {
+                s.pit(p -> p.id(pitId).keepAlive(t -> t.time(PIT_KEEP_ALIVE)))
+                        .size(PAGE_SIZE)
+                        .source(c -> c.fetch(fetchSource))
+                        .sort(o -> o.field(f -> f.field(SHARD_DOC_FIELD).order(SortOrder.Asc)));
+                if (!after.isEmpty()) {
+                    s.searchAfter(after);
+                }
+                return s;
+            });
+            SearchResponse<T> response = elasticsearchClient.search(request, documentClass);
+            List<Hit<T>> hits = response.hits().hits();
+            hits.forEach(consumer);
+            if (hits.size() < PAGE_SIZE) {
+                return;
+            }
+            searchAfter = hits.get(hits.size() - 1).sort();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.dal.entity.MatchedProject;
+import muni.fi.dal.entity.OpportunityMatch;
+import muni.fi.dal.repository.OpportunityMatchRepository;
+import muni.fi.dtos.ProjectEsDto;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the authors ranked for every opportunity in advance, so the searches by opportunity are served
+ * from the database instead of searching ElasticSearch and ranking the authors on every request.
+ * The matches are computed by the {@link OpportunityMatchesJob} after every load of the opportunities or projects.
+ * <p>
+ * Any change of the projects changes the scores of all the matches, so all the stored matches are deleted at once
+ * and the searches are performed live until the job stores the new ones. The same applies to every load
+ * of the opportunities, the reloaded opportunities keep their ids, but their texts may have changed
+ */
+@Component
+public class OpportunityMatches {
+
+    private final OpportunityMatchRepository opportunityMatchRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int size;
+    // incremented whenever the stored matches become outdated, the matches computed before are not stored
+    private final AtomicLong generation = new AtomicLong();
+
+    public OpportunityMatches(OpportunityMatchRepository opportunityMatchRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              SearchConfigProperties searchProperties) {
+        this.opportunityMatchRepository = opportunityMatchRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = searchProperties.isOpportunityMatches();
+        this.size = Math.max(1, searchProperties.getOpportunityMatchesSize());
+    }
+
+    /**
+     * @return true if the matches are computed and served
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The number of the best authors stored per opportunity and sort type
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Finds the stored matches of the opportunity. The best authors by every sort type are stored,
+     * so the matches have to be ranked by the requested sort type
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     * @param maxResults    The number of the requested authors
+     * @return The stored rankings of the authors, empty if the opportunity has no up-to-date matches
+     * or more authors than stored are requested
+     */
+    public Optional<List<AuthorRanking>> find(String opportunityId, int maxResults) {
+        if (!enabled || maxResults > size) {
+            return Optional.empty();
+        }
+        List<OpportunityMatch> matches = opportunityMatchRepository.findByOpportunityId(opportunityId);
+        if (matches.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(matches.stream()
+                .map(OpportunityMatches::toRanking)
+                .toList());
+    }
+
+    /**
+     * Replaces the stored matches of the opportunity. The generation is checked again once the matches are committed,
+     * the matches outdated in the meantime are deleted again. A {@link #deleteAll()} started after the second check
+     * deletes the committed matches itself
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     * @param rankings      The rankings of the authors for the opportunity
+     * @param generation    The generation the rankings were computed in, see {@link #getGeneration()}
+     * @return false if the matches became outdated in the meantime and weren't stored
+     */
+    public boolean replace(String opportunityId, List<AuthorRanking> rankings, long generation) {
+        List<OpportunityMatch> stored = transactionTemplate.execute(status -> {
+            if (this.generation.get() != generation) {
+                return null;
+            }
+            opportunityMatchRepository.deleteByOpportunityId(opportunityId);
+            Instant computedAt = Instant.now();
+            List<OpportunityMatch> matches = rankings.stream()
+                    .map(ranking -> toEntity(opportunityId, ranking, computedAt))
+                    .toList();
+            opportunityMatchRepository.saveAll(matches);
+            return matches;
+        });
+        if (stored == null) {
+            return false;
+        }
+        if (this.generation.get() != generation) {
+            opportunityMatchRepository.deleteAllByIdInBatch(stored.stream().map(OpportunityMatch::getId).toList());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the matches of the opportunities that don't exist anymore
+     *
+     * @param opportunityIds The ElasticSearch ids of all the existing opportunities
+     */
+    @Transactional
+    public void retain(Collection<String> opportunityIds) {
+        if (opportunityIds.isEmpty()) {
+            opportunityMatchRepository.deleteAllInBatch();
+        } else {
+            opportunityMatchRepository.deleteByOpportunityIdNotIn(opportunityIds);
+        }
+    }
+
+    /**
+     * Deletes the matches of the deleted opportunity
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     */
+    @Transactional
+    public void delete(String opportunityId) {
+        opportunityMatchRepository.deleteByOpportunityId(opportunityId);
+    }
+
+    /**
+     * Deletes all the stored matches, e.g. when all the opportunities or projects are deleted.
+     * The generation is incremented first, so the matches committed before are deleted as well
+     */
+    public void deleteAll() {
+        generation.incrementAndGet();
+        opportunityMatchRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Deletes all the stored matches as outdated and computes them again
+     */
+    public void invalidateAll() {
+        deleteAll();
+        requestRefresh();
+    }
+
+    /**
+     * Computes the matches of all the opportunities in the background, after the current transaction commits
+     */
+    public void requestRefresh() {
+        if (enabled) {
+            eventPublisher.publishEvent(new RefreshEvent());
+        }
+    }
+
+    /**
+     * @return The number of the opportunities having the matches stored
+     */
+    public long countOpportunities() {
+        return opportunityMatchRepository.countOpportunities();
+    }
+
+    private static AuthorRanking toRanking(OpportunityMatch match) {
+        List<ProjectEsDto> projects = match.getProjects().stream()
+                .map(matched -> {
+                    ProjectEsDto project = new ProjectEsDto();
+                    project.setProjId(matched.getProjId());
+                    project.setUco(match.getAuthorUco());
+                    project.setScore(matched.getScore());
+                    return project;
+                })
+                .toList();
+        return new AuthorRanking(match.getAuthorUco(), match.getSumScore(), match.getMaxScore(), match.getAvgScore(),
+                match.getProjectCount(), projects);
+    }
+
+    private static OpportunityMatch toEntity(String opportunityId, AuthorRanking ranking, Instant computedAt) {
+        OpportunityMatch match = new OpportunityMatch();
+        match.setOpportunityId(opportunityId);
+        match.setAuthorUco(ranking.uco());
+        match.setSumScore(ranking.sum());
+        match.setMaxScore(ranking.max());
+        match.setAvgScore(ranking.avg());
+        match.setProjectCount(ranking.count());
+        match.setComputedAt(computedAt);
+        match.setProjects(ranking.projects().stream()
+                .map(project -> new MatchedProject(project.getProjId(), project.getScore()))
+                .collect(Collectors.toCollection(ArrayList::new)));
+        return match;
+    }
+
+    /**
+     * Published when the matches of all the opportunities should be computed again
+     */
+    public record RefreshEvent() {
+    }
+}
@@ -0,0 +1,166 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.component.OpportunityMatches.RefreshEvent;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.bl.service.impl.ElasticSearchService;
+import muni.fi.dtos.OpportunityMatchStatsDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static muni.fi.bl.config.ServiceConfiguration.OPPORTUNITY_MATCHES_EXECUTOR;
+
+/**
+ * Computes the {@link OpportunityMatches} of all the opportunities in the background. The run is started
+ * after the transaction requesting it commits, the opportunities are matched in parallel on the
+ * OPPORTUNITY_MATCHES_EXECUTOR, in batches of BATCH_SIZE opportunities. A refresh requested during a run starts another run once the current one finishes
+ */
+@Slf4j
+@Component
+public class OpportunityMatchesJob {
+
+    // the opportunities submitted to the executor at once, keeps its queue bounded
+    static final int BATCH_SIZE = 100;
+
+    private final OpportunityMatches opportunityMatches;
+    private final ElasticSearchService elasticSearchService;
+    private final OpportunityIndexScanner opportunityIndexScanner;
+    private final Executor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicReference<RunStats> lastRun = new AtomicReference<>();
+
+    public OpportunityMatchesJob(OpportunityMatches opportunityMatches,
+                                 ElasticSearchService elasticSearchService,
+                                 OpportunityIndexScanner opportunityIndexScanner,
+                                 @Qualifier(OPPORTUNITY_MATCHES_EXECUTOR) Executor executor) {
+        this.opportunityMatches = opportunityMatches;
+        this.elasticSearchService = elasticSearchService;
+        this.opportunityIndexScanner = opportunityIndexScanner;
+        this.executor = executor;
+    }
+
+    /**
+     * Computes the matches on startup if none are stored, e.g. after the first deployment
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyMatches() {
+        if (opportunityMatches.isEnabled() && opportunityMatches.countOpportunities() == 0) {
+            refresh();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRefresh(RefreshEvent event) {
+        refresh();
+    }
+
+    /**
+     * Starts computing the matches of all the opportunities, unless a run is in progress already.
+     * In that case another run follows the current one, as the current one may be using outdated data
+     */
+    public void refresh() {
+        if (!opportunityMatches.isEnabled()) {
+            return;
+        }
+        pending.set(true);
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    /**
+     * @return The statistics of the last finished run
+     */
+    public OpportunityMatchStatsDto getStats() {
+        RunStats stats = lastRun.get();
+        long stored = opportunityMatches.countOpportunities();
+        if (stats == null) {
+            return new OpportunityMatchStatsDto(running.get(), stored, null, 0, 0, 0, 0);
+        }
+        double throughput = stats.durationMs() > 0 ? stats.matched() * 1000.0 / stats.durationMs() : 0;
+        return new OpportunityMatchStatsDto(running.get(), stored, stats.finishedAt(), stats.durationMs(),
+                stats.matched(), stats.failed(), throughput);
+    }
+
+    private void runPending() {
+        try {
+            while (pending.getAndSet(false)) {
+                matchAll();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to compute the opportunity matches", e);
+        } finally {
+            running.set(false);
+        }
+        // requested after the last check, but before the flag was reset
+        if (pending.get() && running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    private void matchAll() {
+        long generation = opportunityMatches.getGeneration();
+        long start = System.nanoTime();
+        List<String> opportunityIds;
+        try {
+            opportunityIds = opportunityIndexScanner.getIds();
+        } catch (ConnectionException | ElasticsearchException e) {
+            log.warn("Couldn't list the opportunities, the opportunity matches are not computed", e);
+            return;
+        }
+        opportunityMatches.retain(opportunityIds);
+
+        AtomicLong matched = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        for (int from = 0; from < opportunityIds.size(); from += BATCH_SIZE) {
+            if (opportunityMatches.getGeneration() != generation) {
+                // outdated, the next run computes the matches again
+                break;
+            }
+            List<String> batch = opportunityIds.subList(from, Math.min(from + BATCH_SIZE, opportunityIds.size()));
+            CompletableFuture.allOf(batch.stream()
+                            .map(id -> CompletableFuture.runAsync(() -> match(id, generation, matched, failed), executor))
+                            .toArray(CompletableFuture[]::new))
+                    .join();
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        RunStats stats = new RunStats(Instant.now(), durationMs, matched.get(), failed.get());
+        lastRun.set(stats);
+        log.info("Opportunity matches computed for {} of {} opportunities in {} ms ({} failed)",
+                stats.matched(), opportunityIds.size(), durationMs, stats.failed());
+    }
+
+    private void match(String opportunityId, long generation, AtomicLong matched, AtomicLong failed) {
+        if (opportunityMatches.getGeneration() != generation) {
+            // outdated, the next run computes the matches again
+            return;
+        }
+        try {
+            List<AuthorRanking> rankings = elasticSearchService.rankAuthorsByOpportunity(opportunityId, opportunityMatches.getSize());
+            if (opportunityMatches.replace(opportunityId, rankings, generation)) {
+                matched.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Failed to compute the matches of opportunity {}", opportunityId, e);
+        }
+    }
+
+    private record RunStats(Instant finishedAt, long durationMs, long matched, long failed) {
+    }
+}
@@ -1,8 +1,14 @@
 package muni.fi.bl.component;
 
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.dal.entity.Project;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface ProjectParser {
 
@@ -12,7 +18,30 @@ public interface ProjectParser {
      * @param stream Input stream with projects data
      * @return Result of the projects parsing. Contains information about the number of successfully parsed projects and other data
      */
-    ProjectLoadResult parseProjects(InputStream stream);
+    default ProjectLoadResult parseProjects(InputStream stream) {
+        List<Project> projects = new ArrayList<>();
+        ProjectLoadResult result = parseProjects(stream, projects::addAll);
+        return new ProjectLoadResult(result.total(), result.successful(), result.failed(), projects);
+    }
+
+    /**
+     * Tries to parse projects from inputStream record by record, without holding all the projects in memory.
+     * Enforces best-effort strategy, that skips malformed records
+     *
+     * @param stream        Input stream with projects data
+     * @param chunkConsumer Consumer of the parsed projects, called with the chunks of the projects in the order of the records
+     * @return Result of the projects parsing. Contains the numbers of the records, the projects are passed to the consumer only
+     */
+    ProjectLoadResult parseProjects(InputStream stream, Consumer<List<Project>> chunkConsumer);
+
+    /**
+     * Selects the records of the given projects, e.g. to index only the changed projects
+     *
+     * @param stream  Input stream with projects data
+     * @param projIds The ids of the projects to select
+     * @param output  Receives the selected records in the same format as the input, with the header if the format has one
+     */
+    void selectProjects(InputStream stream, Set<String> projIds, OutputStream output);
 
     /**
      * Retrieves expected file format for projects loading
@@ -4,6 +4,7 @@ import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Like;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchPhraseQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MoreLikeThisQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
@@ -12,18 +13,19 @@ import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermsQueryField;
 import co.elastic.clients.elasticsearch._types.query_dsl.WildcardQuery;
 import co.elastic.clients.json.JsonData;
-import muni.fi.bl.config.FilesConfigProperties;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.query.SearchInfo;
 import org.apache.commons.lang3.Validate;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static muni.fi.bl.component.IndexAnalysisManager.MLT_ANALYZER;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.EXPERTISE_FIELD;
@@ -41,24 +43,50 @@ import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 @Component
 public class QueryBuilder {
 
-    private final List<String> stopWords;
+    // name and gram size of the subfield analyzed by the 'trigram' analyzer in the opportunities index
+    public static final String NGRAM_SUBFIELD = "ngram";
+    public static final int NGRAM_SIZE = 3;
 
-    public QueryBuilder(StopWordsReader stopWordsReader,
-                        FilesConfigProperties filesProperties) throws IOException {
-        ClassPathResource resource = new ClassPathResource(filesProperties.getStopWords());
-        InputStreamReader inputStreamReader = new InputStreamReader(resource.getInputStream());
-        this.stopWords = stopWordsReader.loadStopWords(inputStreamReader);
+    private final Set<String> ngramFilterFields;
+    private final int likeTermsBudget;
+    private final TermStatistics termStatistics;
+    private final IndexAnalysisManager indexAnalysisManager;
+
+    public QueryBuilder(SearchConfigProperties searchProperties,
+                        TermStatistics termStatistics,
+                        IndexAnalysisManager indexAnalysisManager) {
+        this.ngramFilterFields = Set.copyOf(searchProperties.getNgramFilterFields());
+        this.likeTermsBudget = searchProperties.getLikeTermsBudget();
+        this.termStatistics = termStatistics;
+        this.indexAnalysisManager = indexAnalysisManager;
     }
 
     /**
-     * Creates a moreLikeThisQuery with list of 'like' documents as parameter.
-     * The query is performed among the 'description' field
+     * Creates a moreLikeThisQuery with list of processed annotations as the 'like' documents.
+     * The query is performed among the 'description' field. The annotations are reduced to a single document
+     * of their 'search.like-terms-budget' most discriminative terms, so the size of the query doesn't grow with
+     * the number and length of the annotations
      *
-     * @param docs The documents which you want to find similar results for
+     * @param docs The processed annotations which you want to find similar results for
      * @return The constructed instance of MoreLikeThis query
      */
     public MoreLikeThisQuery getMoreLikeThisQuery(List<String> docs) {
-        return getMoreLikeThisQuery(docs, List.of(DESCRIPTION_FIELD));
+        return getMoreLikeThisQuery(getLikeTexts(docs), List.of(DESCRIPTION_FIELD));
+    }
+
+    /**
+     * Reduces the processed annotations to the 'like' texts of the MoreLikeThis query,
+     * see {@link #getMoreLikeThisQuery(List)}
+     *
+     * @param docs The processed annotations which you want to find similar results for
+     * @return The pruned 'like' texts (the annotations themselves if the pruning is disabled)
+     */
+    public List<String> getLikeTexts(List<String> docs) {
+        Validate.isTrue(!CollectionUtils.isEmpty(docs), "Can't find results for empty query");
+        if (likeTermsBudget <= 0) {
+            return docs;
+        }
+        return List.of(termStatistics.getTopTermsDocument(docs, likeTermsBudget));
     }
 
     /**
@@ -73,13 +101,12 @@ public class QueryBuilder {
         return MoreLikeThisQuery.of(m -> m
                 .fields(fields)
                 .like(
-                        getLikeDocs(docs)
+                        getLikeDocs(docs, fields)
                 )
                 .maxQueryTerms(MAX_QUERY_TERMS)
                 .minDocFreq(MIN_DOC_FREQ)
                 .minTermFreq(MIN_TERM_FREQ)
-                .minimumShouldMatch(MINIMUM_TERMS_MATCH)
-                .stopWords(stopWords));
+                .minimumShouldMatch(MINIMUM_TERMS_MATCH));
     }
 
     /**
@@ -95,7 +122,8 @@ public class QueryBuilder {
     }
 
     /**
-     * Creates a moreLikeThisQuery with an elastic document as parameter.
+     * Creates a moreLikeThisQuery with an elastic document as parameter. When the index stores the term vectors
+     * analyzed by the MoreLikeThis analyzer, the document is not re-analyzed by ElasticSearch
      *
      * @param index  The name of the ElasticSearch index to search in
      * @param fields The fields to search among
@@ -103,18 +131,38 @@ public class QueryBuilder {
      * @return The constructed instance of MoreLikeThis query
      */
     public MoreLikeThisQuery getMoreLikeThisQuery(String id, List<String> fields, String index) {
+        return getMoreLikeThisQueryByIds(List.of(id), fields, index);
+    }
+
+    /**
+     * Creates a moreLikeThisQuery with multiple elastic documents of the same index as parameter
+     *
+     * @param ids    The unique identifiers of the documents in ElasticSearch
+     * @param fields The fields to search among
+     * @param index  The name of the ElasticSearch index of the documents
+     * @return The constructed instance of MoreLikeThis query
+     */
+    public MoreLikeThisQuery getMoreLikeThisQueryByIds(List<String> ids, List<String> fields, String index) {
+        Validate.isTrue(!CollectionUtils.isEmpty(ids), "Can't find results for empty query");
+        boolean storedTermVectors = indexAnalysisManager.hasStoredTermVectors(index);
+        List<Like> likeDocs = new ArrayList<>();
+        for (String id : ids) {
+            likeDocs.add(Like.of(l -> l.document(d -> {
+                d.index(index).id(id);
+                // a per-field analyzer makes ElasticSearch ignore the stored term vectors
+                if (!storedTermVectors) {
+                    d.perFieldAnalyzer(getPerFieldAnalyzer(fields));
+                }
+                return d;
+            })));
+        }
         return MoreLikeThisQuery.of(m -> m
                 .fields(fields)
-                .like(
-                        l -> l.document(d -> d
-                                .index(index)
-                                .id(id))
-                )
+                .like(likeDocs)
                 .maxQueryTerms(MAX_QUERY_TERMS)
                 .minDocFreq(MIN_DOC_FREQ)
                 .minTermFreq(MIN_TERM_FREQ)
-                .minimumShouldMatch(MINIMUM_TERMS_MATCH)
-                .stopWords(stopWords));
+                .minimumShouldMatch(MINIMUM_TERMS_MATCH));
     }
 
     /**
@@ -168,6 +216,38 @@ public class QueryBuilder {
         return filterQuery.build();
     }
 
+    /**
+     * Creates a query which matches all documents containing the phrase 'searchValue' in their 'searchField'.
+     * For the fields with the n-gram subfield (see 'search.ngram-filter-fields'), the substring is matched as
+     * a phrase of n-grams, so no term dictionary scan is needed. Other fields, the fields of an index created
+     * without the n-gram subfields, and values shorter than the n-gram fall back to the case-insensitive wildcard query
+     *
+     * @param searchField The field which value has to contain the substring 'searchValue'
+     * @param searchValue The substring you are looking for in the 'searchField'
+     * @return The constructed query usable for filtering the search results
+     */
+    public Query getFilterQuery(String searchField, String searchValue) {
+        if (ngramFilterFields.contains(searchField) && searchValue.length() >= NGRAM_SIZE
+                && indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, searchField)) {
+            return getNgramFilterQuery(searchField, searchValue)._toQuery();
+        }
+        return getWildcardFilterQuery(searchField, searchValue)._toQuery();
+    }
+
+    /**
+     * Creates a matchPhraseQuery on the n-gram subfield of the 'searchField', which matches all documents
+     * containing the phrase 'searchValue' in their 'searchField' (case-insensitive)
+     *
+     * @param searchField The field with the n-gram subfield
+     * @param searchValue The substring you are looking for, at least NGRAM_SIZE characters long
+     * @return The constructed MatchPhraseQuery instance usable for filtering the search results
+     */
+    public MatchPhraseQuery getNgramFilterQuery(String searchField, String searchValue) {
+        return MatchPhraseQuery.of(m -> m
+                .field(String.format("%s.%s", searchField, NGRAM_SUBFIELD))
+                .query(searchValue));
+    }
+
     /**
      * Creates a wildCardQuery which matches all documents containing the phrase 'searchValue' in their 'searchField'
      *
@@ -175,7 +255,7 @@ public class QueryBuilder {
      * @param searchValue The substring you are looking for in the 'searchField'
      * @return The constructed WildcardQuery instance usable for filtering the search results
      */
-    public WildcardQuery getFilterQuery(String searchField, String searchValue) {
+    public WildcardQuery getWildcardFilterQuery(String searchField, String searchValue) {
         return WildcardQuery.of(w -> w
                 .field(searchField)
                 .wildcard(String.format("*%s*", searchValue))
@@ -206,8 +286,9 @@ public class QueryBuilder {
         return termsQueryBuilder.build();
     }
 
-    private List<Like> getLikeDocs(List<String> docs) {
+    private List<Like> getLikeDocs(List<String> docs, List<String> fields) {
         List<Like> likeDocs = new ArrayList<>();
+        Map<String, String> perFieldAnalyzer = getPerFieldAnalyzer(fields);
 
         for (var doc : docs) {
             var like = Like.of(l -> l
@@ -218,10 +299,22 @@ public class QueryBuilder {
                                         "%s": "%s"
                                     }
                                     """.formatted(DESCRIPTION_FIELD, doc.replaceAll("\\s+", " "))))
+                            .perFieldAnalyzer(perFieldAnalyzer)
                     ));
             likeDocs.add(like);
         }
 
         return likeDocs;
     }
+
+    /**
+     * The like documents are analyzed by the index analyzer removing the stopwords instead of sending them with the query
+     */
+    private static Map<String, String> getPerFieldAnalyzer(List<String> fields) {
+        Map<String, String> perFieldAnalyzer = new HashMap<>();
+        for (String field : fields) {
+            perFieldAnalyzer.put(field, MLT_ANALYZER);
+        }
+        return perFieldAnalyzer;
+    }
 }
@@ -0,0 +1,234 @@
+package muni.fi.bl.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.AppException;
+import muni.fi.dal.entity.OpportunitySnapshot;
+import muni.fi.dal.entity.RelatedOpportunity;
+import muni.fi.dal.repository.OpportunitySnapshotRepository;
+import muni.fi.dal.repository.OpportunitySnapshotRepository.SnapshotState;
+import muni.fi.dal.repository.RelatedOpportunityRepository;
+import muni.fi.dtos.OpportunityDto;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+
+/**
+ * Stores the 'more like this' recommendations of every opportunity in advance, together with a snapshot
+ * of every opportunity document, so the related opportunities are returned without searching ElasticSearch.
+ * The store is updated by the {@link RelatedOpportunitiesJob} after every load of the opportunities,
+ * the snapshots' content hashes tell which opportunities changed since the last update. The data loader derives
+ * the ids from the opportunity urls, so a reloaded opportunity keeps its id and its snapshot.
+ * <p>
+ * The opportunities without the related opportunities computed yet (e.g. the changed ones) are searched live
+ */
+@Component
+public class RelatedOpportunities {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OpportunitySnapshotRepository opportunitySnapshotRepository;
+    private final RelatedOpportunityRepository relatedOpportunityRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+
+    public RelatedOpportunities(OpportunitySnapshotRepository opportunitySnapshotRepository,
+                                RelatedOpportunityRepository relatedOpportunityRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                SearchConfigProperties searchProperties) {
+        this.opportunitySnapshotRepository = opportunitySnapshotRepository;
+        this.relatedOpportunityRepository = relatedOpportunityRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = searchProperties.isRelatedOpportunities();
+    }
+
+    /**
+     * @return true if the related opportunities are computed and served
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Finds the stored related opportunities in the order of their similarity
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     * @return The related opportunities, empty if they aren't computed for the current version of the opportunity
+     */
+    public Optional<List<OpportunityDto>> find(String opportunityId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<OpportunitySnapshot> snapshot = opportunitySnapshotRepository.findById(opportunityId);
+        if (snapshot.isEmpty() || snapshot.get().getRelatedComputedAt() == null) {
+            return Optional.empty();
+        }
+        List<RelatedOpportunity> related = relatedOpportunityRepository.findByOpportunityIdOrderByPosition(opportunityId);
+        Map<String, OpportunitySnapshot> snapshotsById = opportunitySnapshotRepository
+                .findAllById(related.stream().map(RelatedOpportunity::getRelatedId).toList()).stream()
+                .collect(Collectors.toMap(OpportunitySnapshot::getOpportunityId, Function.identity()));
+        List<OpportunityDto> results = new ArrayList<>(related.size());
+        for (var relatedOpportunity : related) {
+            OpportunitySnapshot relatedSnapshot = snapshotsById.get(relatedOpportunity.getRelatedId());
+            if (relatedSnapshot == null) {
+                // deleted in the meantime
+                continue;
+            }
+            OpportunityDto result = fromDocument(relatedSnapshot.getDocument());
+            result.setEsId(relatedOpportunity.getRelatedId());
+            result.setScore(relatedOpportunity.getScore());
+            result.setHitSource(DESCRIPTION_FIELD);
+            result.setRank(results.size() + 1);
+            results.add(result);
+        }
+        return Optional.of(results);
+    }
+
+    /**
+     * @return The content hashes of the stored snapshots keyed by the opportunity id
+     */
+    public Map<String, SnapshotState> getSnapshotStates() {
+        return opportunitySnapshotRepository.findAllBy().stream()
+                .collect(Collectors.toMap(SnapshotState::getOpportunityId, Function.identity()));
+    }
+
+    /**
+     * Stores the new versions of the opportunities, their related opportunities have to be computed again
+     *
+     * @param snapshots The snapshots of the new or changed opportunities, see {@link #toSnapshot(String, OpportunityDto)}
+     */
+    @Transactional
+    public void saveSnapshots(Collection<OpportunitySnapshot> snapshots) {
+        opportunitySnapshotRepository.saveAll(snapshots);
+    }
+
+    /**
+     * Replaces the stored related opportunities of the opportunity
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     * @param related       The related opportunities in the order of their similarity
+     */
+    @Transactional
+    public void replace(String opportunityId, List<OpportunityDto> related) {
+        relatedOpportunityRepository.deleteByOpportunityIdIn(List.of(opportunityId));
+        List<RelatedOpportunity> entities = new ArrayList<>(related.size());
+        for (var result : related) {
+            RelatedOpportunity entity = new RelatedOpportunity();
+            entity.setOpportunityId(opportunityId);
+            entity.setRelatedId(result.getEsId());
+            entity.setScore(result.getScore());
+            entity.setPosition(entities.size());
+            entities.add(entity);
+        }
+        relatedOpportunityRepository.saveAll(entities);
+        opportunitySnapshotRepository.setRelatedComputedAt(opportunityId, Instant.now());
+    }
+
+    /**
+     * @param opportunityIds The ElasticSearch ids of the opportunities
+     * @return The ids of the opportunities having any of the opportunities among their related ones
+     */
+    public Set<String> findReferencing(Collection<String> opportunityIds) {
+        if (opportunityIds.isEmpty()) {
+            return Set.of();
+        }
+        return relatedOpportunityRepository.findOpportunityIdsByRelatedIdIn(opportunityIds);
+    }
+
+    /**
+     * Deletes the snapshots and the related opportunities of the deleted opportunities. The opportunities
+     * referencing the deleted ones are searched live until their related opportunities are computed again
+     *
+     * @param opportunityIds The ElasticSearch ids of the deleted opportunities
+     */
+    @Transactional
+    public void delete(Collection<String> opportunityIds) {
+        if (opportunityIds.isEmpty()) {
+            return;
+        }
+        Set<String> referencing = relatedOpportunityRepository.findOpportunityIdsByRelatedIdIn(opportunityIds);
+        if (!referencing.isEmpty()) {
+            opportunitySnapshotRepository.clearRelatedComputedAt(referencing);
+        }
+        relatedOpportunityRepository.deleteByOpportunityIdIn(opportunityIds);
+        opportunitySnapshotRepository.deleteByOpportunityIdIn(opportunityIds);
+    }
+
+    /**
+     * Deletes all the stored opportunities, e.g. when all the opportunities are deleted
+     */
+    public void deleteAll() {
+        relatedOpportunityRepository.deleteAllInBatch();
+        opportunitySnapshotRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Updates the related opportunities of the changed opportunities in the background,
+     * after the current transaction commits
+     */
+    public void requestRefresh() {
+        if (enabled) {
+            eventPublisher.publishEvent(new RefreshEvent());
+        }
+    }
+
+    /**
+     * @return The number of the opportunities having the related opportunities stored
+     */
+    public long countComputed() {
+        return opportunitySnapshotRepository.countByRelatedComputedAtNotNull();
+    }
+
+    /**
+     * Creates the snapshot of the opportunity document with the hash of its content
+     *
+     * @param opportunityId The ElasticSearch id of the opportunity
+     * @param opportunity   The opportunity document
+     * @return The snapshot without the related opportunities computed
+     */
+    public static OpportunitySnapshot toSnapshot(String opportunityId, OpportunityDto opportunity) {
+        String document = toDocument(opportunity);
+        OpportunitySnapshot snapshot = new OpportunitySnapshot();
+        snapshot.setOpportunityId(opportunityId);
+        snapshot.setDocument(document);
+        snapshot.setContentHash(DigestUtils.md5DigestAsHex(document.getBytes(StandardCharsets.UTF_8)));
+        return snapshot;
+    }
+
+    private static String toDocument(OpportunityDto opportunity) {
+        try {
+            return MAPPER.writeValueAsString(opportunity);
+        } catch (JsonProcessingException e) {
+            throw new AppException("Failed to serialize the opportunity", e);
+        }
+    }
+
+    private static OpportunityDto fromDocument(String document) {
+        try {
+            return MAPPER.readValue(document, OpportunityDto.class);
+        } catch (JsonProcessingException e) {
+            throw new AppException("Failed to deserialize the opportunity", e);
+        }
+    }
+
+    /**
+     * Published when the related opportunities of the changed opportunities should be computed
+     */
+    public record RefreshEvent() {
+    }
+}
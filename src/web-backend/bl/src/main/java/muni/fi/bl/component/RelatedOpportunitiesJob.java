@@ -0,0 +1,170 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.component.RelatedOpportunities.RefreshEvent;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.bl.service.impl.ElasticRecommendationService;
+import muni.fi.dal.entity.OpportunitySnapshot;
+import muni.fi.dal.repository.OpportunitySnapshotRepository.SnapshotState;
+import muni.fi.dtos.OpportunityDto;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static muni.fi.bl.config.ServiceConfiguration.RELATED_OPPORTUNITIES_EXECUTOR;
+
+/**
+ * Updates the {@link RelatedOpportunities} in the background after every load of the opportunities.
+ * Only the related opportunities of the new or changed opportunities and of their neighbours are computed again:
+ * <ul>
+ *     <li>the opportunities referencing a changed or deleted opportunity, whose similar opportunities changed</li>
+ *     <li>the opportunities similar to a changed opportunity, which the changed opportunity may now be similar to</li>
+ * </ul>
+ * The scores of the other opportunities may drift slightly with the statistics of the index, until they change
+ */
+@Slf4j
+@Component
+public class RelatedOpportunitiesJob {
+
+    private final RelatedOpportunities relatedOpportunities;
+    private final ElasticRecommendationService recommendationService;
+    private final OpportunityIndexScanner opportunityIndexScanner;
+    private final Executor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    public RelatedOpportunitiesJob(RelatedOpportunities relatedOpportunities,
+                                   ElasticRecommendationService recommendationService,
+                                   OpportunityIndexScanner opportunityIndexScanner,
+                                   @Qualifier(RELATED_OPPORTUNITIES_EXECUTOR) Executor executor) {
+        this.relatedOpportunities = relatedOpportunities;
+        this.recommendationService = recommendationService;
+        this.opportunityIndexScanner = opportunityIndexScanner;
+        this.executor = executor;
+    }
+
+    /**
+     * Computes the related opportunities on startup if none are stored, e.g. after the first deployment
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyRelated() {
+        if (relatedOpportunities.isEnabled() && relatedOpportunities.countComputed() == 0) {
+            refresh();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRefresh(RefreshEvent event) {
+        refresh();
+    }
+
+    /**
+     * Starts updating the related opportunities, unless an update is in progress already.
+     * In that case another update follows the current one
+     */
+    public void refresh() {
+        if (!relatedOpportunities.isEnabled()) {
+            return;
+        }
+        pending.set(true);
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    private void runPending() {
+        try {
+            while (pending.getAndSet(false)) {
+                updateChanged();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to update the related opportunities", e);
+        } finally {
+            running.set(false);
+        }
+        // requested after the last check, but before the flag was reset
+        if (pending.get() && running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    private void updateChanged() {
+        long start = System.nanoTime();
+        Map<String, OpportunityDto> opportunities;
+        try {
+            opportunities = opportunityIndexScanner.getDocuments();
+        } catch (ConnectionException | ElasticsearchException e) {
+            log.warn("Couldn't read the opportunities, the related opportunities are not updated", e);
+            return;
+        }
+        Map<String, SnapshotState> states = relatedOpportunities.getSnapshotStates();
+
+        Set<String> changed = new LinkedHashSet<>();
+        List<OpportunitySnapshot> changedSnapshots = new ArrayList<>();
+        opportunities.forEach((id, opportunity) -> {
+            OpportunitySnapshot snapshot = RelatedOpportunities.toSnapshot(id, opportunity);
+            SnapshotState state = states.get(id);
+            if (state == null || !state.getContentHash().equals(snapshot.getContentHash())) {
+                changed.add(id);
+                changedSnapshots.add(snapshot);
+            } else if (state.getRelatedComputedAt() == null) {
+                // the last update failed for the opportunity
+                changed.add(id);
+            }
+        });
+        Set<String> deleted = new HashSet<>(states.keySet());
+        deleted.removeAll(opportunities.keySet());
+        relatedOpportunities.delete(deleted);
+        relatedOpportunities.saveSnapshots(changedSnapshots);
+
+        Set<String> changedOrDeleted = new HashSet<>(changed);
+        changedOrDeleted.addAll(deleted);
+        Set<String> neighbours = new LinkedHashSet<>(relatedOpportunities.findReferencing(changedOrDeleted));
+        AtomicLong failed = new AtomicLong();
+        computeAll(changed, failed).values()
+                .forEach(related -> related.forEach(opportunity -> neighbours.add(opportunity.getEsId())));
+        neighbours.removeAll(changedOrDeleted);
+        computeAll(neighbours, failed);
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Related opportunities updated for {} changed and {} neighbouring of {} opportunities in {} ms ({} deleted, {} failed)",
+                changed.size(), neighbours.size(), opportunities.size(), durationMs, deleted.size(), failed.get());
+    }
+
+    private Map<String, List<OpportunityDto>> computeAll(Collection<String> opportunityIds, AtomicLong failed) {
+        Map<String, List<OpportunityDto>> results = new ConcurrentHashMap<>();
+        CompletableFuture.allOf(opportunityIds.stream()
+                        .map(id -> CompletableFuture.runAsync(() -> compute(id, results, failed), executor))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+        return results;
+    }
+
+    private void compute(String opportunityId, Map<String, List<OpportunityDto>> results, AtomicLong failed) {
+        try {
+            List<OpportunityDto> related = recommendationService.searchMoreLikeThis(opportunityId);
+            relatedOpportunities.replace(opportunityId, related);
+            results.put(opportunityId, related);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Failed to compute the related opportunities of opportunity {}", opportunityId, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans the execution of the searches by large selections of projects or authors. A single MoreLikeThis query
+ * made of many 'like' items is dominated by the generic terms and is expensive to build, so the selection is split
+ * into bounded chunks searched in parallel, whose results are then fused (see SearchResultProcessor)
+ */
+@Component
+public class ScatterGatherPlanner {
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final int concurrency;
+
+    public ScatterGatherPlanner(SearchConfigProperties searchProperties) {
+        this.chunkSize = Math.max(1, searchProperties.getScatterChunkSize());
+        this.maxChunks = Math.max(1, searchProperties.getScatterMaxChunks());
+        this.concurrency = Math.max(1, searchProperties.getScatterConcurrency());
+    }
+
+    /**
+     * Splits the selection into chunks of at most 'scatterChunkSize' items. When more than 'scatterMaxChunks' chunks
+     * would be needed, the selection is split into 'scatterMaxChunks' chunks of equal size instead,
+     * so the number of sub-queries stays bounded for any selection size.
+     *
+     * @param selection The selected items (projects, authors) in the order of the selection
+     * @return The plan with the chunks in the order of the selection. A selection fitting one chunk isn't split
+     */
+    public <T> Plan<T> plan(List<T> selection) {
+        if (selection.size() <= chunkSize) {
+            return new Plan<>(List.of(selection), 1);
+        }
+        int chunksCount = Math.min(maxChunks, ceilDiv(selection.size(), chunkSize));
+        // balanced chunks, so none of them is searched with much fewer 'like' items than the others
+        int size = ceilDiv(selection.size(), chunksCount);
+        List<List<T>> chunks = new ArrayList<>(chunksCount);
+        for (int from = 0; from < selection.size(); from += size) {
+            chunks.add(selection.subList(from, Math.min(from + size, selection.size())));
+        }
+        return new Plan<>(chunks, Math.min(concurrency, chunks.size()));
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * @param chunks      The chunks of the selection, each searched by its own sub-queries
+     * @param concurrency The maximal number of the sub-queries ElasticSearch executes at the same time
+     */
+    public record Plan<T>(List<List<T>> chunks, int concurrency) {
+
+        /**
+         * @return true if the selection was split into multiple chunks
+         */
+        public boolean isScattered() {
+            return chunks.size() > 1;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.exceptions.AppException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position in a point-in-time snapshot of an index. Is passed to the clients as an opaque continuation token
+ *
+ * @param pitId       The id of the point-in-time the page was retrieved from
+ * @param searchAfter The sort values of the last hit of the page
+ */
+@Slf4j
+public record SearchCursor(String pitId, List<FieldValue> searchAfter) {
+
+    public static final String INVALID_CURSOR = "Invalid search cursor";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PIT_KEY = "pit";
+    private static final String SEARCH_AFTER_KEY = "after";
+
+    /**
+     * @return URL-safe token representing the cursor
+     */
+    public String encode() {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put(PIT_KEY, pitId);
+        ArrayNode values = node.putArray(SEARCH_AFTER_KEY);
+        searchAfter.forEach(value -> {
+            switch (value._kind()) {
+                case Long -> values.add(value.longValue());
+                case Double -> values.add(value.doubleValue());
+                case Boolean -> values.add(value.booleanValue());
+                case String -> values.add(value.stringValue());
+                default -> values.addNull();
+            }
+        });
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(node.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the token created by {@link #encode()}
+     *
+     * @param token The continuation token
+     * @return The cursor
+     * @throws AppException When the token is malformed
+     */
+    public static SearchCursor decode(String token) {
+        try {
+            JsonNode node = MAPPER.readTree(Base64.getUrlDecoder().decode(token));
+            JsonNode pitId = node.get(PIT_KEY);
+            JsonNode values = node.get(SEARCH_AFTER_KEY);
+            if (pitId == null || !pitId.isTextual() || values == null || !values.isArray()) {
+                throw new IllegalArgumentException("Missing cursor properties");
+            }
+            List<FieldValue> searchAfter = new ArrayList<>();
+            values.forEach(value -> searchAfter.add(toFieldValue(value)));
+            return new SearchCursor(pitId.asText(), searchAfter);
+        } catch (Exception e) {
+            log.warn("{}: {}", INVALID_CURSOR, token);
+            throw new AppException(INVALID_CURSOR, e);
+        }
+    }
+
+    private static FieldValue toFieldValue(JsonNode value) {
+        if (value.isIntegralNumber()) {
+            return FieldValue.of(value.asLong());
+        } else if (value.isNumber()) {
+            return FieldValue.of(value.asDouble());
+        } else if (value.isBoolean()) {
+            return FieldValue.of(value.asBoolean());
+        } else if (value.isTextual()) {
+            return FieldValue.of(value.asText());
+        }
+        return FieldValue.NULL;
+    }
+}
@@ -1,19 +1,53 @@
 package muni.fi.bl.component;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.MsearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.MsearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResult;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import co.elastic.clients.elasticsearch.core.search.Profile;
+import co.elastic.clients.elasticsearch.core.search.QueryProfile;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.elasticsearch.core.search.SearchProfile;
+import co.elastic.clients.elasticsearch.core.search.ShardProfile;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import co.elastic.clients.elasticsearch.core.search.SourceConfigParam;
+import co.elastic.clients.json.JsonData;
 import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
 import static muni.fi.bl.service.impl.ElasticSearchService.MAX_DOCS_SIZE;
@@ -22,10 +56,21 @@ import static muni.fi.bl.service.impl.ElasticSearchService.MAX_DOCS_SIZE;
 @Slf4j
 public class SearchPerformer<T> {
 
+    public static final String SEARCH_ERROR = "Failed to perform search or no data was found";
+    public static final String PIT_KEEP_ALIVE = "1m";
+
     private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final boolean filterContext;
+    private final boolean profileQueries;
 
-    public SearchPerformer(ElasticsearchClient elasticsearchClient) {
+    public SearchPerformer(ElasticsearchClient elasticsearchClient,
+                           ElasticsearchAsyncClient elasticsearchAsyncClient,
+                           SearchConfigProperties searchProperties) {
         this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.filterContext = searchProperties.isFilterContext();
+        this.profileQueries = searchProperties.isProfileQueries();
     }
 
     public SearchResponse<T> getSearchResponse(Query filterQuery, Query searchQuery, String crowdhelixIndex, Class<T> documentClass) {
@@ -34,21 +79,498 @@ public class SearchPerformer<T> {
 
     public SearchResponse<T> getSearchResponse(Query filterQuery, Query searchQuery, int size, int page, SortOptions sortOptions, String crowdhelixIndex, Class<T> documentClass) {
         try {
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                    .index(crowdhelixIndex)
-                    .query(searchQuery)
-                    .size(size)
-                    .from(size * page)
-                    .sort(sortOptions != null ? List.of(sortOptions) : Collections.emptyList())
-                    .postFilter(filterQuery));
-            return elasticsearchClient.search(searchRequest, documentClass);
-        } catch (IOException e) {
-            log.error(ELASTIC_CONNECTION_ERROR, e);
-            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
-        } catch (ElasticsearchException e) {
-            String message = "Failed to perform search or no data was found";
-            log.warn(message, e);
-            throw new AppException(message, e);
+            SearchRequest searchRequest = getSearchRequest(filterQuery, searchQuery, size, page, sortOptions, crowdhelixIndex);
+            return logScoredHits(crowdhelixIndex, elasticsearchClient.search(searchRequest, documentClass));
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getSearchResponse(Query, Query, int, int, SortOptions, String, Class)}.
+     * The calling thread is not blocked while Elasticsearch performs the search.
+     *
+     * @return Future completed with the search response, or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<SearchResponse<T>> getSearchResponseAsync(Query filterQuery, Query searchQuery, int size, int page, SortOptions sortOptions, String crowdhelixIndex, Class<T> documentClass) {
+        SearchRequest searchRequest = getSearchRequest(filterQuery, searchQuery, size, page, sortOptions, crowdhelixIndex);
+        return translateFailure(elasticsearchAsyncClient.search(searchRequest, documentClass))
+                .thenApply(response -> logScoredHits(crowdhelixIndex, response));
+    }
+
+    /**
+     * Performs a search returning only the aggregations computed over all the documents matching the query
+     *
+     * @param filterQuery  The filter of the searched documents, may be null
+     * @param searchQuery  The scoring query
+     * @param aggregations The aggregations keyed by their names
+     * @param index        The name of the ElasticSearch index to search in
+     * @return The search response without hits
+     */
+    public SearchResponse<T> getAggregationResponse(Query filterQuery, Query searchQuery, Map<String, Aggregation> aggregations, String index, Class<T> documentClass) {
+        try {
+            SearchRequest searchRequest = getAggregationRequest(filterQuery, searchQuery, aggregations, index);
+            return logScoredHits(index, elasticsearchClient.search(searchRequest, documentClass));
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getAggregationResponse(Query, Query, Map, String, Class)}
+     */
+    public CompletableFuture<SearchResponse<T>> getAggregationResponseAsync(Query filterQuery, Query searchQuery, Map<String, Aggregation> aggregations, String index, Class<T> documentClass) {
+        SearchRequest searchRequest = getAggregationRequest(filterQuery, searchQuery, aggregations, index);
+        return translateFailure(elasticsearchAsyncClient.search(searchRequest, documentClass))
+                .thenApply(response -> logScoredHits(index, response));
+    }
+
+    /**
+     * Opens a point-in-time snapshot of the index, so consecutive pages are retrieved from the same data
+     *
+     * @param index The name of the ElasticSearch index
+     * @return Future of the point-in-time id. The point-in-time is kept alive for PIT_KEEP_ALIVE after every page
+     */
+    public CompletableFuture<String> openPointInTimeAsync(String index) {
+        OpenPointInTimeRequest request = OpenPointInTimeRequest.of(o -> o
+                .index(index)
+                .keepAlive(t -> t.time(PIT_KEEP_ALIVE)));
+        return translateFailure(elasticsearchAsyncClient.openPointInTime(request))
+                .thenApply(OpenPointInTimeResponse::id);
+    }
+
+    /**
+     * Retrieves the page of hits following the 'searchAfter' sort values from the point-in-time snapshot.
+     * Unlike paging with 'from', the cost of the search does not grow with the depth of the page
+     *
+     * @param filterQuery The filter query (can be null)
+     * @param searchQuery The search query
+     * @param size        The page size
+     * @param sortOptions The sort of the hits. Must end with a tiebreaker, so the sort values are unique
+     * @param pitId       The point-in-time id
+     * @param searchAfter The sort values of the last hit of the previous page, empty for the first page
+     * @return Future completed with the search response, or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<SearchResponse<T>> getSearchAfterResponseAsync(Query filterQuery, Query searchQuery, int size, List<SortOptions> sortOptions,
+                                                                           String pitId, List<FieldValue> searchAfter, Class<T> documentClass) {
+        SearchRequest searchRequest = SearchRequest.of(s -> s
+                .pit(p -> p.id(pitId).keepAlive(t -> t.time(PIT_KEEP_ALIVE)))
+                .query(getScoringQuery(filterQuery, searchQuery))
+                .size(size)
+                .sort(sortOptions)
+                .searchAfter(searchAfter)
+                .postFilter(getPostFilter(filterQuery))
+                .profile(getProfile()));
+        return translateFailure(elasticsearchAsyncClient.search(searchRequest, documentClass))
+                .thenApply(response -> logScoredHits(pitId, response));
+    }
+
+    /**
+     * Releases the point-in-time snapshot. Failures are only logged, as the snapshot expires anyway
+     *
+     * @param pitId The point-in-time id
+     */
+    public void closePointInTimeAsync(String pitId) {
+        elasticsearchAsyncClient.closePointInTime(c -> c.id(pitId))
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        log.warn("Failed to close point-in-time {}", pitId, e);
+                    }
+                });
+    }
+
+    /**
+     * Performs all the search queries of one logical search in a single multi-search round trip.
+     * Every sub-query is filtered by the same filter query and returns up to MAX_DOCS_SIZE hits.
+     *
+     * @param filterQuery   The filter query applied to every sub-query (can be null)
+     * @param searchQueries The sub-queries keyed by their name (e.g. 'title', 'description')
+     * @param index         The name of the ElasticSearch index to search in
+     * @param documentClass The class of the returned documents
+     * @return The responses of the sub-queries keyed by the sub-query name, in the order of the input map
+     * @throws ConnectionException When connection with Elastic fails
+     * @throws AppException        When any of the sub-queries fails
+     */
+    public Map<String, ResponseBody<T>> getMultiSearchResponse(Query filterQuery, Map<String, Query> searchQueries, String index, Class<T> documentClass) {
+        return getMultiSearchResponse(filterQuery, searchQueries, null, index, documentClass);
+    }
+
+    /**
+     * Same as {@link #getMultiSearchResponse(Query, Map, String, Class)}, returning only the selected fields of the hits
+     *
+     * @param sourceFields The fields of the documents returned with the hits. Null returns whole documents,
+     *                     empty list returns only the ids and the scores
+     */
+    public Map<String, ResponseBody<T>> getMultiSearchResponse(Query filterQuery, Map<String, Query> searchQueries, List<String> sourceFields, String index, Class<T> documentClass) {
+        return getMultiSearchResponse(filterQuery, searchQueries, sourceFields, null, index, documentClass);
+    }
+
+    /**
+     * Same as {@link #getMultiSearchResponse(Query, Map, List, String, Class)}, limiting the number of the sub-queries
+     * ElasticSearch executes concurrently
+     *
+     * @param maxConcurrentSearches The maximal number of concurrently executed sub-queries (null for the ElasticSearch default)
+     */
+    public Map<String, ResponseBody<T>> getMultiSearchResponse(Query filterQuery, Map<String, Query> searchQueries, List<String> sourceFields,
+                                                               Integer maxConcurrentSearches, String index, Class<T> documentClass) {
+        List<String> names = new ArrayList<>(searchQueries.keySet());
+        MsearchResponse<T> response;
+        try {
+            response = elasticsearchClient.msearch(getMultiSearchRequest(filterQuery, searchQueries, names, sourceFields, maxConcurrentSearches, index), documentClass);
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+        return getResponsesByName(names, response);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiSearchResponse(Query, Map, String, Class)}
+     *
+     * @return Future completed with the responses keyed by the sub-query name,
+     * or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<Map<String, ResponseBody<T>>> getMultiSearchResponseAsync(Query filterQuery, Map<String, Query> searchQueries, String index, Class<T> documentClass) {
+        return getMultiSearchResponseAsync(filterQuery, searchQueries, null, index, documentClass);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiSearchResponse(Query, Map, List, String, Class)}
+     */
+    public CompletableFuture<Map<String, ResponseBody<T>>> getMultiSearchResponseAsync(Query filterQuery, Map<String, Query> searchQueries, List<String> sourceFields, String index, Class<T> documentClass) {
+        return getMultiSearchResponseAsync(filterQuery, searchQueries, sourceFields, null, index, documentClass);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiSearchResponse(Query, Map, List, Integer, String, Class)}
+     */
+    public CompletableFuture<Map<String, ResponseBody<T>>> getMultiSearchResponseAsync(Query filterQuery, Map<String, Query> searchQueries, List<String> sourceFields,
+                                                                                      Integer maxConcurrentSearches, String index, Class<T> documentClass) {
+        List<String> names = new ArrayList<>(searchQueries.keySet());
+        MsearchRequest request = getMultiSearchRequest(filterQuery, searchQueries, names, sourceFields, maxConcurrentSearches, index);
+        return translateFailure(elasticsearchAsyncClient.msearch(request, documentClass))
+                .thenApply(response -> getResponsesByName(names, response));
+    }
+
+    /**
+     * Performs a search with a stored search template. Only the template id and the parameters are sent
+     *
+     * @param templateId    The id of the stored search template (see SearchTemplates)
+     * @param params        The parameters of the template
+     * @param index         The name of the ElasticSearch index to search in
+     * @param documentClass The class of the returned documents
+     * @return The search response
+     * @throws ConnectionException When connection with Elastic fails
+     * @throws AppException        When the search fails
+     */
+    public SearchTemplateResponse<T> getSearchTemplateResponse(String templateId, Map<String, JsonData> params, String index, Class<T> documentClass) {
+        try {
+            return logScoredHits(templateId, elasticsearchClient.searchTemplate(getSearchTemplateRequest(templateId, params, index), documentClass));
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getSearchTemplateResponse(String, Map, String, Class)}
+     *
+     * @return Future completed with the search response, or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<SearchTemplateResponse<T>> getSearchTemplateResponseAsync(String templateId, Map<String, JsonData> params, String index, Class<T> documentClass) {
+        return translateFailure(elasticsearchAsyncClient.searchTemplate(getSearchTemplateRequest(templateId, params, index), documentClass))
+                .thenApply(response -> logScoredHits(templateId, response));
+    }
+
+    /**
+     * Performs the searches of one logical search with the same stored search template in a single round trip
+     *
+     * @param templateId    The id of the stored search template (see SearchTemplates)
+     * @param searchParams  The template parameters of the sub-queries keyed by their name (e.g. 'title', 'description')
+     * @param index         The name of the ElasticSearch index to search in
+     * @param documentClass The class of the returned documents
+     * @return The responses of the sub-queries keyed by the sub-query name, in the order of the input map
+     * @throws ConnectionException When connection with Elastic fails
+     * @throws AppException        When any of the sub-queries fails
+     */
+    public Map<String, ResponseBody<T>> getMultiSearchTemplateResponse(String templateId, Map<String, Map<String, JsonData>> searchParams, String index, Class<T> documentClass) {
+        return getMultiSearchTemplateResponse(templateId, searchParams, null, index, documentClass);
+    }
+
+    /**
+     * Same as {@link #getMultiSearchTemplateResponse(String, Map, String, Class)}, limiting the number of the sub-queries
+     * ElasticSearch executes concurrently
+     *
+     * @param maxConcurrentSearches The maximal number of concurrently executed sub-queries (null for the ElasticSearch default)
+     */
+    public Map<String, ResponseBody<T>> getMultiSearchTemplateResponse(String templateId, Map<String, Map<String, JsonData>> searchParams,
+                                                                       Integer maxConcurrentSearches, String index, Class<T> documentClass) {
+        List<String> names = new ArrayList<>(searchParams.keySet());
+        MsearchTemplateResponse<T> response;
+        try {
+            response = elasticsearchClient.msearchTemplate(getMultiSearchTemplateRequest(templateId, searchParams, names, maxConcurrentSearches, index), documentClass);
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+        return getResponsesByName(names, response);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiSearchTemplateResponse(String, Map, String, Class)}
+     *
+     * @return Future completed with the responses keyed by the sub-query name,
+     * or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<Map<String, ResponseBody<T>>> getMultiSearchTemplateResponseAsync(String templateId, Map<String, Map<String, JsonData>> searchParams, String index, Class<T> documentClass) {
+        return getMultiSearchTemplateResponseAsync(templateId, searchParams, null, index, documentClass);
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMultiSearchTemplateResponse(String, Map, Integer, String, Class)}
+     */
+    public CompletableFuture<Map<String, ResponseBody<T>>> getMultiSearchTemplateResponseAsync(String templateId, Map<String, Map<String, JsonData>> searchParams,
+                                                                                              Integer maxConcurrentSearches, String index, Class<T> documentClass) {
+        List<String> names = new ArrayList<>(searchParams.keySet());
+        MsearchTemplateRequest request = getMultiSearchTemplateRequest(templateId, searchParams, names, maxConcurrentSearches, index);
+        return translateFailure(elasticsearchAsyncClient.msearchTemplate(request, documentClass))
+                .thenApply(response -> getResponsesByName(names, response));
+    }
+
+    /**
+     * Fetches the documents with the given ids in a single multi-get round trip
+     *
+     * @param ids           The ids of the documents
+     * @param sourceFields  The fields of the documents to fetch (null fetches whole documents)
+     * @param index         The name of the ElasticSearch index
+     * @param documentClass The class of the returned documents
+     * @return The found documents keyed by their id. Documents that no longer exist are missing
+     * @throws ConnectionException When connection with Elastic fails
+     * @throws AppException        When the multi-get fails
+     */
+    public Map<String, T> getDocuments(List<String> ids, List<String> sourceFields, String index, Class<T> documentClass) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return getDocumentsById(elasticsearchClient.mget(getMultiGetRequest(ids, sourceFields, index), documentClass));
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getDocuments(List, List, String, Class)}
+     *
+     * @return Future completed with the found documents keyed by their id,
+     * or exceptionally with ConnectionException/AppException
+     */
+    public CompletableFuture<Map<String, T>> getDocumentsAsync(List<String> ids, List<String> sourceFields, String index, Class<T> documentClass) {
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        return translateFailure(elasticsearchAsyncClient.mget(getMultiGetRequest(ids, sourceFields, index), documentClass))
+                .thenApply(this::getDocumentsById);
+    }
+
+    /**
+     * Translates a failure of the Elasticsearch client to the application exceptions
+     *
+     * @param e The exception thrown by the client (possibly wrapped in a CompletionException)
+     * @return ConnectionException for I/O errors, AppException for Elasticsearch errors, the exception itself otherwise
+     */
+    public static RuntimeException translateSearchException(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IOException) {
+            log.error(ELASTIC_CONNECTION_ERROR, cause);
+            return new ConnectionException(ELASTIC_CONNECTION_ERROR, cause);
+        } else if (cause instanceof ElasticsearchException) {
+            log.warn(SEARCH_ERROR, cause);
+            return new AppException(SEARCH_ERROR, cause);
+        } else if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new CompletionException(cause);
+    }
+
+    private static <R> CompletableFuture<R> translateFailure(CompletableFuture<R> future) {
+        return future.handle((result, e) -> {
+            if (e != null) {
+                throw translateSearchException(e);
+            }
+            return result;
+        });
+    }
+
+    private SearchRequest getSearchRequest(Query filterQuery, Query searchQuery, int size, int page, SortOptions sortOptions, String index) {
+        return SearchRequest.of(s -> s
+                .index(index)
+                .query(getScoringQuery(filterQuery, searchQuery))
+                .size(size)
+                .from(size * page)
+                .sort(sortOptions != null ? List.of(sortOptions) : Collections.emptyList())
+                .postFilter(getPostFilter(filterQuery))
+                .profile(getProfile()));
+    }
+
+    private SearchRequest getAggregationRequest(Query filterQuery, Query searchQuery, Map<String, Aggregation> aggregations, String index) {
+        // the aggregations are computed over the scoring query, so the filter can't be applied as the post-filter
+        return SearchRequest.of(s -> s
+                .index(index)
+                .query(isEmptyFilter(filterQuery) ? searchQuery : BoolQuery.of(b -> b
+                        .must(searchQuery)
+                        .filter(filterQuery))._toQuery())
+                .size(0)
+                .aggregations(aggregations)
+                .profile(getProfile()));
+    }
+
+    /**
+     * In the filter context the filter is applied before scoring, so only the matching documents are scored
+     * and the filter clauses are cached by the node query cache. The post-filter is applied to the already scored hits,
+     * it is needed only when aggregations have to be computed over the unfiltered hits (none of the current searches)
+     */
+    private Query getScoringQuery(Query filterQuery, Query searchQuery) {
+        if (!filterContext || isEmptyFilter(filterQuery)) {
+            return searchQuery;
+        }
+        return BoolQuery.of(b -> b
+                .must(searchQuery)
+                .filter(filterQuery))._toQuery();
+    }
+
+    private Query getPostFilter(Query filterQuery) {
+        return filterContext ? null : filterQuery;
+    }
+
+    private static boolean isEmptyFilter(Query filterQuery) {
+        if (filterQuery == null) {
+            return true;
+        }
+        if (!filterQuery.isBool()) {
+            return false;
+        }
+        BoolQuery bool = filterQuery.bool();
+        return bool.must().isEmpty() && bool.filter().isEmpty() && bool.should().isEmpty() && bool.mustNot().isEmpty();
+    }
+
+    private Boolean getProfile() {
+        return profileQueries ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Logs the number of the documents scored by the query of a profiled search, which shows how many documents
+     * the filter context saves from scoring compared to the post-filter
+     */
+    private <R extends ResponseBody<?>> R logScoredHits(String name, R response) {
+        logScoredHits(name, response.profile(), response.hits(), response.took());
+        return response;
+    }
+
+    private SearchTemplateResponse<T> logScoredHits(String name, SearchTemplateResponse<T> response) {
+        logScoredHits(name, response.profile(), response.hits(), response.took());
+        return response;
+    }
+
+    private void logScoredHits(String name, Profile profile, HitsMetadata<?> hits, long took) {
+        if (profile == null) {
+            return;
+        }
+        long scored = 0;
+        for (ShardProfile shard : profile.shards()) {
+            for (SearchProfile search : shard.searches()) {
+                for (QueryProfile query : search.query()) {
+                    scored += query.breakdown().scoreCount();
+                }
+            }
+        }
+        log.info("Search '{}' scored {} documents for {} hits in {} ms ({})", name, scored,
+                hits.total() != null ? hits.total().value() : hits.hits().size(),
+                took, filterContext ? "filter context" : "post-filter");
+    }
+
+    private MsearchRequest getMultiSearchRequest(Query filterQuery, Map<String, Query> searchQueries, List<String> names,
+                                                        List<String> sourceFields, Integer maxConcurrentSearches, String index) {
+        List<RequestItem> searches = names.stream()
+                .map(name -> RequestItem.of(r -> r
+                        .header(h -> h.index(index))
+                        .body(b -> b
+                                .query(getScoringQuery(filterQuery, searchQueries.get(name)))
+                                .size(MAX_DOCS_SIZE)
+                                .source(getSourceConfig(sourceFields))
+                                .postFilter(getPostFilter(filterQuery))
+                                .profile(getProfile()))))
+                .toList();
+        return MsearchRequest.of(m -> m
+                .searches(searches)
+                .maxConcurrentSearches(maxConcurrentSearches != null ? maxConcurrentSearches.longValue() : null));
+    }
+
+    private SearchTemplateRequest getSearchTemplateRequest(String templateId, Map<String, JsonData> params, String index) {
+        return SearchTemplateRequest.of(s -> s
+                .index(index)
+                .id(templateId)
+                .params(params)
+                .profile(getProfile()));
+    }
+
+    private MsearchTemplateRequest getMultiSearchTemplateRequest(String templateId, Map<String, Map<String, JsonData>> searchParams,
+                                                                        List<String> names, Integer maxConcurrentSearches, String index) {
+        return MsearchTemplateRequest.of(m -> {
+            m.maxConcurrentSearches(maxConcurrentSearches != null ? maxConcurrentSearches.longValue() : null);
+            for (String name : names) {
+                m.searchTemplates(r -> r
+                        .header(h -> h.index(index))
+                        .body(b -> b
+                                .id(templateId)
+                                .params(searchParams.get(name))
+                                .profile(getProfile())));
+            }
+            return m;
+        });
+    }
+
+    private static MgetRequest getMultiGetRequest(List<String> ids, List<String> sourceFields, String index) {
+        return MgetRequest.of(m -> m
+                .index(index)
+                .ids(ids)
+                .source(sourceFields != null ? SourceConfigParam.of(p -> p.fields(sourceFields)) : null));
+    }
+
+    private static SourceConfig getSourceConfig(List<String> sourceFields) {
+        if (sourceFields == null) {
+            return null;
+        } else if (sourceFields.isEmpty()) {
+            return SourceConfig.of(c -> c.fetch(false));
+        }
+        return SourceConfig.of(c -> c.filter(f -> f.includes(sourceFields)));
+    }
+
+    private Map<String, T> getDocumentsById(MgetResponse<T> response) {
+        Map<String, T> documents = new HashMap<>();
+        for (MultiGetResponseItem<T> item : response.docs()) {
+            if (item.isFailure()) {
+                String message = String.format("Failed to fetch document '%s': %s",
+                        item.failure().id(), item.failure().error().reason());
+                log.warn(message);
+                throw new AppException(message);
+            }
+            if (item.result().found() && item.result().source() != null) {
+                documents.put(item.result().id(), item.result().source());
+            }
+        }
+        return documents;
+    }
+
+    private Map<String, ResponseBody<T>> getResponsesByName(List<String> names, MultiSearchResult<T> response) {
+        Map<String, ResponseBody<T>> responses = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            MultiSearchResponseItem<T> item = response.responses().get(i);
+            if (item.isFailure()) {
+                String message = String.format("Failed to perform '%s' search: %s",
+                        names.get(i), item.failure().error().reason());
+                log.warn(message);
+                throw new AppException(message);
+            }
+            responses.put(names.get(i), logScoredHits(names.get(i), item.result()));
         }
+        return responses;
     }
 }
@@ -0,0 +1,202 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.AppException;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.dtos.SearchCacheStatsDto;
+import muni.fi.query.SearchInfo;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of the search results. The entries expire after 'cacheTtlSeconds', but the last good result
+ * is kept for 'cacheStaleTtlSeconds' and served when Elasticsearch fails. All the entries are invalidated
+ * when the indexed data change.
+ */
+@Component
+@Slf4j
+public class SearchResultCache {
+
+    private final Cache<Object, Object> freshResults;
+    private final Cache<Object, Object> staleResults;
+    private final AtomicLong staleHitCount = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(SearchConfigProperties searchConfigProperties) {
+        this.freshResults = Caffeine.newBuilder()
+                .maximumSize(searchConfigProperties.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(searchConfigProperties.getCacheTtlSeconds()))
+                .recordStats()
+                .build();
+        this.staleResults = Caffeine.newBuilder()
+                .maximumSize(searchConfigProperties.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(searchConfigProperties.getCacheStaleTtlSeconds()))
+                .build();
+    }
+
+    /**
+     * Returns the cached result or loads and caches it
+     *
+     * @param key    The canonical key of the search (see {@link #key(String, Object...)})
+     * @param loader Performs the search
+     * @return The cached result, the loaded result, or the last good result when the search fails on Elasticsearch
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(SearchCacheKey key, Supplier<V> loader) {
+        V cached = (V) freshResults.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadGeneration = generation.get();
+        try {
+            V result = loader.get();
+            put(key, result, loadGeneration);
+            return result;
+        } catch (RuntimeException e) {
+            V stale = getStale(key, e);
+            if (stale == null) {
+                throw e;
+            }
+            return stale;
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(SearchCacheKey, Supplier)}
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> getAsync(SearchCacheKey key, Supplier<CompletableFuture<V>> loader) {
+        V cached = (V) freshResults.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long loadGeneration = generation.get();
+        return loader.get().handle((result, e) -> {
+            if (e == null) {
+                put(key, result, loadGeneration);
+                return result;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            V stale = getStale(key, cause);
+            if (stale == null) {
+                throw e instanceof CompletionException completionException ? completionException : new CompletionException(cause);
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * Invalidates all the cached results, including the ones kept for failures
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        freshResults.invalidateAll();
+        staleResults.invalidateAll();
+        log.info("Search result cache invalidated");
+    }
+
+    public SearchCacheStatsDto getStats() {
+        CacheStats stats = freshResults.stats();
+        return new SearchCacheStatsDto(stats.hitCount(), stats.missCount(), staleHitCount.get(),
+                stats.evictionCount(), stats.hitRate(), freshResults.estimatedSize());
+    }
+
+    /**
+     * Creates a cache key of the operation and its parameters. SearchInfo parameters are canonicalized,
+     * so equivalent searches share the same key. The order of the selected authors and projects is kept,
+     * the searches split them into chunks in the selection order.
+     *
+     * @param operation The name of the cached operation
+     * @param params    The operation parameters
+     * @return The cache key
+     */
+    public static SearchCacheKey key(String operation, Object... params) {
+        List<Object> canonicalParams = Arrays.stream(params)
+                .map(p -> p instanceof SearchInfo info ? canonicalize(info) : p)
+                .toList();
+        return new SearchCacheKey(operation, canonicalParams);
+    }
+
+    static SearchInfo canonicalize(SearchInfo info) {
+        return new SearchInfo(
+                info.maxResults(),
+                sorted(info.helixes()),
+                sorted(info.roles()),
+                sorted(info.expertises()),
+                ordered(info.ucoList()),
+                ordered(info.projIds()),
+                info.personalized(),
+                normalizePhrase(info.phrase()));
+    }
+
+    private static <T extends Comparable<T>> List<T> sorted(List<T> values) {
+        if (values == null) {
+            return List.of();
+        }
+        return values.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    private static <T> List<T> ordered(List<T> values) {
+        if (values == null) {
+            return List.of();
+        }
+        return values.stream()
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static String normalizePhrase(String phrase) {
+        if (phrase == null) {
+            return null;
+        }
+        return phrase.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void put(SearchCacheKey key, Object result, long loadGeneration) {
+        // results loaded before an invalidation may already be outdated
+        if (result != null && loadGeneration == generation.get()) {
+            freshResults.put(key, result);
+            staleResults.put(key, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V getStale(SearchCacheKey key, Throwable e) {
+        if (!isElasticFailure(e)) {
+            return null;
+        }
+        V stale = (V) staleResults.getIfPresent(key);
+        if (stale != null) {
+            staleHitCount.incrementAndGet();
+            log.warn("Search '{}' failed, serving the last good result", key.operation());
+        }
+        return stale;
+    }
+
+    private static boolean isElasticFailure(Throwable e) {
+        return e instanceof ConnectionException
+                || (e instanceof AppException && e.getCause() instanceof ElasticsearchException);
+    }
+
+    public record SearchCacheKey(String operation, List<Object> params) {
+    }
+}
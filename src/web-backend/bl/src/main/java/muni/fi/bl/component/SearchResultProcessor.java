@@ -5,10 +5,15 @@ import muni.fi.dtos.BaseEsDto;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.function.Function;
 
 import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 
@@ -19,33 +24,142 @@ import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 public class SearchResultProcessor<T extends BaseEsDto> {
 
     public static final int TITLE_SCORE_COEFFICIENT = 2;
+    public static final double DEFAULT_SOURCE_WEIGHT = 1.0;
+    public static final Map<String, Double> DEFAULT_SOURCE_WEIGHTS = Map.of(TITLE_FIELD, (double) TITLE_SCORE_COEFFICIENT);
+    // dampens the advantage of the top ranks in the reciprocal rank fusion, the usual value from the literature
+    public static final int RRF_RANK_CONSTANT = 60;
 
     /**
      * Aggregates the results with same ids acquired by searches performed on doc and title field.
-     * Results acquired from searches using the 'title' field have the 'title' key,
-     * other key values are not checked.
+     * Results acquired from searches using the 'title' field have the 'title' key and their score is multiplied
+     * by the TITLE_SCORE_COEFFICIENT, other key values are not checked.
      *
      * @param topResultsMap map of result lists acquired by searches
      * @return list of results ranked by the aggregated score
      */
     public List<T> aggregateResultsByScore(Map<String, List<Hit<T>>> topResultsMap) {
-        List<T> topDocs = getHitsWithScoreAndSource(topResultsMap);
-
-        Set<T> topHitsAgg = new HashSet<>();
-        for (var result : topDocs) {
-            var foundOpt = topHitsAgg.stream()
-                    .filter(h ->
-                            h.getEsId().equals(result.getEsId()))
-                    .findFirst();
-            if (foundOpt.isPresent()) {
-                var found = foundOpt.get();
-                found.setScore(found.getScore() + result.getScore());
-                found.setHitSource("doc and title");
-            } else {
-                topHitsAgg.add(result);
+        return aggregateResultsByScore(topResultsMap, DEFAULT_SOURCE_WEIGHTS, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Aggregates the results with same ids acquired from any number of weighted sources.
+     * The score of every hit is multiplied by the weight of its source and summed up per result id.
+     * Runs in time linear to the total number of hits.
+     *
+     * @param topResultsMap map of result lists keyed by the source name
+     * @param sourceWeights weights keyed by the source name. Sources without a weight have the DEFAULT_SOURCE_WEIGHT
+     * @param limit         maximal number of returned results
+     * @return list of at most 'limit' results ranked by the aggregated score
+     */
+    public List<T> aggregateResultsByScore(Map<String, List<Hit<T>>> topResultsMap, Map<String, Double> sourceWeights, int limit) {
+        return aggregateByScore(topResultsMap, sourceWeights, limit, Hit::source);
+    }
+
+    /**
+     * Same as {@link #aggregateResultsByScore(Map, Map, int)} for hits returned without the documents (only ids and scores).
+     * Is used for ranking the results before the documents of the final top results are fetched
+     *
+     * @param topResultsMap map of result lists keyed by the source name
+     * @param sourceWeights weights keyed by the source name. Sources without a weight have the DEFAULT_SOURCE_WEIGHT
+     * @param limit         maximal number of returned results
+     * @return list of at most 'limit' ranked results having only the id, score, hit source and rank set
+     */
+    public List<BaseEsDto> aggregateIdsByScore(Map<String, List<Hit<T>>> topResultsMap, Map<String, Double> sourceWeights, int limit) {
+        return aggregateByScore(topResultsMap, sourceWeights, limit, hit -> new BaseEsDto());
+    }
+
+    /**
+     * Fills the ranked results with their documents, keeping the order of the ranked results.
+     * Results whose document is missing (e.g. deleted in the meantime) are left out
+     *
+     * @param rankedResults results ranked by {@link #aggregateIdsByScore(Map, Map, int)}
+     * @param documentsById the documents of the results keyed by their id
+     * @return list of documents with the score, hit source and rank of the ranked results
+     */
+    public List<T> withDocuments(List<BaseEsDto> rankedResults, Map<String, T> documentsById) {
+        List<T> results = new ArrayList<>(rankedResults.size());
+        for (var ranked : rankedResults) {
+            T doc = documentsById.get(ranked.getEsId());
+            if (doc != null) {
+                doc.setEsId(ranked.getEsId());
+                doc.setScore(ranked.getScore());
+                doc.setHitSource(ranked.getHitSource());
+                doc.setRank(results.size() + 1);
+                results.add(doc);
             }
         }
-        return sortAndRank(topHitsAgg.stream().toList());
+        return results;
+    }
+
+    private static <H, R extends BaseEsDto> List<R> aggregateByScore(Map<String, List<Hit<H>>> topResultsMap, Map<String, Double> sourceWeights,
+                                                                    int limit, Function<Hit<H>, R> toResult) {
+        Map<String, R> topHitsAgg = new LinkedHashMap<>();
+        for (var entry : topResultsMap.entrySet()) {
+            double weight = sourceWeights.getOrDefault(entry.getKey(), DEFAULT_SOURCE_WEIGHT);
+            for (var hit : entry.getValue()) {
+                if (hit.score() == null) {
+                    continue;
+                }
+                double score = hit.score() * weight;
+                R found = topHitsAgg.get(hit.id());
+                if (found != null) {
+                    found.setScore(found.getScore() + score);
+                    found.setHitSource(found.getHitSource() + " and " + entry.getKey());
+                } else {
+                    R doc = toResult.apply(hit);
+                    if (doc == null) {
+                        continue;
+                    }
+                    doc.setScore(score);
+                    doc.setHitSource(entry.getKey());
+                    doc.setEsId(hit.id());
+                    topHitsAgg.put(hit.id(), doc);
+                }
+            }
+        }
+        return selectTopAndRank(topHitsAgg.values(), limit);
+    }
+
+    /**
+     * Fuses the rankings of the chunks of a scattered search (see ScatterGatherPlanner) by the reciprocal rank fusion.
+     * Every result gets 1 / (RRF_RANK_CONSTANT + rank) from every ranking it appears in, so the results ranked well
+     * by multiple chunks come first, no matter how the scores of the different MoreLikeThis queries differ.
+     * The fused scores are rescaled to the range of the original scores, so they can still be combined
+     * with the scores of the recommendations. A single ranking is returned unchanged.
+     *
+     * @param rankings the rankings of the chunks, each ordered by the score
+     * @param limit    maximal number of returned results
+     * @return list of at most 'limit' results ranked by the fused score
+     */
+    public <R extends BaseEsDto> List<R> fuseByReciprocalRank(List<List<R>> rankings, int limit) {
+        if (rankings.size() == 1) {
+            return selectTopAndRank(rankings.get(0), limit);
+        }
+        Map<String, R> fused = new LinkedHashMap<>();
+        Map<String, Double> fusedScores = new HashMap<>();
+        double maxScore = 0;
+        for (var ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                R result = ranking.get(i);
+                if (result.getScore() == null) {
+                    continue;
+                }
+                maxScore = Math.max(maxScore, result.getScore());
+                fusedScores.merge(result.getEsId(), 1.0 / (RRF_RANK_CONSTANT + i + 1), Double::sum);
+                R found = fused.putIfAbsent(result.getEsId(), result);
+                if (found != null && !found.getHitSource().contains(result.getHitSource())) {
+                    found.setHitSource(found.getHitSource() + " and " + result.getHitSource());
+                }
+            }
+        }
+        double maxFusedScore = fusedScores.values().stream()
+                .mapToDouble(Double::doubleValue)
+                .max()
+                .orElse(1.0);
+        for (var result : fused.values()) {
+            result.setScore(fusedScores.get(result.getEsId()) / maxFusedScore * maxScore);
+        }
+        return selectTopAndRank(fused.values(), limit);
     }
 
     /**
@@ -56,46 +170,65 @@ public class SearchResultProcessor<T extends BaseEsDto> {
      * @param searchHints the list of recommendations (hints) to support result ordering
      * @return list of results reordered and ranked based on the aggregated score
      */
-    public List<T> aggregateResultsAndRecommendations(List<T> topResults, List<T> searchHints) {
+    public <R extends BaseEsDto> List<R> aggregateResultsAndRecommendations(List<R> topResults, List<? extends BaseEsDto> searchHints) {
+        return aggregateResultsAndRecommendations(topResults, searchHints, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #aggregateResultsAndRecommendations(List, List)}, returning only the best 'limit' results.
+     * Runs in time linear to the number of results and recommendations.
+     *
+     * @param topResults  the list of search results
+     * @param searchHints the list of recommendations (hints) to support result ordering
+     * @param limit       maximal number of returned results
+     * @return list of at most 'limit' results reordered and ranked based on the aggregated score
+     */
+    public <R extends BaseEsDto> List<R> aggregateResultsAndRecommendations(List<R> topResults, List<? extends BaseEsDto> searchHints, int limit) {
+        Map<String, List<BaseEsDto>> hintsByEsId = new HashMap<>();
+        for (var recommendation : searchHints) {
+            hintsByEsId.computeIfAbsent(recommendation.getEsId(), k -> new ArrayList<>()).add(recommendation);
+        }
         for (var result : topResults) {
-            for (var recommendation : searchHints) {
-                if (result.getEsId().equals(recommendation.getEsId())) {
-                    result.setScore(result.getScore() + recommendation.getScore());
-                    result.setHitSource(result.getHitSource() + " (+recommendation)");
-                }
+            for (var recommendation : hintsByEsId.getOrDefault(result.getEsId(), List.of())) {
+                result.setScore(result.getScore() + recommendation.getScore());
+                result.setHitSource(result.getHitSource() + " (+recommendation)");
             }
         }
-        return sortAndRank(topResults);
+        return selectTopAndRank(topResults, limit);
     }
 
-    private List<T> getHitsWithScoreAndSource(Map<String, List<Hit<T>>> topResultsMap) {
-        List<T> topHits = new ArrayList<>();
-        for (var entry : topResultsMap.entrySet()) {
-            for (var hit : entry.getValue()) {
-                T doc = hit.source();
-                if (doc != null && hit.score() != null) {
-                    if (entry.getKey().equals(TITLE_FIELD)) {
-                        doc.setScore(hit.score() * TITLE_SCORE_COEFFICIENT);
-                    } else {
-                        doc.setScore(hit.score());
-                    }
-                    doc.setHitSource(entry.getKey());
-                    doc.setEsId(hit.id());
-                }
-                topHits.add(doc);
+    /**
+     * Selects the best 'limit' results using a bounded min-heap, so only O(n log limit) comparisons are needed.
+     * Results with equal score keep their encounter order.
+     */
+    private static <R extends BaseEsDto> List<R> selectTopAndRank(Collection<R> topHitsAgg, int limit) {
+        Comparator<RankedResult<R>> worstFirst = Comparator
+                .comparingDouble((RankedResult<R> r) -> r.result().getScore())
+                .thenComparing(RankedResult::order, Comparator.reverseOrder());
+        int capacity = Math.max(1, Math.min(limit, topHitsAgg.size()));
+        PriorityQueue<RankedResult<R>> heap = new PriorityQueue<>(capacity, worstFirst);
+        int order = 0;
+        for (var result : topHitsAgg) {
+            if (result.getScore() == null || limit <= 0) {
+                continue;
+            }
+            heap.offer(new RankedResult<>(result, order++));
+            if (heap.size() > limit) {
+                heap.poll();
             }
         }
-        return topHits;
-    }
 
-    private List<T> sortAndRank(List<T> topHitsAgg) {
-        List<T> topResultsSorted = topHitsAgg.stream()
-                .filter(h -> h.getScore() != null)
-                .sorted((s1, s2) -> Double.compare(s2.getScore(), s1.getScore()))
-                .toList();
+        List<R> topResultsSorted = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            topResultsSorted.add(heap.poll().result());
+        }
+        Collections.reverse(topResultsSorted);
         for (int i = 0; i < topResultsSorted.size(); i++) {
             topResultsSorted.get(i).setRank(i + 1);
         }
         return topResultsSorted;
     }
+
+    private record RankedResult<T>(T result, int order) {
+    }
 }
@@ -0,0 +1,320 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.GetScriptRequest;
+import co.elastic.clients.elasticsearch.core.GetScriptResponse;
+import co.elastic.clients.elasticsearch.core.PutScriptRequest;
+import co.elastic.clients.json.JsonData;
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.query.SearchInfo;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static muni.fi.bl.component.IndexAnalysisManager.MLT_ANALYZER;
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.EXPERTISE_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.HELIX_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.MAX_QUERY_TERMS;
+import static muni.fi.bl.service.impl.ElasticSearchService.MINIMUM_TERMS_MATCH;
+import static muni.fi.bl.service.impl.ElasticSearchService.MIN_DOC_FREQ;
+import static muni.fi.bl.service.impl.ElasticSearchService.MIN_TERM_FREQ;
+import static muni.fi.bl.service.impl.ElasticSearchService.ROLE_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+
+/**
+ * Stored search templates of the query shapes used on the hot search paths. The shapes are registered in
+ * ElasticSearch once, the searches then send only the template id and the parameters.
+ * The version is a part of the template id, so the applications using different template versions don't collide
+ */
+@Slf4j
+@Component
+public class SearchTemplates {
+
+    public static final int TEMPLATE_VERSION = 2;
+    public static final String MLT_TEMPLATE_ID = "espo-mlt-v" + TEMPLATE_VERSION;
+    public static final String PHRASE_TEMPLATE_ID = "espo-phrase-v" + TEMPLATE_VERSION;
+    public static final String MUSTACHE_LANG = "mustache";
+
+    // the filters limit the scored documents and are cached by the node query cache
+    private static final String FILTER_CLAUSE = "{{^post_filter}}{{#toJson}}filters{{/toJson}}{{/post_filter}}{{#post_filter}}[]{{/post_filter}}";
+    private static final String POST_FILTER_CLAUSE = """
+            {{#post_filter}},
+              "post_filter": {
+                "bool": {
+                  "must": {{#toJson}}filters{{/toJson}}
+                }
+              }{{/post_filter}}""";
+
+    // MoreLikeThis query with the 'like' items, the filters and the returned source as parameters.
+    // The filters are applied in the filter context, or as the post-filter when the 'post_filter' parameter is true
+    public static final String MLT_TEMPLATE_SOURCE = """
+            {
+              "query": {
+                "bool": {
+                  "must": {
+                    "more_like_this": {
+                      "fields": {{#toJson}}fields{{/toJson}},
+                      "like": {{#toJson}}like{{/toJson}},
+                      "max_query_terms": %d,
+                      "min_doc_freq": %d,
+                      "min_term_freq": %d,
+                      "minimum_should_match": "%s"
+                    }
+                  },
+                  "filter": %s
+                }
+              },
+              "size": {{size}},
+              "_source": {{#toJson}}source{{/toJson}}%s
+            }
+            """.formatted(MAX_QUERY_TERMS, MIN_DOC_FREQ, MIN_TERM_FREQ, MINIMUM_TERMS_MATCH, FILTER_CLAUSE, POST_FILTER_CLAUSE);
+
+    // full-text search among the title (boosted) and the description, the filters as a parameter
+    public static final String PHRASE_TEMPLATE_SOURCE = """
+            {
+              "query": {
+                "bool": {
+                  "must": {
+                    "multi_match": {
+                      "query": "{{query}}",
+                      "fields": ["%s^2", "%s"]
+                    }
+                  },
+                  "filter": %s
+                }
+              },
+              "size": {{size}}%s
+            }
+            """.formatted(TITLE_FIELD, DESCRIPTION_FIELD, FILTER_CLAUSE, POST_FILTER_CLAUSE);
+
+    private static final Map<String, String> TEMPLATES = Map.of(
+            MLT_TEMPLATE_ID, MLT_TEMPLATE_SOURCE,
+            PHRASE_TEMPLATE_ID, PHRASE_TEMPLATE_SOURCE);
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final IndexAnalysisManager indexAnalysisManager;
+    private final boolean enabled;
+    private final boolean filterContext;
+    private final AtomicBoolean installed = new AtomicBoolean();
+
+    public SearchTemplates(ElasticsearchClient elasticsearchClient,
+                           IndexAnalysisManager indexAnalysisManager,
+                           SearchConfigProperties searchProperties) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexAnalysisManager = indexAnalysisManager;
+        this.enabled = searchProperties.isSearchTemplates();
+        this.filterContext = searchProperties.isFilterContext();
+    }
+
+    /**
+     * Checks on startup that the stored templates match the current version and installs the missing or changed ones.
+     * When ElasticSearch is unavailable, the searches are performed with the query objects until the next check
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyTemplates() {
+        if (!enabled) {
+            log.info("Search templates are disabled");
+            return;
+        }
+        try {
+            ensureTemplates();
+        } catch (ConnectionException e) {
+            log.warn("Couldn't verify the search templates, searching without them");
+        }
+    }
+
+    /**
+     * Installs the templates which are missing in the cluster or differ from the bundled version
+     *
+     * @throws ConnectionException When connection with Elastic fails
+     */
+    public void ensureTemplates() {
+        try {
+            for (Map.Entry<String, String> template : TEMPLATES.entrySet()) {
+                String installedSource = getInstalledSource(template.getKey());
+                if (!template.getValue().equals(installedSource)) {
+                    log.info("Installing search template '{}'", template.getKey());
+                    elasticsearchClient.putScript(PutScriptRequest.of(p -> p
+                            .id(template.getKey())
+                            .script(s -> s
+                                    .lang(MUSTACHE_LANG)
+                                    .source(template.getValue()))));
+                }
+            }
+            installed.set(true);
+        } catch (IOException | ElasticsearchException e) {
+            installed.set(false);
+            log.error(ELASTIC_CONNECTION_ERROR, e);
+            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        }
+    }
+
+    /**
+     * @return true if the searches should be performed with the stored templates
+     */
+    public boolean isReady() {
+        return enabled && installed.get();
+    }
+
+    /**
+     * Parameters of the MoreLikeThis template searching for documents similar to the given texts.
+     * Every text is used as the 'description' of an artificial 'like' document
+     *
+     * @param docs         The texts which you want to find similar results for
+     * @param fields       The fields to search among
+     * @param filterInfo   The 'helixes', 'roles', and 'expertises' filter (can be null)
+     * @param size         The maximal number of returned hits
+     * @param sourceFields The returned fields of the documents. Null returns whole documents, empty list none
+     * @return The template parameters
+     */
+    public Map<String, JsonData> getMoreLikeThisParams(List<String> docs, List<String> fields, SearchInfo filterInfo,
+                                                       int size, List<String> sourceFields) {
+        Map<String, String> perFieldAnalyzer = getPerFieldAnalyzer(fields);
+        List<Map<String, Object>> like = new ArrayList<>();
+        for (String doc : docs) {
+            like.add(Map.of(
+                    "_index", CROWDHELIX_INDEX,
+                    "doc", Map.of(DESCRIPTION_FIELD, doc.replaceAll("\\s+", " ")),
+                    "per_field_analyzer", perFieldAnalyzer));
+        }
+        return toMoreLikeThisParams(like, fields, filterInfo, size, sourceFields);
+    }
+
+    /**
+     * Parameters of the MoreLikeThis template searching for documents similar to an ElasticSearch document
+     *
+     * @param id           The unique identifier of the document in ElasticSearch
+     * @param index        The name of the ElasticSearch index of the document
+     * @param fields       The fields to search among
+     * @param filterInfo   The 'helixes', 'roles', and 'expertises' filter (can be null)
+     * @param size         The maximal number of returned hits
+     * @param sourceFields The returned fields of the documents. Null returns whole documents, empty list none
+     * @return The template parameters
+     */
+    public Map<String, JsonData> getMoreLikeThisParams(String id, String index, List<String> fields, SearchInfo filterInfo,
+                                                       int size, List<String> sourceFields) {
+        return getMoreLikeThisByIdsParams(List.of(id), index, fields, filterInfo, size, sourceFields);
+    }
+
+    /**
+     * Parameters of the MoreLikeThis template searching for documents similar to multiple ElasticSearch documents
+     * of the same index
+     *
+     * @param ids          The unique identifiers of the documents in ElasticSearch
+     * @param index        The name of the ElasticSearch index of the documents
+     * @param fields       The fields to search among
+     * @param filterInfo   The 'helixes', 'roles', and 'expertises' filter (can be null)
+     * @param size         The maximal number of returned hits
+     * @param sourceFields The returned fields of the documents. Null returns whole documents, empty list none
+     * @return The template parameters
+     */
+    public Map<String, JsonData> getMoreLikeThisByIdsParams(List<String> ids, String index, List<String> fields,
+                                                            SearchInfo filterInfo, int size, List<String> sourceFields) {
+        // a per-field analyzer makes ElasticSearch ignore the stored term vectors
+        boolean storedTermVectors = indexAnalysisManager.hasStoredTermVectors(index);
+        List<Map<String, Object>> like = new ArrayList<>();
+        for (String id : ids) {
+            Map<String, Object> likeDoc = new HashMap<>();
+            likeDoc.put("_index", index);
+            likeDoc.put("_id", id);
+            if (!storedTermVectors) {
+                likeDoc.put("per_field_analyzer", getPerFieldAnalyzer(fields));
+            }
+            like.add(likeDoc);
+        }
+        return toMoreLikeThisParams(like, fields, filterInfo, size, sourceFields);
+    }
+
+    /**
+     * Parameters of the full-text phrase template
+     *
+     * @param phrase     The normalized phrase to search for
+     * @param filterInfo The 'helixes', 'roles', and 'expertises' filter (can be null)
+     * @param size       The maximal number of returned hits
+     * @return The template parameters
+     */
+    public Map<String, JsonData> getPhraseParams(String phrase, SearchInfo filterInfo, int size) {
+        Map<String, JsonData> params = new HashMap<>();
+        params.put("query", JsonData.of(phrase));
+        params.put("size", JsonData.of(size));
+        params.put("filters", JsonData.of(getFilters(filterInfo)));
+        params.put("post_filter", JsonData.of(!filterContext));
+        return params;
+    }
+
+    private Map<String, JsonData> toMoreLikeThisParams(List<Map<String, Object>> like, List<String> fields,
+                                                              SearchInfo filterInfo, int size, List<String> sourceFields) {
+        Map<String, JsonData> params = new HashMap<>();
+        params.put("fields", JsonData.of(fields));
+        params.put("like", JsonData.of(like));
+        params.put("size", JsonData.of(size));
+        params.put("source", JsonData.of(getSource(sourceFields)));
+        params.put("filters", JsonData.of(getFilters(filterInfo)));
+        params.put("post_filter", JsonData.of(!filterContext));
+        return params;
+    }
+
+    private static Object getSource(List<String> sourceFields) {
+        if (sourceFields == null) {
+            return true;
+        } else if (sourceFields.isEmpty()) {
+            return false;
+        }
+        return Map.of("includes", sourceFields);
+    }
+
+    /**
+     * Same filter as {@link QueryBuilder#getFilterQuery(SearchInfo)}, as the terms queries of the 'must' clause
+     */
+    private static List<Map<String, Object>> getFilters(SearchInfo filterInfo) {
+        List<Map<String, Object>> filters = new ArrayList<>();
+        if (filterInfo == null) {
+            return filters;
+        }
+        addTermsFilter(filters, HELIX_FIELD, filterInfo.helixes());
+        addTermsFilter(filters, ROLE_FIELD, filterInfo.roles());
+        addTermsFilter(filters, EXPERTISE_FIELD, filterInfo.expertises());
+        return filters;
+    }
+
+    private static void addTermsFilter(List<Map<String, Object>> filters, String field, List<String> values) {
+        if (!CollectionUtils.isEmpty(values)) {
+            filters.add(Map.of("terms", Map.of(field, values)));
+        }
+    }
+
+    private static Map<String, String> getPerFieldAnalyzer(List<String> fields) {
+        Map<String, String> perFieldAnalyzer = new LinkedHashMap<>();
+        for (String field : fields) {
+            perFieldAnalyzer.put(field, MLT_ANALYZER);
+        }
+        return perFieldAnalyzer;
+    }
+
+    private String getInstalledSource(String id) throws IOException {
+        try {
+            GetScriptResponse response = elasticsearchClient.getScript(GetScriptRequest.of(g -> g.id(id)));
+            return response.found() && response.script() != null ? response.script().source() : null;
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package muni.fi.bl.component;
+
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.dal.repository.ProjectRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static muni.fi.bl.config.ServiceConfiguration.TERM_STATISTICS_EXECUTOR;
+
+/**
+ * Document frequencies of the terms of the processed project annotations (the MU corpus).
+ * Is used for reducing the 'like' documents of the MoreLikeThis queries to their most discriminative terms.
+ * The statistics are rebuilt in the background when the projects change, the searches use the previous statistics
+ * until the new ones are ready
+ */
+@Slf4j
+@Component
+public class TermStatistics {
+
+    // limits how many times a term is repeated in the pruned document, so the term frequency is kept approximately
+    public static final int MAX_TERM_REPEAT = 5;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ProjectRepository projectRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Executor executor;
+    private final AtomicReference<Statistics> statistics = new AtomicReference<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    public TermStatistics(ProjectRepository projectRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          @Qualifier(TERM_STATISTICS_EXECUTOR) Executor executor) {
+        this.projectRepository = projectRepository;
+        this.eventPublisher = eventPublisher;
+        this.executor = executor;
+    }
+
+    /**
+     * Builds the statistics on startup, so the first searches don't wait for them
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        requestRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRebuild(RebuildEvent event) {
+        requestRebuild();
+    }
+
+    /**
+     * Recomputes the document frequencies from all the processed annotations stored in the database
+     */
+    public void rebuild() {
+        List<String> annotations = projectRepository.findAllProcessedAnnotations();
+        Map<String, Integer> docFrequencies = new HashMap<>();
+        for (String annotation : annotations) {
+            for (String term : distinctTerms(annotation)) {
+                docFrequencies.merge(term, 1, Integer::sum);
+            }
+        }
+        statistics.set(new Statistics(docFrequencies, annotations.size()));
+        log.info("Term statistics rebuilt from {} annotations with {} distinct terms", annotations.size(), docFrequencies.size());
+    }
+
+    /**
+     * Rebuilds the statistics in the background, after the current transaction commits.
+     * The current statistics are used until the new ones are ready
+     */
+    public void invalidate() {
+        eventPublisher.publishEvent(new RebuildEvent());
+    }
+
+    /**
+     * Reduces the processed annotations to a single document made of their 'budget' terms with the highest tf-idf weight.
+     * The term frequency is summed up over all the annotations, every selected term is repeated by its frequency
+     * (at most MAX_TERM_REPEAT times) to preserve its weight for the MoreLikeThis query
+     *
+     * @param docs   The processed annotations (space-separated normalized terms)
+     * @param budget The maximal number of distinct terms kept
+     * @return The pruned document with terms ordered by their weight
+     */
+    public String getTopTermsDocument(List<String> docs, int budget) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (String doc : docs) {
+            for (String term : terms(doc)) {
+                termFrequencies.merge(term, 1, Integer::sum);
+            }
+        }
+
+        Statistics current = getStatistics();
+        Comparator<WeightedTerm> lowestFirst = Comparator.comparingDouble(WeightedTerm::weight)
+                .thenComparing(WeightedTerm::term, Comparator.reverseOrder());
+        PriorityQueue<WeightedTerm> heap = new PriorityQueue<>(Math.max(1, budget), lowestFirst);
+        termFrequencies.forEach((term, tf) -> {
+            heap.offer(new WeightedTerm(term, tf, tf * current.idf(term)));
+            if (heap.size() > budget) {
+                heap.poll();
+            }
+        });
+
+        List<WeightedTerm> topTerms = new ArrayList<>(heap);
+        topTerms.sort(lowestFirst.reversed());
+        List<String> prunedDoc = new ArrayList<>();
+        for (WeightedTerm term : topTerms) {
+            for (int i = 0; i < Math.min(term.frequency(), MAX_TERM_REPEAT); i++) {
+                prunedDoc.add(term.term());
+            }
+        }
+        return String.join(" ", prunedDoc);
+    }
+
+    private Statistics getStatistics() {
+        Statistics current = statistics.get();
+        if (current == null) {
+            requestRebuild();
+            current = statistics.get();
+        }
+        // not built yet, the terms are weighted by their frequency only until the statistics are ready
+        return current != null ? current : Statistics.EMPTY;
+    }
+
+    private void requestRebuild() {
+        pending.set(true);
+        if (running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    private void runPending() {
+        try {
+            while (pending.getAndSet(false)) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild the term statistics", e);
+        } finally {
+            running.set(false);
+        }
+        // requested after the last check, but before the flag was reset
+        if (pending.get() && running.compareAndSet(false, true)) {
+            executor.execute(this::runPending);
+        }
+    }
+
+    private static List<String> terms(String doc) {
+        if (doc == null || doc.isBlank()) {
+            return List.of();
+        }
+        return List.of(WHITESPACE.split(doc.trim()));
+    }
+
+    private static Set<String> distinctTerms(String doc) {
+        return new HashSet<>(terms(doc));
+    }
+
+    private record Statistics(Map<String, Integer> docFrequencies, int docCount) {
+
+        static final Statistics EMPTY = new Statistics(Map.of(), 0);
+
+        /**
+         * Smoothed inverse document frequency, terms unknown to the corpus get the highest weight
+         */
+        double idf(String term) {
+            return Math.log((docCount + 1.0) / (docFrequencies.getOrDefault(term, 0) + 1.0)) + 1.0;
+        }
+    }
+
+    private record WeightedTerm(String term, int frequency, double weight) {
+    }
+
+    /**
+     * Published when the projects changed and the statistics should be rebuilt
+     */
+    public record RebuildEvent() {
+    }
+}
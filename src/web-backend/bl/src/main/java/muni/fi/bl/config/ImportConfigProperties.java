@@ -0,0 +1,21 @@
+package muni.fi.bl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "import")
+public class ImportConfigProperties {
+    // number of parsed projects persisted at once, the projects of one chunk are held in memory
+    private int chunkSize = 500;
+    // number of threads normalizing the project annotations, the number of processors if not positive
+    private int concurrency = 0;
+    // insert the projects with the PostgreSQL COPY command and set-based merges instead of saving the entities
+    private boolean bulkLoad = true;
+    // directory the uploaded files are spooled to until their import job runs, a temporary directory if empty
+    private String spoolDirectory = "";
+    // number of finished import jobs kept for the progress reports, the oldest ones are dropped
+    private int retainedJobs = 100;
+}
@@ -0,0 +1,58 @@
+package muni.fi.bl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "search")
+public class SearchConfigProperties {
+    // maximal number of the search continuations waiting for a search thread, the searches over it are rejected
+    private int searchQueueCapacity = 500;
+    private int recommendationPoolSize = 8;
+    private int recommendationQueueCapacity = 100;
+    private int recommendationConcurrency = 4;
+    private long recommendationTimeoutMs = 2000;
+    private long cacheMaxSize = 1000;
+    private long cacheTtlSeconds = 300;
+    private long cacheStaleTtlSeconds = 3600;
+    // opportunity fields filtered by the n-gram subfield if the index has it, other fields are filtered by wildcard queries
+    private List<String> ngramFilterFields = List.of("title", "institutionName", "author", "helix", "role", "expertise");
+    // number of terms the 'like' annotations of MoreLikeThis queries are pruned to, pruning is disabled if not positive
+    private int likeTermsBudget = 100;
+    // search with the stored search templates instead of sending the whole queries
+    private boolean searchTemplates = true;
+    // apply the search filters in the filter context of the query instead of the post-filter
+    private boolean filterContext = true;
+    // profile the searches and log the number of the scored documents, for comparing the filter modes only
+    private boolean profileQueries = false;
+    // search by authors with their precomputed profile documents instead of all their projects
+    private boolean authorProfiles = true;
+    // maximal number of selected projects or authors searched by one MoreLikeThis query, larger selections are split
+    private int scatterChunkSize = 20;
+    // maximal number of chunks a selection is split into, the chunks grow beyond 'scatterChunkSize' instead
+    private int scatterMaxChunks = 10;
+    // maximal number of chunks of a split selection ElasticSearch searches concurrently
+    private int scatterConcurrency = 8;
+    // rank the authors by opportunity with a terms aggregation over all the matching projects instead of the top hits
+    private boolean authorAggregation = false;
+    // number of the best matching projects returned per author by the author aggregation
+    private int authorAggregationProjects = 10;
+    // serve the searches by opportunity from the matches precomputed after every load of opportunities or projects
+    private boolean opportunityMatches = true;
+    // number of the best authors stored per opportunity and sort type, searches for more authors are performed live
+    private int opportunityMatchesSize = 50;
+    // number of opportunities the matches are computed for in parallel
+    private int opportunityMatchesConcurrency = 4;
+    // serve the 'more like this' recommendations from the related opportunities precomputed after every opportunity load
+    private boolean relatedOpportunities = true;
+    // number of opportunities the related opportunities are computed for in parallel
+    private int relatedOpportunitiesConcurrency = 2;
+    // document fields returned per search endpoint ('byProjects', 'byAuthors', 'byOpportunity'), whole documents if missing
+    private Map<String, List<String>> sourceFields = new HashMap<>(Map.of("byOpportunity", List.of("projId", "uco")));
+}
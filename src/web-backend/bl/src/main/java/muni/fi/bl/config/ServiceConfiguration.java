@@ -1,5 +1,6 @@
 package muni.fi.bl.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -21,11 +22,14 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.concurrent.Executor;
 
 @SpringBootConfiguration
 @EnableAutoConfiguration
@@ -34,13 +38,30 @@ import java.io.Reader;
 @ComponentScan
 public class ServiceConfiguration {
 
+    public static final String SEARCH_EXECUTOR = "searchExecutor";
+    public static final int SEARCH_EXECUTOR_POOL_SIZE = 4;
+    public static final String RECOMMENDATION_EXECUTOR = "recommendationExecutor";
+    public static final String OPPORTUNITY_MATCHES_EXECUTOR = "opportunityMatchesExecutor";
+    public static final String RELATED_OPPORTUNITIES_EXECUTOR = "relatedOpportunitiesExecutor";
+    public static final String PROJECT_IMPORT_EXECUTOR = "projectImportExecutor";
+    public static final String TERM_STATISTICS_EXECUTOR = "termStatisticsExecutor";
+    public static final String IMPORT_JOB_EXECUTOR = "importJobExecutor";
+    // the projects and the opportunities index, the jobs of one index run one after another
+    public static final int IMPORT_JOB_EXECUTOR_POOL_SIZE = 2;
+
     private final FilesConfigProperties filesConfigProperties;
     private final ApiConfigProperties apiConfigProperties;
+    private final SearchConfigProperties searchConfigProperties;
+    private final ImportConfigProperties importConfigProperties;
 
     public ServiceConfiguration(FilesConfigProperties filesConfigProperties,
-                                ApiConfigProperties apiConfigProperties) {
+                                ApiConfigProperties apiConfigProperties,
+                                SearchConfigProperties searchConfigProperties,
+                                ImportConfigProperties importConfigProperties) {
         this.filesConfigProperties = filesConfigProperties;
         this.apiConfigProperties = apiConfigProperties;
+        this.searchConfigProperties = searchConfigProperties;
+        this.importConfigProperties = importConfigProperties;
     }
 
     @Bean
@@ -65,19 +86,125 @@ public class ServiceConfiguration {
 
     @Bean
     public RestTemplate restTemplate() {
-        return new RestTemplate();
+        // the uploads to the data loader are streamed from the spooled files instead of being copied into memory
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setBufferRequestBody(false);
+        return new RestTemplate(requestFactory);
     }
 
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
+    public ElasticsearchTransport elasticsearchTransport() {
         RestClient restClient = RestClient.builder(
                 new HttpHost(apiConfigProperties.getElasticHostname(),
                         Integer.parseInt(apiConfigProperties.getElasticPort()))).build();
-        ElasticsearchTransport transport = new RestClientTransport(
-                restClient, new JacksonJsonpMapper());
+        return new RestClientTransport(restClient, new JacksonJsonpMapper());
+    }
+
+    @Bean
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         return new ElasticsearchClient(transport);
     }
 
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
+
+    /**
+     * Executor for the blocking continuations of asynchronous searches (e.g. database lookups).
+     * Keeps them off the Elasticsearch client I/O threads.
+     * Tasks over the queue capacity are rejected and the affected searches fail.
+     */
+    @Bean(SEARCH_EXECUTOR)
+    public Executor searchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(SEARCH_EXECUTOR_POOL_SIZE);
+        executor.setMaxPoolSize(SEARCH_EXECUTOR_POOL_SIZE);
+        executor.setQueueCapacity(searchConfigProperties.getSearchQueueCapacity());
+        executor.setThreadNamePrefix("search-");
+        return executor;
+    }
+
+    /**
+     * Executor shared by the personalized recommendations of all requests.
+     * Tasks over the queue capacity are rejected and the affected author recommendations are dropped.
+     */
+    @Bean(RECOMMENDATION_EXECUTOR)
+    public Executor recommendationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(searchConfigProperties.getRecommendationPoolSize());
+        executor.setMaxPoolSize(searchConfigProperties.getRecommendationPoolSize());
+        executor.setQueueCapacity(searchConfigProperties.getRecommendationQueueCapacity());
+        executor.setThreadNamePrefix("recommendation-");
+        return executor;
+    }
+
+    /**
+     * Executor computing the opportunity matches in the background. One thread coordinates the run,
+     * the others match the opportunities in parallel.
+     */
+    @Bean(OPPORTUNITY_MATCHES_EXECUTOR)
+    public Executor opportunityMatchesExecutor() {
+        int poolSize = Math.max(1, searchConfigProperties.getOpportunityMatchesConcurrency()) + 1;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("opportunity-matches-");
+        return executor;
+    }
+
+    /**
+     * Executor computing the related opportunities in the background, one thread coordinates the run as well.
+     */
+    @Bean(RELATED_OPPORTUNITIES_EXECUTOR)
+    public Executor relatedOpportunitiesExecutor() {
+        int poolSize = Math.max(1, searchConfigProperties.getRelatedOpportunitiesConcurrency()) + 1;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("related-opportunities-");
+        return executor;
+    }
+
+    /**
+     * Executor normalizing the annotations of the imported projects while the CSV file is still being read.
+     */
+    @Bean(PROJECT_IMPORT_EXECUTOR)
+    public Executor projectImportExecutor() {
+        int poolSize = importConfigProperties.getConcurrency() > 0
+                ? importConfigProperties.getConcurrency()
+                : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("project-import-");
+        return executor;
+    }
+
+    /**
+     * Executor rebuilding the term statistics in the background, one rebuild at a time.
+     */
+    @Bean(TERM_STATISTICS_EXECUTOR)
+    public Executor termStatisticsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("term-statistics-");
+        return executor;
+    }
+
+    /**
+     * Executor running the import jobs, outside the request threads.
+     */
+    @Bean(IMPORT_JOB_EXECUTOR)
+    public Executor importJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(IMPORT_JOB_EXECUTOR_POOL_SIZE);
+        executor.setMaxPoolSize(IMPORT_JOB_EXECUTOR_POOL_SIZE);
+        executor.setThreadNamePrefix("import-job-");
+        return executor;
+    }
+
     @Bean
     public Analyzer analyzer() {
         Resource resource = new ClassPathResource(filesConfigProperties.getStopWords());
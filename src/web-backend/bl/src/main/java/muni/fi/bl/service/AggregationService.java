@@ -12,4 +12,19 @@ public interface AggregationService {
      * @throws muni.fi.bl.exceptions.ConnectionException When connection with Elastic fails
      */
     Map<String, List<String>> searchUniqueAggAll();
+
+    /**
+     * Searches for unique filter-terms in certain ElasticSearch index fields (helix, role, expertise) with their counts
+     *
+     * @return Map of the found unique terms with the number of opportunities containing them,
+     * sorted by descending number occurrences (e.g.: key-"helix", map-{"health": 25, "digital": 10})
+     * @throws muni.fi.bl.exceptions.ConnectionException When connection with Elastic fails
+     */
+    Map<String, Map<String, Long>> searchUniqueAggCountsAll();
+
+    /**
+     * Discards the memoized unique filter-terms, so they are searched again on the next request.
+     * Must be called whenever the opportunities index changes.
+     */
+    void invalidateUniqueAgg();
 }
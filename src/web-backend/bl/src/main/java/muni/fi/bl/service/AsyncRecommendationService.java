@@ -0,0 +1,30 @@
+package muni.fi.bl.service;
+
+import muni.fi.dtos.OpportunityDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of the {@link RecommendationService}. The returned futures complete exceptionally with
+ * {@link muni.fi.bl.exceptions.ConnectionException} or {@link muni.fi.bl.exceptions.AppException} when the search fails
+ */
+public interface AsyncRecommendationService {
+
+    /**
+     * Recommends opportunities for user. Exclude projects with ids specified by excludeProjIds from the search
+     *
+     * @param uco            UCO of the project author to recommend opportunities for
+     * @param excludeProjIds List of author's projects to be excluded from the search
+     * @return Future of the list of opportunities recommended for the author
+     */
+    CompletableFuture<List<OpportunityDto>> recommendForAuthorAsync(String uco, List<Long> excludeProjIds);
+
+    /**
+     * Recommends similar opportunities for ElasticSearch opportunity with specified id
+     *
+     * @param id Unique ElasticSearch identifier
+     * @return Future of the list of similar opportunities recommended for the specified opportunity id
+     */
+    CompletableFuture<List<OpportunityDto>> recommendMoreLikeThisAsync(String id);
+}
@@ -0,0 +1,77 @@
+package muni.fi.bl.service;
+
+import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.CursorPageDto;
+import muni.fi.dtos.OpportunityDto;
+import muni.fi.dtos.OpportunitySearchResultDto;
+import muni.fi.query.SearchInfo;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of the {@link SearchService}. The returned futures complete exceptionally with
+ * {@link muni.fi.bl.exceptions.ConnectionException} or {@link muni.fi.bl.exceptions.AppException} when the search fails
+ */
+public interface AsyncSearchService {
+
+    /**
+     * Search for opportunities based on the specified projects
+     *
+     * @param info The search information. The 'ucoList' property is ignored
+     * @return Future of the list of opportunities found and filtered based on the search info
+     */
+    CompletableFuture<List<OpportunityDto>> searchByProjectsAsync(SearchInfo info);
+
+    /**
+     * Search for the opportunities based on the specified project authors
+     *
+     * @param info The search information.
+     * @return Future of the list of opportunities found and filtered based on the search info
+     * @throws muni.fi.bl.exceptions.AppException When no projects are found for the selected authors
+     */
+    CompletableFuture<List<OpportunityDto>> searchByAuthorsAsync(SearchInfo info);
+
+    /**
+     * Search for opportunities based on a phrase. The search is performed among the title and description fields
+     *
+     * @param info The search information. Only maxResults, helixes, roles, expertise and phrase parameters are taken into account
+     * @return Future of the list of opportunities found and filtered based on the search info and search phrase
+     */
+    CompletableFuture<List<OpportunityDto>> searchByPhraseAsync(SearchInfo info);
+
+    /**
+     * Search by opportunity for relevant authors and their projects
+     */
+    CompletableFuture<List<OpportunitySearchResultDto>> searchByOpportunityAsync(String opportunityId, int maxResults, AuthorProjectsSortType sortBy);
+
+    /**
+     * Searches for opportunities based on input params. Is used for filtering, paging and sorting
+     *
+     * @param page        Page number (starting from 0)
+     * @param pageSize    Page size
+     * @param sortField   Elastic field to sort by
+     * @param desc        If true, sorts by 'sortField' in descending order, otherwise sorts ascending
+     * @param filterField Elastic field to filter by
+     * @param filterValue The value that the 'filterField' needs to contain
+     * @return Future of the page of opportunities based on the input parameters
+     */
+    CompletableFuture<Page<OpportunityDto>> searchForAllAsync(int page, int pageSize, String sortField, boolean desc, String filterField, String filterValue);
+
+    /**
+     * Cursor-based variant of the {@link #searchForAllAsync(int, int, String, boolean, String, String)}.
+     * Pages are retrieved from a point-in-time snapshot using 'search_after', so the cost of a page does not depend on its depth.
+     * The sort and filter parameters must be the same for all the pages of one cursor
+     *
+     * @param cursor      The cursor returned with the previous page, null for the first page
+     * @param pageSize    Page size
+     * @param sortField   Elastic field to sort by
+     * @param desc        If true, sorts by 'sortField' in descending order, otherwise sorts ascending
+     * @param filterField Elastic field to filter by
+     * @param filterValue The value that the 'filterField' needs to contain
+     * @return Future of the page of opportunities with the cursor of the next page
+     * @throws muni.fi.bl.exceptions.AppException When the cursor is malformed or expired
+     */
+    CompletableFuture<CursorPageDto<OpportunityDto>> searchForAllByCursorAsync(String cursor, int pageSize, String sortField, boolean desc, String filterField, String filterValue);
+}
@@ -0,0 +1,45 @@
+package muni.fi.bl.service;
+
+import muni.fi.dtos.ImportJobDto;
+import muni.fi.enums.ImportJobType;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface ImportJobService {
+
+    /**
+     * Spools the uploaded file and queues its import. The imports of the same index run one after another
+     * in the order of their submission, the imports of different indices run concurrently
+     *
+     * @param type          What to import and how
+     * @param fileName      The uploaded file name
+     * @param data          The uploaded file data, closed when spooled
+     * @param deleteMissing Delete the projects missing in the file, for the projects synchronization only
+     * @return The queued job
+     * @throws muni.fi.bl.exceptions.AppException When the file has an unsupported format or couldn't be spooled
+     */
+    ImportJobDto submit(ImportJobType type, String fileName, InputStream data, boolean deleteMissing);
+
+    /**
+     * Queues the import like {@link #submit(ImportJobType, String, InputStream, boolean)}, without waiting for it
+     *
+     * @return The result message of the import, completed exceptionally with the exception the import failed with
+     */
+    CompletableFuture<String> submitAsync(ImportJobType type, String fileName, InputStream data, boolean deleteMissing);
+
+    /**
+     * Retrieves the current state of the import job
+     *
+     * @param id The id of the job
+     * @return The job with its progress
+     * @throws muni.fi.bl.exceptions.NotFoundException When the job doesn't exist or was dropped since it finished
+     */
+    ImportJobDto get(String id);
+
+    /**
+     * @return The queued, running and recently finished import jobs, the most recent ones first
+     */
+    List<ImportJobDto> getAll();
+}
@@ -1,5 +1,7 @@
 package muni.fi.bl.service;
 
+import java.nio.file.Path;
+
 public interface OpportunityService {
 
     /**
@@ -22,11 +24,11 @@ public interface OpportunityService {
      * Loads opportunities to ElasticSearch index
      *
      * @param fileName Source file name
-     * @param data     Source file data
+     * @param data     Source file
      * @return Load response message
      * @throws muni.fi.bl.exceptions.ConnectionException When connection with Elastic fails
      */
-    String load(String fileName, byte[] data);
+    String load(String fileName, Path data);
 
     /**
      * Retrieves expected file format for opportunities loading
@@ -1,23 +1,49 @@
 package muni.fi.bl.service;
 
+import muni.fi.bl.ImportProgress;
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.ProjectSyncResult;
 import muni.fi.dtos.ProjectDto;
 import muni.fi.dtos.ProjectUpdateDto;
 import org.springframework.data.domain.Page;
 
-import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface ProjectService {
 
     /**
-     * Loads projects from CSV represented as an inputStream
+     * Loads projects from CSV file
      *
-     * @param csvFile          InputStream containing CSV data
+     * @param csvFile          The CSV file, read once for parsing and once more for indexing
      * @param originalFilename The CSV file name
+     * @param progress         Receives the progress of the load
      * @return Result of the projects parsing. Contains information about the number of successfully parsed projects and other data
      */
-    ProjectLoadResult loadProjectsFromCsv(InputStream csvFile, String originalFilename);
+    ProjectLoadResult loadProjectsFromCsv(Path csvFile, String originalFilename, ImportProgress progress);
+
+    /**
+     * Deletes all projects and loads the projects from CSV file, in one transaction
+     *
+     * @param csvFile          The CSV file, read once for parsing and once more for indexing
+     * @param originalFilename The CSV file name
+     * @param progress         Receives the progress of the load
+     * @return Result of the projects parsing. Contains information about the number of successfully parsed projects and other data
+     */
+    ProjectLoadResult replaceProjectsFromCsv(Path csvFile, String originalFilename, ImportProgress progress);
+
+    /**
+     * Synchronizes the projects with CSV file. Only the new projects and the projects
+     * whose records changed since the last load are saved and indexed, the others are left untouched
+     *
+     * @param csvFile          The CSV file of all the projects, read once for parsing and once more for indexing
+     * @param originalFilename The CSV file name
+     * @param deleteMissing    Delete the stored projects missing in the CSV data. Skipped if any record fails to parse
+     * @param progress         Receives the progress of the synchronization
+     * @return Result of the synchronization. Contains the numbers of the parsed, changed and deleted projects
+     */
+    ProjectSyncResult syncProjectsFromCsv(Path csvFile, String originalFilename, boolean deleteMissing,
+                                          ImportProgress progress);
 
     /**
      * Used for retrieving projects. Can be paged, filtered, sorted
@@ -45,6 +71,15 @@ public interface ProjectService {
      */
     ProjectDto getById(Long id);
 
+    /**
+     * Retrieves projects by their database ids in a single query
+     *
+     * @param ids The project database ids
+     * @return Found project DTOs in the order of the given ids
+     * @throws muni.fi.bl.exceptions.NotFoundException When any of the projects was not found
+     */
+    List<ProjectDto> getByIds(List<Long> ids);
+
     /**
      * Returns a list of projects matched by their author uco's
      *
@@ -53,6 +88,14 @@ public interface ProjectService {
      */
     List<ProjectDto> getByAuthorUco(String uco);
 
+    /**
+     * Returns the projects of all the given authors in a single query
+     *
+     * @param ucos The UCOs of the authors whose projects you want to retrieve
+     * @return The list of the authors' projects
+     */
+    List<ProjectDto> getByAuthorUcos(List<String> ucos);
+
     /**
      * Deletes all projects
      */
@@ -0,0 +1,21 @@
+package muni.fi.bl.service;
+
+import muni.fi.dtos.OpportunityMatchStatsDto;
+import muni.fi.dtos.SearchCacheStatsDto;
+
+public interface SearchStatsService {
+
+    /**
+     * Gets the statistics of the search result cache
+     *
+     * @return The hit, miss, stale hit, and eviction counts of the cache
+     */
+    SearchCacheStatsDto getCacheStats();
+
+    /**
+     * Gets the statistics of the precomputed opportunity matches
+     *
+     * @return The statistics of the last run computing the matches
+     */
+    OpportunityMatchStatsDto getOpportunityMatchStats();
+}
@@ -0,0 +1,51 @@
+package muni.fi.bl.service.impl;
+
+import muni.fi.bl.component.SearchResultCache;
+import muni.fi.bl.service.AsyncRecommendationService;
+import muni.fi.bl.service.RecommendationService;
+import muni.fi.dtos.OpportunityDto;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static muni.fi.bl.component.SearchResultCache.key;
+
+/**
+ * Serves the repeated 'more like this' recommendations from the {@link SearchResultCache},
+ * delegating the rest to the {@link ElasticRecommendationService}
+ */
+@Primary
+@Service
+public class CachedRecommendationService implements RecommendationService, AsyncRecommendationService {
+
+    private final ElasticRecommendationService recommendationService;
+    private final SearchResultCache cache;
+
+    public CachedRecommendationService(ElasticRecommendationService recommendationService,
+                                       SearchResultCache cache) {
+        this.recommendationService = recommendationService;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<OpportunityDto> recommendForAuthor(String uco, List<Long> excludeProjIds) {
+        return recommendationService.recommendForAuthor(uco, excludeProjIds);
+    }
+
+    @Override
+    public List<OpportunityDto> recommendMoreLikeThis(String id) {
+        return cache.get(key("recommendMoreLikeThis", id), () -> recommendationService.recommendMoreLikeThis(id));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> recommendForAuthorAsync(String uco, List<Long> excludeProjIds) {
+        return recommendationService.recommendForAuthorAsync(uco, excludeProjIds);
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> recommendMoreLikeThisAsync(String id) {
+        return cache.getAsync(key("recommendMoreLikeThis", id), () -> recommendationService.recommendMoreLikeThisAsync(id));
+    }
+}
@@ -0,0 +1,92 @@
+package muni.fi.bl.service.impl;
+
+import muni.fi.bl.component.SearchResultCache;
+import muni.fi.bl.service.AsyncSearchService;
+import muni.fi.bl.service.SearchService;
+import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.CursorPageDto;
+import muni.fi.dtos.OpportunityDto;
+import muni.fi.dtos.OpportunitySearchResultDto;
+import muni.fi.query.SearchInfo;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static muni.fi.bl.component.SearchResultCache.key;
+
+/**
+ * Serves the repeated searches from the {@link SearchResultCache}, delegating the rest to the {@link ElasticSearchService}
+ */
+@Primary
+@Service
+public class CachedSearchService implements SearchService, AsyncSearchService {
+
+    private final ElasticSearchService searchService;
+    private final SearchResultCache cache;
+
+    public CachedSearchService(ElasticSearchService searchService,
+                               SearchResultCache cache) {
+        this.searchService = searchService;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<OpportunityDto> searchByProjects(SearchInfo info) {
+        return cache.get(key("searchByProjects", info), () -> searchService.searchByProjects(info));
+    }
+
+    @Override
+    public List<OpportunityDto> searchByAuthors(SearchInfo info) {
+        return cache.get(key("searchByAuthors", info), () -> searchService.searchByAuthors(info));
+    }
+
+    @Override
+    public List<OpportunityDto> searchByPhrase(SearchInfo info) {
+        return cache.get(key("searchByPhrase", info), () -> searchService.searchByPhrase(info));
+    }
+
+    @Override
+    public Page<OpportunityDto> searchForAll(int page, int pageSize, String sortField, boolean desc, String filterField, String filterValue) {
+        return searchService.searchForAll(page, pageSize, sortField, desc, filterField, filterValue);
+    }
+
+    @Override
+    public List<OpportunitySearchResultDto> searchByOpportunity(String esId, int maxResultsCount, AuthorProjectsSortType sortBy) {
+        return cache.get(key("searchByOpportunity", esId, maxResultsCount, sortBy),
+                () -> searchService.searchByOpportunity(esId, maxResultsCount, sortBy));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByProjectsAsync(SearchInfo info) {
+        return cache.getAsync(key("searchByProjects", info), () -> searchService.searchByProjectsAsync(info));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByAuthorsAsync(SearchInfo info) {
+        return cache.getAsync(key("searchByAuthors", info), () -> searchService.searchByAuthorsAsync(info));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByPhraseAsync(SearchInfo info) {
+        return cache.getAsync(key("searchByPhrase", info), () -> searchService.searchByPhraseAsync(info));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunitySearchResultDto>> searchByOpportunityAsync(String esId, int maxResultsCount, AuthorProjectsSortType sortBy) {
+        return cache.getAsync(key("searchByOpportunity", esId, maxResultsCount, sortBy),
+                () -> searchService.searchByOpportunityAsync(esId, maxResultsCount, sortBy));
+    }
+
+    @Override
+    public CompletableFuture<Page<OpportunityDto>> searchForAllAsync(int page, int pageSize, String sortField, boolean desc, String filterField, String filterValue) {
+        return searchService.searchForAllAsync(page, pageSize, sortField, desc, filterField, filterValue);
+    }
+
+    @Override
+    public CompletableFuture<CursorPageDto<OpportunityDto>> searchForAllByCursorAsync(String cursor, int pageSize, String sortField, boolean desc, String filterField, String filterValue) {
+        return searchService.searchForAllByCursorAsync(cursor, pageSize, sortField, desc, filterField, filterValue);
+    }
+}
@@ -12,10 +12,13 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
@@ -28,9 +31,14 @@ import static muni.fi.bl.service.impl.ElasticSearchService.ROLE_FIELD;
 public class ElasticAggregationService implements AggregationService {
 
     public static final int MAX_AGG_SIZE = 500;
+    public static final List<String> FILTER_FIELDS = List.of(ROLE_FIELD, HELIX_FIELD, EXPERTISE_FIELD);
 
     private final ElasticsearchClient elasticsearchClient;
 
+    // the unique terms only change when the opportunities are (re)loaded, so they are computed once and memoized
+    private final AtomicReference<Map<String, Map<String, Long>>> uniqueAggSnapshot = new AtomicReference<>();
+    private final AtomicLong uniqueAggGeneration = new AtomicLong();
+
     public ElasticAggregationService(ElasticsearchClient elasticsearchClient) {
         this.elasticsearchClient = elasticsearchClient;
     }
@@ -38,42 +46,68 @@ public class ElasticAggregationService implements AggregationService {
     @Override
     public Map<String, List<String>> searchUniqueAggAll() {
         Map<String, List<String>> filterTerms = new HashMap<>();
-
-        filterTerms.put(ROLE_FIELD, searchUniqueAgg(ROLE_FIELD).keySet().stream().toList());
-        filterTerms.put(HELIX_FIELD, searchUniqueAgg(HELIX_FIELD).keySet().stream().toList());
-        filterTerms.put(EXPERTISE_FIELD, searchUniqueAgg(EXPERTISE_FIELD).keySet().stream().toList());
-
+        searchUniqueAggCountsAll().forEach((field, counts) -> filterTerms.put(field, counts.keySet().stream().toList()));
         return filterTerms;
     }
 
-    private Map<String, Long> searchUniqueAgg(String field) {
+    @Override
+    public Map<String, Map<String, Long>> searchUniqueAggCountsAll() {
+        Map<String, Map<String, Long>> snapshot = uniqueAggSnapshot.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long generation = uniqueAggGeneration.get();
+        snapshot = searchUniqueAgg();
+        // don't store terms searched before an invalidation, they may already be outdated
+        if (generation == uniqueAggGeneration.get()) {
+            uniqueAggSnapshot.compareAndSet(null, snapshot);
+        }
+        return snapshot;
+    }
 
-        Map<String, Long> result = new LinkedHashMap<>();
+    @Override
+    public void invalidateUniqueAgg() {
+        uniqueAggGeneration.incrementAndGet();
+        uniqueAggSnapshot.set(null);
+    }
+
+    private Map<String, Map<String, Long>> searchUniqueAgg() {
         SearchResponse<Void> response;
         try {
-            Aggregation agg = Aggregation.of(a -> a
-                    .terms(t -> t
-                            .field(field)
-                            .size(MAX_AGG_SIZE)));
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                    .index(CROWDHELIX_INDEX)
-                    .size(0)
-                    .aggregations(String.format("%s-agg", field), agg
-                    ));
+            SearchRequest searchRequest = SearchRequest.of(s -> {
+                s.index(CROWDHELIX_INDEX).size(0);
+                for (String field : FILTER_FIELDS) {
+                    s.aggregations(getAggName(field), Aggregation.of(a -> a
+                            .terms(t -> t
+                                    .field(field)
+                                    .size(MAX_AGG_SIZE))));
+                }
+                return s;
+            });
             response = elasticsearchClient.search(searchRequest, Void.class);
         } catch (IOException e) {
             log.error(ELASTIC_CONNECTION_ERROR, e);
             throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
         }
-        List<StringTermsBucket> buckets = response.aggregations()
-                .get(String.format("%s-agg", field))
-                .sterms()
-                .buckets().array();
-        for (StringTermsBucket bucket : buckets) {
-            if (!StringUtils.isBlank(bucket.key().stringValue())) {
-                result.put(bucket.key().stringValue(), bucket.docCount());
+
+        Map<String, Map<String, Long>> filterTermCounts = new HashMap<>();
+        for (String field : FILTER_FIELDS) {
+            Map<String, Long> result = new LinkedHashMap<>();
+            List<StringTermsBucket> buckets = response.aggregations()
+                    .get(getAggName(field))
+                    .sterms()
+                    .buckets().array();
+            for (StringTermsBucket bucket : buckets) {
+                if (!StringUtils.isBlank(bucket.key().stringValue())) {
+                    result.put(bucket.key().stringValue(), bucket.docCount());
+                }
             }
+            filterTermCounts.put(field, Collections.unmodifiableMap(result));
         }
-        return result;
+        return Collections.unmodifiableMap(filterTermCounts);
+    }
+
+    private static String getAggName(String field) {
+        return String.format("%s-agg", field);
     }
 }
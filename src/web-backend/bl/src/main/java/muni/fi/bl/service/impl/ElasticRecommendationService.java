@@ -1,5 +1,6 @@
 package muni.fi.bl.service.impl;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.query_dsl.MoreLikeThisQuery;
@@ -7,16 +8,21 @@ import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
 import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.component.AuthorProfiles;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.RelatedOpportunities;
+import muni.fi.bl.component.SearchPerformer;
 import muni.fi.bl.component.SearchResultProcessor;
-import muni.fi.bl.exceptions.AppException;
-import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.bl.component.SearchTemplates;
 import muni.fi.bl.mappers.ProjectMapper;
+import muni.fi.bl.service.AsyncRecommendationService;
 import muni.fi.bl.service.RecommendationService;
 import muni.fi.dal.repository.ProjectRepository;
 import muni.fi.dtos.OpportunityDto;
 import muni.fi.dtos.ProjectDto;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -24,56 +30,196 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.component.SearchPerformer.translateSearchException;
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_ID;
+import static muni.fi.bl.config.ServiceConfiguration.SEARCH_EXECUTOR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.DEFAULT_DOCS_SIZE;
 import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 
 @Slf4j
 @Service
-public class ElasticRecommendationService implements RecommendationService {
+public class ElasticRecommendationService implements RecommendationService, AsyncRecommendationService {
 
     private final ProjectRepository projectRepository;
     private final ProjectMapper dtoMapper;
     private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
     private final SearchResultProcessor<OpportunityDto> resultProcessor;
     private final QueryBuilder queryBuilder;
+    private final SearchPerformer<OpportunityDto> searchPerformer;
+    private final SearchTemplates searchTemplates;
+    private final AuthorProfiles authorProfiles;
+    private final RelatedOpportunities relatedOpportunities;
+    private final Executor searchExecutor;
 
     public ElasticRecommendationService(ProjectRepository projectRepository,
                                         ProjectMapper dtoMapper,
                                         ElasticsearchClient elasticsearchClient,
+                                        ElasticsearchAsyncClient elasticsearchAsyncClient,
                                         SearchResultProcessor<OpportunityDto> resultProcessor,
-                                        QueryBuilder queryBuilder) {
+                                        QueryBuilder queryBuilder,
+                                        SearchPerformer<OpportunityDto> searchPerformer,
+                                        SearchTemplates searchTemplates,
+                                        AuthorProfiles authorProfiles,
+                                        RelatedOpportunities relatedOpportunities,
+                                        @Qualifier(SEARCH_EXECUTOR) Executor searchExecutor) {
         this.projectRepository = projectRepository;
         this.dtoMapper = dtoMapper;
         this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
         this.resultProcessor = resultProcessor;
         this.queryBuilder = queryBuilder;
+        this.searchPerformer = searchPerformer;
+        this.searchTemplates = searchTemplates;
+        this.authorProfiles = authorProfiles;
+        this.relatedOpportunities = relatedOpportunities;
+        this.searchExecutor = searchExecutor;
     }
 
     @Override
     public List<OpportunityDto> recommendForAuthor(String uco, List<Long> excludeProjIds) {
-        List<ProjectDto> projects = projectRepository.findByAuthorUco(uco).stream()
-                .filter(p -> !excludeProjIds.contains(p.getId()))
-                .map(dtoMapper::toDto).toList();
+        if (canUseProfile(uco, excludeProjIds)) {
+            return searchTemplates.isReady()
+                    ? searchForMoreLikeThisTemplate(getProfileParams(uco))
+                    : searchForMoreLikeThis(getProfileQuery(uco));
+        }
+        List<ProjectDto> projects = getAuthorProjects(uco, excludeProjIds);
         if (projects.isEmpty()) {
             return Collections.emptyList();
         }
-        return searchForMoreLikeThis(queryBuilder.getMoreLikeThisQuery(
-                projects.stream()
-                        .map(ProjectDto::getProcessedAnnotation)
-                        .toList()));
+        if (searchTemplates.isReady()) {
+            return searchForMoreLikeThisTemplate(getMoreLikeThisParams(projects));
+        }
+        return searchForMoreLikeThis(getMoreLikeThisQuery(projects));
     }
 
     @Override
     public List<OpportunityDto> recommendMoreLikeThis(String id) {
+        return relatedOpportunities.find(id).orElseGet(() -> searchMoreLikeThis(id));
+    }
+
+    /**
+     * Searches for the opportunities similar to the opportunity, the stored related opportunities are not used
+     *
+     * @param id Unique ElasticSearch identifier
+     * @return The list of similar opportunities in the order of their similarity
+     * @throws muni.fi.bl.exceptions.ConnectionException When connection with Elastic fails
+     */
+    public List<OpportunityDto> searchMoreLikeThis(String id) {
+        if (searchTemplates.isReady()) {
+            return searchForMoreLikeThisTemplate(getMoreLikeThisParams(id));
+        }
         return searchForMoreLikeThis(queryBuilder.getMoreLikeThisQuery(id, CROWDHELIX_INDEX));
     }
 
+    @Override
+    public CompletableFuture<List<OpportunityDto>> recommendForAuthorAsync(String uco, List<Long> excludeProjIds) {
+        if (canUseProfile(uco, excludeProjIds)) {
+            return searchTemplates.isReady()
+                    ? searchForMoreLikeThisTemplateAsync(getProfileParams(uco))
+                    : searchForMoreLikeThisAsync(getProfileQuery(uco));
+        }
+        List<ProjectDto> projects = getAuthorProjects(uco, excludeProjIds);
+        if (projects.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        if (searchTemplates.isReady()) {
+            return searchForMoreLikeThisTemplateAsync(getMoreLikeThisParams(projects));
+        }
+        return searchForMoreLikeThisAsync(getMoreLikeThisQuery(projects));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> recommendMoreLikeThisAsync(String id) {
+        // the stored related opportunities are read from the database, so it must not run on the caller's thread
+        return CompletableFuture.supplyAsync(() -> relatedOpportunities.find(id), searchExecutor)
+                .thenCompose(related -> related
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> searchMoreLikeThisAsync(id)));
+    }
+
+    private CompletableFuture<List<OpportunityDto>> searchMoreLikeThisAsync(String id) {
+        if (searchTemplates.isReady()) {
+            return searchForMoreLikeThisTemplateAsync(getMoreLikeThisParams(id));
+        }
+        return searchForMoreLikeThisAsync(queryBuilder.getMoreLikeThisQuery(id, CROWDHELIX_INDEX));
+    }
+
+    /**
+     * The profile contains all the author's projects, so it can't be used when some of them are excluded.
+     * An author without projects has no profile and the search returns no results
+     */
+    private boolean canUseProfile(String uco, List<Long> excludeProjIds) {
+        return authorProfiles.isReady()
+                && (excludeProjIds.isEmpty() || !projectRepository.existsByAuthorUcoAndIdIn(uco, excludeProjIds));
+    }
+
+    private MoreLikeThisQuery getProfileQuery(String uco) {
+        return queryBuilder.getMoreLikeThisQueryByIds(List.of(uco), List.of(DESCRIPTION_FIELD), AUTHOR_PROFILE_INDEX);
+    }
+
+    private Map<String, JsonData> getProfileParams(String uco) {
+        return searchTemplates.getMoreLikeThisByIdsParams(
+                List.of(uco), AUTHOR_PROFILE_INDEX, List.of(DESCRIPTION_FIELD), null, DEFAULT_DOCS_SIZE, null);
+    }
+
+    private List<ProjectDto> getAuthorProjects(String uco, List<Long> excludeProjIds) {
+        return projectRepository.findByAuthorUco(uco).stream()
+                .filter(p -> !excludeProjIds.contains(p.getId()))
+                .map(dtoMapper::toDto).toList();
+    }
+
+    private MoreLikeThisQuery getMoreLikeThisQuery(List<ProjectDto> projects) {
+        return queryBuilder.getMoreLikeThisQuery(
+                projects.stream()
+                        .map(ProjectDto::getProcessedAnnotation)
+                        .toList());
+    }
+
+    private Map<String, JsonData> getMoreLikeThisParams(List<ProjectDto> projects) {
+        return searchTemplates.getMoreLikeThisParams(
+                queryBuilder.getLikeTexts(projects.stream()
+                        .map(ProjectDto::getProcessedAnnotation)
+                        .toList()),
+                List.of(DESCRIPTION_FIELD), null, DEFAULT_DOCS_SIZE, null);
+    }
+
+    private Map<String, JsonData> getMoreLikeThisParams(String id) {
+        return searchTemplates.getMoreLikeThisParams(
+                id, CROWDHELIX_INDEX, List.of(DESCRIPTION_FIELD, TITLE_FIELD), null, DEFAULT_DOCS_SIZE, null);
+    }
+
+    private List<OpportunityDto> searchForMoreLikeThisTemplate(Map<String, JsonData> params) {
+        return aggregateResults(searchPerformer.getSearchTemplateResponse(
+                MLT_TEMPLATE_ID, params, CROWDHELIX_INDEX, OpportunityDto.class).hits().hits());
+    }
+
+    private CompletableFuture<List<OpportunityDto>> searchForMoreLikeThisTemplateAsync(Map<String, JsonData> params) {
+        return searchPerformer.getSearchTemplateResponseAsync(MLT_TEMPLATE_ID, params, CROWDHELIX_INDEX, OpportunityDto.class)
+                .thenApply(searchResponse -> aggregateResults(searchResponse.hits().hits()));
+    }
+
     private List<OpportunityDto> searchForMoreLikeThis(MoreLikeThisQuery moreLikeThisQuery) {
-        SearchResponse<OpportunityDto> searchResponse = getSearchResponse(moreLikeThisQuery._toQuery());
-        var docHitList = searchResponse.hits().hits();
+        return aggregateResults(getSearchResponse(moreLikeThisQuery._toQuery()).hits().hits());
+    }
+
+    private CompletableFuture<List<OpportunityDto>> searchForMoreLikeThisAsync(MoreLikeThisQuery moreLikeThisQuery) {
+        return elasticsearchAsyncClient.search(getSearchRequest(moreLikeThisQuery._toQuery()), OpportunityDto.class)
+                .handle((searchResponse, e) -> {
+                    if (e != null) {
+                        throw translateSearchException(e);
+                    }
+                    return aggregateResults(searchResponse.hits().hits());
+                });
+    }
+
+    private List<OpportunityDto> aggregateResults(List<Hit<OpportunityDto>> docHitList) {
         Map<String, List<Hit<OpportunityDto>>> topResultsMap = new HashMap<>();
         topResultsMap.put(DESCRIPTION_FIELD, docHitList);
 
@@ -82,18 +228,16 @@ public class ElasticRecommendationService implements RecommendationService {
 
     private SearchResponse<OpportunityDto> getSearchResponse(Query searchQuery) {
         try {
-            SearchRequest searchRequest = SearchRequest.of(s -> s
-                    .index(CROWDHELIX_INDEX)
-                    .query(searchQuery)
-                    .size(DEFAULT_DOCS_SIZE));
-            return elasticsearchClient.search(searchRequest, OpportunityDto.class);
-        } catch (IOException e) {
-            log.error(ELASTIC_CONNECTION_ERROR, e);
-            throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
-        } catch (ElasticsearchException e) {
-            String message = "Failed to perform search or no data was found";
-            log.warn(message, e);
-            throw new AppException(message, e);
+            return elasticsearchClient.search(getSearchRequest(searchQuery), OpportunityDto.class);
+        } catch (IOException | ElasticsearchException e) {
+            throw translateSearchException(e);
         }
     }
+
+    private static SearchRequest getSearchRequest(Query searchQuery) {
+        return SearchRequest.of(s -> s
+                .index(CROWDHELIX_INDEX)
+                .query(searchQuery)
+                .size(DEFAULT_DOCS_SIZE));
+    }
 }
@@ -2,20 +2,33 @@ package muni.fi.bl.service.impl;
 
 import co.elastic.clients.elasticsearch._types.SortOptions;
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonData;
 import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.component.AuthorProfiles;
+import muni.fi.bl.component.AuthorRanking;
+import muni.fi.bl.component.AuthorRankingAggregation;
+import muni.fi.bl.component.AuthorRecommendationsCollector;
+import muni.fi.bl.component.OpportunityMatches;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.ScatterGatherPlanner;
+import muni.fi.bl.component.SearchCursor;
 import muni.fi.bl.component.SearchPerformer;
 import muni.fi.bl.component.SearchResultProcessor;
+import muni.fi.bl.component.SearchTemplates;
 import muni.fi.bl.component.TextNormalizer;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.mappers.AuthorMapper;
 import muni.fi.bl.mappers.ProjectMapper;
+import muni.fi.bl.service.AsyncSearchService;
 import muni.fi.bl.service.ProjectService;
-import muni.fi.bl.service.RecommendationService;
 import muni.fi.bl.service.SearchService;
 import muni.fi.bl.service.enums.AuthorProjectsSortType;
 import muni.fi.dal.entity.Author;
@@ -23,11 +36,13 @@ import muni.fi.dal.entity.Project;
 import muni.fi.dal.repository.AuthorRepository;
 import muni.fi.dal.repository.ProjectRepository;
 import muni.fi.dtos.BaseEsDto;
+import muni.fi.dtos.CursorPageDto;
 import muni.fi.dtos.OpportunityDto;
 import muni.fi.dtos.OpportunitySearchResultDto;
 import muni.fi.dtos.ProjectDto;
 import muni.fi.dtos.ProjectEsDto;
 import muni.fi.query.SearchInfo;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -38,27 +53,44 @@ import org.springframework.util.CollectionUtils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static muni.fi.bl.component.SearchResultProcessor.DEFAULT_SOURCE_WEIGHT;
+import static muni.fi.bl.component.SearchResultProcessor.DEFAULT_SOURCE_WEIGHTS;
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_ID;
+import static muni.fi.bl.component.SearchTemplates.PHRASE_TEMPLATE_ID;
+import static muni.fi.bl.config.ServiceConfiguration.SEARCH_EXECUTOR;
+
 @Service
 @Slf4j
-public class ElasticSearchService implements SearchService {
+public class ElasticSearchService implements SearchService, AsyncSearchService {
 
     public static final String CROWDHELIX_INDEX = "crowdhelix_data";
     public static final String MU_INDEX = "mu_data";
+    public static final String AUTHOR_PROFILE_INDEX = "author_profiles";
     public static final String DESCRIPTION_FIELD = "description";
     public static final String TITLE_FIELD = "title";
     public static final String HELIX_FIELD = "helix";
     public static final String ROLE_FIELD = "role";
     public static final String EXPERTISE_FIELD = "expertise";
 
+    public static final String SHARD_DOC_FIELD = "_shard_doc";
+
+    // names of the search endpoints, used as keys of the 'search.source-fields' property
+    public static final String BY_PROJECTS = "byProjects";
+    public static final String BY_AUTHORS = "byAuthors";
+    public static final String BY_OPPORTUNITY = "byOpportunity";
+
     public static final int MAX_DOCS_SIZE = 100;
     public static final int DEFAULT_DOCS_SIZE = 20;
 
@@ -68,10 +100,13 @@ public class ElasticSearchService implements SearchService {
     public static final int MIN_TERM_FREQ = 1;
     public static final String MINIMUM_TERMS_MATCH = "10%";
 
+    // the 'title' and 'description' sub-queries of every searched chunk of the selection
+    private static final int SUB_QUERIES_PER_CHUNK = 2;
+
     private final SearchResultProcessor<OpportunityDto> opportunityResultProcessor;
     private final SearchResultProcessor<ProjectEsDto> projectResultProcessor;
     private final ProjectService projectService;
-    private final RecommendationService recommendationService;
+    private final AuthorRecommendationsCollector authorRecommendationsCollector;
     private final QueryBuilder queryBuilder;
     private final TextNormalizer textNormalizer;
     private final AuthorRepository authorRepository;
@@ -80,11 +115,18 @@ public class ElasticSearchService implements SearchService {
     private final ProjectMapper projectMapper;
     private final SearchPerformer<OpportunityDto> opportunitySearchPerformer;
     private final SearchPerformer<ProjectEsDto> projectSearchPerformer;
+    private final Executor searchExecutor;
+    private final SearchConfigProperties searchConfigProperties;
+    private final SearchTemplates searchTemplates;
+    private final AuthorProfiles authorProfiles;
+    private final ScatterGatherPlanner scatterGatherPlanner;
+    private final AuthorRankingAggregation authorRankingAggregation;
+    private final OpportunityMatches opportunityMatches;
 
     public ElasticSearchService(SearchResultProcessor<OpportunityDto> opportunityResultProcessor,
                                 SearchResultProcessor<ProjectEsDto> projectResultProcessor,
                                 ProjectService projectService,
-                                RecommendationService recommendationService,
+                                AuthorRecommendationsCollector authorRecommendationsCollector,
                                 QueryBuilder queryBuilder,
                                 TextNormalizer textNormalizer,
                                 AuthorRepository authorRepository,
@@ -92,11 +134,18 @@ public class ElasticSearchService implements SearchService {
                                 ProjectRepository projectRepository,
                                 ProjectMapper projectMapper,
                                 SearchPerformer<OpportunityDto> opportunitySearchPerformer,
-                                SearchPerformer<ProjectEsDto> projectSearchPerformer) {
+                                SearchPerformer<ProjectEsDto> projectSearchPerformer,
+                                @Qualifier(SEARCH_EXECUTOR) Executor searchExecutor,
+                                SearchConfigProperties searchConfigProperties,
+                                SearchTemplates searchTemplates,
+                                AuthorProfiles authorProfiles,
+                                ScatterGatherPlanner scatterGatherPlanner,
+                                AuthorRankingAggregation authorRankingAggregation,
+                                OpportunityMatches opportunityMatches) {
         this.opportunityResultProcessor = opportunityResultProcessor;
         this.projectResultProcessor = projectResultProcessor;
         this.projectService = projectService;
-        this.recommendationService = recommendationService;
+        this.authorRecommendationsCollector = authorRecommendationsCollector;
         this.queryBuilder = queryBuilder;
         this.textNormalizer = textNormalizer;
         this.authorRepository = authorRepository;
@@ -105,63 +154,60 @@ public class ElasticSearchService implements SearchService {
         this.projectMapper = projectMapper;
         this.opportunitySearchPerformer = opportunitySearchPerformer;
         this.projectSearchPerformer = projectSearchPerformer;
+        this.searchExecutor = searchExecutor;
+        this.searchConfigProperties = searchConfigProperties;
+        this.searchTemplates = searchTemplates;
+        this.authorProfiles = authorProfiles;
+        this.scatterGatherPlanner = scatterGatherPlanner;
+        this.authorRankingAggregation = authorRankingAggregation;
+        this.opportunityMatches = opportunityMatches;
     }
 
     @Override
     public List<OpportunityDto> searchByProjects(SearchInfo info) {
-        List<ProjectDto> projects = info.projIds().stream()
-                .map(projectService::getById)
-                .toList();
+        List<ProjectDto> projects = getProjectsByIds(info.projIds());
+        int maxResults = getMaxResults(info);
 
-        List<OpportunityDto> topResultsForProjects = search(info, projects);
+        List<BaseEsDto> topResultsForProjects;
         if (info.personalized()) {
-            List<OpportunityDto> recommendedForUsers = new ArrayList<>();
-            Set<String> authorUcos = projects.stream()
-                    .map(p -> p.getAuthor().getUco())
-                    .collect(Collectors.toSet());
-            for (var uco : authorUcos) {
-                recommendedForUsers.addAll(recommendationService.recommendForAuthor(uco, info.projIds()));
-            }
-            topResultsForProjects = opportunityResultProcessor.aggregateResultsAndRecommendations(topResultsForProjects, recommendedForUsers);
+            // the recommendations are collected in the background while the search is performed
+            CompletableFuture<List<OpportunityDto>> recommendedForUsers = authorRecommendationsCollector
+                    .recommendForAuthors(getAuthorUcos(projects), info.projIds());
+            topResultsForProjects = searchIds(info, projects, Integer.MAX_VALUE);
+            topResultsForProjects = opportunityResultProcessor.aggregateResultsAndRecommendations(topResultsForProjects, recommendedForUsers.join(), maxResults);
+        } else {
+            topResultsForProjects = searchIds(info, projects, maxResults);
         }
-        return topResultsForProjects.stream()
-                .limit(info.maxResults() == null ? DEFAULT_DOCS_SIZE : info.maxResults())
-                .toList();
+        return getOpportunityDocuments(topResultsForProjects, BY_PROJECTS);
     }
 
     @Override
     public List<OpportunityDto> searchByAuthors(SearchInfo info) {
-        List<ProjectDto> projects = info.ucoList().stream()
-                .map(projectService::getByAuthorUco)
-                .flatMap(Collection::stream)
-                .toList();
-        if (projects.isEmpty()) {
-            String message = "No projects data found for the selected authors";
-            log.warn(message);
-            throw new AppException(message);
-        }
+        int maxResults = getMaxResults(info);
 
-        List<OpportunityDto> topResultsForAuthors = search(info, projects);
+        List<BaseEsDto> topResultsForAuthors;
         if (!CollectionUtils.isEmpty(info.projIds())) {
-            List<ProjectDto> additionalProjects = info.projIds().stream()
-                    .map(projectService::getById)
-                    .toList();
-            List<OpportunityDto> topResultsForProjects = search(info, additionalProjects);
-            topResultsForAuthors = opportunityResultProcessor.aggregateResultsAndRecommendations(topResultsForAuthors, topResultsForProjects);
+            topResultsForAuthors = searchIdsByAuthors(info, Integer.MAX_VALUE);
+            List<ProjectDto> additionalProjects = getProjectsByIds(info.projIds());
+            List<BaseEsDto> topResultsForProjects = searchIds(info, additionalProjects, Integer.MAX_VALUE);
+            topResultsForAuthors = opportunityResultProcessor.aggregateResultsAndRecommendations(topResultsForAuthors, topResultsForProjects, maxResults);
+        } else {
+            topResultsForAuthors = searchIdsByAuthors(info, maxResults);
         }
-        return topResultsForAuthors.stream()
-                .limit(info.maxResults() == null ? DEFAULT_DOCS_SIZE : info.maxResults())
-                .toList();
+        return getOpportunityDocuments(topResultsForAuthors, BY_AUTHORS);
     }
 
     @Override
     public List<OpportunityDto> searchByPhrase(SearchInfo info) {
+        int maxResults = getMaxResults(info);
+        if (searchTemplates.isReady()) {
+            SearchTemplateResponse<OpportunityDto> searchResponse = opportunitySearchPerformer.getSearchTemplateResponse(
+                    PHRASE_TEMPLATE_ID, getPhraseParams(info, maxResults), CROWDHELIX_INDEX, OpportunityDto.class);
+            return getOpportunityDtosFromHits(searchResponse.hits().hits());
+        }
         Query filterQuery = queryBuilder.getFilterQuery(info)._toQuery();
-        Query multiMatchQuery = queryBuilder.getMultiMatchQuery(
-                textNormalizer.normalize(info.phrase())
-        )._toQuery();
+        Query multiMatchQuery = getPhraseQuery(info);
 
-        int maxResults = info.maxResults() == null ? DEFAULT_DOCS_SIZE : info.maxResults();
         SearchResponse<OpportunityDto> searchResponse = opportunitySearchPerformer.
                 getSearchResponse(filterQuery, multiMatchQuery, maxResults, 0, null, CROWDHELIX_INDEX, OpportunityDto.class);
         List<Hit<OpportunityDto>> hits = searchResponse.hits().hits();
@@ -176,6 +222,161 @@ public class ElasticSearchService implements SearchService {
         Query filterQuery = getFilterQuery(filterField, filterValue);
         SearchResponse<OpportunityDto> searchResponse = opportunitySearchPerformer.
                 getSearchResponse(filterQuery, allQuery, pageSize, page, sortOptions, CROWDHELIX_INDEX, OpportunityDto.class);
+        return getOpportunitiesPage(searchResponse, page, pageSize, sortField, desc);
+    }
+
+    @Override
+    public List<OpportunitySearchResultDto> searchByOpportunity(String esId, int maxResultsCount, AuthorProjectsSortType sortBy) {
+        List<AuthorRanking> rankings = opportunityMatches.find(esId, maxResultsCount)
+                .orElseGet(() -> searchAuthorRankings(esId, maxResultsCount, List.of(sortBy)));
+        return getOpportunitySearchResultDtos(rankings, maxResultsCount, sortBy);
+    }
+
+    /**
+     * Ranks the authors for the opportunity by all the sort types, so the rankings can be stored
+     * as the opportunity matches (see OpportunityMatches). The stored matches are not used
+     *
+     * @param esId            ElasticSearch id of the opportunity
+     * @param maxResultsCount The number of the best authors by every sort type
+     * @return The best authors by any of the sort types, every author once
+     */
+    public List<AuthorRanking> rankAuthorsByOpportunity(String esId, int maxResultsCount) {
+        return searchAuthorRankings(esId, maxResultsCount, List.of(AuthorProjectsSortType.values()));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByProjectsAsync(SearchInfo info) {
+        int maxResults = getMaxResults(info);
+
+        // the projects are read from the database, so it must not run on the caller's thread
+        return CompletableFuture.supplyAsync(() -> getProjectsByIds(info.projIds()), searchExecutor)
+                .thenCompose(projects -> {
+                    if (info.personalized()) {
+                        CompletableFuture<List<OpportunityDto>> recommendedForUsers = authorRecommendationsCollector
+                                .recommendForAuthors(getAuthorUcos(projects), info.projIds());
+                        return searchIdsAsync(info, projects, Integer.MAX_VALUE).thenCombine(recommendedForUsers,
+                                (results, hints) -> opportunityResultProcessor.aggregateResultsAndRecommendations(results, hints, maxResults));
+                    }
+                    return searchIdsAsync(info, projects, maxResults);
+                })
+                .thenCompose(results -> getOpportunityDocumentsAsync(results, BY_PROJECTS));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByAuthorsAsync(SearchInfo info) {
+        int maxResults = getMaxResults(info);
+
+        CompletableFuture<List<BaseEsDto>> topResultsForAuthors;
+        if (!CollectionUtils.isEmpty(info.projIds())) {
+            CompletableFuture<List<BaseEsDto>> topResultsForAuthorsOnly = searchIdsByAuthorsAsync(info, Integer.MAX_VALUE);
+            // the projects are read from the database, so it must not run on the caller's thread
+            CompletableFuture<List<BaseEsDto>> topResultsForProjects = CompletableFuture
+                    .supplyAsync(() -> getProjectsByIds(info.projIds()), searchExecutor)
+                    .thenCompose(additionalProjects -> searchIdsAsync(info, additionalProjects, Integer.MAX_VALUE));
+            topResultsForAuthors = topResultsForAuthorsOnly.thenCombine(topResultsForProjects,
+                    (results, hints) -> opportunityResultProcessor.aggregateResultsAndRecommendations(results, hints, maxResults));
+        } else {
+            topResultsForAuthors = searchIdsByAuthorsAsync(info, maxResults);
+        }
+        return topResultsForAuthors.thenCompose(results -> getOpportunityDocumentsAsync(results, BY_AUTHORS));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunityDto>> searchByPhraseAsync(SearchInfo info) {
+        int maxResults = getMaxResults(info);
+        if (searchTemplates.isReady()) {
+            return opportunitySearchPerformer
+                    .getSearchTemplateResponseAsync(PHRASE_TEMPLATE_ID, getPhraseParams(info, maxResults), CROWDHELIX_INDEX, OpportunityDto.class)
+                    .thenApply(searchResponse -> getOpportunityDtosFromHits(searchResponse.hits().hits()));
+        }
+        Query filterQuery = queryBuilder.getFilterQuery(info)._toQuery();
+        Query multiMatchQuery = getPhraseQuery(info);
+
+        return opportunitySearchPerformer
+                .getSearchResponseAsync(filterQuery, multiMatchQuery, maxResults, 0, null, CROWDHELIX_INDEX, OpportunityDto.class)
+                .thenApply(searchResponse -> getOpportunityDtosFromHits(searchResponse.hits().hits()));
+    }
+
+    @Override
+    public CompletableFuture<List<OpportunitySearchResultDto>> searchByOpportunityAsync(String esId, int maxResultsCount, AuthorProjectsSortType sortBy) {
+        // the stored matches are read and the results are enriched from the database,
+        // so it must not run on the Elasticsearch client threads
+        return CompletableFuture.supplyAsync(() -> opportunityMatches.find(esId, maxResultsCount), searchExecutor)
+                .thenCompose(matches -> matches
+                        .map(CompletableFuture::completedFuture)
+                        .orElseGet(() -> searchAuthorRankingsAsync(esId, maxResultsCount, List.of(sortBy))))
+                .thenApplyAsync(rankings -> getOpportunitySearchResultDtos(rankings, maxResultsCount, sortBy), searchExecutor);
+    }
+
+    @Override
+    public CompletableFuture<Page<OpportunityDto>> searchForAllAsync(int page, int pageSize, String sortField, boolean desc, String filterField, String filterValue) {
+        Query allQuery = queryBuilder.getSearchAllQuery()._toQuery();
+        SortOptions sortOptions = sortField != null ? getSortOptions(sortField, desc) : null;
+        Query filterQuery = getFilterQuery(filterField, filterValue);
+        return opportunitySearchPerformer
+                .getSearchResponseAsync(filterQuery, allQuery, pageSize, page, sortOptions, CROWDHELIX_INDEX, OpportunityDto.class)
+                .thenApply(searchResponse -> getOpportunitiesPage(searchResponse, page, pageSize, sortField, desc));
+    }
+
+    @Override
+    public CompletableFuture<CursorPageDto<OpportunityDto>> searchForAllByCursorAsync(String cursor, int pageSize, String sortField, boolean desc, String filterField, String filterValue) {
+        Query allQuery = queryBuilder.getSearchAllQuery()._toQuery();
+        Query filterQuery = getFilterQuery(filterField, filterValue);
+        List<SortOptions> sortOptions = getCursorSortOptions(sortField, desc);
+
+        CompletableFuture<SearchCursor> searchCursor = cursor != null
+                ? CompletableFuture.completedFuture(SearchCursor.decode(cursor))
+                : opportunitySearchPerformer.openPointInTimeAsync(CROWDHELIX_INDEX).thenApply(pitId -> new SearchCursor(pitId, List.of()));
+        return searchCursor.thenCompose(current -> opportunitySearchPerformer
+                .getSearchAfterResponseAsync(filterQuery, allQuery, pageSize, sortOptions, current.pitId(), current.searchAfter(), OpportunityDto.class)
+                .thenApply(searchResponse -> getOpportunitiesCursorPage(searchResponse, current, pageSize)));
+    }
+
+    private List<ProjectDto> getProjectsByIds(List<Long> projIds) {
+        return projectService.getByIds(projIds);
+    }
+
+    private List<ProjectDto> getProjectsByAuthors(List<String> ucoList) {
+        List<ProjectDto> projects = projectService.getByAuthorUcos(ucoList);
+        if (projects.isEmpty()) {
+            throw noAuthorProjectsException();
+        }
+        return projects;
+    }
+
+    private void checkAuthorsHaveProjects(List<String> ucoList) {
+        if (!projectRepository.existsByAuthorUcoIn(ucoList)) {
+            throw noAuthorProjectsException();
+        }
+    }
+
+    private static AppException noAuthorProjectsException() {
+        String message = "No projects data found for the selected authors";
+        log.warn(message);
+        return new AppException(message);
+    }
+
+    private static Set<String> getAuthorUcos(List<ProjectDto> projects) {
+        return projects.stream()
+                .map(p -> p.getAuthor().getUco())
+                .collect(Collectors.toSet());
+    }
+
+    private static int getMaxResults(SearchInfo info) {
+        return info.maxResults() == null ? DEFAULT_DOCS_SIZE : info.maxResults();
+    }
+
+    private Map<String, JsonData> getPhraseParams(SearchInfo info, int maxResults) {
+        return searchTemplates.getPhraseParams(textNormalizer.normalize(info.phrase()), info, maxResults);
+    }
+
+    private Query getPhraseQuery(SearchInfo info) {
+        return queryBuilder.getMultiMatchQuery(
+                textNormalizer.normalize(info.phrase())
+        )._toQuery();
+    }
+
+    private Page<OpportunityDto> getOpportunitiesPage(SearchResponse<OpportunityDto> searchResponse, int page, int pageSize, String sortField, boolean desc) {
         List<Hit<OpportunityDto>> hits = searchResponse.hits().hits();
         PageRequest pageable = PageRequest.of(page, pageSize);
         if (sortField != null) {
@@ -185,118 +386,102 @@ public class ElasticSearchService implements SearchService {
         return new PageImpl<>(getOpportunityDtosFromHits(hits), pageable, total);
     }
 
-    @Override
-    public List<OpportunitySearchResultDto> searchByOpportunity(String esId, int maxResultsCount, AuthorProjectsSortType sortBy) {
-        List<ProjectEsDto> relevantProjects = searchByOpportunityForProjects(esId);
+    private CursorPageDto<OpportunityDto> getOpportunitiesCursorPage(SearchResponse<OpportunityDto> searchResponse, SearchCursor current, int pageSize) {
+        List<Hit<OpportunityDto>> hits = searchResponse.hits().hits();
+        // the point-in-time id can change between the pages, the latest one has to be used
+        String pitId = searchResponse.pitId() != null ? searchResponse.pitId() : current.pitId();
+        String nextCursor = null;
+        if (hits.size() < pageSize) {
+            opportunitySearchPerformer.closePointInTimeAsync(pitId);
+        } else {
+            nextCursor = new SearchCursor(pitId, hits.get(hits.size() - 1).sort()).encode();
+        }
+        long total = searchResponse.hits().total() != null ? searchResponse.hits().total().value() : 0;
+        return new CursorPageDto<>(getOpportunityDtosFromHits(hits), nextCursor, total);
+    }
 
+    /**
+     * Ranks the authors of the relevant projects by all the sort types at once, in one pass over the projects
+     */
+    private static List<AuthorRanking> getAuthorRankings(List<ProjectEsDto> relevantProjects) {
         Map<String, List<ProjectEsDto>> relevantProjectsByUcoMap = relevantProjects
                 .stream()
-                .collect(Collectors.groupingBy(ProjectEsDto::getUco));
-        Map<String, Double> authorSumScoresMap = getAuthorSumScores(relevantProjectsByUcoMap);
-        Map<String, Double> authorMaxScoresMap = getAuthorsMaxScores(relevantProjectsByUcoMap);
-        Map<String, Double> authorAvgScoresMap = getAuthorsAvgScores(relevantProjectsByUcoMap);
-        Map<String, Double> authorProjectCountMap = getAuthorsCountScores(relevantProjectsByUcoMap);
-
-        // Sort the authorScores map by value (score) into a LinkedHashMap
-        Map<String, Double> sortedAuthorScores = switch (sortBy) {
-            case SUM -> sortAuthorsByScore(authorSumScoresMap, maxResultsCount);
-            case MAX -> sortAuthorsByScore(authorMaxScoresMap, maxResultsCount);
-            case AVG -> sortAuthorsByScore(authorAvgScoresMap, maxResultsCount);
-            case COUNT -> sortAuthorsByScore(authorProjectCountMap, maxResultsCount);
-        };
-        return getOpportunitySearchResultDtos(relevantProjectsByUcoMap, sortedAuthorScores,
-                authorSumScoresMap, authorMaxScoresMap, authorAvgScoresMap);
-    }
-
-    private Map<String, Double> getAuthorsCountScores(Map<String, List<ProjectEsDto>> relevantProjectsByUcoMap) {
-        return relevantProjectsByUcoMap.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> Double.valueOf(entry.getValue().size())
-                ));
-    }
-
-    private Map<String, Double> getAuthorsAvgScores(Map<String, List<ProjectEsDto>> relevantProjectsByUcoMap) {
-        return relevantProjectsByUcoMap.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> entry.getValue().stream()
-                                .mapToDouble(ProjectEsDto::getScore)
-                                .average().orElse(0.0)
-                ));
-    }
-
-    private Map<String, Double> getAuthorsMaxScores(Map<String, List<ProjectEsDto>> relevantProjectsByUcoMap) {
-        return relevantProjectsByUcoMap.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> entry.getValue().stream()
-                                .mapToDouble(ProjectEsDto::getScore)
-                                .max().orElse(0.0)
-                ));
-    }
-
-    private static Map<String, Double> getAuthorSumScores(Map<String, List<ProjectEsDto>> relevantProjectsByUcoMap) {
-        return relevantProjectsByUcoMap.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> entry.getValue().stream()
-                                .mapToDouble(ProjectEsDto::getScore)
-                                .sum()
-                ));
-    }
-
-    private List<OpportunitySearchResultDto> getOpportunitySearchResultDtos(
-            Map<String, List<ProjectEsDto>> relevantAuthorsByUcoMap,
-            Map<String, Double> sortedAuthorScoresMap,
-            Map<String, Double> authorSumScoresMap,
-            Map<String, Double> authorMaxScoresMap,
-            Map<String, Double> authorAvgScoresMap) {
+                .collect(Collectors.groupingBy(ProjectEsDto::getUco, LinkedHashMap::new, Collectors.toList()));
+        List<AuthorRanking> rankings = new ArrayList<>(relevantProjectsByUcoMap.size());
+        relevantProjectsByUcoMap.forEach((uco, projects) -> {
+            DoubleSummaryStatistics scores = projects.stream()
+                    .mapToDouble(ProjectEsDto::getScore)
+                    .summaryStatistics();
+            List<ProjectEsDto> sortedProjects = projects.stream()
+                    .sorted(Comparator.comparingDouble(BaseEsDto::getScore).reversed())
+                    .toList();
+            rankings.add(new AuthorRanking(uco, scores.getSum(), scores.getMax(), scores.getAverage(),
+                    scores.getCount(), sortedProjects));
+        });
+        return rankings;
+    }
+
+    /**
+     * @return The best 'maxResults' authors by every one of the sort types, every author once
+     */
+    private static List<AuthorRanking> selectAuthors(List<AuthorRanking> rankings, int maxResults, Collection<AuthorProjectsSortType> sortTypes) {
+        Map<String, AuthorRanking> selected = new LinkedHashMap<>();
+        for (AuthorProjectsSortType sortBy : sortTypes) {
+            sortAuthors(rankings, maxResults, sortBy).forEach(ranking -> selected.putIfAbsent(ranking.uco(), ranking));
+        }
+        return new ArrayList<>(selected.values());
+    }
+
+    private static List<AuthorRanking> sortAuthors(List<AuthorRanking> rankings, int maxResults, AuthorProjectsSortType sortBy) {
+        return rankings.stream()
+                .sorted(Comparator.comparingDouble((AuthorRanking ranking) -> ranking.getScore(sortBy)).reversed())
+                .limit(maxResults)
+                .toList();
+    }
+
+    private List<OpportunitySearchResultDto> getOpportunitySearchResultDtos(List<AuthorRanking> rankings, int maxResultsCount, AuthorProjectsSortType sortBy) {
+        List<AuthorRanking> sortedRankings = sortAuthors(rankings, maxResultsCount, sortBy);
+        List<String> projIds = sortedRankings.stream()
+                .flatMap(ranking -> ranking.projects().stream())
+                .map(ProjectEsDto::getProjId)
+                .toList();
+        Map<String, Project> projectsByProjIdMap = projectRepository.findByProjIdIn(projIds).stream()
+                .collect(Collectors.toMap(Project::getProjId, Function.identity(), (first, second) -> first));
+        Set<String> ucos = sortedRankings.stream()
+                .map(AuthorRanking::uco)
+                .collect(Collectors.toSet());
+        Map<String, Author> authorsByUcoMap = authorRepository.findByUcoIn(ucos).stream()
+                .collect(Collectors.toMap(Author::getUco, Function.identity()));
 
         List<OpportunitySearchResultDto> sortedResults = new ArrayList<>();
-        sortedAuthorScoresMap.forEach((authorUco, score) -> {
-            List<ProjectEsDto> projectEsDtos = relevantAuthorsByUcoMap.get(authorUco);
-            projectEsDtos.sort(Comparator.comparingDouble(BaseEsDto::getScore).reversed());
+        for (AuthorRanking ranking : sortedRankings) {
             List<ProjectDto> projects = new LinkedList<>();
-            for (var proj : projectEsDtos) {
-                List<Project> projectsById = projectRepository.findByProjId(proj.getProjId());
-                Optional<Project> firstOptional = projectsById.stream().findFirst();
-                firstOptional.ifPresent(p -> {
-                    ProjectDto projectDto = projectMapper.toDto(p);
+            for (var proj : ranking.projects()) {
+                Project project = projectsByProjIdMap.get(proj.getProjId());
+                if (project != null) {
+                    ProjectDto projectDto = projectMapper.toDto(project);
                     projectDto.setScore(proj.getScore());
                     projects.add(projectDto);
-                });
+                }
             }
-            Optional<Author> authorOptional = authorRepository.findByUco(authorUco);
-            if (authorOptional.isEmpty()) {
-                throw new RuntimeException(String.format("Author with uco %s is not stored in the database.", authorUco));
+            Author author = authorsByUcoMap.get(ranking.uco());
+            if (author == null) {
+                throw new RuntimeException(String.format("Author with uco %s is not stored in the database.", ranking.uco()));
             }
             sortedResults.add(
                     new OpportunitySearchResultDto(
-                            authorMapper.toDto(authorOptional.get()),
+                            authorMapper.toDto(author),
                             projects,
-                            authorSumScoresMap.get(authorUco),
-                            authorAvgScoresMap.get(authorUco),
-                            authorMaxScoresMap.get(authorUco)));
-        });
+                            ranking.sum(),
+                            ranking.avg(),
+                            ranking.max()));
+        }
         return sortedResults;
     }
 
-    private static Map<String, Double> sortAuthorsByScore(Map<String, Double> authorScoresMap, int maxResults) {
-        return authorScoresMap.entrySet().stream()
-                .sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-                .limit(maxResults)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (existingValue, newValue) -> newValue,
-                        LinkedHashMap::new
-                ));
-    }
-
     private Query getFilterQuery(String filterField, String filterValue) {
         Query filterQuery = filterField != null && filterValue != null
-                ? queryBuilder.getFilterQuery(filterField, filterValue)._toQuery()
+                ? queryBuilder.getFilterQuery(filterField, filterValue)
                 : queryBuilder.getFilterQuery(SearchInfo.empty())._toQuery();
         if (filterField != null && filterValue != null && filterField.equals(TITLE_FIELD)) {
             BoolQuery.Builder boolFilterQuery = new BoolQuery.Builder();
@@ -307,22 +492,208 @@ public class ElasticSearchService implements SearchService {
         return filterQuery;
     }
 
-    private List<ProjectEsDto> searchByOpportunityForProjects(String esId) {
+    /**
+     * Ranks the authors by the author aggregation (see AuthorRankingAggregation) if enabled,
+     * by the top project hits otherwise
+     */
+    private List<AuthorRanking> searchAuthorRankings(String esId, int maxResultsCount, Collection<AuthorProjectsSortType> sortTypes) {
+        if (authorRankingAggregation.isEnabled()) {
+            SearchResponse<ProjectEsDto> response = projectSearchPerformer.getAggregationResponse(null, getOpportunityQuery(esId),
+                    getAuthorAggregations(maxResultsCount, sortTypes), MU_INDEX, ProjectEsDto.class);
+            return authorRankingAggregation.getRankings(response.aggregations());
+        }
+        Map<String, ResponseBody<ProjectEsDto>> responses = searchTemplates.isReady()
+                ? projectSearchPerformer.getMultiSearchTemplateResponse(
+                MLT_TEMPLATE_ID, getOpportunitySubQueryParams(esId), MU_INDEX, ProjectEsDto.class)
+                : projectSearchPerformer.getMultiSearchResponse(
+                null, getOpportunitySubQueries(esId), getSourceFields(BY_OPPORTUNITY), MU_INDEX, ProjectEsDto.class);
+        return selectAuthors(getAuthorRankings(projectResultProcessor.aggregateResultsByScore(getTopResultsMap(responses))),
+                maxResultsCount, sortTypes);
+    }
+
+    private CompletableFuture<List<AuthorRanking>> searchAuthorRankingsAsync(String esId, int maxResultsCount, Collection<AuthorProjectsSortType> sortTypes) {
+        if (authorRankingAggregation.isEnabled()) {
+            return projectSearchPerformer
+                    .getAggregationResponseAsync(null, getOpportunityQuery(esId), getAuthorAggregations(maxResultsCount, sortTypes), MU_INDEX, ProjectEsDto.class)
+                    .thenApply(response -> authorRankingAggregation.getRankings(response.aggregations()));
+        }
+        CompletableFuture<Map<String, ResponseBody<ProjectEsDto>>> responses = searchTemplates.isReady()
+                ? projectSearchPerformer.getMultiSearchTemplateResponseAsync(
+                MLT_TEMPLATE_ID, getOpportunitySubQueryParams(esId), MU_INDEX, ProjectEsDto.class)
+                : projectSearchPerformer.getMultiSearchResponseAsync(
+                null, getOpportunitySubQueries(esId), getSourceFields(BY_OPPORTUNITY), MU_INDEX, ProjectEsDto.class);
+        return responses.thenApply(r -> selectAuthors(getAuthorRankings(projectResultProcessor.aggregateResultsByScore(getTopResultsMap(r))),
+                maxResultsCount, sortTypes));
+    }
+
+    /**
+     * First phase of the search. The scoring queries return only the ids and scores of the hits, which are ranked
+     * without transferring and parsing the documents
+     */
+    private List<BaseEsDto> searchIds(SearchInfo filterInfo, List<ProjectDto> projects, int limit) {
+        return searchIds(filterInfo, projects, this::getProjectsSubQueries,
+                chunk -> getProjectsSubQueryParams(filterInfo, chunk), limit);
+    }
+
+    private CompletableFuture<List<BaseEsDto>> searchIdsAsync(SearchInfo filterInfo, List<ProjectDto> projects, int limit) {
+        return searchIdsAsync(filterInfo, projects, this::getProjectsSubQueries,
+                chunk -> getProjectsSubQueryParams(filterInfo, chunk), limit);
+    }
+
+    /**
+     * Searches by the profile documents of the authors if they are available, by all the authors' projects otherwise
+     */
+    private List<BaseEsDto> searchIdsByAuthors(SearchInfo info, int limit) {
+        if (authorProfiles.isReady()) {
+            checkAuthorsHaveProjects(info.ucoList());
+            return searchIds(info, info.ucoList(), this::getProfilesSubQueries,
+                    chunk -> getProfilesSubQueryParams(info, chunk), limit);
+        }
+        return searchIds(info, getProjectsByAuthors(info.ucoList()), limit);
+    }
+
+    private CompletableFuture<List<BaseEsDto>> searchIdsByAuthorsAsync(SearchInfo info, int limit) {
+        // the authors and their projects are read from the database, so it must not run on the caller's thread
+        return CompletableFuture.supplyAsync(() -> {
+            if (authorProfiles.isReady()) {
+                checkAuthorsHaveProjects(info.ucoList());
+                return searchIdsAsync(info, info.ucoList(), this::getProfilesSubQueries,
+                        chunk -> getProfilesSubQueryParams(info, chunk), limit);
+            }
+            return searchIdsAsync(info, getProjectsByAuthors(info.ucoList()), limit);
+        }, searchExecutor).thenCompose(Function.identity());
+    }
+
+    /**
+     * Large selections are split into chunks by the ScatterGatherPlanner. The sub-queries of all the chunks are sent
+     * in one multi-search executed in parallel by ElasticSearch, every chunk is ranked on its own
+     * and the chunk rankings are fused
+     */
+    private <S> List<BaseEsDto> searchIds(SearchInfo filterInfo, List<S> selection, Function<List<S>, Map<String, Query>> subQueries,
+                                          Function<List<S>, Map<String, Map<String, JsonData>>> subQueryParams, int limit) {
+        ScatterGatherPlanner.Plan<S> plan = scatterGatherPlanner.plan(selection);
+        Map<String, ResponseBody<OpportunityDto>> responses;
+        if (searchTemplates.isReady()) {
+            responses = opportunitySearchPerformer.getMultiSearchTemplateResponse(MLT_TEMPLATE_ID,
+                    getChunkSubQueries(plan, subQueryParams), getConcurrency(plan), CROWDHELIX_INDEX, OpportunityDto.class);
+        } else {
+            Query filterQuery = queryBuilder.getFilterQuery(filterInfo)._toQuery();
+            responses = opportunitySearchPerformer.getMultiSearchResponse(filterQuery,
+                    getChunkSubQueries(plan, subQueries), List.of(), getConcurrency(plan), CROWDHELIX_INDEX, OpportunityDto.class);
+        }
+        return gatherIds(plan, responses, limit);
+    }
+
+    private <S> CompletableFuture<List<BaseEsDto>> searchIdsAsync(SearchInfo filterInfo, List<S> selection, Function<List<S>, Map<String, Query>> subQueries,
+                                                                  Function<List<S>, Map<String, Map<String, JsonData>>> subQueryParams, int limit) {
+        ScatterGatherPlanner.Plan<S> plan = scatterGatherPlanner.plan(selection);
+        CompletableFuture<Map<String, ResponseBody<OpportunityDto>>> responses;
+        if (searchTemplates.isReady()) {
+            responses = opportunitySearchPerformer.getMultiSearchTemplateResponseAsync(MLT_TEMPLATE_ID,
+                    getChunkSubQueries(plan, subQueryParams), getConcurrency(plan), CROWDHELIX_INDEX, OpportunityDto.class);
+        } else {
+            Query filterQuery = queryBuilder.getFilterQuery(filterInfo)._toQuery();
+            responses = opportunitySearchPerformer.getMultiSearchResponseAsync(filterQuery,
+                    getChunkSubQueries(plan, subQueries), List.of(), getConcurrency(plan), CROWDHELIX_INDEX, OpportunityDto.class);
+        }
+        return responses.thenApply(r -> gatherIds(plan, r, limit));
+    }
+
+    /**
+     * The sub-queries of all the chunks, the names of the sub-queries of a scattered selection get the chunk number
+     */
+    private static <S, Q> Map<String, Q> getChunkSubQueries(ScatterGatherPlanner.Plan<S> plan, Function<List<S>, Map<String, Q>> subQueries) {
+        if (!plan.isScattered()) {
+            return subQueries.apply(plan.chunks().get(0));
+        }
+        Map<String, Q> chunkSubQueries = new LinkedHashMap<>();
+        for (int i = 0; i < plan.chunks().size(); i++) {
+            int chunk = i;
+            subQueries.apply(plan.chunks().get(i)).forEach((name, query) -> chunkSubQueries.put(getChunkSubQueryName(name, chunk), query));
+        }
+        return chunkSubQueries;
+    }
+
+    private List<BaseEsDto> gatherIds(ScatterGatherPlanner.Plan<?> plan, Map<String, ResponseBody<OpportunityDto>> responses, int limit) {
+        if (!plan.isScattered()) {
+            return opportunityResultProcessor.aggregateIdsByScore(getTopResultsMap(responses), DEFAULT_SOURCE_WEIGHTS, limit);
+        }
+        List<List<BaseEsDto>> rankings = new ArrayList<>();
+        for (int i = 0; i < plan.chunks().size(); i++) {
+            Map<String, List<Hit<OpportunityDto>>> chunkResultsMap = new HashMap<>();
+            for (String name : List.of(TITLE_FIELD, DESCRIPTION_FIELD)) {
+                ResponseBody<OpportunityDto> response = responses.get(getChunkSubQueryName(name, i));
+                if (response != null) {
+                    chunkResultsMap.put(name, response.hits().hits());
+                }
+            }
+            rankings.add(opportunityResultProcessor.aggregateIdsByScore(chunkResultsMap, DEFAULT_SOURCE_WEIGHTS, Integer.MAX_VALUE));
+        }
+        return opportunityResultProcessor.fuseByReciprocalRank(rankings, limit);
+    }
+
+    private static String getChunkSubQueryName(String name, int chunk) {
+        return name + "#" + chunk;
+    }
+
+    private static Integer getConcurrency(ScatterGatherPlanner.Plan<?> plan) {
+        // the default concurrency of ElasticSearch suffices for the sub-queries of a single chunk
+        return plan.isScattered() ? plan.concurrency() * SUB_QUERIES_PER_CHUNK : null;
+    }
+
+    /**
+     * Second phase of the search. Fetches the documents of the final top results only
+     */
+    private List<OpportunityDto> getOpportunityDocuments(List<BaseEsDto> topResults, String endpoint) {
+        Map<String, OpportunityDto> documents = opportunitySearchPerformer.getDocuments(
+                getEsIds(topResults), getSourceFields(endpoint), CROWDHELIX_INDEX, OpportunityDto.class);
+        return opportunityResultProcessor.withDocuments(topResults, documents);
+    }
+
+    private CompletableFuture<List<OpportunityDto>> getOpportunityDocumentsAsync(List<BaseEsDto> topResults, String endpoint) {
+        return opportunitySearchPerformer
+                .getDocumentsAsync(getEsIds(topResults), getSourceFields(endpoint), CROWDHELIX_INDEX, OpportunityDto.class)
+                .thenApply(documents -> opportunityResultProcessor.withDocuments(topResults, documents));
+    }
+
+    private static List<String> getEsIds(List<BaseEsDto> results) {
+        return results.stream()
+                .map(BaseEsDto::getEsId)
+                .toList();
+    }
+
+    private List<String> getSourceFields(String endpoint) {
+        return searchConfigProperties.getSourceFields().get(endpoint);
+    }
+
+    private Map<String, Query> getOpportunitySubQueries(String esId) {
         Query titleSearchQuery = queryBuilder.getMoreLikeThisQuery(
                 esId, CROWDHELIX_INDEX)._toQuery();
         Query docSearchQuery = queryBuilder.getMoreLikeThisQuery(
                 esId, List.of(DESCRIPTION_FIELD), CROWDHELIX_INDEX)._toQuery();
+        return getSubQueriesMap(titleSearchQuery, docSearchQuery);
+    }
+
+    /**
+     * Single query scoring the projects as the sum of the weighted 'title' and 'description' sub-queries,
+     * the same score the sub-query results are aggregated to by the SearchResultProcessor
+     */
+    private Query getOpportunityQuery(String esId) {
+        Map<String, Query> subQueries = getOpportunitySubQueries(esId);
+        return BoolQuery.of(b -> {
+            subQueries.forEach((name, query) -> b.should(s -> s
+                    .bool(w -> w
+                            .must(query)
+                            .boost(DEFAULT_SOURCE_WEIGHTS.getOrDefault(name, DEFAULT_SOURCE_WEIGHT).floatValue()))));
+            return b;
+        })._toQuery();
+    }
 
-        SearchResponse<ProjectEsDto> titleResponse = projectSearchPerformer.
-                getSearchResponse(null, titleSearchQuery, MU_INDEX, ProjectEsDto.class);
-        SearchResponse<ProjectEsDto> docResponse = projectSearchPerformer.
-                getSearchResponse(null, docSearchQuery, MU_INDEX, ProjectEsDto.class);
-        Map<String, List<Hit<ProjectEsDto>>> topResultsMap = getProjTopResultsMap(titleResponse, docResponse);
-        return projectResultProcessor.aggregateResultsByScore(topResultsMap);
+    private Map<String, Aggregation> getAuthorAggregations(int maxResultsCount, Collection<AuthorProjectsSortType> sortTypes) {
+        return authorRankingAggregation.getAggregations(maxResultsCount, sortTypes, getSourceFields(BY_OPPORTUNITY));
     }
 
-    private List<OpportunityDto> search(SearchInfo filterInfo, List<ProjectDto> projects) {
-        Query filterQuery = queryBuilder.getFilterQuery(filterInfo)._toQuery();
+    private Map<String, Query> getProjectsSubQueries(List<ProjectDto> projects) {
         Query titleSearchQuery = queryBuilder.getMoreLikeThisQuery(
                 projects.stream()
                         .map(ProjectDto::getTitle)
@@ -332,33 +703,61 @@ public class ElasticSearchService implements SearchService {
                 projects.stream()
                         .map(ProjectDto::getProcessedAnnotation)
                         .toList())._toQuery();
+        return getSubQueriesMap(titleSearchQuery, docSearchQuery);
+    }
 
-        SearchResponse<OpportunityDto> titleResponse = opportunitySearchPerformer.
-                getSearchResponse(filterQuery, titleSearchQuery, CROWDHELIX_INDEX, OpportunityDto.class);
-        SearchResponse<OpportunityDto> docResponse = opportunitySearchPerformer.
-                getSearchResponse(filterQuery, docSearchQuery, CROWDHELIX_INDEX, OpportunityDto.class);
-        Map<String, List<Hit<OpportunityDto>>> topResultsMap = getOppTopResultsMap(titleResponse, docResponse);
+    private Map<String, Map<String, JsonData>> getOpportunitySubQueryParams(String esId) {
+        List<String> sourceFields = getSourceFields(BY_OPPORTUNITY);
+        Map<String, JsonData> titleSearchParams = searchTemplates.getMoreLikeThisParams(
+                esId, CROWDHELIX_INDEX, List.of(DESCRIPTION_FIELD, TITLE_FIELD), null, MAX_DOCS_SIZE, sourceFields);
+        Map<String, JsonData> docSearchParams = searchTemplates.getMoreLikeThisParams(
+                esId, CROWDHELIX_INDEX, List.of(DESCRIPTION_FIELD), null, MAX_DOCS_SIZE, sourceFields);
+        return getSubQueriesMap(titleSearchParams, docSearchParams);
+    }
 
-        return opportunityResultProcessor.aggregateResultsByScore(topResultsMap);
+    private Map<String, Map<String, JsonData>> getProjectsSubQueryParams(SearchInfo filterInfo, List<ProjectDto> projects) {
+        Map<String, JsonData> titleSearchParams = searchTemplates.getMoreLikeThisParams(
+                projects.stream()
+                        .map(ProjectDto::getTitle)
+                        .toList(),
+                List.of(DESCRIPTION_FIELD, TITLE_FIELD), filterInfo, MAX_DOCS_SIZE, List.of());
+        Map<String, JsonData> docSearchParams = searchTemplates.getMoreLikeThisParams(
+                queryBuilder.getLikeTexts(projects.stream()
+                        .map(ProjectDto::getProcessedAnnotation)
+                        .toList()),
+                List.of(DESCRIPTION_FIELD), filterInfo, MAX_DOCS_SIZE, List.of());
+        return getSubQueriesMap(titleSearchParams, docSearchParams);
     }
 
-    private Map<String, List<Hit<OpportunityDto>>> getOppTopResultsMap(SearchResponse<OpportunityDto> titleResponse, SearchResponse<OpportunityDto> docResponse) {
-        var titleHitList = titleResponse.hits().hits();
-        var docHitList = docResponse.hits().hits();
+    /**
+     * The profile titles are matched with the opportunity titles, the profile terms with the opportunity descriptions
+     */
+    private Map<String, Query> getProfilesSubQueries(List<String> ucos) {
+        Query titleSearchQuery = queryBuilder.getMoreLikeThisQueryByIds(
+                ucos, List.of(TITLE_FIELD), AUTHOR_PROFILE_INDEX)._toQuery();
+        Query docSearchQuery = queryBuilder.getMoreLikeThisQueryByIds(
+                ucos, List.of(DESCRIPTION_FIELD), AUTHOR_PROFILE_INDEX)._toQuery();
+        return getSubQueriesMap(titleSearchQuery, docSearchQuery);
+    }
 
-        Map<String, List<Hit<OpportunityDto>>> topResultsMap = new HashMap<>();
-        topResultsMap.put(TITLE_FIELD, titleHitList);
-        topResultsMap.put(DESCRIPTION_FIELD, docHitList);
-        return topResultsMap;
+    private Map<String, Map<String, JsonData>> getProfilesSubQueryParams(SearchInfo filterInfo, List<String> ucos) {
+        Map<String, JsonData> titleSearchParams = searchTemplates.getMoreLikeThisByIdsParams(
+                ucos, AUTHOR_PROFILE_INDEX, List.of(TITLE_FIELD), filterInfo, MAX_DOCS_SIZE, List.of());
+        Map<String, JsonData> docSearchParams = searchTemplates.getMoreLikeThisByIdsParams(
+                ucos, AUTHOR_PROFILE_INDEX, List.of(DESCRIPTION_FIELD), filterInfo, MAX_DOCS_SIZE, List.of());
+        return getSubQueriesMap(titleSearchParams, docSearchParams);
     }
 
-    private Map<String, List<Hit<ProjectEsDto>>> getProjTopResultsMap(SearchResponse<ProjectEsDto> titleResponse, SearchResponse<ProjectEsDto> docResponse) {
-        var titleHitList = titleResponse.hits().hits();
-        var docHitList = docResponse.hits().hits();
+    private static <Q> Map<String, Q> getSubQueriesMap(Q titleSearchQuery, Q docSearchQuery) {
+        Map<String, Q> subQueriesMap = new LinkedHashMap<>();
+        subQueriesMap.put(TITLE_FIELD, titleSearchQuery);
+        subQueriesMap.put(DESCRIPTION_FIELD, docSearchQuery);
+        return subQueriesMap;
+    }
 
-        Map<String, List<Hit<ProjectEsDto>>> topResultsMap = new HashMap<>();
-        topResultsMap.put(TITLE_FIELD, titleHitList);
-        topResultsMap.put(DESCRIPTION_FIELD, docHitList);
+    private static <T> Map<String, List<Hit<T>>> getTopResultsMap(Map<String, ResponseBody<T>> responses) {
+        Map<String, List<Hit<T>>> topResultsMap = new HashMap<>();
+        responses.forEach((name, response) -> topResultsMap.put(name, response.hits().hits()));
         return topResultsMap;
     }
 
@@ -370,6 +769,16 @@ public class ElasticSearchService implements SearchService {
                 .build();
     }
 
+    private List<SortOptions> getCursorSortOptions(String sortField, boolean desc) {
+        List<SortOptions> sortOptions = new ArrayList<>();
+        if (sortField != null) {
+            sortOptions.add(getSortOptions(sortField, desc));
+        }
+        // tiebreaker making the sort values unique within the point-in-time
+        sortOptions.add(SortOptions.of(s -> s.field(f -> f.field(SHARD_DOC_FIELD).order(SortOrder.Asc))));
+        return sortOptions;
+    }
+
     private List<OpportunityDto> getOpportunityDtosFromHits(List<Hit<OpportunityDto>> hits) {
         List<OpportunityDto> opportunityDtos = new ArrayList<>();
         hits.forEach(h -> {
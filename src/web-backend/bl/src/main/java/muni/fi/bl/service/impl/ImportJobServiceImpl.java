@@ -0,0 +1,219 @@
+package muni.fi.bl.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.ImportJob;
+import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.ProjectSyncResult;
+import muni.fi.bl.config.ImportConfigProperties;
+import muni.fi.bl.exceptions.AppException;
+import muni.fi.bl.exceptions.NotFoundException;
+import muni.fi.bl.service.ImportJobService;
+import muni.fi.bl.service.OpportunityService;
+import muni.fi.bl.service.ProjectService;
+import muni.fi.dtos.ImportJobDto;
+import muni.fi.enums.ImportJobType;
+import muni.fi.enums.ImportPhase;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import static muni.fi.bl.config.ServiceConfiguration.IMPORT_JOB_EXECUTOR;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+
+@Slf4j
+@Service
+public class ImportJobServiceImpl implements ImportJobService {
+
+    public static final String CSV = "csv";
+
+    private final ProjectService projectService;
+    private final OpportunityService opportunityService;
+    private final Executor executor;
+    private final Path spoolDirectory;
+    private final int retainedJobs;
+    // in the order of submission
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+    // the last queued job of every index, the next job of the index starts after it
+    private final Map<String, CompletableFuture<Void>> queues = new ConcurrentHashMap<>();
+
+    public ImportJobServiceImpl(ProjectService projectService,
+                                OpportunityService opportunityService,
+                                ImportConfigProperties importProperties,
+                                @Qualifier(IMPORT_JOB_EXECUTOR) Executor executor) {
+        this.projectService = projectService;
+        this.opportunityService = opportunityService;
+        this.executor = executor;
+        this.spoolDirectory = StringUtils.isBlank(importProperties.getSpoolDirectory())
+                ? Path.of(System.getProperty("java.io.tmpdir"), "imports")
+                : Path.of(importProperties.getSpoolDirectory());
+        this.retainedJobs = importProperties.getRetainedJobs();
+    }
+
+    @Override
+    public ImportJobDto submit(ImportJobType type, String fileName, InputStream data, boolean deleteMissing) {
+        return submitJob(type, fileName, data, deleteMissing).toDto();
+    }
+
+    @Override
+    public CompletableFuture<String> submitAsync(ImportJobType type, String fileName, InputStream data, boolean deleteMissing) {
+        // a copy, the job's own result is completed by the job only
+        return submitJob(type, fileName, data, deleteMissing).getResult().copy();
+    }
+
+    @Override
+    public ImportJobDto get(String id) {
+        ImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(id);
+        }
+        if (job == null) {
+            String message = String.format("Import job with id %s not found", id);
+            log.info(message);
+            throw new NotFoundException(message);
+        }
+        return job.toDto();
+    }
+
+    @Override
+    public List<ImportJobDto> getAll() {
+        List<ImportJob> all;
+        synchronized (jobs) {
+            all = new ArrayList<>(jobs.values());
+        }
+        Collections.reverse(all);
+        return all.stream().map(ImportJob::toDto).toList();
+    }
+
+    private ImportJob submitJob(ImportJobType type, String fileName, InputStream data, boolean deleteMissing) {
+        if (isProjectImport(type) && !CSV.equals(FilenameUtils.getExtension(fileName))) {
+            String message = "Invalid file extension, please use csv";
+            log.warn(message);
+            throw new AppException(message);
+        }
+        Path spoolFile = spool(data);
+        ImportJob job = new ImportJob(type, fileName);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        log.info("Import job {} queued ({} from file {})", job.getId(), type, fileName);
+        queues.compute(getIndex(type), (index, last) -> {
+            CompletableFuture<Void> previous = last == null
+                    ? CompletableFuture.completedFuture(null)
+                    : last.exceptionally(e -> null);
+            return previous.thenRunAsync(() -> run(job, spoolFile, deleteMissing), executor);
+        });
+        return job;
+    }
+
+    private void run(ImportJob job, Path spoolFile, boolean deleteMissing) {
+        job.start();
+        log.info("Import job {} started", job.getId());
+        try {
+            String message = runImport(job, spoolFile, deleteMissing);
+            job.finish(message);
+            log.info("Import job {} finished: {}", job.getId(), message);
+        } catch (RuntimeException e) {
+            log.error("Import job {} failed", job.getId(), e);
+            job.fail(e);
+        } finally {
+            deleteSpoolFile(spoolFile);
+            dropFinishedJobs();
+        }
+    }
+
+    private String runImport(ImportJob job, Path spoolFile, boolean deleteMissing) {
+        String fileName = job.getFileName();
+        return switch (job.getType()) {
+            case PROJECTS_APPEND -> getLoadMessage(projectService.loadProjectsFromCsv(spoolFile, fileName, job));
+            case PROJECTS_REPLACE -> getLoadMessage(projectService.replaceProjectsFromCsv(spoolFile, fileName, job));
+            case PROJECTS_SYNC -> getSyncMessage(projectService.syncProjectsFromCsv(spoolFile, fileName, deleteMissing, job));
+            case OPPORTUNITIES_APPEND -> loadOpportunities(job, spoolFile, false);
+            case OPPORTUNITIES_REPLACE -> loadOpportunities(job, spoolFile, true);
+        };
+    }
+
+    private String loadOpportunities(ImportJob job, Path spoolFile, boolean replace) {
+        // parsed by the data loader
+        job.setPhase(ImportPhase.INDEXING);
+        if (replace) {
+            opportunityService.deleteAll();
+        }
+        return opportunityService.load(job.getFileName(), spoolFile);
+    }
+
+    private Path spool(InputStream data) {
+        Path spoolFile = null;
+        try (data) {
+            Files.createDirectories(spoolDirectory);
+            spoolFile = Files.createTempFile(spoolDirectory, "import-", ".tmp");
+            Files.copy(data, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            return spoolFile;
+        } catch (IOException e) {
+            if (spoolFile != null) {
+                deleteSpoolFile(spoolFile);
+            }
+            String message = "Failed to spool the import file";
+            log.error(message, e);
+            throw new AppException(message, e);
+        }
+    }
+
+    private void deleteSpoolFile(Path spoolFile) {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            log.warn("Failed to delete the spooled import file {}", spoolFile, e);
+        }
+    }
+
+    private void dropFinishedJobs() {
+        synchronized (jobs) {
+            int excess = jobs.size() - retainedJobs;
+            Iterator<ImportJob> iterator = jobs.values().iterator();
+            while (excess > 0 && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                    excess--;
+                }
+            }
+        }
+    }
+
+    private static boolean isProjectImport(ImportJobType type) {
+        return switch (type) {
+            case PROJECTS_APPEND, PROJECTS_REPLACE, PROJECTS_SYNC -> true;
+            case OPPORTUNITIES_APPEND, OPPORTUNITIES_REPLACE -> false;
+        };
+    }
+
+    private static String getIndex(ImportJobType type) {
+        return isProjectImport(type) ? MU_INDEX : CROWDHELIX_INDEX;
+    }
+
+    private static String getLoadMessage(ProjectLoadResult result) {
+        return String.format("Successfully loaded %d/%d project records (%d failed)",
+                result.successful(), result.total(), result.failed());
+    }
+
+    private static String getSyncMessage(ProjectSyncResult result) {
+        return String.format("Successfully synchronized %d/%d project records (%d failed), %d new or changed, %d deleted",
+                result.successful(), result.total(), result.failed(), result.changed(), result.deleted());
+    }
+}
@@ -8,15 +8,22 @@ import co.elastic.clients.elasticsearch.core.DeleteResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
 import lombok.extern.slf4j.Slf4j;
 import muni.fi.bl.component.ElasticLoaderAccessor;
+import muni.fi.bl.component.IndexAnalysisManager;
+import muni.fi.bl.component.OpportunityMatches;
+import muni.fi.bl.component.RelatedOpportunities;
+import muni.fi.bl.component.SearchResultCache;
 import muni.fi.bl.config.ApiConfigProperties;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.exceptions.NotFoundException;
+import muni.fi.bl.service.AggregationService;
 import muni.fi.bl.service.OpportunityService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
@@ -31,16 +38,31 @@ public class OpportunityServiceImpl implements OpportunityService {
     private final ElasticsearchClient elasticsearchClient;
     private final RestTemplate restTemplate;
     private final ElasticLoaderAccessor elasticLoaderAccessor;
+    private final SearchResultCache searchResultCache;
+    private final AggregationService aggregationService;
+    private final IndexAnalysisManager indexAnalysisManager;
+    private final OpportunityMatches opportunityMatches;
+    private final RelatedOpportunities relatedOpportunities;
 
     private final String exampleCsvUrl;
 
     public OpportunityServiceImpl(ElasticsearchClient elasticsearchClient,
                                   RestTemplate restTemplate,
                                   ElasticLoaderAccessor elasticLoaderAccessor,
-                                  ApiConfigProperties apiConfigProperties) {
+                                  ApiConfigProperties apiConfigProperties,
+                                  SearchResultCache searchResultCache,
+                                  AggregationService aggregationService,
+                                  IndexAnalysisManager indexAnalysisManager,
+                                  OpportunityMatches opportunityMatches,
+                                  RelatedOpportunities relatedOpportunities) {
         this.elasticsearchClient = elasticsearchClient;
         this.restTemplate = restTemplate;
         this.elasticLoaderAccessor = elasticLoaderAccessor;
+        this.searchResultCache = searchResultCache;
+        this.aggregationService = aggregationService;
+        this.indexAnalysisManager = indexAnalysisManager;
+        this.opportunityMatches = opportunityMatches;
+        this.relatedOpportunities = relatedOpportunities;
 
         exampleCsvUrl = String.format("%s:%s%s",
                 apiConfigProperties.getDataLoaderUrl(), apiConfigProperties.getDataLoaderPort(), EXAMPLE_CSV_URL);
@@ -62,6 +84,12 @@ public class OpportunityServiceImpl implements OpportunityService {
         } catch (IOException e) {
             log.error(ELASTIC_CONNECTION_ERROR, e);
             throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        } finally {
+            opportunityMatches.delete(id);
+            relatedOpportunities.delete(List.of(id));
+            // the opportunities referencing the deleted one are computed again
+            relatedOpportunities.requestRefresh();
+            invalidateCaches();
         }
     }
 
@@ -76,12 +104,27 @@ public class OpportunityServiceImpl implements OpportunityService {
         } catch (IOException e) {
             log.error(ELASTIC_CONNECTION_ERROR, e);
             throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        } finally {
+            opportunityMatches.deleteAll();
+            relatedOpportunities.deleteAll();
+            invalidateCaches();
         }
     }
 
     @Override
-    public String load(String fileName, byte[] data) {
-        return elasticLoaderAccessor.sendDataToElasticLoader(fileName, data, UPLOAD_URL);
+    public String load(String fileName, Path data) {
+        try {
+            indexAnalysisManager.ensureIndex(CROWDHELIX_INDEX);
+            String response = elasticLoaderAccessor.sendDataToElasticLoader(fileName, data, UPLOAD_URL);
+            indexAnalysisManager.ensureAnalyzer(CROWDHELIX_INDEX);
+            relatedOpportunities.requestRefresh();
+            return response;
+        } finally {
+            // the reloaded opportunities keep their ids but may have changed,
+            // all the opportunities are searched live until matched again
+            opportunityMatches.invalidateAll();
+            invalidateCaches();
+        }
     }
 
     @Override
@@ -97,4 +140,9 @@ public class OpportunityServiceImpl implements OpportunityService {
         }
         return responseEntity.getBody();
     }
+
+    private void invalidateCaches() {
+        searchResultCache.invalidateAll();
+        aggregationService.invalidateUniqueAgg();
+    }
 }
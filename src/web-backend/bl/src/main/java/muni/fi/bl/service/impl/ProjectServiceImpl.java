@@ -5,11 +5,20 @@ import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
 import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
+import muni.fi.bl.ImportProgress;
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.ProjectSyncResult;
+import muni.fi.bl.component.AuthorProfiles;
 import muni.fi.bl.component.ElasticLoaderAccessor;
+import muni.fi.bl.component.IndexAnalysisManager;
+import muni.fi.bl.component.OpportunityMatches;
 import muni.fi.bl.component.ProjectParser;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.SearchResultCache;
+import muni.fi.bl.component.TermStatistics;
+import muni.fi.bl.config.ImportConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.exceptions.NotFoundException;
@@ -21,9 +30,11 @@ import muni.fi.dal.entity.Project;
 import muni.fi.dal.repository.AuthorRepository;
 import muni.fi.dal.repository.DepartmentRepository;
 import muni.fi.dal.repository.ProjectRepository;
+import muni.fi.dal.repository.ProjectRepository.ProjectState;
 import muni.fi.dal.specification.ProjectSpecifications;
 import muni.fi.dtos.ProjectDto;
 import muni.fi.dtos.ProjectUpdateDto;
+import muni.fi.enums.ImportPhase;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -34,12 +45,25 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
 import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
@@ -50,6 +74,7 @@ public class ProjectServiceImpl implements ProjectService {
 
     public static final String UPLOAD_ENDPOINT = "/loadMuProjects";
     public static final String PROJ_ID_FIELD = "projId";
+    private static final int ELASTIC_DELETE_BATCH_SIZE = 1000;
 
     private final ProjectRepository projectRepository;
     private final AuthorRepository authorRepository;
@@ -59,6 +84,13 @@ public class ProjectServiceImpl implements ProjectService {
     private final ElasticLoaderAccessor elasticLoaderAccessor;
     private final ElasticsearchClient elasticsearchClient;
     private final QueryBuilder queryBuilder;
+    private final SearchResultCache searchResultCache;
+    private final TermStatistics termStatistics;
+    private final IndexAnalysisManager indexAnalysisManager;
+    private final AuthorProfiles authorProfiles;
+    private final OpportunityMatches opportunityMatches;
+    private final EntityManager entityManager;
+    private final ImportConfigProperties importProperties;
 
     @Autowired
     public ProjectServiceImpl(ProjectRepository projectRepository,
@@ -68,7 +100,14 @@ public class ProjectServiceImpl implements ProjectService {
                               ProjectParser csvParser,
                               ElasticLoaderAccessor elasticLoaderAccessor,
                               ElasticsearchClient elasticsearchClient,
-                              QueryBuilder queryBuilder) {
+                              QueryBuilder queryBuilder,
+                              SearchResultCache searchResultCache,
+                              TermStatistics termStatistics,
+                              IndexAnalysisManager indexAnalysisManager,
+                              AuthorProfiles authorProfiles,
+                              OpportunityMatches opportunityMatches,
+                              EntityManager entityManager,
+                              ImportConfigProperties importProperties) {
         this.projectRepository = projectRepository;
         this.authorRepository = authorRepository;
         this.departmentRepository = departmentRepository;
@@ -77,14 +116,47 @@ public class ProjectServiceImpl implements ProjectService {
         this.elasticLoaderAccessor = elasticLoaderAccessor;
         this.elasticsearchClient = elasticsearchClient;
         this.queryBuilder = queryBuilder;
+        this.searchResultCache = searchResultCache;
+        this.termStatistics = termStatistics;
+        this.indexAnalysisManager = indexAnalysisManager;
+        this.authorProfiles = authorProfiles;
+        this.opportunityMatches = opportunityMatches;
+        this.entityManager = entityManager;
+        this.importProperties = importProperties;
     }
 
     @Override
     @Transactional
-    public ProjectLoadResult loadProjectsFromCsv(InputStream stream, String originalFilename) {
+    public ProjectLoadResult loadProjectsFromCsv(Path csvFile, String originalFilename, ImportProgress progress) {
         log.info("Loading projects from csv");
 
-        return loadProjects(csvParser, stream, originalFilename);
+        try {
+            return loadProjects(csvParser, csvFile, originalFilename, progress);
+        } finally {
+            searchResultCache.invalidateAll();
+            opportunityMatches.invalidateAll();
+        }
+    }
+
+    @Override
+    @Transactional
+    public ProjectLoadResult replaceProjectsFromCsv(Path csvFile, String originalFilename, ImportProgress progress) {
+        deleteAll();
+        return loadProjectsFromCsv(csvFile, originalFilename, progress);
+    }
+
+    @Override
+    @Transactional
+    public ProjectSyncResult syncProjectsFromCsv(Path csvFile, String originalFilename, boolean deleteMissing,
+                                                 ImportProgress progress) {
+        log.info("Synchronizing projects from csv");
+
+        try {
+            return syncProjects(csvParser, csvFile, originalFilename, deleteMissing, progress);
+        } finally {
+            searchResultCache.invalidateAll();
+            opportunityMatches.invalidateAll();
+        }
     }
 
     @Override
@@ -132,12 +204,35 @@ public class ProjectServiceImpl implements ProjectService {
         return projectMapper.toDto(project.get());
     }
 
+    @Override
+    public List<ProjectDto> getByIds(List<Long> ids) {
+        Map<Long, Project> projectsById = projectRepository.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Project::getId, Function.identity()));
+        List<ProjectDto> projects = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Project project = projectsById.get(id);
+            if (project == null) {
+                String message = String.format("Project with id %d not found", id);
+                log.info(message);
+                throw new NotFoundException(message);
+            }
+            projects.add(projectMapper.toDto(project));
+        }
+        return projects;
+    }
+
     @Override
     public List<ProjectDto> getByAuthorUco(String uco) {
         var projects = projectRepository.findByAuthorUco(uco);
         return projectMapper.toDtos(projects);
     }
 
+    @Override
+    public List<ProjectDto> getByAuthorUcos(List<String> ucos) {
+        var projects = projectRepository.findByAuthorUcoIn(ucos);
+        return projectMapper.toDtos(projects);
+    }
+
     @Override
     @Transactional
     public void deleteAll() {
@@ -150,9 +245,12 @@ public class ProjectServiceImpl implements ProjectService {
                 .ignoreUnavailable(true));
         try {
             elasticsearchClient.indices().delete(deleteRequest);
+            authorProfiles.deleteAll();
         } catch (IOException e) {
             log.error(ELASTIC_CONNECTION_ERROR, e);
             throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+        } finally {
+            invalidateCaches();
         }
     }
 
@@ -166,7 +264,12 @@ public class ProjectServiceImpl implements ProjectService {
         }
         String projId = project.get().getProjId();
         projectRepository.deleteById(id);
-        deleteProjectByIdInElastic(projId);
+        try {
+            deleteProjectByIdInElastic(projId);
+            authorProfiles.updateProfiles(getAuthorUcos(Stream.of(project.get())));
+        } finally {
+            invalidateCaches();
+        }
     }
 
     @Override
@@ -185,7 +288,13 @@ public class ProjectServiceImpl implements ProjectService {
         projDto.setMuniRole(updateDto.getMuniRole());
         projDto.setDepartment(updateDto.getDepartment());
         projDto.setAnnotation(updateDto.getAnnotation());
-        projectRepository.save(projectMapper.toEntity(projDto));
+        Project updated = projectRepository.save(projectMapper.toEntity(projDto));
+        try {
+            // the project may have been moved to another author
+            authorProfiles.updateProfiles(getAuthorUcos(Stream.of(project.get(), updated)));
+        } finally {
+            invalidateCaches();
+        }
     }
 
     @Override
@@ -193,37 +302,159 @@ public class ProjectServiceImpl implements ProjectService {
         return csvParser.getSample();
     }
 
-    private ProjectLoadResult loadProjects(ProjectParser parser, InputStream stream, String originalFilename) {
-        ByteArrayOutputStream copyStream = new ByteArrayOutputStream();
+    private ProjectLoadResult loadProjects(ProjectParser parser, Path csvFile, String originalFilename,
+                                           ImportProgress progress) {
+        Set<String> authorUcos = new HashSet<>();
+        Consumer<List<Project>> projectSaver = getProjectSaver();
+        progress.setPhase(ImportPhase.LOADING);
+        ProjectLoadResult result = parseProjects(parser, csvFile, projects -> {
+            authorUcos.addAll(getAuthorUcos(projects.stream()));
+            projectSaver.accept(projects);
+            progress.addProcessed(projects.size());
+        });
+        progress.addFailed(result.failed());
+        progress.setPhase(ImportPhase.INDEXING);
+        termStatistics.rebuild();
+        indexAnalysisManager.ensureIndex(MU_INDEX);
+        elasticLoaderAccessor.sendDataToElasticLoader(originalFilename, csvFile, UPLOAD_ENDPOINT);
+        indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+        authorProfiles.updateProfiles(authorUcos);
+        return result;
+    }
+
+    private ProjectSyncResult syncProjects(ProjectParser parser, Path csvFile, String originalFilename,
+                                           boolean deleteMissing, ImportProgress progress) {
+        Map<String, List<ProjectState>> storedStates = projectRepository.findAllStates().stream()
+                .filter(state -> state.getProjId() != null)
+                .collect(Collectors.groupingBy(ProjectState::getProjId, LinkedHashMap::new, Collectors.toList()));
+        Set<String> parsedProjIds = new HashSet<>();
+        Set<String> changedProjIds = new LinkedHashSet<>();
+        Set<String> authorUcos = new HashSet<>();
+        Consumer<List<Project>> projectSaver = getProjectSaver();
+        progress.setPhase(ImportPhase.LOADING);
+        ProjectLoadResult result = parseProjects(parser, csvFile, projects -> {
+            List<Project> changed = new ArrayList<>();
+            List<Long> duplicateIds = new ArrayList<>();
+            for (Project project : projects) {
+                if (!parsedProjIds.add(project.getProjId())) {
+                    log.warn("Project {} is in the file more than once, only the first record is synchronized", project.getProjId());
+                    continue;
+                }
+                List<ProjectState> stored = storedStates.getOrDefault(project.getProjId(), List.of());
+                if (stored.size() == 1 && Objects.equals(stored.get(0).getContentHash(), project.getContentHash())) {
+                    continue;
+                }
+                if (!stored.isEmpty()) {
+                    // updated in place, the duplicates of the appending loads are removed
+                    project.setId(stored.get(0).getId());
+                    stored.stream().skip(1).map(ProjectState::getId).forEach(duplicateIds::add);
+                    stored.forEach(state -> authorUcos.add(state.getAuthorUco()));
+                }
+                changed.add(project);
+                changedProjIds.add(project.getProjId());
+                authorUcos.addAll(getAuthorUcos(Stream.of(project)));
+            }
+            if (!duplicateIds.isEmpty()) {
+                projectRepository.deleteAllByIdInBatch(duplicateIds);
+            }
+            if (!changed.isEmpty()) {
+                projectSaver.accept(changed);
+            }
+            progress.addProcessed(projects.size());
+        });
+        progress.addFailed(result.failed());
+
+        List<String> deletedProjIds = List.of();
+        if (deleteMissing && result.failed() > 0) {
+            log.warn("{} project records failed to parse, the projects missing in the file are not deleted", result.failed());
+        } else if (deleteMissing) {
+            deletedProjIds = storedStates.keySet().stream()
+                    .filter(projId -> !parsedProjIds.contains(projId))
+                    .toList();
+            List<Long> deletedIds = new ArrayList<>();
+            for (String projId : deletedProjIds) {
+                for (ProjectState state : storedStates.get(projId)) {
+                    deletedIds.add(state.getId());
+                    authorUcos.add(state.getAuthorUco());
+                }
+            }
+            if (!deletedIds.isEmpty()) {
+                projectRepository.deleteAllByIdInBatch(deletedIds);
+            }
+        }
+
+        if (!changedProjIds.isEmpty() || !deletedProjIds.isEmpty()) {
+            progress.setPhase(ImportPhase.INDEXING);
+            termStatistics.rebuild();
+            indexAnalysisManager.ensureIndex(MU_INDEX);
+            List<String> outdatedProjIds = new ArrayList<>(changedProjIds);
+            outdatedProjIds.addAll(deletedProjIds);
+            deleteProjectsInElastic(outdatedProjIds);
+            if (!changedProjIds.isEmpty()) {
+                indexSelectedProjects(parser, csvFile, originalFilename, changedProjIds);
+            }
+            indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+            authorUcos.remove(null);
+            authorProfiles.updateProfiles(authorUcos);
+        }
+        log.info("Projects synchronized, {} of {} parsed projects new or changed, {} deleted",
+                changedProjIds.size(), result.successful(), deletedProjIds.size());
+        return new ProjectSyncResult(result.total(), result.successful(), result.failed(),
+                changedProjIds.size(), deletedProjIds.size());
+    }
+
+    private static ProjectLoadResult parseProjects(ProjectParser parser, Path csvFile, Consumer<List<Project>> chunkConsumer) {
+        try (InputStream stream = Files.newInputStream(csvFile)) {
+            return parser.parseProjects(stream, chunkConsumer);
+        } catch (IOException e) {
+            log.info("Failed to read CSV data", e);
+            throw new AppException("Failed to read CSV data", e);
+        }
+    }
+
+    /**
+     * Sends only the records of the selected projects to the data loader. The records are written
+     * to a temporary file next to the CSV file, so they aren't held in memory either
+     */
+    private void indexSelectedProjects(ProjectParser parser, Path csvFile, String originalFilename, Set<String> projIds) {
+        Path selectedFile = null;
         try {
-            stream.transferTo(copyStream);
-            stream.close();
+            selectedFile = Files.createTempFile(csvFile.toAbsolutePath().getParent(), "selected-", ".tmp");
+            try (InputStream stream = Files.newInputStream(csvFile);
+                 OutputStream output = Files.newOutputStream(selectedFile)) {
+                parser.selectProjects(stream, projIds, output);
+            }
+            elasticLoaderAccessor.sendDataToElasticLoader(originalFilename, selectedFile, UPLOAD_ENDPOINT);
         } catch (IOException e) {
             log.info("Failed to read CSV data", e);
             throw new AppException("Failed to read CSV data", e);
+        } finally {
+            deleteTempFile(selectedFile);
         }
-        InputStream projectsStreamCopy = new ByteArrayInputStream(copyStream.toByteArray());
-        ProjectLoadResult result = parser.parseProjects(projectsStreamCopy);
-        for (Project project : result.projects()) {
-            setProjectDetails(project);
-            projectRepository.save(project);
+    }
+
+    private static void deleteTempFile(Path file) {
+        if (file == null) {
+            return;
         }
-        elasticLoaderAccessor.sendDataToElasticLoader(originalFilename, copyStream.toByteArray(), UPLOAD_ENDPOINT);
         try {
-            copyStream.close();
+            Files.deleteIfExists(file);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to close input stream", e);
+            log.warn("Failed to delete the temporary file {}", file, e);
         }
-        return result;
     }
 
-    private void setProjectDetails(Project project) {
-        Optional<Author> author = authorRepository.findByUco(project.getAuthor().getUco());
-        Optional<Department> department = departmentRepository.findByOrgUnitAndDepartmentName(
-                project.getDepartment().getOrgUnit(), project.getDepartment().getDepartmentName());
+    private Consumer<List<Project>> getProjectSaver() {
+        return importProperties.isBulkLoad()
+                ? projectRepository::upsertAll
+                : new ProjectSaver();
+    }
 
-        author.ifPresent(project::setAuthor);
-        department.ifPresent(project::setDepartment);
+    private void invalidateCaches() {
+        searchResultCache.invalidateAll();
+        termStatistics.invalidate();
+        // the scores of all the matches change with the projects
+        opportunityMatches.invalidateAll();
     }
 
     private void deleteProjectByIdInElastic(String projId) {
@@ -249,4 +480,83 @@ public class ProjectServiceImpl implements ProjectService {
             throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
         }
     }
+
+    private void deleteProjectsInElastic(List<String> projIds) {
+        for (int from = 0; from < projIds.size(); from += ELASTIC_DELETE_BATCH_SIZE) {
+            List<String> batch = projIds.subList(from, Math.min(from + ELASTIC_DELETE_BATCH_SIZE, projIds.size()));
+            Query termsQuery = queryBuilder.buildTermsQueryForField(PROJ_ID_FIELD, batch)
+                    ._toQuery();
+            DeleteByQueryRequest deleteByQueryRequest = DeleteByQueryRequest.of(q ->
+                    q.index(MU_INDEX)
+                            .query(termsQuery)
+            );
+            try {
+                elasticsearchClient.deleteByQuery(deleteByQueryRequest);
+            } catch (IOException e) {
+                log.error(ELASTIC_CONNECTION_ERROR, e);
+                throw new ConnectionException(ELASTIC_CONNECTION_ERROR, e);
+            }
+        }
+    }
+
+    private static Set<String> getAuthorUcos(Stream<Project> projects) {
+        return projects
+                .filter(p -> p != null && p.getAuthor() != null)
+                .map(p -> p.getAuthor().getUco())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Saves the projects chunk by chunk. The authors and departments are resolved by their ids loaded once per import,
+     * the ones created by a chunk are reused by the following chunks
+     */
+    private class ProjectSaver implements Consumer<List<Project>> {
+
+        private final Map<String, Long> authorIds;
+        private final Map<DepartmentKey, Long> departmentIds;
+
+        ProjectSaver() {
+            authorIds = authorRepository.findAll().stream()
+                    .collect(Collectors.toMap(Author::getUco, Author::getId, (first, second) -> first));
+            departmentIds = departmentRepository.findAll().stream()
+                    .collect(Collectors.toMap(DepartmentKey::of, Department::getId, Math::min));
+        }
+
+        @Override
+        public void accept(List<Project> projects) {
+            Map<String, Author> newAuthors = new HashMap<>();
+            Map<DepartmentKey, Department> newDepartments = new HashMap<>();
+            for (Project project : projects) {
+                Author author = project.getAuthor();
+                Long authorId = authorIds.get(author.getUco());
+                project.setAuthor(authorId != null
+                        ? authorRepository.getReferenceById(authorId)
+                        : newAuthors.computeIfAbsent(author.getUco(), uco -> author));
+
+                Department department = project.getDepartment();
+                DepartmentKey departmentKey = DepartmentKey.of(department);
+                Long departmentId = departmentIds.get(departmentKey);
+                project.setDepartment(departmentId != null
+                        ? departmentRepository.getReferenceById(departmentId)
+                        : newDepartments.computeIfAbsent(departmentKey, key -> department));
+            }
+            // saved first, the projects with an id are merged, which doesn't cascade
+            authorRepository.saveAll(newAuthors.values());
+            departmentRepository.saveAll(newDepartments.values());
+            projectRepository.saveAll(projects);
+            projectRepository.flush();
+            newAuthors.forEach((uco, author) -> authorIds.put(uco, author.getId()));
+            newDepartments.forEach((key, department) -> departmentIds.put(key, department.getId()));
+            // the saved projects are not needed anymore, keeps the persistence context from growing with the file
+            entityManager.clear();
+        }
+    }
+
+    private record DepartmentKey(String orgUnit, String departmentName) {
+
+        static DepartmentKey of(Department department) {
+            return new DepartmentKey(department.getOrgUnit(), department.getDepartmentName());
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package muni.fi.bl.service.impl;
+
+import muni.fi.bl.component.OpportunityMatchesJob;
+import muni.fi.bl.component.SearchResultCache;
+import muni.fi.bl.service.SearchStatsService;
+import muni.fi.dtos.OpportunityMatchStatsDto;
+import muni.fi.dtos.SearchCacheStatsDto;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SearchStatsServiceImpl implements SearchStatsService {
+
+    private final SearchResultCache searchResultCache;
+    private final OpportunityMatchesJob opportunityMatchesJob;
+
+    public SearchStatsServiceImpl(SearchResultCache searchResultCache,
+                                  OpportunityMatchesJob opportunityMatchesJob) {
+        this.searchResultCache = searchResultCache;
+        this.opportunityMatchesJob = opportunityMatchesJob;
+    }
+
+    @Override
+    public SearchCacheStatsDto getCacheStats() {
+        return searchResultCache.getStats();
+    }
+
+    @Override
+    public OpportunityMatchStatsDto getOpportunityMatchStats() {
+        return opportunityMatchesJob.getStats();
+    }
+}
@@ -0,0 +1,282 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.dal.entity.Author;
+import muni.fi.dal.entity.Project;
+import muni.fi.dal.repository.ProjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static muni.fi.bl.component.AuthorProfiles.UCO_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class AuthorProfilesTest {
+
+    @Mock
+    private ElasticsearchClient elasticsearchClientMock;
+    @Mock
+    private ElasticsearchIndicesClient indicesClientMock;
+    @Mock
+    private ProjectRepository projectRepositoryMock;
+    @Mock
+    private TermStatistics termStatisticsMock;
+    @Mock
+    private IndexAnalysisManager indexAnalysisManagerMock;
+
+    @Captor
+    private ArgumentCaptor<BulkRequest> bulkCaptor;
+
+    // tested class
+    private AuthorProfiles authorProfiles;
+
+    // shared testing properties
+    private Project project1;
+    private Project project2;
+    private Project project3;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        openMocks(this);
+
+        authorProfiles = new AuthorProfiles(elasticsearchClientMock, projectRepositoryMock, termStatisticsMock,
+                indexAnalysisManagerMock, new SearchConfigProperties());
+
+        Author author1 = new Author("John Doe", "123456", "student");
+        Author author2 = new Author("Jenna Doe", "654321", "employee");
+        project1 = getProject(author1, "Title", "first annotation");
+        project2 = getProject(author1, "Title", "second annotation");
+        project3 = getProject(author2, "Other title", "third annotation");
+
+        when(elasticsearchClientMock.indices()).thenReturn(indicesClientMock);
+        when(elasticsearchClientMock.bulk(any(BulkRequest.class))).thenReturn(BulkResponse.of(r -> r
+                .errors(false)
+                .took(1)
+                .items(List.of())));
+        when(termStatisticsMock.getTopTermsDocument(anyList(), anyInt())).thenReturn("top terms");
+    }
+
+    @Test
+    void rebuildAll() throws IOException {
+        // prepare
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(List.of("123456", "654321"));
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project1, project2, project3));
+
+        // tested method
+        authorProfiles.rebuildAll();
+
+        // verify
+        verify(indexAnalysisManagerMock).ensureIndex(AUTHOR_PROFILE_INDEX);
+        verify(elasticsearchClientMock).bulk(bulkCaptor.capture());
+        List<BulkOperation> operations = bulkCaptor.getValue().operations();
+        assertThat(operations.size(), equalTo(2));
+        BulkOperation profile = operations.stream()
+                .filter(o -> o.index().id().equals("123456"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(profile.index().index(), equalTo(AUTHOR_PROFILE_INDEX));
+        assertThat(profile.index().document(), equalTo(Map.of(
+                UCO_FIELD, "123456",
+                TITLE_FIELD, "Title",
+                DESCRIPTION_FIELD, "top terms")));
+        verify(termStatisticsMock).getTopTermsDocument(List.of("first annotation", "second annotation"),
+                new SearchConfigProperties().getLikeTermsBudget());
+        assertThat(authorProfiles.isReady(), is(true));
+    }
+
+    @Test
+    void rebuildAllBatches() throws IOException {
+        // prepare
+        List<String> ucos = IntStream.range(0, AuthorProfiles.BULK_SIZE + 1)
+                .mapToObj(String::valueOf)
+                .toList();
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(ucos);
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project1, project2, project3));
+
+        // tested method
+        authorProfiles.rebuildAll();
+
+        // verify
+        // only the projects of one batch of authors are loaded at once
+        verify(projectRepositoryMock).findByAuthorUcoIn(ucos.subList(0, AuthorProfiles.BULK_SIZE));
+        verify(projectRepositoryMock).findByAuthorUcoIn(List.of(String.valueOf(AuthorProfiles.BULK_SIZE)));
+        verify(elasticsearchClientMock, times(2)).bulk(any(BulkRequest.class));
+        assertThat(authorProfiles.isReady(), is(true));
+    }
+
+    @Test
+    void rebuildAllBulkErrors() throws IOException {
+        // prepare
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(List.of("123456", "654321"));
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project1, project2, project3));
+        when(elasticsearchClientMock.bulk(any(BulkRequest.class))).thenReturn(getFailedBulkResponse());
+
+        // tested method
+        authorProfiles.rebuildAll();
+
+        // verify
+        // the searches don't use the incomplete profiles
+        assertThat(authorProfiles.isReady(), is(false));
+    }
+
+    @Test
+    void updateProfiles() throws IOException {
+        // prepare
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(List.of());
+        authorProfiles.rebuildAll();
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project3));
+
+        // tested method
+        authorProfiles.updateProfiles(List.of("654321", "123456"));
+
+        // verify
+        verify(elasticsearchClientMock).bulk(bulkCaptor.capture());
+        List<BulkOperation> operations = bulkCaptor.getValue().operations();
+        assertThat(operations.size(), equalTo(2));
+        assertThat(operations.get(0).index().id(), equalTo("654321"));
+        // the author doesn't have any projects anymore
+        assertThat(operations.get(1).delete().id(), equalTo("123456"));
+        verify(projectRepositoryMock).findByAuthorUcoIn(List.of("654321", "123456"));
+        assertThat(authorProfiles.isReady(), is(true));
+    }
+
+    @Test
+    void updateProfilesBulkErrors() throws IOException {
+        // prepare
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(List.of());
+        authorProfiles.rebuildAll();
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project3));
+        when(elasticsearchClientMock.bulk(any(BulkRequest.class))).thenReturn(getFailedBulkResponse());
+
+        // tested method
+        authorProfiles.updateProfiles(List.of("654321"));
+
+        // verify
+        // the profiles are rebuilt by the next update
+        assertThat(authorProfiles.isReady(), is(false));
+    }
+
+    @Test
+    void updateProfilesMissingIndex() {
+        // prepare
+        when(projectRepositoryMock.findAllAuthorUcos()).thenReturn(List.of("123456", "654321"));
+        when(projectRepositoryMock.findByAuthorUcoIn(any())).thenReturn(List.of(project1, project3));
+        authorProfiles.rebuildAll();
+        when(indexAnalysisManagerMock.ensureIndex(AUTHOR_PROFILE_INDEX)).thenReturn(true);
+
+        // tested method
+        authorProfiles.updateProfiles(List.of("123456"));
+
+        // verify
+        // the profiles of the other authors are rebuilt as well
+        verify(projectRepositoryMock, times(2)).findAllAuthorUcos();
+        verify(projectRepositoryMock, never()).findByAuthorUcoIn(List.of("123456"));
+        assertThat(authorProfiles.isReady(), is(true));
+    }
+
+    @Test
+    void updateProfilesDisabled() throws IOException {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setAuthorProfiles(false);
+        authorProfiles = new AuthorProfiles(elasticsearchClientMock, projectRepositoryMock, termStatisticsMock,
+                indexAnalysisManagerMock, properties);
+
+        // tested method
+        authorProfiles.updateProfiles(List.of("123456"));
+
+        // verify
+        verify(elasticsearchClientMock, never()).bulk(any(BulkRequest.class));
+        assertThat(authorProfiles.isReady(), is(false));
+    }
+
+    @Test
+    void verifyProfilesExistingIndex() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(true));
+
+        // tested method
+        authorProfiles.verifyProfiles();
+
+        // verify
+        assertThat(authorProfiles.isReady(), is(true));
+        verify(projectRepositoryMock, never()).findAllAuthorUcos();
+    }
+
+    @Test
+    void verifyProfilesElasticUnavailable() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenThrow(new IOException());
+
+        // tested method
+        authorProfiles.verifyProfiles();
+
+        // verify
+        assertThat(authorProfiles.isReady(), is(false));
+    }
+
+    @Test
+    void deleteAll() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(true));
+        authorProfiles.verifyProfiles();
+
+        // tested method
+        authorProfiles.deleteAll();
+
+        // verify
+        verify(indicesClientMock).delete(any(DeleteIndexRequest.class));
+        assertThat(authorProfiles.isReady(), is(false));
+    }
+
+    private static BulkResponse getFailedBulkResponse() {
+        return BulkResponse.of(r -> r
+                .errors(true)
+                .took(1)
+                .items(List.of(BulkResponseItem.of(i -> i
+                        .operationType(OperationType.Index)
+                        .index(AUTHOR_PROFILE_INDEX)
+                        .status(429)
+                        .error(e -> e
+                                .type("es_rejected_execution_exception")
+                                .reason("rejected"))))));
+    }
+
+    private static Project getProject(Author author, String title, String annotation) {
+        Project project = new Project();
+        project.setAuthor(author);
+        project.setTitle(title);
+        project.setProcessedAnnotation(annotation);
+        return project;
+    }
+}
@@ -0,0 +1,159 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.TermsAggregation;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.NamedValue;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.service.enums.AuthorProjectsSortType;
+import muni.fi.dtos.ProjectEsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static muni.fi.bl.component.AuthorProfiles.UCO_FIELD;
+import static muni.fi.bl.component.AuthorRankingAggregation.AVG_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.COUNT_ORDER;
+import static muni.fi.bl.component.AuthorRankingAggregation.MAX_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.PROJECTS_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.SUM_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.getAggName;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class AuthorRankingAggregationTest {
+
+    // tested class
+    private AuthorRankingAggregation authorRankingAggregation;
+
+    @BeforeEach
+    void setUp() {
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setAuthorAggregation(true);
+        properties.setAuthorAggregationProjects(5);
+        authorRankingAggregation = new AuthorRankingAggregation(properties);
+    }
+
+    @Test
+    void getAggregations() {
+        // tested method
+        Map<String, Aggregation> aggregations = authorRankingAggregation.getAggregations(20, AuthorProjectsSortType.AVG, List.of("projId", "uco"));
+
+        // verify
+        Aggregation authors = aggregations.get(getAggName(AuthorProjectsSortType.AVG));
+        TermsAggregation terms = authors.terms();
+        assertThat(terms.field(), equalTo(UCO_FIELD));
+        assertThat(terms.size(), equalTo(20));
+        assertThat(terms.order().size(), equalTo(1));
+        assertThat(terms.order().get(0).name(), equalTo(AVG_AGG));
+        assertThat(terms.order().get(0).value(), equalTo(SortOrder.Desc));
+        assertThat(authors.aggregations().get(SUM_AGG).sum().script(), notNullValue());
+        assertThat(authors.aggregations().get(PROJECTS_AGG).topHits().size(), equalTo(5));
+        assertThat(authors.aggregations().get(PROJECTS_AGG).topHits().source().filter().includes(), equalTo(List.of("projId", "uco")));
+    }
+
+    @Test
+    void getAggregationsByCount() {
+        // tested method
+        Map<String, Aggregation> aggregations = authorRankingAggregation.getAggregations(10, AuthorProjectsSortType.COUNT, null);
+
+        // verify
+        Aggregation authors = aggregations.get(getAggName(AuthorProjectsSortType.COUNT));
+        NamedValue<SortOrder> order = authors.terms().order().get(0);
+        assertThat(order.name(), equalTo(COUNT_ORDER));
+        // the whole documents are returned
+        assertThat(authors.aggregations().get(PROJECTS_AGG).topHits().source(), nullValue());
+    }
+
+    @Test
+    void getRankings() {
+        // prepare
+        ProjectEsDto project = new ProjectEsDto();
+        project.setProjId("proj1");
+        project.setUco("uco1");
+        Hit<JsonData> hit = Hit.of(h -> h
+                .id("abcd")
+                .index(MU_INDEX)
+                .score(7.5)
+                .source(JsonData.of(project, new JacksonJsonpMapper())));
+        StringTermsBucket bucket = StringTermsBucket.of(b -> b
+                .key("uco1")
+                .docCount(3)
+                .aggregations(SUM_AGG, a -> a.sum(s -> s.value(15.0)))
+                .aggregations(MAX_AGG, a -> a.max(s -> s.value(7.5)))
+                .aggregations(AVG_AGG, a -> a.avg(s -> s.value(5.0)))
+                .aggregations(PROJECTS_AGG, a -> a.topHits(t -> t.hits(h -> h.hits(List.of(hit))))));
+        Aggregate authors = Aggregate.of(a -> a
+                .sterms(t -> t
+                        .sumOtherDocCount(0L)
+                        .buckets(b -> b.array(List.of(bucket)))));
+
+        // tested method
+        List<AuthorRanking> rankings = authorRankingAggregation.getRankings(Map.of(getAggName(AuthorProjectsSortType.SUM), authors));
+
+        // verify
+        assertThat(rankings.size(), equalTo(1));
+        AuthorRanking ranking = rankings.get(0);
+        assertThat(ranking.uco(), equalTo("uco1"));
+        assertThat(ranking.sum(), equalTo(15.0));
+        assertThat(ranking.max(), equalTo(7.5));
+        assertThat(ranking.avg(), equalTo(5.0));
+        assertThat(ranking.count(), equalTo(3L));
+        assertThat(ranking.projects().size(), equalTo(1));
+        assertThat(ranking.projects().get(0).getProjId(), equalTo("proj1"));
+        assertThat(ranking.projects().get(0).getEsId(), equalTo("abcd"));
+        assertThat(ranking.projects().get(0).getScore(), equalTo(7.5));
+    }
+
+    @Test
+    void getRankingsBySortTypes() {
+        // prepare
+        Aggregate bySum = Aggregate.of(a -> a
+                .sterms(t -> t
+                        .sumOtherDocCount(0L)
+                        .buckets(b -> b.array(List.of(getBucket("uco1", 15.0), getBucket("uco2", 10.0))))));
+        Aggregate byMax = Aggregate.of(a -> a
+                .sterms(t -> t
+                        .sumOtherDocCount(0L)
+                        .buckets(b -> b.array(List.of(getBucket("uco3", 12.0), getBucket("uco1", 15.0))))));
+
+        // tested method
+        List<AuthorRanking> rankings = authorRankingAggregation.getRankings(Map.of(
+                getAggName(AuthorProjectsSortType.SUM), bySum,
+                getAggName(AuthorProjectsSortType.MAX), byMax));
+
+        // verify
+        // every author is returned once
+        assertThat(rankings.stream().map(AuthorRanking::uco).toList(), equalTo(List.of("uco1", "uco2", "uco3")));
+    }
+
+    @Test
+    void getRankingsMissingAggregation() {
+        // tested method
+        List<AuthorRanking> rankings = authorRankingAggregation.getRankings(Map.of());
+
+        // verify
+        assertThat(rankings, empty());
+    }
+
+    private static StringTermsBucket getBucket(String uco, double score) {
+        return StringTermsBucket.of(b -> b
+                .key(uco)
+                .docCount(1)
+                .aggregations(SUM_AGG, a -> a.sum(s -> s.value(score)))
+                .aggregations(MAX_AGG, a -> a.max(s -> s.value(score)))
+                .aggregations(AVG_AGG, a -> a.avg(s -> s.value(score)))
+                .aggregations(PROJECTS_AGG, a -> a.topHits(t -> t.hits(h -> h.hits(List.of())))));
+    }
+}
@@ -0,0 +1,149 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.service.AsyncRecommendationService;
+import muni.fi.dtos.OpportunityDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class AuthorRecommendationsCollectorTest {
+
+    private static final long AUTHOR_LATENCY_MS = 50;
+
+    @Mock
+    private AsyncRecommendationService recommendationServiceMock;
+
+    private ExecutorService executor;
+    private SearchConfigProperties properties;
+
+    // tested class
+    private AuthorRecommendationsCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+
+        executor = Executors.newFixedThreadPool(8);
+        properties = new SearchConfigProperties();
+        properties.setRecommendationConcurrency(2);
+        properties.setRecommendationTimeoutMs(1000);
+        collector = new AuthorRecommendationsCollector(recommendationServiceMock, executor, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void recommendForAuthors() {
+        // prepare
+        when(recommendationServiceMock.recommendForAuthorAsync(anyString(), anyList()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(List.of(getOpportunity(invocation.getArgument(0)))));
+
+        // tested method
+        List<OpportunityDto> recommendations = collector.recommendForAuthors(List.of("uco1", "uco2", "uco3"), List.of(1L)).join();
+
+        // verify
+        assertThat(recommendations.stream().map(OpportunityDto::getEsId).toList(), containsInAnyOrder("uco1", "uco2", "uco3"));
+        verify(recommendationServiceMock, times(3)).recommendForAuthorAsync(anyString(), eq(List.of(1L)));
+    }
+
+    @Test
+    void recommendForAuthorsEmpty() {
+        // tested method
+        List<OpportunityDto> recommendations = collector.recommendForAuthors(Collections.emptyList(), List.of(1L)).join();
+
+        // verify
+        assertThat(recommendations, empty());
+    }
+
+    @Test
+    void recommendForAuthorsConcurrencyLimit() {
+        // prepare
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(recommendationServiceMock.recommendForAuthorAsync(anyString(), anyList())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(AUTHOR_LATENCY_MS);
+            running.decrementAndGet();
+            return CompletableFuture.completedFuture(List.of(getOpportunity(invocation.getArgument(0))));
+        });
+        List<String> ucos = List.of("uco1", "uco2", "uco3", "uco4", "uco5", "uco6");
+
+        // tested method
+        long start = System.nanoTime();
+        List<OpportunityDto> recommendations = collector.recommendForAuthors(ucos, List.of()).join();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // verify
+        assertThat(recommendations.size(), equalTo(ucos.size()));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(properties.getRecommendationConcurrency()));
+        assertThat(elapsedMs, lessThan(ucos.size() * AUTHOR_LATENCY_MS));
+    }
+
+    @Test
+    void recommendForAuthorsDeadline() {
+        // prepare
+        properties.setRecommendationTimeoutMs(100);
+        when(recommendationServiceMock.recommendForAuthorAsync(eq("fast"), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(getOpportunity("fast"))));
+        when(recommendationServiceMock.recommendForAuthorAsync(eq("slow"), anyList()))
+                .thenReturn(new CompletableFuture<>());
+
+        // tested method
+        long start = System.nanoTime();
+        List<OpportunityDto> recommendations = collector.recommendForAuthors(List.of("slow", "fast"), List.of()).join();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // verify
+        assertThat(recommendations.stream().map(OpportunityDto::getEsId).toList(), equalTo(List.of("fast")));
+        assertThat(elapsedMs, lessThan(1000L));
+    }
+
+    @Test
+    void recommendForAuthorsFailure() {
+        // prepare
+        when(recommendationServiceMock.recommendForAuthorAsync(eq("ok"), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(getOpportunity("ok"))));
+        when(recommendationServiceMock.recommendForAuthorAsync(eq("failing"), anyList()))
+                .thenThrow(new IllegalStateException("Database is down"));
+
+        // tested method
+        List<OpportunityDto> recommendations = collector.recommendForAuthors(List.of("failing", "ok"), List.of()).join();
+
+        // verify
+        assertThat(recommendations.stream().map(OpportunityDto::getEsId).toList(), equalTo(List.of("ok")));
+    }
+
+    private static OpportunityDto getOpportunity(String esId) {
+        OpportunityDto opportunity = new OpportunityDto();
+        opportunity.setEsId(esId);
+        opportunity.setScore(1.0);
+        return opportunity;
+    }
+}
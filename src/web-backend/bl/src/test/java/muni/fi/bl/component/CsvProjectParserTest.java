@@ -1,6 +1,7 @@
 package muni.fi.bl.component;
 
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.config.ImportConfigProperties;
 import muni.fi.dal.entity.Project;
 import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,12 +10,20 @@ import org.mockito.Mock;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
@@ -36,7 +45,9 @@ class CsvProjectParserTest {
     void setUp() {
         openMocks(this);
 
-        csvProjectParser = new CsvProjectParser(textNormalizerMock);
+        ImportConfigProperties importProperties = new ImportConfigProperties();
+        importProperties.setChunkSize(1);
+        csvProjectParser = new CsvProjectParser(textNormalizerMock, importProperties, Runnable::run);
         when(textNormalizerMock.normalize(any())).thenReturn("this is normalized text");
 
         csvFile = new ClassPathResource("testCsvProjectFile.csv");
@@ -64,6 +75,66 @@ class CsvProjectParserTest {
         assertThat(project2.getTitle(), equalTo("Project title 2"));
         assertThat(project1.getProcessedAnnotation(), equalTo("this is normalized text"));
         assertThat(project2.getProcessedAnnotation(), equalTo("this is normalized text"));
+        assertThat(project1.getContentHash(), notNullValue());
+        assertThat(project1.getContentHash(), not(equalTo(project2.getContentHash())));
+    }
+
+    @Test
+    void selectProjects() throws IOException {
+        // prepare
+        InputStream stream = csvFile.getInputStream();
+
+        // tested method
+        ByteArrayOutputStream selected = new ByteArrayOutputStream();
+        csvProjectParser.selectProjects(stream, Set.of("000002"), selected);
+
+        // verify
+        ProjectLoadResult result = csvProjectParser.parseProjects(new ByteArrayInputStream(selected.toByteArray()));
+        assertThat(result.total(), equalTo(1));
+        assertThat(result.projects().get(0).getTitle(), equalTo("Project title 2"));
+    }
+
+    @Test
+    void parseProjectsInChunks() throws IOException {
+        // prepare
+        InputStream stream = badDateCsvFile.getInputStream();
+        List<List<Project>> chunks = new ArrayList<>();
+
+        // tested method
+        ProjectLoadResult result = csvProjectParser.parseProjects(stream, chunks::add);
+
+        // verify
+        assertThat(result.total(), equalTo(2));
+        assertThat(result.successful(), equalTo(1));
+        assertThat(result.failed(), equalTo(1));
+        assertThat(result.projects().size(), equalTo(0));
+        // the chunk of the invalid record is not passed on
+        assertThat(chunks.size(), equalTo(1));
+        assertThat(chunks.get(0).get(0).getTitle(), equalTo("Project title 2"));
+    }
+
+    @Test
+    void parseProjectsBoundedInFlight() throws IOException {
+        // prepare
+        String csv = IOUtils.toString(csvFile.getInputStream(), StandardCharsets.UTF_8);
+        String lastRecord = csv.substring(csv.stripTrailing().lastIndexOf('\n') + 1);
+        InputStream stream = new ByteArrayInputStream((csv + lastRecord).getBytes(StandardCharsets.UTF_8));
+        AtomicInteger submitted = new AtomicInteger();
+        ImportConfigProperties importProperties = new ImportConfigProperties();
+        importProperties.setChunkSize(1);
+        csvProjectParser = new CsvProjectParser(textNormalizerMock, importProperties, task -> {
+            submitted.incrementAndGet();
+            task.run();
+        });
+        List<Integer> submittedOnConsume = new ArrayList<>();
+
+        // tested method
+        ProjectLoadResult result = csvProjectParser.parseProjects(stream, chunk -> submittedOnConsume.add(submitted.get()));
+
+        // verify
+        assertThat(result.total(), equalTo(3));
+        // at most 2 chunks are in flight, the first one is consumed before the third record is submitted
+        assertThat(submittedOnConsume, equalTo(List.of(2, 3, 3)));
     }
 
     @Test
@@ -5,10 +5,11 @@ import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -18,7 +19,10 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -50,20 +54,26 @@ class ElasticLoaderAccessorTest {
     @Captor
     private ArgumentCaptor<HttpEntity<MultiValueMap<String, Object>>> httpRequestCaptor;
 
+    @TempDir
+    private Path tempDir;
+    private Path dataFile;
+
     // tested class
     private ElasticLoaderAccessor elasticLoaderAccessor;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
         openMocks(this);
 
+        dataFile = Files.write(tempDir.resolve("import.tmp"), DATA);
+
         when(apiConfigPropertiesMock.getDataLoaderUrl()).thenReturn(LOADER_URL);
         when(apiConfigPropertiesMock.getDataLoaderPort()).thenReturn(LOADER_PORT);
         elasticLoaderAccessor = new ElasticLoaderAccessor(restTemplateMock, apiConfigPropertiesMock);
     }
 
     @Test
-    void sendDataToElasticLoader() {
+    void sendDataToElasticLoader() throws IOException {
         // prepare
         String successMessage = "success!";
         when(restTemplateMock.exchange(eq(LOADER_URL + ":" + LOADER_PORT + UPLOAD_ENDPOINT), eq(HttpMethod.POST), any(), eq(String.class))).thenReturn(
@@ -71,7 +81,7 @@ class ElasticLoaderAccessorTest {
         );
 
         // tested method
-        String response = elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, DATA, UPLOAD_ENDPOINT);
+        String response = elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, dataFile, UPLOAD_ENDPOINT);
 
         // verify
         assertThat(response, equalTo(successMessage));
@@ -82,9 +92,10 @@ class ElasticLoaderAccessorTest {
         MultiValueMap<String, Object> requestBody = Objects.requireNonNull(httpRequestCaptor.getValue().getBody());
         assertThat(requestBody.get("file").size(), equalTo(1));
 
-        ByteArrayResource file = (ByteArrayResource) requestBody.get("file").get(0);
+        // streamed from the file
+        FileSystemResource file = (FileSystemResource) requestBody.get("file").get(0);
         assertThat(file.getFilename(), equalTo(FILE_NAME));
-        assertThat(file.getByteArray(), equalTo(DATA));
+        assertThat(file.getInputStream().readAllBytes(), equalTo(DATA));
     }
 
     @Test
@@ -94,7 +105,7 @@ class ElasticLoaderAccessorTest {
                 .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST));
 
         // tested method
-        Throwable exception = assertThrows(ConnectionException.class, () -> elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, DATA, UPLOAD_ENDPOINT));
+        Throwable exception = assertThrows(ConnectionException.class, () -> elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, dataFile, UPLOAD_ENDPOINT));
 
         // verify
         assertThat(exception.getCause(), instanceOf(HttpClientErrorException.class));
@@ -108,7 +119,7 @@ class ElasticLoaderAccessorTest {
                 .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
 
         // tested method
-        Throwable exception = assertThrows(AppException.class, () -> elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, DATA, UPLOAD_ENDPOINT));
+        Throwable exception = assertThrows(AppException.class, () -> elasticLoaderAccessor.sendDataToElasticLoader(FILE_NAME, dataFile, UPLOAD_ENDPOINT));
 
         // verify
         assertThat(exception.getCause(), instanceOf(HttpServerErrorException.class));
@@ -0,0 +1,267 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TermVectorOption;
+import co.elastic.clients.elasticsearch.indices.CloseIndexRequest;
+import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
+import co.elastic.clients.elasticsearch.indices.GetMappingRequest;
+import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettingsAnalysis;
+import co.elastic.clients.elasticsearch.indices.OpenRequest;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import muni.fi.bl.config.FilesConfigProperties;
+import muni.fi.bl.exceptions.ConnectionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import static muni.fi.bl.component.IndexAnalysisManager.MLT_ANALYZER;
+import static muni.fi.bl.component.IndexAnalysisManager.MLT_STOP_FILTER;
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.component.IndexAnalysisManager.TRIGRAM_ANALYZER;
+import static muni.fi.bl.component.QueryBuilder.NGRAM_SUBFIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.HELIX_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class IndexAnalysisManagerTest {
+
+    @Mock
+    private ElasticsearchClient elasticsearchClientMock;
+    @Mock
+    private ElasticsearchIndicesClient indicesClientMock;
+    @Mock
+    private FilesConfigProperties filesConfigPropertiesMock;
+
+    @Captor
+    private ArgumentCaptor<PutIndicesSettingsRequest> putSettingsCaptor;
+    @Captor
+    private ArgumentCaptor<CreateIndexRequest> createIndexCaptor;
+
+    // tested class
+    private IndexAnalysisManager indexAnalysisManager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        openMocks(this);
+
+        when(filesConfigPropertiesMock.getStopWords()).thenReturn("testStopwords.txt");
+        when(elasticsearchClientMock.indices()).thenReturn(indicesClientMock);
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(true));
+        when(indicesClientMock.getMapping(any(GetMappingRequest.class))).thenReturn(getMappingResponse(MU_INDEX, "english"));
+
+        indexAnalysisManager = new IndexAnalysisManager(elasticsearchClientMock, new StopWordsReader(), filesConfigPropertiesMock);
+    }
+
+    @Test
+    void ensureAnalyzerUpToDate() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(MU_INDEX, List.of("words", "stop", "test")));
+
+        // tested method
+        boolean result = indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+
+        // verify
+        assertThat(result, is(true));
+        verify(indicesClientMock, never()).close(any(CloseIndexRequest.class));
+        verify(indicesClientMock, never()).putSettings(any(PutIndicesSettingsRequest.class));
+    }
+
+    @Test
+    void ensureAnalyzerOutdated() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(MU_INDEX, List.of("test")));
+
+        // tested method
+        boolean result = indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+
+        // verify
+        assertThat(result, is(true));
+        InOrder order = inOrder(indicesClientMock);
+        order.verify(indicesClientMock).close(any(CloseIndexRequest.class));
+        order.verify(indicesClientMock).putSettings(putSettingsCaptor.capture());
+        order.verify(indicesClientMock).open(any(OpenRequest.class));
+
+        IndexSettingsAnalysis analysis = putSettingsCaptor.getValue().settings().analysis();
+        assertThat(putSettingsCaptor.getValue().index(), equalTo(List.of(MU_INDEX)));
+        assertThat(analysis.filter().get(MLT_STOP_FILTER).definition().stop().stopwords(), equalTo(List.of("test", "stop", "words")));
+        assertThat(analysis.analyzer().get(MLT_ANALYZER).isCustom(), is(true));
+    }
+
+    @Test
+    void ensureAnalyzerMissingIndex() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(false));
+
+        // tested method
+        boolean result = indexAnalysisManager.ensureAnalyzer(CROWDHELIX_INDEX);
+
+        // verify
+        assertThat(result, is(false));
+        verify(indicesClientMock, never()).getSettings(any(GetIndicesSettingsRequest.class));
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, HELIX_FIELD), is(false));
+    }
+
+    @Test
+    void ensureAnalyzerReopensIndexOnError() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(MU_INDEX, List.of()));
+        when(indicesClientMock.putSettings(any(PutIndicesSettingsRequest.class))).thenThrow(new IOException());
+
+        // tested method
+        Throwable exception = assertThrows(ConnectionException.class, () -> indexAnalysisManager.ensureAnalyzer(MU_INDEX));
+
+        // verify
+        assertThat(exception.getCause(), instanceOf(IOException.class));
+        assertThat(exception.getMessage(), equalTo(ELASTIC_CONNECTION_ERROR));
+        verify(indicesClientMock).open(any(OpenRequest.class));
+    }
+
+    @Test
+    void ensureAnalyzerStoredTermVectors() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(MU_INDEX, List.of("words", "stop", "test")));
+        when(indicesClientMock.getMapping(any(GetMappingRequest.class))).thenReturn(getMappingResponse(MU_INDEX, MLT_ANALYZER));
+
+        // tested method
+        indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+
+        // verify
+        assertThat(indexAnalysisManager.hasStoredTermVectors(MU_INDEX), is(true));
+        assertThat(indexAnalysisManager.hasStoredTermVectors(CROWDHELIX_INDEX), is(false));
+    }
+
+    @Test
+    void ensureAnalyzerLegacyMapping() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(MU_INDEX, List.of("words", "stop", "test")));
+
+        // tested method
+        indexAnalysisManager.ensureAnalyzer(MU_INDEX);
+
+        // verify
+        // term vectors stored by the 'english' analyzer can't be used, the documents are re-analyzed
+        assertThat(indexAnalysisManager.hasStoredTermVectors(MU_INDEX), is(false));
+    }
+
+    @Test
+    void ensureAnalyzerNgramSubfields() throws IOException {
+        // prepare
+        when(indicesClientMock.getSettings(any(GetIndicesSettingsRequest.class)))
+                .thenReturn(getSettingsResponse(CROWDHELIX_INDEX, List.of("words", "stop", "test")));
+        when(indicesClientMock.getMapping(any(GetMappingRequest.class))).thenReturn(GetMappingResponse.of(r -> r
+                .result(CROWDHELIX_INDEX, i -> i
+                        .mappings(m -> m
+                                .properties(HELIX_FIELD, p -> p.keyword(k -> k
+                                        .fields(NGRAM_SUBFIELD, f -> f.text(n -> n.analyzer(TRIGRAM_ANALYZER)))))
+                                // mapped by the data loader
+                                .properties(TITLE_FIELD, p -> p.text(t -> t.analyzer("english")))))));
+
+        // tested method
+        indexAnalysisManager.ensureAnalyzer(CROWDHELIX_INDEX);
+
+        // verify
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, HELIX_FIELD), is(true));
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, TITLE_FIELD), is(false));
+    }
+
+    @Test
+    void ensureIndexCreated() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(false));
+
+        // tested method
+        boolean result = indexAnalysisManager.ensureIndex(CROWDHELIX_INDEX);
+
+        // verify
+        assertThat(result, is(true));
+        verify(indicesClientMock).create(createIndexCaptor.capture());
+        CreateIndexRequest request = createIndexCaptor.getValue();
+        assertThat(request.index(), equalTo(CROWDHELIX_INDEX));
+        for (String field : List.of(TITLE_FIELD, DESCRIPTION_FIELD)) {
+            assertThat(request.mappings().properties().get(field).text().analyzer(), equalTo(MLT_ANALYZER));
+            assertThat(request.mappings().properties().get(field).text().termVector(), equalTo(TermVectorOption.Yes));
+        }
+        assertThat(request.mappings().properties().get(HELIX_FIELD).keyword().fields().get(NGRAM_SUBFIELD).text().analyzer(),
+                equalTo(TRIGRAM_ANALYZER));
+        IndexSettingsAnalysis analysis = request.settings().analysis();
+        assertThat(analysis.filter().get(MLT_STOP_FILTER).definition().stop().stopwords(), equalTo(List.of("test", "stop", "words")));
+        assertThat(analysis.analyzer().containsKey(TRIGRAM_ANALYZER), is(true));
+        assertThat(indexAnalysisManager.hasStoredTermVectors(CROWDHELIX_INDEX), is(true));
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, HELIX_FIELD), is(true));
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, TITLE_FIELD), is(true));
+        assertThat(indexAnalysisManager.hasNgramSubfield(CROWDHELIX_INDEX, DESCRIPTION_FIELD), is(false));
+    }
+
+    @Test
+    void ensureIndexExisting() throws IOException {
+        // tested method
+        boolean result = indexAnalysisManager.ensureIndex(MU_INDEX);
+
+        // verify
+        assertThat(result, is(false));
+        verify(indicesClientMock, never()).create(any(CreateIndexRequest.class));
+    }
+
+    @Test
+    void verifyAnalyzersElasticUnavailable() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenThrow(new IOException());
+
+        // tested method
+        indexAnalysisManager.verifyAnalyzers();
+
+        // verify
+        verify(indicesClientMock, times(3)).exists(any(ExistsRequest.class));
+    }
+
+    private static GetMappingResponse getMappingResponse(String index, String analyzer) {
+        return GetMappingResponse.of(r -> r
+                .result(index, i -> i
+                        .mappings(m -> m
+                                .properties(TITLE_FIELD, p -> p.text(t -> t.analyzer(analyzer).termVector(TermVectorOption.Yes)))
+                                .properties(DESCRIPTION_FIELD, p -> p.text(t -> t.analyzer(analyzer).termVector(TermVectorOption.Yes))))));
+    }
+
+    private static GetIndicesSettingsResponse getSettingsResponse(String index, List<String> stopWords) {
+        return GetIndicesSettingsResponse.of(r -> r
+                .result(index, s -> s
+                        .settings(st -> st
+                                .index(i -> i
+                                        .analysis(a -> a
+                                                .filter(MLT_STOP_FILTER, f -> f.definition(d -> d
+                                                        .stop(sf -> sf.stopwords(stopWords))))
+                                                .analyzer(MLT_ANALYZER, an -> an
+                                                        .custom(c -> c.tokenizer("standard"))))))));
+    }
+}
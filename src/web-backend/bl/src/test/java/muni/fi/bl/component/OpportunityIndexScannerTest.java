@@ -0,0 +1,138 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.dtos.OpportunityDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.SHARD_DOC_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpportunityIndexScannerTest {
+
+    @Mock
+    private ElasticsearchClient elasticsearchClientMock;
+    @Mock
+    private ElasticsearchIndicesClient indicesClientMock;
+
+    @Captor
+    private ArgumentCaptor<SearchRequest> requestCaptor;
+
+    // tested class
+    private OpportunityIndexScanner opportunityIndexScanner;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(elasticsearchClientMock.indices()).thenReturn(indicesClientMock);
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(true));
+        when(elasticsearchClientMock.openPointInTime(any(OpenPointInTimeRequest.class)))
+                .thenReturn(OpenPointInTimeResponse.of(o -> o.id("pit")));
+        opportunityIndexScanner = new OpportunityIndexScanner(elasticsearchClientMock);
+    }
+
+    @Test
+    void getIds() throws IOException {
+        // prepare
+        SearchResponse<Void> response = getSearchResponse(List.of(
+                Hit.of(h -> h.id("opp1").index(CROWDHELIX_INDEX)),
+                Hit.of(h -> h.id("opp2").index(CROWDHELIX_INDEX))));
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(Void.class))).thenReturn(response);
+
+        // tested method
+        List<String> ids = opportunityIndexScanner.getIds();
+
+        // verify
+        assertThat(ids, equalTo(List.of("opp1", "opp2")));
+        verify(elasticsearchClientMock).search(requestCaptor.capture(), eq(Void.class));
+        SearchRequest request = requestCaptor.getValue();
+        assertThat(request.pit().id(), equalTo("pit"));
+        assertThat(request.source().fetch(), equalTo(false));
+        assertThat(request.sort().get(0).field().field(), equalTo(SHARD_DOC_FIELD));
+        // the first page has nothing to search after
+        assertThat(request.searchAfter(), empty());
+        verify(elasticsearchClientMock).closePointInTime(any(ClosePointInTimeRequest.class));
+    }
+
+    @Test
+    void getDocuments() throws IOException {
+        // prepare
+        OpportunityDto opportunity = new OpportunityDto();
+        opportunity.setTitle("Quantum Computing");
+        SearchResponse<OpportunityDto> response = getSearchResponse(List.of(
+                Hit.of(h -> h.id("opp1").index(CROWDHELIX_INDEX).source(opportunity))));
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class))).thenReturn(response);
+
+        // tested method
+        Map<String, OpportunityDto> documents = opportunityIndexScanner.getDocuments();
+
+        // verify
+        assertThat(documents, equalTo(Map.of("opp1", opportunity)));
+        verify(elasticsearchClientMock).search(requestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(requestCaptor.getValue().source().fetch(), equalTo(true));
+    }
+
+    @Test
+    void getIdsMissingIndex() throws IOException {
+        // prepare
+        when(indicesClientMock.exists(any(ExistsRequest.class))).thenReturn(new BooleanResponse(false));
+
+        // tested method
+        List<String> ids = opportunityIndexScanner.getIds();
+
+        // verify
+        assertThat(ids, empty());
+        verify(elasticsearchClientMock, never()).openPointInTime(any(OpenPointInTimeRequest.class));
+    }
+
+    @Test
+    void getIdsConnectionException() throws IOException {
+        // prepare
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(Void.class))).thenThrow(new IOException());
+
+        // tested method
+        assertThrows(ConnectionException.class, () -> opportunityIndexScanner.getIds());
+
+        // verify
+        // the point-in-time is closed anyway
+        verify(elasticsearchClientMock).closePointInTime(any(ClosePointInTimeRequest.class));
+    }
+
+    private static <T> SearchResponse<T> getSearchResponse(List<Hit<T>> hits) {
+        return SearchResponse.of(r -> r
+                .shards(s -> s.failed(0).successful(1).total(1))
+                .took(10)
+                .timedOut(false)
+                .hits(h -> h
+                        .total(t -> t.value(hits.size()).relation(TotalHitsRelation.Eq))
+                        .hits(hits)));
+    }
+}
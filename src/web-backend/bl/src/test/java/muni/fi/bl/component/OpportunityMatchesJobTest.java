@@ -0,0 +1,146 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.bl.service.impl.ElasticSearchService;
+import muni.fi.dtos.OpportunityMatchStatsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpportunityMatchesJobTest {
+
+    @Mock
+    private OpportunityMatches opportunityMatchesMock;
+    @Mock
+    private ElasticSearchService elasticSearchServiceMock;
+    @Mock
+    private OpportunityIndexScanner opportunityIndexScannerMock;
+
+    // tested class
+    private OpportunityMatchesJob opportunityMatchesJob;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(opportunityMatchesMock.isEnabled()).thenReturn(true);
+        when(opportunityMatchesMock.getSize()).thenReturn(50);
+        when(opportunityMatchesMock.getGeneration()).thenReturn(3L);
+        opportunityMatchesJob = new OpportunityMatchesJob(opportunityMatchesMock, elasticSearchServiceMock,
+                opportunityIndexScannerMock, Runnable::run);
+    }
+
+    @Test
+    void refresh() {
+        // prepare
+        when(opportunityIndexScannerMock.getIds()).thenReturn(List.of("opp1", "opp2"));
+        List<AuthorRanking> rankings = List.of(new AuthorRanking("uco1", 1.0, 1.0, 1.0, 1, List.of()));
+        when(elasticSearchServiceMock.rankAuthorsByOpportunity("opp1", 50)).thenReturn(rankings);
+        when(elasticSearchServiceMock.rankAuthorsByOpportunity("opp2", 50))
+                .thenThrow(new ConnectionException("Elasticsearch connection error"));
+        when(opportunityMatchesMock.replace("opp1", rankings, 3L)).thenReturn(true);
+        when(opportunityMatchesMock.countOpportunities()).thenReturn(1L);
+
+        // tested method
+        opportunityMatchesJob.refresh();
+
+        // verify
+        verify(opportunityMatchesMock).retain(List.of("opp1", "opp2"));
+        verify(opportunityMatchesMock).replace("opp1", rankings, 3L);
+        verify(opportunityMatchesMock, never()).replace(eq("opp2"), anyList(), anyLong());
+        OpportunityMatchStatsDto stats = opportunityMatchesJob.getStats();
+        assertThat(stats.running(), equalTo(false));
+        assertThat(stats.storedOpportunities(), equalTo(1L));
+        assertThat(stats.lastRunMatched(), equalTo(1L));
+        assertThat(stats.lastRunFailed(), equalTo(1L));
+        assertThat(stats.lastRunFinishedAt(), notNullValue());
+    }
+
+    @Test
+    void refreshOutdated() {
+        // prepare
+        when(opportunityIndexScannerMock.getIds()).thenReturn(List.of("opp1"));
+        // the matches were invalidated after the run started
+        when(opportunityMatchesMock.getGeneration()).thenReturn(3L, 4L);
+
+        // tested method
+        opportunityMatchesJob.refresh();
+
+        // verify
+        verify(elasticSearchServiceMock, never()).rankAuthorsByOpportunity(anyString(), anyInt());
+        verify(opportunityMatchesMock, never()).replace(anyString(), anyList(), anyLong());
+    }
+
+    @Test
+    void refreshBatches() {
+        // prepare
+        List<String> opportunityIds = IntStream.range(0, OpportunityMatchesJob.BATCH_SIZE + 1)
+                .mapToObj(i -> "opp" + i)
+                .toList();
+        when(opportunityIndexScannerMock.getIds()).thenReturn(opportunityIds);
+        AtomicLong generation = new AtomicLong(3L);
+        when(opportunityMatchesMock.getGeneration()).thenAnswer(invocation -> generation.get());
+        // invalidated while the first batch is matched
+        when(elasticSearchServiceMock.rankAuthorsByOpportunity(eq("opp0"), anyInt())).thenAnswer(invocation -> {
+            generation.incrementAndGet();
+            return List.of();
+        });
+        AtomicInteger submitted = new AtomicInteger();
+        opportunityMatchesJob = new OpportunityMatchesJob(opportunityMatchesMock, elasticSearchServiceMock,
+                opportunityIndexScannerMock, task -> {
+                    submitted.incrementAndGet();
+                    task.run();
+                });
+
+        // tested method
+        opportunityMatchesJob.refresh();
+
+        // verify
+        // the run and the first batch, the second batch isn't submitted
+        assertThat(submitted.get(), equalTo(OpportunityMatchesJob.BATCH_SIZE + 1));
+        verify(elasticSearchServiceMock, never()).rankAuthorsByOpportunity(eq("opp" + OpportunityMatchesJob.BATCH_SIZE), anyInt());
+    }
+
+    @Test
+    void refreshUnavailable() {
+        // prepare
+        when(opportunityIndexScannerMock.getIds()).thenThrow(new ConnectionException("Elasticsearch connection error"));
+
+        // tested method
+        opportunityMatchesJob.refresh();
+
+        // verify
+        verify(opportunityMatchesMock, never()).retain(anyList());
+        assertThat(opportunityMatchesJob.getStats().running(), equalTo(false));
+    }
+
+    @Test
+    void refreshDisabled() {
+        // prepare
+        when(opportunityMatchesMock.isEnabled()).thenReturn(false);
+
+        // tested method
+        opportunityMatchesJob.refresh();
+
+        // verify
+        verify(opportunityIndexScannerMock, never()).getIds();
+        verify(opportunityMatchesMock, never()).retain(anyList());
+    }
+}
@@ -0,0 +1,182 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.component.OpportunityMatches.RefreshEvent;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.dal.entity.MatchedProject;
+import muni.fi.dal.entity.OpportunityMatch;
+import muni.fi.dal.repository.OpportunityMatchRepository;
+import muni.fi.dtos.ProjectEsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OpportunityMatchesTest {
+
+    @Mock
+    private OpportunityMatchRepository opportunityMatchRepositoryMock;
+    @Mock
+    private ApplicationEventPublisher eventPublisherMock;
+    @Mock
+    private PlatformTransactionManager transactionManagerMock;
+
+    @Captor
+    private ArgumentCaptor<List<OpportunityMatch>> matchesCaptor;
+
+    // tested class
+    private OpportunityMatches opportunityMatches;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setOpportunityMatchesSize(10);
+        opportunityMatches = new OpportunityMatches(opportunityMatchRepositoryMock, eventPublisherMock, transactionManagerMock, properties);
+    }
+
+    @Test
+    void find() {
+        // prepare
+        OpportunityMatch match = new OpportunityMatch();
+        match.setOpportunityId("opp1");
+        match.setAuthorUco("uco1");
+        match.setSumScore(15.0);
+        match.setMaxScore(10.0);
+        match.setAvgScore(7.5);
+        match.setProjectCount(2);
+        match.setProjects(new ArrayList<>(List.of(new MatchedProject("proj1", 10.0), new MatchedProject("proj2", 5.0))));
+        when(opportunityMatchRepositoryMock.findByOpportunityId("opp1")).thenReturn(List.of(match));
+
+        // tested method
+        Optional<List<AuthorRanking>> rankings = opportunityMatches.find("opp1", 10);
+
+        // verify
+        assertThat(rankings.isPresent(), equalTo(true));
+        AuthorRanking ranking = rankings.get().get(0);
+        assertThat(ranking.uco(), equalTo("uco1"));
+        assertThat(ranking.sum(), equalTo(15.0));
+        assertThat(ranking.count(), equalTo(2L));
+        assertThat(ranking.projects().size(), equalTo(2));
+        assertThat(ranking.projects().get(0).getProjId(), equalTo("proj1"));
+        assertThat(ranking.projects().get(0).getUco(), equalTo("uco1"));
+        assertThat(ranking.projects().get(0).getScore(), equalTo(10.0));
+    }
+
+    @Test
+    void findNotStored() {
+        // prepare
+        when(opportunityMatchRepositoryMock.findByOpportunityId("opp1")).thenReturn(List.of());
+
+        // tested method
+        Optional<List<AuthorRanking>> rankings = opportunityMatches.find("opp1", 10);
+
+        // verify
+        assertThat(rankings.isPresent(), equalTo(false));
+    }
+
+    @Test
+    void findMoreThanStored() {
+        // tested method
+        Optional<List<AuthorRanking>> rankings = opportunityMatches.find("opp1", 11);
+
+        // verify
+        assertThat(rankings.isPresent(), equalTo(false));
+        verify(opportunityMatchRepositoryMock, never()).findByOpportunityId(anyString());
+    }
+
+    @Test
+    void replace() {
+        // prepare
+        ProjectEsDto project = new ProjectEsDto();
+        project.setProjId("proj1");
+        project.setScore(10.0);
+        AuthorRanking ranking = new AuthorRanking("uco1", 10.0, 10.0, 10.0, 1, List.of(project));
+
+        // tested method
+        boolean stored = opportunityMatches.replace("opp1", List.of(ranking), opportunityMatches.getGeneration());
+
+        // verify
+        assertThat(stored, equalTo(true));
+        verify(opportunityMatchRepositoryMock).deleteByOpportunityId("opp1");
+        verify(opportunityMatchRepositoryMock).saveAll(matchesCaptor.capture());
+        OpportunityMatch match = matchesCaptor.getValue().get(0);
+        assertThat(match.getOpportunityId(), equalTo("opp1"));
+        assertThat(match.getAuthorUco(), equalTo("uco1"));
+        assertThat(match.getProjects().get(0).getProjId(), equalTo("proj1"));
+        assertThat(match.getProjects().get(0).getScore(), equalTo(10.0));
+    }
+
+    @Test
+    void replaceOutdated() {
+        // prepare
+        long generation = opportunityMatches.getGeneration();
+        opportunityMatches.invalidateAll();
+
+        // tested method
+        boolean stored = opportunityMatches.replace("opp1", List.of(), generation);
+
+        // verify
+        assertThat(stored, equalTo(false));
+        verify(opportunityMatchRepositoryMock).deleteAllInBatch();
+        verify(opportunityMatchRepositoryMock, never()).saveAll(any());
+        verify(eventPublisherMock).publishEvent(any(RefreshEvent.class));
+    }
+
+    @Test
+    void replaceOutdatedWhileStored() {
+        // prepare
+        // the matches are invalidated before the stored matches are committed
+        when(opportunityMatchRepositoryMock.saveAll(any())).thenAnswer(invocation -> {
+            opportunityMatches.deleteAll();
+            return invocation.getArgument(0);
+        });
+
+        // tested method
+        boolean stored = opportunityMatches.replace("opp1", List.of(), opportunityMatches.getGeneration());
+
+        // verify
+        assertThat(stored, equalTo(false));
+        verify(opportunityMatchRepositoryMock).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void retainNone() {
+        // tested method
+        opportunityMatches.retain(List.of());
+
+        // verify
+        verify(opportunityMatchRepositoryMock).deleteAllInBatch();
+        verify(opportunityMatchRepositoryMock, never()).deleteByOpportunityIdNotIn(any());
+    }
+
+    @Test
+    void requestRefreshDisabled() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setOpportunityMatches(false);
+        opportunityMatches = new OpportunityMatches(opportunityMatchRepositoryMock, eventPublisherMock, transactionManagerMock, properties);
+
+        // tested method
+        opportunityMatches.requestRefresh();
+
+        // verify
+        verify(eventPublisherMock, never()).publishEvent(any(Object.class));
+        assertThat(opportunityMatches.find("opp1", 1).isPresent(), equalTo(false));
+    }
+}
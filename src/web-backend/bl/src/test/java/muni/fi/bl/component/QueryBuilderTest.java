@@ -2,23 +2,25 @@ package muni.fi.bl.component;
 
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchPhraseQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MoreLikeThisQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.WildcardQuery;
-import muni.fi.bl.config.FilesConfigProperties;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.query.SearchInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
-import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import static muni.fi.bl.component.IndexAnalysisManager.MLT_ANALYZER;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.EXPERTISE_FIELD;
@@ -29,16 +31,18 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
-import static org.mockito.ArgumentMatchers.any;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
 class QueryBuilderTest {
 
     @Mock
-    private StopWordsReader stopWordsReaderMock;
+    private TermStatistics termStatisticsMock;
     @Mock
-    private FilesConfigProperties filesConfigPropertiesMock;
+    private IndexAnalysisManager indexAnalysisManagerMock;
 
     // tested class
     private QueryBuilder queryBuilder;
@@ -47,19 +51,40 @@ class QueryBuilderTest {
     private List<String> docs;
 
     @BeforeEach
-    void setUp() throws IOException {
+    void setUp() {
         openMocks(this);
 
-        when(stopWordsReaderMock.loadStopWords(any())).thenReturn(Collections.emptyList());
-        when(filesConfigPropertiesMock.getStopWords()).thenReturn("testStopwords.txt");
-
-        queryBuilder = new QueryBuilder(stopWordsReaderMock, filesConfigPropertiesMock);
+        queryBuilder = new QueryBuilder(new SearchConfigProperties(), termStatisticsMock, indexAnalysisManagerMock);
 
         docs = List.of("doc1", "doc2");
     }
 
     @Test
     void getMoreLikeThisQueryForDocList() {
+        // prepare
+        when(termStatisticsMock.getTopTermsDocument(docs, 100)).thenReturn("doc2 doc1");
+
+        // tested method
+        MoreLikeThisQuery moreLikeThisQuery = queryBuilder.getMoreLikeThisQuery(docs);
+
+        // verify
+        String likeDoc = "{\"description\":\"doc2 doc1\"}";
+
+        assertThat("Query has pruned like doc", moreLikeThisQuery.like().size(), equalTo(1));
+        assertThat("Query has correct field", moreLikeThisQuery.fields(), equalTo(List.of(DESCRIPTION_FIELD)));
+        assertThat("LikeDocument json value", Objects.requireNonNull(moreLikeThisQuery.like().get(0).document().doc()).toJson().toString(), equalTo(likeDoc));
+        assertThat("LikeDocument index analyzer", moreLikeThisQuery.like().get(0).document().perFieldAnalyzer(), equalTo(Map.of(DESCRIPTION_FIELD, MLT_ANALYZER)));
+        assertThat("Stopwords not sent", moreLikeThisQuery.stopWords().isEmpty(), is(true));
+        verify(termStatisticsMock).getTopTermsDocument(docs, 100);
+    }
+
+    @Test
+    void getMoreLikeThisQueryForDocListNotPruned() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setLikeTermsBudget(0);
+        queryBuilder = new QueryBuilder(properties, termStatisticsMock, indexAnalysisManagerMock);
+
         // tested method
         MoreLikeThisQuery moreLikeThisQuery = queryBuilder.getMoreLikeThisQuery(docs);
 
@@ -73,6 +98,7 @@ class QueryBuilderTest {
         assertThat("LikeDocument2 has non-null data", moreLikeThisQuery.like().get(1).document().doc(), notNullValue());
         assertThat("LikeDocument1 json value", Objects.requireNonNull(moreLikeThisQuery.like().get(0).document().doc()).toJson().toString(), equalTo(likeDoc1));
         assertThat("LikeDocument2 json value", Objects.requireNonNull(moreLikeThisQuery.like().get(1).document().doc()).toJson().toString(), equalTo(likeDoc2));
+        verifyNoInteractions(termStatisticsMock);
     }
 
     @Test
@@ -109,6 +135,51 @@ class QueryBuilderTest {
         assertThat("Query has correct index", moreLikeThisQuery.like().get(0).document().index(), equalTo(CROWDHELIX_INDEX));
         assertThat("LikeDocument has non-null id", moreLikeThisQuery.like().get(0).document().id(), notNullValue());
         assertThat("LikeDocument has non-null id", moreLikeThisQuery.like().get(0).document().id(), equalTo(elasticId));
+        assertThat("LikeDocument index analyzer", moreLikeThisQuery.like().get(0).document().perFieldAnalyzer(),
+                equalTo(Map.of(DESCRIPTION_FIELD, MLT_ANALYZER, TITLE_FIELD, MLT_ANALYZER)));
+        assertThat("Stopwords not sent", moreLikeThisQuery.stopWords().isEmpty(), is(true));
+    }
+
+    @Test
+    void getMoreLikeThisQueryForElasticDocStoredTermVectors() {
+        // prepare
+        String elasticId = "someId";
+        when(indexAnalysisManagerMock.hasStoredTermVectors(CROWDHELIX_INDEX)).thenReturn(true);
+
+        // tested method
+        MoreLikeThisQuery moreLikeThisQuery = queryBuilder.getMoreLikeThisQuery(elasticId, CROWDHELIX_INDEX);
+
+        // verify
+        assertThat("LikeDocument has correct id", moreLikeThisQuery.like().get(0).document().id(), equalTo(elasticId));
+        assertThat("LikeDocument uses stored term vectors", moreLikeThisQuery.like().get(0).document().perFieldAnalyzer().isEmpty(), is(true));
+        verify(indexAnalysisManagerMock).hasStoredTermVectors(CROWDHELIX_INDEX);
+    }
+
+    @Test
+    void getMoreLikeThisQueryForElasticDocs() {
+        // prepare
+        when(indexAnalysisManagerMock.hasStoredTermVectors(AUTHOR_PROFILE_INDEX)).thenReturn(true);
+
+        // tested method
+        MoreLikeThisQuery moreLikeThisQuery = queryBuilder.getMoreLikeThisQueryByIds(List.of("uco1", "uco2"),
+                List.of(TITLE_FIELD), AUTHOR_PROFILE_INDEX);
+
+        // verify
+        assertThat("Query has like docs", moreLikeThisQuery.like().size(), equalTo(2));
+        assertThat("Query has correct fields", moreLikeThisQuery.fields(), equalTo(List.of(TITLE_FIELD)));
+        assertThat("LikeDocument has correct id", moreLikeThisQuery.like().get(1).document().id(), equalTo("uco2"));
+        assertThat("LikeDocument has correct index", moreLikeThisQuery.like().get(1).document().index(), equalTo(AUTHOR_PROFILE_INDEX));
+        assertThat("LikeDocument uses stored term vectors", moreLikeThisQuery.like().get(0).document().perFieldAnalyzer().isEmpty(), is(true));
+    }
+
+    @Test
+    void getMoreLikeThisQueryForNoElasticDocs() {
+        // tested method
+        Throwable exception = assertThrows(IllegalArgumentException.class, () ->
+                queryBuilder.getMoreLikeThisQueryByIds(List.of(), List.of(TITLE_FIELD), AUTHOR_PROFILE_INDEX));
+
+        // verify
+        assertThat(exception.getMessage(), equalTo("Can't find results for empty query"));
     }
 
     @Test
@@ -187,18 +258,78 @@ class QueryBuilderTest {
     @Test
     void getWildcardFilterQuery() {
         // prepare
-        String field = "title";
+        String field = "url";
         String value = "value";
 
         // tested method
-        WildcardQuery wildcardQuery = queryBuilder.getFilterQuery(field, value);
+        Query query = queryBuilder.getFilterQuery(field, value);
 
         // verify
+        assertThat("Wildcard query", query.isWildcard(), is(true));
+        WildcardQuery wildcardQuery = query.wildcard();
         assertThat("Filter field", wildcardQuery.field(), equalTo(field));
         assertThat("Wildcard value", wildcardQuery.wildcard(), equalTo("*value*"));
         assertThat("Case sensitivity", wildcardQuery.caseInsensitive(), is(true));
     }
 
+    @Test
+    void getNgramFilterQuery() {
+        // prepare
+        String field = "title";
+        String value = "Value";
+        when(indexAnalysisManagerMock.hasNgramSubfield(CROWDHELIX_INDEX, field)).thenReturn(true);
+
+        // tested method
+        Query query = queryBuilder.getFilterQuery(field, value);
+
+        // verify
+        assertThat("Match phrase query", query.isMatchPhrase(), is(true));
+        MatchPhraseQuery matchPhraseQuery = query.matchPhrase();
+        assertThat("Filter field", matchPhraseQuery.field(), equalTo("title.ngram"));
+        assertThat("Filter value", matchPhraseQuery.query(), equalTo(value));
+    }
+
+    @Test
+    void getNgramFilterQueryShortValue() {
+        // prepare
+        when(indexAnalysisManagerMock.hasNgramSubfield(CROWDHELIX_INDEX, HELIX_FIELD)).thenReturn(true);
+
+        // tested method
+        Query query = queryBuilder.getFilterQuery(HELIX_FIELD, "he");
+
+        // verify
+        assertThat("Shorter than n-gram", query.isWildcard(), is(true));
+        assertThat("Filter field", query.wildcard().field(), equalTo(HELIX_FIELD));
+    }
+
+    @Test
+    void getFilterQueryLegacyIndex() {
+        // prepare
+        // the index was created by the data loader without the n-gram subfields
+        when(indexAnalysisManagerMock.hasNgramSubfield(CROWDHELIX_INDEX, TITLE_FIELD)).thenReturn(false);
+
+        // tested method
+        Query query = queryBuilder.getFilterQuery(TITLE_FIELD, "value");
+
+        // verify
+        assertThat("Falls back to wildcard", query.isWildcard(), is(true));
+        assertThat("Filter field", query.wildcard().field(), equalTo(TITLE_FIELD));
+    }
+
+    @Test
+    void getFilterQueryNotMigrated() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setNgramFilterFields(List.of());
+        queryBuilder = new QueryBuilder(properties, termStatisticsMock, indexAnalysisManagerMock);
+
+        // tested method
+        Query query = queryBuilder.getFilterQuery(TITLE_FIELD, "value");
+
+        // verify
+        assertThat("Falls back to wildcard", query.isWildcard(), is(true));
+    }
+
     @Test
     void getSearchAllQuery() {
         // tested method
@@ -0,0 +1,166 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.bl.service.impl.ElasticRecommendationService;
+import muni.fi.dal.entity.OpportunitySnapshot;
+import muni.fi.dal.repository.OpportunitySnapshotRepository.SnapshotState;
+import muni.fi.dtos.OpportunityDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RelatedOpportunitiesJobTest {
+
+    @Mock
+    private RelatedOpportunities relatedOpportunitiesMock;
+    @Mock
+    private ElasticRecommendationService recommendationServiceMock;
+    @Mock
+    private OpportunityIndexScanner opportunityIndexScannerMock;
+
+    @Captor
+    private ArgumentCaptor<Collection<OpportunitySnapshot>> snapshotsCaptor;
+    @Captor
+    private ArgumentCaptor<Collection<String>> idsCaptor;
+
+    // tested class
+    private RelatedOpportunitiesJob relatedOpportunitiesJob;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(relatedOpportunitiesMock.isEnabled()).thenReturn(true);
+        relatedOpportunitiesJob = new RelatedOpportunitiesJob(relatedOpportunitiesMock, recommendationServiceMock,
+                opportunityIndexScannerMock, Runnable::run);
+    }
+
+    @Test
+    void refreshChanged() {
+        // prepare
+        OpportunityDto unchanged = getOpportunity("Unchanged");
+        OpportunityDto changed = getOpportunity("Changed");
+        OpportunityDto neighbour = getOpportunity("Neighbour");
+        Map<String, OpportunityDto> opportunities = new LinkedHashMap<>();
+        opportunities.put("unchanged", unchanged);
+        opportunities.put("changed", changed);
+        opportunities.put("neighbour", neighbour);
+        opportunities.put("new", getOpportunity("New"));
+        when(opportunityIndexScannerMock.getDocuments()).thenReturn(opportunities);
+        when(relatedOpportunitiesMock.getSnapshotStates()).thenReturn(Map.of(
+                "unchanged", getState("unchanged", unchanged),
+                "changed", getState("changed", getOpportunity("Original")),
+                "neighbour", getState("neighbour", neighbour),
+                "deleted", getState("deleted", getOpportunity("Deleted"))));
+        // the unchanged opportunity references the deleted one
+        when(relatedOpportunitiesMock.findReferencing(anyCollection())).thenReturn(Set.of("unchanged"));
+        // the changed opportunity is similar to the neighbour
+        OpportunityDto similar = new OpportunityDto();
+        similar.setEsId("neighbour");
+        similar.setScore(5.0);
+        when(recommendationServiceMock.searchMoreLikeThis("changed")).thenReturn(List.of(similar));
+        when(recommendationServiceMock.searchMoreLikeThis("new")).thenReturn(List.of());
+
+        // tested method
+        relatedOpportunitiesJob.refresh();
+
+        // verify
+        verify(relatedOpportunitiesMock).delete(idsCaptor.capture());
+        assertThat(idsCaptor.getValue(), containsInAnyOrder("deleted"));
+        verify(relatedOpportunitiesMock).saveSnapshots(snapshotsCaptor.capture());
+        assertThat(snapshotsCaptor.getValue().stream().map(OpportunitySnapshot::getOpportunityId).toList(),
+                containsInAnyOrder("changed", "new"));
+        verify(relatedOpportunitiesMock).replace("changed", List.of(similar));
+        verify(relatedOpportunitiesMock).replace("new", List.of());
+        verify(relatedOpportunitiesMock).replace("unchanged", List.of());
+        verify(relatedOpportunitiesMock).replace("neighbour", List.of());
+    }
+
+    @Test
+    void refreshUnchanged() {
+        // prepare
+        OpportunityDto unchanged = getOpportunity("Unchanged");
+        when(opportunityIndexScannerMock.getDocuments()).thenReturn(Map.of("unchanged", unchanged));
+        when(relatedOpportunitiesMock.getSnapshotStates()).thenReturn(Map.of("unchanged", getState("unchanged", unchanged)));
+
+        // tested method
+        relatedOpportunitiesJob.refresh();
+
+        // verify
+        verify(relatedOpportunitiesMock).saveSnapshots(snapshotsCaptor.capture());
+        assertThat(snapshotsCaptor.getValue(), empty());
+        verify(recommendationServiceMock, never()).searchMoreLikeThis(anyString());
+    }
+
+    @Test
+    void refreshUnavailable() {
+        // prepare
+        when(opportunityIndexScannerMock.getDocuments()).thenThrow(new ConnectionException("Elasticsearch connection error"));
+
+        // tested method
+        relatedOpportunitiesJob.refresh();
+
+        // verify
+        verify(relatedOpportunitiesMock, never()).delete(anyCollection());
+        verify(relatedOpportunitiesMock, never()).replace(anyString(), anyList());
+    }
+
+    @Test
+    void refreshDisabled() {
+        // prepare
+        when(relatedOpportunitiesMock.isEnabled()).thenReturn(false);
+
+        // tested method
+        relatedOpportunitiesJob.refresh();
+
+        // verify
+        verify(opportunityIndexScannerMock, never()).getDocuments();
+        verify(relatedOpportunitiesMock, never()).saveSnapshots(any());
+    }
+
+    private static OpportunityDto getOpportunity(String title) {
+        OpportunityDto opportunity = new OpportunityDto();
+        opportunity.setTitle(title);
+        return opportunity;
+    }
+
+    private static SnapshotState getState(String opportunityId, OpportunityDto opportunity) {
+        String contentHash = RelatedOpportunities.toSnapshot(opportunityId, opportunity).getContentHash();
+        return new SnapshotState() {
+            @Override
+            public String getOpportunityId() {
+                return opportunityId;
+            }
+
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+
+            @Override
+            public Instant getRelatedComputedAt() {
+                return Instant.now();
+            }
+        };
+    }
+}
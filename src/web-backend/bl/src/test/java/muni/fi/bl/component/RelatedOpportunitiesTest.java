@@ -0,0 +1,160 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.dal.entity.OpportunitySnapshot;
+import muni.fi.dal.entity.RelatedOpportunity;
+import muni.fi.dal.repository.OpportunitySnapshotRepository;
+import muni.fi.dal.repository.RelatedOpportunityRepository;
+import muni.fi.dtos.OpportunityDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RelatedOpportunitiesTest {
+
+    @Mock
+    private OpportunitySnapshotRepository opportunitySnapshotRepositoryMock;
+    @Mock
+    private RelatedOpportunityRepository relatedOpportunityRepositoryMock;
+    @Mock
+    private ApplicationEventPublisher eventPublisherMock;
+
+    @Captor
+    private ArgumentCaptor<List<RelatedOpportunity>> relatedCaptor;
+
+    // tested class
+    private RelatedOpportunities relatedOpportunities;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        relatedOpportunities = new RelatedOpportunities(opportunitySnapshotRepositoryMock, relatedOpportunityRepositoryMock,
+                eventPublisherMock, new SearchConfigProperties());
+    }
+
+    @Test
+    void find() {
+        // prepare
+        OpportunitySnapshot snapshot = getSnapshot("opp1", "Quantum Computing");
+        snapshot.setRelatedComputedAt(Instant.now());
+        when(opportunitySnapshotRepositoryMock.findById("opp1")).thenReturn(Optional.of(snapshot));
+        RelatedOpportunity related = new RelatedOpportunity();
+        related.setOpportunityId("opp1");
+        related.setRelatedId("opp2");
+        related.setScore(12.5);
+        RelatedOpportunity deleted = new RelatedOpportunity();
+        deleted.setOpportunityId("opp1");
+        deleted.setRelatedId("opp3");
+        deleted.setPosition(1);
+        when(relatedOpportunityRepositoryMock.findByOpportunityIdOrderByPosition("opp1")).thenReturn(List.of(related, deleted));
+        when(opportunitySnapshotRepositoryMock.findAllById(List.of("opp2", "opp3")))
+                .thenReturn(List.of(getSnapshot("opp2", "Machine Learning")));
+
+        // tested method
+        Optional<List<OpportunityDto>> results = relatedOpportunities.find("opp1");
+
+        // verify
+        assertThat(results.isPresent(), equalTo(true));
+        assertThat(results.get().size(), equalTo(1));
+        OpportunityDto result = results.get().get(0);
+        assertThat(result.getTitle(), equalTo("Machine Learning"));
+        assertThat(result.getEsId(), equalTo("opp2"));
+        assertThat(result.getScore(), equalTo(12.5));
+        assertThat(result.getHitSource(), equalTo(DESCRIPTION_FIELD));
+        assertThat(result.getRank(), equalTo(1));
+    }
+
+    @Test
+    void findNotComputed() {
+        // prepare
+        when(opportunitySnapshotRepositoryMock.findById("opp1")).thenReturn(Optional.of(getSnapshot("opp1", "Quantum Computing")));
+
+        // tested method
+        Optional<List<OpportunityDto>> results = relatedOpportunities.find("opp1");
+
+        // verify
+        assertThat(results.isPresent(), equalTo(false));
+        verify(relatedOpportunityRepositoryMock, never()).findByOpportunityIdOrderByPosition(anyString());
+    }
+
+    @Test
+    void replace() {
+        // prepare
+        OpportunityDto related = new OpportunityDto();
+        related.setEsId("opp2");
+        related.setScore(12.5);
+
+        // tested method
+        relatedOpportunities.replace("opp1", List.of(related));
+
+        // verify
+        verify(relatedOpportunityRepositoryMock).deleteByOpportunityIdIn(List.of("opp1"));
+        verify(relatedOpportunityRepositoryMock).saveAll(relatedCaptor.capture());
+        RelatedOpportunity entity = relatedCaptor.getValue().get(0);
+        assertThat(entity.getOpportunityId(), equalTo("opp1"));
+        assertThat(entity.getRelatedId(), equalTo("opp2"));
+        assertThat(entity.getScore(), equalTo(12.5));
+        assertThat(entity.getPosition(), equalTo(0));
+        verify(opportunitySnapshotRepositoryMock).setRelatedComputedAt(eq("opp1"), any(Instant.class));
+    }
+
+    @Test
+    void deleteReferenced() {
+        // prepare
+        when(relatedOpportunityRepositoryMock.findOpportunityIdsByRelatedIdIn(List.of("opp2"))).thenReturn(Set.of("opp1"));
+
+        // tested method
+        relatedOpportunities.delete(List.of("opp2"));
+
+        // verify
+        // the opportunities referencing the deleted one are computed again
+        verify(opportunitySnapshotRepositoryMock).clearRelatedComputedAt(Set.of("opp1"));
+        verify(relatedOpportunityRepositoryMock).deleteByOpportunityIdIn(List.of("opp2"));
+        verify(opportunitySnapshotRepositoryMock).deleteByOpportunityIdIn(List.of("opp2"));
+    }
+
+    @Test
+    void toSnapshot() {
+        // prepare
+        OpportunityDto opportunity = new OpportunityDto();
+        opportunity.setTitle("Quantum Computing");
+        OpportunityDto changed = new OpportunityDto();
+        changed.setTitle("Quantum Computing");
+        changed.setDescription("Research project");
+
+        // tested method
+        OpportunitySnapshot snapshot = RelatedOpportunities.toSnapshot("opp1", opportunity);
+
+        // verify
+        assertThat(snapshot.getContentHash(), equalTo(RelatedOpportunities.toSnapshot("opp1", opportunity).getContentHash()));
+        assertThat(snapshot.getContentHash(), not(equalTo(RelatedOpportunities.toSnapshot("opp1", changed).getContentHash())));
+        assertThat(snapshot.getRelatedComputedAt(), nullValue());
+    }
+
+    private static OpportunitySnapshot getSnapshot(String opportunityId, String title) {
+        OpportunityDto opportunity = new OpportunityDto();
+        opportunity.setTitle(title);
+        return RelatedOpportunities.toSnapshot(opportunityId, opportunity);
+    }
+}
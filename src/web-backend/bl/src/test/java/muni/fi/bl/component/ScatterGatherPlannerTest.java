@@ -0,0 +1,76 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+class ScatterGatherPlannerTest {
+
+    // tested class
+    private ScatterGatherPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setScatterChunkSize(10);
+        properties.setScatterMaxChunks(4);
+        properties.setScatterConcurrency(3);
+        planner = new ScatterGatherPlanner(properties);
+    }
+
+    @Test
+    void planSmallSelection() {
+        // prepare
+        List<Integer> selection = getSelection(10);
+
+        // tested method
+        ScatterGatherPlanner.Plan<Integer> plan = planner.plan(selection);
+
+        // verify
+        assertThat(plan.isScattered(), is(false));
+        assertThat(plan.chunks(), equalTo(List.of(selection)));
+        assertThat(plan.concurrency(), equalTo(1));
+    }
+
+    @Test
+    void planBalancedChunks() {
+        // prepare
+        List<Integer> selection = getSelection(21);
+
+        // tested method
+        ScatterGatherPlanner.Plan<Integer> plan = planner.plan(selection);
+
+        // verify
+        assertThat(plan.isScattered(), is(true));
+        assertThat(plan.chunks().size(), equalTo(3));
+        assertThat(plan.chunks().get(0), equalTo(selection.subList(0, 7)));
+        assertThat(plan.chunks().get(2), equalTo(selection.subList(14, 21)));
+        assertThat(plan.concurrency(), equalTo(3));
+    }
+
+    @Test
+    void planLargeSelection() {
+        // prepare
+        List<Integer> selection = getSelection(200);
+
+        // tested method
+        ScatterGatherPlanner.Plan<Integer> plan = planner.plan(selection);
+
+        // verify
+        // the number of chunks is bounded, the chunks grow instead
+        assertThat(plan.chunks().size(), equalTo(4));
+        assertThat(plan.chunks().get(3).size(), equalTo(50));
+        assertThat(plan.concurrency(), equalTo(3));
+    }
+
+    private static List<Integer> getSelection(int size) {
+        return IntStream.range(0, size).boxed().toList();
+    }
+}
@@ -0,0 +1,44 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import muni.fi.bl.exceptions.AppException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCursorTest {
+
+    @Test
+    void encodeDecode() {
+        // prepare
+        SearchCursor cursor = new SearchCursor("46ToAwMDaWR5BXV1aWQy+/=",
+                List.of(FieldValue.of("health"), FieldValue.of(12L), FieldValue.of(1.5), FieldValue.of(true), FieldValue.NULL));
+
+        // tested method
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        // verify
+        assertThat(decoded.pitId(), equalTo(cursor.pitId()));
+        assertThat(decoded.searchAfter().get(0).stringValue(), equalTo("health"));
+        assertThat(decoded.searchAfter().get(1).longValue(), equalTo(12L));
+        assertThat(decoded.searchAfter().get(2).doubleValue(), equalTo(1.5));
+        assertThat(decoded.searchAfter().get(3).booleanValue(), is(true));
+        assertThat(decoded.searchAfter().get(4).isNull(), is(true));
+    }
+
+    @Test
+    void decodeInvalid() {
+        // prepare
+        String missingPit = Base64.getUrlEncoder().encodeToString("{\"after\": []}".getBytes());
+
+        // verify
+        assertThrows(AppException.class, () -> SearchCursor.decode("@@@"));
+        assertThrows(AppException.class, () -> SearchCursor.decode(missingPit));
+    }
+}
@@ -0,0 +1,200 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.Endpoint;
+import co.elastic.clients.transport.JsonEndpoint;
+import co.elastic.clients.transport.TransportOptions;
+import jakarta.json.stream.JsonParser;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.dtos.OpportunityDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+class SearchPerformerTest {
+
+    private static final long ROUND_TRIP_LATENCY_MS = 50;
+
+    private static final String HIT_JSON = """
+            {"_index": "crowdhelix_data", "_id": "abcd", "_score": 1.5, "_source": {"title": "Some title"}}
+            """;
+    private static final String SEARCH_RESPONSE_JSON = """
+            {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "failed": 0},
+             "hits": {"hits": [%s]}, "status": 200}
+            """.formatted(HIT_JSON);
+
+    private StubTransport transport;
+
+    // tested class
+    private SearchPerformer<OpportunityDto> searchPerformer;
+
+    @AfterEach
+    void tearDown() {
+        transport.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        transport = new StubTransport();
+        searchPerformer = new SearchPerformer<>(new ElasticsearchClient(transport), new ElasticsearchAsyncClient(transport), new SearchConfigProperties());
+    }
+
+    @Test
+    void multiSearchKeyedBySubQueryName() {
+        // tested method
+        Map<String, ResponseBody<OpportunityDto>> responses = searchPerformer.getMultiSearchResponse(
+                null, getSubQueries(), CROWDHELIX_INDEX, OpportunityDto.class);
+
+        // verify
+        assertThat(transport.roundTrips.get(), equalTo(1));
+        assertThat(responses.keySet().stream().toList(), equalTo(getSubQueries().keySet().stream().toList()));
+        assertThat(responses.get(TITLE_FIELD).hits().hits().get(0).id(), equalTo("abcd"));
+        assertThat(responses.get(DESCRIPTION_FIELD).hits().hits().get(0).score(), equalTo(1.5));
+    }
+
+    @Test
+    void multiSearchLatencyComparedToSequentialSearches() {
+        Map<String, Query> subQueries = getSubQueries();
+
+        // sequential searches, one round trip per sub-query
+        long sequentialStart = System.nanoTime();
+        subQueries.values().forEach(query ->
+                searchPerformer.getSearchResponse(null, query, CROWDHELIX_INDEX, OpportunityDto.class));
+        long sequentialMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sequentialStart);
+        int sequentialRoundTrips = transport.roundTrips.getAndSet(0);
+
+        // batched search, single round trip
+        long batchedStart = System.nanoTime();
+        searchPerformer.getMultiSearchResponse(null, subQueries, CROWDHELIX_INDEX, OpportunityDto.class);
+        long batchedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchedStart);
+        int batchedRoundTrips = transport.roundTrips.get();
+
+        // verify
+        assertThat(sequentialRoundTrips, equalTo(subQueries.size()));
+        assertThat(batchedRoundTrips, equalTo(1));
+        assertThat(batchedMs, lessThan(sequentialMs));
+    }
+
+    @Test
+    void concurrentAsyncMultiSearchesComparedToSequentialMultiSearches() {
+        Map<String, Query> subQueries = getSubQueries();
+        int searchesCount = 4;
+
+        // sequential blocking multi-searches
+        long sequentialStart = System.nanoTime();
+        for (int i = 0; i < searchesCount; i++) {
+            searchPerformer.getMultiSearchResponse(null, subQueries, CROWDHELIX_INDEX, OpportunityDto.class);
+        }
+        long sequentialMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sequentialStart);
+
+        // concurrent non-blocking multi-searches
+        long asyncStart = System.nanoTime();
+        List<CompletableFuture<Map<String, ResponseBody<OpportunityDto>>>> futures = new ArrayList<>();
+        for (int i = 0; i < searchesCount; i++) {
+            futures.add(searchPerformer.getMultiSearchResponseAsync(null, subQueries, CROWDHELIX_INDEX, OpportunityDto.class));
+        }
+        List<Map<String, ResponseBody<OpportunityDto>>> responses = futures.stream().map(CompletableFuture::join).toList();
+        long asyncMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - asyncStart);
+
+        // verify
+        assertThat(transport.roundTrips.get(), equalTo(2 * searchesCount));
+        assertThat(responses.get(0).get(TITLE_FIELD).hits().hits().get(0).id(), equalTo("abcd"));
+        assertThat(asyncMs, lessThan(sequentialMs));
+    }
+
+    private static Map<String, Query> getSubQueries() {
+        Map<String, Query> subQueries = new LinkedHashMap<>();
+        subQueries.put(TITLE_FIELD, MatchAllQuery.of(m -> m)._toQuery());
+        subQueries.put(DESCRIPTION_FIELD, MatchAllQuery.of(m -> m)._toQuery());
+        return subQueries;
+    }
+
+    /**
+     * Transport answering every request with a canned response after a fixed network latency
+     */
+    private static class StubTransport implements ElasticsearchTransport {
+
+        private final JsonpMapper mapper = new JacksonJsonpMapper();
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        @Override
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(
+                RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) throws IOException {
+            roundTrips.incrementAndGet();
+            try {
+                Thread.sleep(ROUND_TRIP_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            String json = request instanceof MsearchRequest msearchRequest
+                    ? getMultiSearchResponseJson(msearchRequest.searches().size())
+                    : SEARCH_RESPONSE_JSON;
+            JsonParser parser = mapper.jsonProvider().createParser(new StringReader(json));
+            return ((JsonEndpoint<RequestT, ResponseT, ErrorT>) endpoint).responseDeserializer().deserialize(parser, mapper);
+        }
+
+        @Override
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(
+                RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return performRequest(request, endpoint, options);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return mapper;
+        }
+
+        @Override
+        public TransportOptions options() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            executor.shutdown();
+        }
+
+        private static String getMultiSearchResponseJson(int searchesCount) {
+            return """
+                    {"took": 1, "responses": [%s]}
+                    """.formatted(String.join(",", Collections.nCopies(searchesCount, SEARCH_RESPONSE_JSON)));
+        }
+    }
+}
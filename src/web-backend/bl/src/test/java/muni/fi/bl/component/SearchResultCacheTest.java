@@ -0,0 +1,135 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.AppException;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.query.SearchInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static muni.fi.bl.component.SearchResultCache.key;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchResultCacheTest {
+
+    // tested class
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SearchResultCache(new SearchConfigProperties());
+    }
+
+    @Test
+    void canonicalKey() {
+        // prepare
+        SearchInfo info1 = new SearchInfo(10, List.of("Health", "Digital"), null, List.of(), List.of("2", "1"),
+                List.of(2L, 1L), true, "  Machine   Learning ");
+        SearchInfo info2 = new SearchInfo(10, List.of("Digital", "Health"), List.of(), null, List.of("2", "1"),
+                List.of(2L, 1L), true, "machine learning");
+        SearchInfo info3 = new SearchInfo(20, List.of("Digital", "Health"), List.of(), null, List.of("1", "2"),
+                List.of(1L, 2L), true, "machine learning");
+
+        // verify
+        assertThat(key("search", info1), equalTo(key("search", info2)));
+        assertThat(key("search", info1), not(equalTo(key("search", info3))));
+        assertThat(key("search", info1), not(equalTo(key("other", info1))));
+    }
+
+    @Test
+    void canonicalKeySelectionOrder() {
+        // prepare
+        SearchInfo info1 = new SearchInfo(10, null, null, null, List.of("2", "1"), List.of(2L, 1L), true, null);
+        SearchInfo info2 = new SearchInfo(10, null, null, null, List.of("1", "2"), List.of(2L, 1L), true, null);
+        SearchInfo info3 = new SearchInfo(10, null, null, null, List.of("2", "1"), List.of(1L, 2L), true, null);
+
+        // verify
+        // the authors and projects are chunked in the selection order
+        assertThat(key("search", info1), not(equalTo(key("search", info2))));
+        assertThat(key("search", info1), not(equalTo(key("search", info3))));
+    }
+
+    @Test
+    void getCached() {
+        // prepare
+        AtomicInteger loads = new AtomicInteger();
+
+        // tested method
+        String result1 = cache.get(key("search", "id"), () -> "result" + loads.incrementAndGet());
+        String result2 = cache.get(key("search", "id"), () -> "result" + loads.incrementAndGet());
+
+        // verify
+        assertThat(result1, equalTo("result1"));
+        assertThat(result2, equalTo("result1"));
+        assertThat(loads.get(), equalTo(1));
+        assertThat(cache.getStats().hitCount(), equalTo(1L));
+        assertThat(cache.getStats().missCount(), equalTo(1L));
+    }
+
+    @Test
+    void invalidateAll() {
+        // prepare
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(key("search", "id"), () -> "result" + loads.incrementAndGet());
+
+        // tested method
+        cache.invalidateAll();
+
+        // verify
+        assertThat(cache.get(key("search", "id"), () -> "result" + loads.incrementAndGet()), equalTo("result2"));
+        assertThrows(ConnectionException.class, () -> cache.get(key("search", "id2"), () -> {
+            throw new ConnectionException("Elasticsearch connection error");
+        }));
+    }
+
+    @Test
+    void serveStaleOnError() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setCacheTtlSeconds(0);
+        cache = new SearchResultCache(properties);
+        cache.get(key("search", "id"), () -> "good");
+
+        // tested method
+        String result = cache.get(key("search", "id"), () -> {
+            throw new ConnectionException("Elasticsearch connection error");
+        });
+
+        // verify
+        assertThat(result, equalTo("good"));
+        assertThat(cache.getStats().staleHitCount(), equalTo(1L));
+        // errors not caused by Elasticsearch are not hidden
+        assertThrows(AppException.class, () -> cache.get(key("search", "id"), () -> {
+            throw new AppException("No projects data found for the selected authors");
+        }));
+    }
+
+    @Test
+    void serveStaleOnErrorAsync() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setCacheTtlSeconds(0);
+        cache = new SearchResultCache(properties);
+        cache.getAsync(key("search", "id"), () -> CompletableFuture.completedFuture("good")).join();
+
+        // tested method
+        String result = cache.<String>getAsync(key("search", "id"),
+                () -> CompletableFuture.failedFuture(new ConnectionException("Elasticsearch connection error"))).join();
+        CompletableFuture<String> missing = cache.getAsync(key("search", "id2"),
+                () -> CompletableFuture.failedFuture(new ConnectionException("Elasticsearch connection error")));
+
+        // verify
+        assertThat(result, equalTo("good"));
+        Throwable exception = assertThrows(CompletionException.class, missing::join);
+        assertThat(exception.getCause(), instanceOf(ConnectionException.class));
+    }
+}
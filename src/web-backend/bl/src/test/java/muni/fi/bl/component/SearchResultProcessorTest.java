@@ -1,11 +1,13 @@
 package muni.fi.bl.component;
 
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import muni.fi.dtos.BaseEsDto;
 import muni.fi.dtos.OpportunityDto;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -76,6 +78,53 @@ class SearchResultProcessorTest {
         assertThat("Second Score", results.get(1).getScore(), equalTo(resultScore1));
     }
 
+    @Test
+    void aggregateResultsByScoreWeightedSources() {
+        // prepare
+        Map<String, List<Hit<OpportunityDto>>> topResultsMap = new LinkedHashMap<>();
+        topResultsMap.put("title", List.of(getHit("1", 1.0), getHit("2", 4.0)));
+        topResultsMap.put("description", List.of(getHit("1", 2.0), getHit("3", 3.0)));
+        topResultsMap.put("keywords", List.of(getHit("3", 1.0), getHit("4", 1.0)));
+        Map<String, Double> weights = Map.of("title", 3.0, "keywords", 0.5);
+
+        // tested method
+        var results = resultProcessor.aggregateResultsByScore(topResultsMap, weights, 3);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(3));
+        assertThat("Order", results.get(0).getEsId(), equalTo("2"));
+        assertThat("Order", results.get(1).getEsId(), equalTo("1"));
+        assertThat("Order", results.get(2).getEsId(), equalTo("3"));
+        assertThat("Best Score", results.get(0).getScore(), equalTo(12.0));
+        assertThat("Second Score", results.get(1).getScore(), equalTo(5.0));
+        assertThat("Third Score", results.get(2).getScore(), equalTo(3.5));
+        assertThat("Hit source", results.get(2).getHitSource(), equalTo("description and keywords"));
+        assertThat("Rank", results.get(2).getRank(), equalTo(3));
+    }
+
+    @Test
+    void aggregateResultsByScoreLargeInput() {
+        // prepare
+        int hitsCount = 50_000;
+        Map<String, List<Hit<OpportunityDto>>> topResultsMap = new LinkedHashMap<>();
+        for (String source : List.of("title", "description", "keywords")) {
+            List<Hit<OpportunityDto>> hits = new ArrayList<>(hitsCount);
+            for (int i = 0; i < hitsCount; i++) {
+                hits.add(getHit(String.valueOf(i), (double) i));
+            }
+            topResultsMap.put(source, hits);
+        }
+
+        // tested method
+        var results = resultProcessor.aggregateResultsByScore(topResultsMap, Map.of(), 10);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(10));
+        assertThat("Order", results.get(0).getEsId(), equalTo(String.valueOf(hitsCount - 1)));
+        assertThat("Best Score", results.get(0).getScore(), equalTo(3.0 * (hitsCount - 1)));
+        assertThat("Order", results.get(9).getEsId(), equalTo(String.valueOf(hitsCount - 10)));
+    }
+
     @Test
     void aggregateResultsAndRecommendationsEmpty() {
         // prepare
@@ -143,4 +192,120 @@ class SearchResultProcessorTest {
         assertThat("Second Score", results.get(1).getScore(), equalTo(12.0));
         assertThat("Third Score", results.get(2).getScore(), equalTo(8.0));
     }
-}
\ No newline at end of file
+
+    @Test
+    void aggregateResultsAndRecommendationsLimit() {
+        // prepare
+        List<OpportunityDto> searchResults = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            var doc = new OpportunityDto();
+            doc.setEsId(String.valueOf(i));
+            doc.setScore(1.0);
+            doc.setHitSource("any");
+            searchResults.add(doc);
+        }
+        var recommendation1 = new OpportunityDto();
+        var recommendation2 = new OpportunityDto();
+        recommendation1.setEsId("3");
+        recommendation1.setScore(2.0);
+        recommendation2.setEsId("3");
+        recommendation2.setScore(1.0);
+
+        // tested method
+        var results = resultProcessor.aggregateResultsAndRecommendations(searchResults, List.of(recommendation1, recommendation2), 2);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(2));
+        assertThat("Order", results.get(0).getEsId(), equalTo("3"));
+        assertThat("Order", results.get(1).getEsId(), equalTo("1"));
+        assertThat("Best Score", results.get(0).getScore(), equalTo(4.0));
+        assertThat("Hit source", results.get(0).getHitSource(), equalTo("any (+recommendation) (+recommendation)"));
+    }
+
+    @Test
+    void aggregateIdsByScore() {
+        // prepare
+        Map<String, List<Hit<OpportunityDto>>> topResultsMap = new LinkedHashMap<>();
+        topResultsMap.put("title", List.of(getIdHit("1", 2.0), getIdHit("2", 5.0)));
+        topResultsMap.put("description", List.of(getIdHit("1", 13.0), getIdHit("2", 10.0), getIdHit("3", 1.0)));
+
+        // tested method
+        List<BaseEsDto> results = resultProcessor.aggregateIdsByScore(topResultsMap, Map.of("title", 2.0), 2);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(2));
+        assertThat("Order", results.get(0).getEsId(), equalTo("2"));
+        assertThat("Order", results.get(1).getEsId(), equalTo("1"));
+        assertThat("Best Score", results.get(0).getScore(), equalTo(20.0));
+        assertThat("Hit source", results.get(0).getHitSource(), equalTo("title and description"));
+        assertThat("Rank", results.get(1).getRank(), equalTo(2));
+    }
+
+    @Test
+    void fuseByReciprocalRank() {
+        // prepare
+        List<BaseEsDto> chunk1 = resultProcessor.aggregateIdsByScore(
+                Map.of("description", List.of(getIdHit("1", 10.0), getIdHit("2", 8.0))), Map.of(), 10);
+        List<BaseEsDto> chunk2 = resultProcessor.aggregateIdsByScore(
+                Map.of("title", List.of(getIdHit("3", 30.0), getIdHit("1", 5.0))), Map.of(), 10);
+
+        // tested method
+        List<BaseEsDto> results = resultProcessor.fuseByReciprocalRank(List.of(chunk1, chunk2), 10);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(3));
+        // found by both chunks
+        assertThat("Order", results.get(0).getEsId(), equalTo("1"));
+        // the score of a single chunk doesn't matter
+        assertThat("Order", results.get(1).getEsId(), equalTo("3"));
+        assertThat("Order", results.get(2).getEsId(), equalTo("2"));
+        assertThat("Best Score", results.get(0).getScore(), equalTo(30.0));
+        assertThat("Hit source", results.get(0).getHitSource(), equalTo("description and title"));
+        assertThat("Rank", results.get(2).getRank(), equalTo(3));
+    }
+
+    @Test
+    void fuseByReciprocalRankSingleRanking() {
+        // prepare
+        List<BaseEsDto> chunk = resultProcessor.aggregateIdsByScore(
+                Map.of("description", List.of(getIdHit("1", 10.0), getIdHit("2", 8.0))), Map.of(), 10);
+
+        // tested method
+        List<BaseEsDto> results = resultProcessor.fuseByReciprocalRank(List.of(chunk), 1);
+
+        // verify
+        assertThat("List size", results.size(), equalTo(1));
+        assertThat("Original score", results.get(0).getScore(), equalTo(10.0));
+    }
+
+    @Test
+    void withDocuments() {
+        // prepare
+        List<BaseEsDto> rankedResults = resultProcessor.aggregateIdsByScore(
+                Map.of("description", List.of(getIdHit("1", 3.0), getIdHit("2", 2.0), getIdHit("3", 1.0))), Map.of(), 3);
+        var doc1 = new OpportunityDto();
+        var doc3 = new OpportunityDto();
+        doc1.setTitle("title1");
+        doc3.setTitle("title3");
+
+        // tested method
+        List<OpportunityDto> results = resultProcessor.withDocuments(rankedResults, Map.of("1", doc1, "3", doc3));
+
+        // verify
+        assertThat("Missing documents are left out", results.size(), equalTo(2));
+        assertThat("Order", results.get(0).getTitle(), equalTo("title1"));
+        assertThat("Order", results.get(1).getTitle(), equalTo("title3"));
+        assertThat("Id", results.get(1).getEsId(), equalTo("3"));
+        assertThat("Score", results.get(1).getScore(), equalTo(1.0));
+        assertThat("Hit source", results.get(1).getHitSource(), equalTo("description"));
+        assertThat("Rank", results.get(1).getRank(), equalTo(2));
+    }
+
+    private static Hit<OpportunityDto> getIdHit(String id, double score) {
+        return new Hit.Builder<OpportunityDto>().score(score).index("any").id(id).build();
+    }
+
+    private static Hit<OpportunityDto> getHit(String id, double score) {
+        return new Hit.Builder<OpportunityDto>().source(new OpportunityDto()).score(score).index("any").id(id).build();
+    }
+}
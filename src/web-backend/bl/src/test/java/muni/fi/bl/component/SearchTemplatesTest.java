@@ -0,0 +1,241 @@
+package muni.fi.bl.component;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch.core.GetScriptRequest;
+import co.elastic.clients.elasticsearch.core.GetScriptResponse;
+import co.elastic.clients.elasticsearch.core.PutScriptRequest;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import muni.fi.bl.config.SearchConfigProperties;
+import muni.fi.bl.exceptions.ConnectionException;
+import muni.fi.query.SearchInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_ID;
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_SOURCE;
+import static muni.fi.bl.component.SearchTemplates.MUSTACHE_LANG;
+import static muni.fi.bl.component.SearchTemplates.PHRASE_TEMPLATE_ID;
+import static muni.fi.bl.component.SearchTemplates.PHRASE_TEMPLATE_SOURCE;
+import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.HELIX_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class SearchTemplatesTest {
+
+    private static final JsonpMapper JSONP_MAPPER = new JacksonJsonpMapper();
+
+    @Mock
+    private ElasticsearchClient elasticsearchClientMock;
+    @Mock
+    private IndexAnalysisManager indexAnalysisManagerMock;
+
+    @Captor
+    private ArgumentCaptor<PutScriptRequest> putScriptCaptor;
+
+    // tested class
+    private SearchTemplates searchTemplates;
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+
+        searchTemplates = new SearchTemplates(elasticsearchClientMock, indexAnalysisManagerMock, new SearchConfigProperties());
+    }
+
+    @Test
+    void ensureTemplatesMissing() throws IOException {
+        // prepare
+        when(elasticsearchClientMock.getScript(any(GetScriptRequest.class)))
+                .thenThrow(new ElasticsearchException("_scripts", ErrorResponse.of(e -> e
+                        .status(404)
+                        .error(c -> c.type("resource_not_found_exception").reason("not found")))));
+
+        // tested method
+        searchTemplates.ensureTemplates();
+
+        // verify
+        verify(elasticsearchClientMock, times(2)).putScript(putScriptCaptor.capture());
+        for (PutScriptRequest request : putScriptCaptor.getAllValues()) {
+            assertThat(request.script().lang(), equalTo(MUSTACHE_LANG));
+        }
+        assertThat(searchTemplates.isReady(), is(true));
+    }
+
+    @Test
+    void ensureTemplatesOutdated() throws IOException {
+        // prepare
+        when(elasticsearchClientMock.getScript(any(GetScriptRequest.class)))
+                .thenReturn(getScriptResponse(MLT_TEMPLATE_ID, "{}"));
+
+        // tested method
+        searchTemplates.ensureTemplates();
+
+        // verify
+        verify(elasticsearchClientMock, times(2)).putScript(any(PutScriptRequest.class));
+        assertThat(searchTemplates.isReady(), is(true));
+    }
+
+    @Test
+    void ensureTemplatesUpToDate() throws IOException {
+        // prepare
+        GetScriptResponse mltResponse = getScriptResponse(MLT_TEMPLATE_ID, MLT_TEMPLATE_SOURCE);
+        GetScriptResponse phraseResponse = getScriptResponse(PHRASE_TEMPLATE_ID, PHRASE_TEMPLATE_SOURCE);
+        when(elasticsearchClientMock.getScript(any(GetScriptRequest.class))).thenAnswer(invocation ->
+                MLT_TEMPLATE_ID.equals(invocation.getArgument(0, GetScriptRequest.class).id()) ? mltResponse : phraseResponse);
+
+        // tested method
+        searchTemplates.ensureTemplates();
+
+        // verify
+        verify(elasticsearchClientMock, never()).putScript(any(PutScriptRequest.class));
+        assertThat(searchTemplates.isReady(), is(true));
+    }
+
+    @Test
+    void ensureTemplatesElasticUnavailable() throws IOException {
+        // prepare
+        when(elasticsearchClientMock.getScript(any(GetScriptRequest.class))).thenThrow(new IOException());
+
+        // tested method
+        Throwable exception = assertThrows(ConnectionException.class, () -> searchTemplates.ensureTemplates());
+
+        // verify
+        assertThat(exception.getCause(), instanceOf(IOException.class));
+        assertThat(exception.getMessage(), equalTo(ELASTIC_CONNECTION_ERROR));
+        assertThat(searchTemplates.isReady(), is(false));
+    }
+
+    @Test
+    void verifyTemplatesDisabled() throws IOException {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setSearchTemplates(false);
+        searchTemplates = new SearchTemplates(elasticsearchClientMock, indexAnalysisManagerMock, properties);
+
+        // tested method
+        searchTemplates.verifyTemplates();
+
+        // verify
+        verify(elasticsearchClientMock, never()).getScript(any(GetScriptRequest.class));
+        assertThat(searchTemplates.isReady(), is(false));
+    }
+
+    @Test
+    void getMoreLikeThisParamsDocs() {
+        // prepare
+        SearchInfo info = new SearchInfo(10, List.of("helix"), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false, null);
+
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getMoreLikeThisParams(List.of("some\n text"), List.of("description"),
+                info, 10, List.of());
+
+        // verify
+        assertThat(params.get("size").to(Integer.class), equalTo(10));
+        assertThat(params.get("source").to(Boolean.class), is(false));
+        assertThat(params.get("like").toJson(JSONP_MAPPER).toString(), containsString("\"description\":\"some text\""));
+        assertThat(params.get("like").toJson(JSONP_MAPPER).toString(), containsString("\"_index\":\"" + CROWDHELIX_INDEX + "\""));
+        assertThat(params.get("filters").toJson(JSONP_MAPPER).toString(), containsString("{\"terms\":{\"" + HELIX_FIELD + "\":[\"helix\"]}}"));
+    }
+
+    @Test
+    void getMoreLikeThisParamsId() {
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getMoreLikeThisParams("esId", MU_INDEX, List.of("description"),
+                null, 5, List.of("id"));
+
+        // verify
+        assertThat(params.get("like").toJson(JSONP_MAPPER).toString(), containsString("\"_id\":\"esId\""));
+        assertThat(params.get("like").toJson(JSONP_MAPPER).toString(), containsString("per_field_analyzer"));
+        assertThat(params.get("source").toJson(JSONP_MAPPER).toString(), equalTo("{\"includes\":[\"id\"]}"));
+        assertThat(params.get("filters").toJson(JSONP_MAPPER).toString(), equalTo("[]"));
+    }
+
+    @Test
+    void getMoreLikeThisParamsIdStoredTermVectors() {
+        // prepare
+        when(indexAnalysisManagerMock.hasStoredTermVectors(CROWDHELIX_INDEX)).thenReturn(true);
+
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getMoreLikeThisParams("esId", CROWDHELIX_INDEX, List.of("description"),
+                null, 5, null);
+
+        // verify
+        assertThat(params.get("like").toJson(JSONP_MAPPER).toString(), not(containsString("per_field_analyzer")));
+    }
+
+    @Test
+    void getMoreLikeThisByIdsParams() {
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getMoreLikeThisByIdsParams(List.of("uco1", "uco2"), AUTHOR_PROFILE_INDEX,
+                List.of("title"), null, 5, List.of());
+
+        // verify
+        String like = params.get("like").toJson(JSONP_MAPPER).toString();
+        assertThat(like, containsString("\"_id\":\"uco1\""));
+        assertThat(like, containsString("\"_id\":\"uco2\""));
+        assertThat(like, containsString("\"_index\":\"" + AUTHOR_PROFILE_INDEX + "\""));
+        assertThat(params.get("fields").toJson(JSONP_MAPPER).toString(), equalTo("[\"title\"]"));
+    }
+
+    @Test
+    void getPhraseParams() {
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getPhraseParams("phrase", null, 30);
+
+        // verify
+        assertThat(params.get("query").to(String.class), equalTo("phrase"));
+        assertThat(params.get("size").to(Integer.class), equalTo(30));
+        assertThat(params.get("post_filter").to(Boolean.class), is(false));
+    }
+
+    @Test
+    void getPhraseParamsPostFilter() {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setFilterContext(false);
+        searchTemplates = new SearchTemplates(elasticsearchClientMock, indexAnalysisManagerMock, properties);
+
+        // tested method
+        Map<String, JsonData> params = searchTemplates.getPhraseParams("phrase", null, 30);
+
+        // verify
+        assertThat(params.get("post_filter").to(Boolean.class), is(true));
+        assertThat(PHRASE_TEMPLATE_SOURCE, containsString("\"post_filter\""));
+        assertThat(PHRASE_TEMPLATE_SOURCE, containsString("\"filter\": {{^post_filter}}"));
+    }
+
+    private static GetScriptResponse getScriptResponse(String id, String source) {
+        return GetScriptResponse.of(r -> r
+                .id(id)
+                .found(true)
+                .script(s -> s.lang(MUSTACHE_LANG).source(source)));
+    }
+}
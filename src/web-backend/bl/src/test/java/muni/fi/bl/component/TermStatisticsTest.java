@@ -0,0 +1,108 @@
+package muni.fi.bl.component;
+
+import muni.fi.bl.component.TermStatistics.RebuildEvent;
+import muni.fi.dal.repository.ProjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class TermStatisticsTest {
+
+    @Mock
+    private ProjectRepository projectRepositoryMock;
+    @Mock
+    private ApplicationEventPublisher eventPublisherMock;
+
+    // tested class
+    private TermStatistics termStatistics;
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+
+        when(projectRepositoryMock.findAllProcessedAnnotations()).thenReturn(List.of(
+                "research data health",
+                "research data learning",
+                "research health",
+                "research machine learning"));
+        termStatistics = new TermStatistics(projectRepositoryMock, eventPublisherMock, Runnable::run);
+    }
+
+    @Test
+    void getTopTermsDocument() {
+        // tested method
+        String prunedDoc = termStatistics.getTopTermsDocument(List.of("research data neural", "neural"), 2);
+
+        // verify
+        // 'neural' is unknown to the corpus and frequent in the docs, 'research' is in every annotation
+        assertThat(prunedDoc, equalTo("neural neural data"));
+    }
+
+    @Test
+    void getTopTermsDocumentRepeatLimit() {
+        // prepare
+        String doc = "cell ".repeat(TermStatistics.MAX_TERM_REPEAT + 3);
+
+        // tested method
+        String prunedDoc = termStatistics.getTopTermsDocument(List.of(doc), 10);
+
+        // verify
+        assertThat(prunedDoc, equalTo("cell ".repeat(TermStatistics.MAX_TERM_REPEAT).trim()));
+    }
+
+    @Test
+    void getTopTermsDocumentStatisticsReused() {
+        // tested method
+        termStatistics.getTopTermsDocument(List.of("data"), 10);
+        termStatistics.getTopTermsDocument(List.of("health"), 10);
+        termStatistics.onRebuild(new RebuildEvent());
+        termStatistics.getTopTermsDocument(List.of("learning"), 10);
+
+        // verify
+        verify(projectRepositoryMock, times(2)).findAllProcessedAnnotations();
+    }
+
+    @Test
+    void invalidate() {
+        // prepare
+        termStatistics.rebuild();
+
+        // tested method
+        termStatistics.invalidate();
+
+        // verify
+        // rebuilt after the transaction commits, the current statistics are still used
+        verify(eventPublisherMock).publishEvent(any(RebuildEvent.class));
+        assertThat(termStatistics.getTopTermsDocument(List.of("research data neural", "neural"), 2), equalTo("neural neural data"));
+        verify(projectRepositoryMock, times(1)).findAllProcessedAnnotations();
+    }
+
+    @Test
+    void getTopTermsDocumentNotBuilt() {
+        // prepare
+        List<Runnable> tasks = new ArrayList<>();
+        termStatistics = new TermStatistics(projectRepositoryMock, eventPublisherMock, tasks::add);
+
+        // tested method
+        String prunedDoc = termStatistics.getTopTermsDocument(List.of("research research data"), 1);
+
+        // verify
+        // weighted by the term frequency only, the statistics are built in the background
+        assertThat(prunedDoc, equalTo("research research"));
+        verify(projectRepositoryMock, never()).findAllProcessedAnnotations();
+        assertThat(tasks.size(), equalTo(1));
+    }
+}
@@ -11,6 +11,8 @@ import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.service.AggregationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 
 import java.io.IOException;
@@ -22,6 +24,7 @@ import static muni.fi.bl.service.impl.ElasticSearchService.EXPERTISE_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.HELIX_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.ROLE_FIELD;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -37,6 +40,9 @@ class ElasticAggregationServiceTest {
     @Mock
     private ElasticsearchClient elasticsearchClientMock;
 
+    @Captor
+    private ArgumentCaptor<SearchRequest> requestCaptor;
+
     // tested class
     private AggregationService aggregationService;
 
@@ -62,7 +68,41 @@ class ElasticAggregationServiceTest {
         assertThat(uniqueFilterValues.get(ROLE_FIELD), equalTo(List.of("consortium partner")));
         assertThat(uniqueFilterValues.get(EXPERTISE_FIELD), equalTo(List.of("big data", "data analytics", "web development")));
 
-        verify(elasticsearchClientMock, times(3)).search(any(SearchRequest.class), eq(Void.class));
+        verify(elasticsearchClientMock, times(1)).search(requestCaptor.capture(), eq(Void.class));
+        assertThat(requestCaptor.getValue().aggregations().keySet(), containsInAnyOrder("helix-agg", "role-agg", "expertise-agg"));
+        assertThat(requestCaptor.getValue().size(), equalTo(0));
+    }
+
+    @Test
+    void searchUniqueAggCountsAllMemoized() throws IOException {
+        // prepare
+        SearchResponse<Void> searchResponse = getTermsAggregationSearchResponse();
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(Void.class))).thenReturn(searchResponse);
+
+        // tested method
+        Map<String, Map<String, Long>> counts = aggregationService.searchUniqueAggCountsAll();
+        aggregationService.searchUniqueAggAll();
+        aggregationService.searchUniqueAggCountsAll();
+
+        // verify
+        assertThat(counts.get(HELIX_FIELD), equalTo(Map.of("health", 25L, "digital", 10L)));
+        assertThat(counts.get(EXPERTISE_FIELD).keySet().stream().toList(), equalTo(List.of("big data", "data analytics", "web development")));
+        verify(elasticsearchClientMock, times(1)).search(any(SearchRequest.class), eq(Void.class));
+    }
+
+    @Test
+    void invalidateUniqueAgg() throws IOException {
+        // prepare
+        SearchResponse<Void> searchResponse = getTermsAggregationSearchResponse();
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(Void.class))).thenReturn(searchResponse);
+        aggregationService.searchUniqueAggAll();
+
+        // tested method
+        aggregationService.invalidateUniqueAgg();
+        aggregationService.searchUniqueAggAll();
+
+        // verify
+        verify(elasticsearchClientMock, times(2)).search(any(SearchRequest.class), eq(Void.class));
     }
 
     @Test
@@ -1,5 +1,6 @@
 package muni.fi.bl.service.impl;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.ErrorCause;
@@ -7,13 +8,20 @@ import co.elastic.clients.elasticsearch._types.ErrorResponse;
 import co.elastic.clients.elasticsearch._types.query_dsl.MoreLikeThisQuery;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import muni.fi.bl.component.AuthorProfiles;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.RelatedOpportunities;
+import muni.fi.bl.component.SearchPerformer;
 import muni.fi.bl.component.SearchResultProcessor;
+import muni.fi.bl.component.SearchTemplates;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.mappers.ProjectMapper;
-import muni.fi.bl.service.RecommendationService;
 import muni.fi.dal.entity.Project;
 import muni.fi.dal.repository.ProjectRepository;
 import muni.fi.dtos.OpportunityDto;
@@ -29,11 +37,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_ID;
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.DEFAULT_DOCS_SIZE;
 import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
+import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
@@ -43,8 +57,10 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
@@ -55,17 +71,27 @@ class ElasticRecommendationServiceTest {
     @Mock
     private ElasticsearchClient elasticsearchClientMock;
     @Mock
+    private ElasticsearchAsyncClient elasticsearchAsyncClientMock;
+    @Mock
     private SearchResultProcessor<OpportunityDto> resultProcessorMock;
     @Mock
     private QueryBuilder queryBuilderMock;
+    @Mock
+    private SearchTemplates searchTemplatesMock;
+    @Mock
+    private AuthorProfiles authorProfilesMock;
+    @Mock
+    private RelatedOpportunities relatedOpportunitiesMock;
 
     @Captor
     private ArgumentCaptor<String> ucoCaptor;
     @Captor
     private ArgumentCaptor<SearchRequest> requestCaptor;
+    @Captor
+    private ArgumentCaptor<SearchTemplateRequest> templateRequestCaptor;
 
     // tested class
-    private RecommendationService recommendationService;
+    private ElasticRecommendationService recommendationService;
 
     @BeforeEach
     void setUp() throws IOException {
@@ -73,7 +99,10 @@ class ElasticRecommendationServiceTest {
 
         // mappers are not mocked as the implementation is not unit-tested because it is automatically generated by mapStruct
         ProjectMapper mapper = Mappers.getMapper(ProjectMapper.class);
-        recommendationService = new ElasticRecommendationService(projectRepositoryMock, mapper, elasticsearchClientMock, resultProcessorMock, queryBuilderMock);
+        SearchPerformer<OpportunityDto> searchPerformer = new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, new SearchConfigProperties());
+        recommendationService = new ElasticRecommendationService(projectRepositoryMock, mapper, elasticsearchClientMock,
+                elasticsearchAsyncClientMock, resultProcessorMock, queryBuilderMock, searchPerformer, searchTemplatesMock, authorProfilesMock,
+                relatedOpportunitiesMock, Runnable::run);
 
         // setup mocks
         Project project1 = new Project();
@@ -122,6 +151,8 @@ class ElasticRecommendationServiceTest {
                                 .id("someId")))));
         when(elasticsearchClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class)))
                 .thenReturn(searchResponse);
+        when(elasticsearchAsyncClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(searchResponse));
         when(resultProcessorMock.aggregateResultsByScore(topResultsMap)).thenReturn(List.of(hit2.source(), hit1.source()));
     }
 
@@ -170,6 +201,47 @@ class ElasticRecommendationServiceTest {
         verify(resultProcessorMock, times(0)).aggregateResultsByScore(any());
     }
 
+    @Test
+    void recommendForUserProfile() throws IOException {
+        // prepare
+        String uco = "123456";
+        when(authorProfilesMock.isReady()).thenReturn(true);
+        when(queryBuilderMock.getMoreLikeThisQueryByIds(List.of(uco), List.of(DESCRIPTION_FIELD), AUTHOR_PROFILE_INDEX))
+                .thenReturn(MoreLikeThisQuery.of(b -> b
+                        .like(l -> l
+                                .document(d -> d
+                                        .index(AUTHOR_PROFILE_INDEX)
+                                        .id(uco)))));
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = recommendationService.recommendForAuthor(uco, Collections.emptyList());
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        verify(projectRepositoryMock, never()).findByAuthorUco(any());
+        verify(queryBuilderMock, never()).getMoreLikeThisQuery(anyList());
+        verify(elasticsearchClientMock).search(requestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(requestCaptor.getValue().index().get(0), equalTo(CROWDHELIX_INDEX));
+    }
+
+    @Test
+    void recommendForUserProfileExcludedProject() throws IOException {
+        // prepare
+        String uco = "123456";
+        when(authorProfilesMock.isReady()).thenReturn(true);
+        when(projectRepositoryMock.existsByAuthorUcoAndIdIn(uco, List.of(1L))).thenReturn(true);
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = recommendationService.recommendForAuthor(uco, List.of(1L));
+
+        // verify
+        // the profile contains the excluded project, so the remaining projects are used
+        assertThat(opportunityDtos.size(), equalTo(2));
+        verify(projectRepositoryMock).findByAuthorUco(uco);
+        verify(queryBuilderMock, never()).getMoreLikeThisQueryByIds(anyList(), anyList(), anyString());
+        verify(queryBuilderMock, times(1)).getMoreLikeThisQuery(anyList());
+    }
+
     @Test
     void recommendMoreLikeThis() throws IOException {
         // prepare
@@ -189,6 +261,103 @@ class ElasticRecommendationServiceTest {
         verify(resultProcessorMock, times(1)).aggregateResultsByScore(any());
     }
 
+    @Test
+    void recommendMoreLikeThisStored() throws IOException {
+        // prepare
+        String someId = "someId";
+        OpportunityDto related = new OpportunityDto();
+        related.setEsId("relatedId");
+        related.setScore(5.0);
+        when(relatedOpportunitiesMock.find(someId)).thenReturn(Optional.of(List.of(related)));
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = recommendationService.recommendMoreLikeThis(someId);
+        List<OpportunityDto> asyncOpportunityDtos = recommendationService.recommendMoreLikeThisAsync(someId).join();
+
+        // verify
+        assertThat(opportunityDtos, equalTo(List.of(related)));
+        assertThat(asyncOpportunityDtos, equalTo(List.of(related)));
+        verify(elasticsearchClientMock, never()).search(any(SearchRequest.class), eq(OpportunityDto.class));
+        verifyNoInteractions(elasticsearchAsyncClientMock);
+    }
+
+    @Test
+    void recommendForUserTemplate() throws IOException {
+        // prepare
+        Map<String, JsonData> params = Map.of("size", JsonData.of(DEFAULT_DOCS_SIZE));
+        when(searchTemplatesMock.isReady()).thenReturn(true);
+        when(queryBuilderMock.getLikeTexts(anyList())).thenReturn(List.of("pruned"));
+        when(searchTemplatesMock.getMoreLikeThisParams(List.of("pruned"), List.of(DESCRIPTION_FIELD), null, DEFAULT_DOCS_SIZE, null))
+                .thenReturn(params);
+        when(elasticsearchClientMock.searchTemplate(any(SearchTemplateRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getSearchTemplateResponse());
+
+        // tested method
+        recommendationService.recommendForAuthor("123456", Collections.emptyList());
+
+        // verify
+        verify(elasticsearchClientMock).searchTemplate(templateRequestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(templateRequestCaptor.getValue().id(), equalTo(MLT_TEMPLATE_ID));
+        assertThat(templateRequestCaptor.getValue().index(), equalTo(List.of(CROWDHELIX_INDEX)));
+        assertThat(templateRequestCaptor.getValue().params(), equalTo(params));
+        verify(queryBuilderMock, times(0)).getMoreLikeThisQuery(anyList());
+        verify(elasticsearchClientMock, times(0)).search(any(SearchRequest.class), eq(OpportunityDto.class));
+    }
+
+    @Test
+    void recommendMoreLikeThisTemplate() throws IOException {
+        // prepare
+        String someId = "someId";
+        Map<String, JsonData> params = Map.of("size", JsonData.of(DEFAULT_DOCS_SIZE));
+        when(searchTemplatesMock.isReady()).thenReturn(true);
+        when(searchTemplatesMock.getMoreLikeThisParams(someId, CROWDHELIX_INDEX, List.of(DESCRIPTION_FIELD, TITLE_FIELD),
+                null, DEFAULT_DOCS_SIZE, null)).thenReturn(params);
+        when(elasticsearchClientMock.searchTemplate(any(SearchTemplateRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getSearchTemplateResponse());
+
+        // tested method
+        recommendationService.recommendMoreLikeThis(someId);
+
+        // verify
+        verify(elasticsearchClientMock).searchTemplate(templateRequestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(templateRequestCaptor.getValue().id(), equalTo(MLT_TEMPLATE_ID));
+        assertThat(templateRequestCaptor.getValue().params(), equalTo(params));
+        verify(queryBuilderMock, times(0)).getMoreLikeThisQuery(someId, CROWDHELIX_INDEX);
+    }
+
+    @Test
+    void recommendMoreLikeThisAsync() {
+        // prepare
+        String someId = "someId";
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = recommendationService.recommendMoreLikeThisAsync(someId).join();
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        assertThat(opportunityDtos.get(0).getScore(), equalTo(20.0));
+
+        verify(elasticsearchAsyncClientMock, times(1))
+                .search(any(SearchRequest.class), eq(OpportunityDto.class));
+        verifyNoInteractions(elasticsearchClientMock);
+    }
+
+    @Test
+    void elasticAsyncClientConnectionException() {
+        // prepare
+        when(elasticsearchAsyncClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException()));
+        String someId = "someId";
+
+        // tested method
+        CompletableFuture<List<OpportunityDto>> future = recommendationService.recommendMoreLikeThisAsync(someId);
+        Throwable exception = assertThrows(CompletionException.class, future::join);
+
+        // verify
+        assertThat(exception.getCause(), instanceOf(ConnectionException.class));
+        assertThat(exception.getCause().getMessage(), equalTo(ELASTIC_CONNECTION_ERROR));
+    }
+
     @Test
     void elasticClientSearchException() throws IOException {
         // prepare
@@ -224,4 +393,12 @@ class ElasticRecommendationServiceTest {
         assertThat(exception.getCause(), instanceOf(IOException.class));
         assertThat(exception.getMessage(), equalTo(ELASTIC_CONNECTION_ERROR));
     }
-}
\ No newline at end of file
+
+    private static SearchTemplateResponse<OpportunityDto> getSearchTemplateResponse() {
+        return SearchTemplateResponse.of(r -> r
+                .shards(s -> s.failed(0).successful(1).total(1))
+                .took(10)
+                .timedOut(false)
+                .hits(h -> h.hits(Collections.emptyList())));
+    }
+}
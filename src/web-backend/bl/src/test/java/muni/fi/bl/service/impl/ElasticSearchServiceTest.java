@@ -1,35 +1,68 @@
 package muni.fi.bl.service.impl;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.ErrorCause;
 import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MoreLikeThisQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.MultiMatchQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.WildcardQuery;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeResponse;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.MsearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.MsearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import muni.fi.bl.component.AuthorProfiles;
+import muni.fi.bl.component.AuthorRanking;
+import muni.fi.bl.component.AuthorRankingAggregation;
+import muni.fi.bl.component.AuthorRecommendationsCollector;
+import muni.fi.bl.component.OpportunityMatches;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.ScatterGatherPlanner;
+import muni.fi.bl.component.SearchCursor;
 import muni.fi.bl.component.SearchPerformer;
 import muni.fi.bl.component.SearchResultProcessor;
+import muni.fi.bl.component.SearchTemplates;
 import muni.fi.bl.component.TextNormalizer;
+import muni.fi.bl.config.SearchConfigProperties;
 import muni.fi.bl.exceptions.AppException;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.mappers.AuthorMapper;
 import muni.fi.bl.mappers.ProjectMapper;
+import muni.fi.bl.service.AsyncRecommendationService;
 import muni.fi.bl.service.ProjectService;
-import muni.fi.bl.service.RecommendationService;
-import muni.fi.bl.service.SearchService;
 import muni.fi.bl.service.enums.AuthorProjectsSortType;
 import muni.fi.dal.entity.Author;
 import muni.fi.dal.entity.Project;
 import muni.fi.dal.repository.AuthorRepository;
 import muni.fi.dal.repository.ProjectRepository;
 import muni.fi.dtos.AuthorDto;
+import muni.fi.dtos.BaseEsDto;
+import muni.fi.dtos.CursorPageDto;
 import muni.fi.dtos.OpportunityDto;
 import muni.fi.dtos.OpportunitySearchResultDto;
 import muni.fi.dtos.ProjectDto;
@@ -43,14 +76,28 @@ import org.mockito.Mock;
 import org.springframework.data.domain.Page;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
+import static muni.fi.bl.component.AuthorRankingAggregation.AVG_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.MAX_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.PROJECTS_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.SUM_AGG;
+import static muni.fi.bl.component.AuthorRankingAggregation.getAggName;
+import static muni.fi.bl.component.SearchResultProcessor.TITLE_SCORE_COEFFICIENT;
+import static muni.fi.bl.component.SearchTemplates.MLT_TEMPLATE_ID;
+import static muni.fi.bl.component.SearchTemplates.PHRASE_TEMPLATE_ID;
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.AUTHOR_PROFILE_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.CROWDHELIX_INDEX;
 import static muni.fi.bl.service.impl.ElasticSearchService.DESCRIPTION_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.MAX_DOCS_SIZE;
@@ -58,18 +105,28 @@ import static muni.fi.bl.service.impl.ElasticSearchService.MAX_QUERY_TERMS;
 import static muni.fi.bl.service.impl.ElasticSearchService.MINIMUM_TERMS_MATCH;
 import static muni.fi.bl.service.impl.ElasticSearchService.MIN_DOC_FREQ;
 import static muni.fi.bl.service.impl.ElasticSearchService.MIN_TERM_FREQ;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static muni.fi.bl.service.impl.ElasticSearchService.SHARD_DOC_FIELD;
 import static muni.fi.bl.service.impl.ElasticSearchService.TITLE_FIELD;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
@@ -78,13 +135,15 @@ class ElasticSearchServiceTest {
     @Mock
     private ElasticsearchClient elasticsearchClientMock;
     @Mock
+    private ElasticsearchAsyncClient elasticsearchAsyncClientMock;
+    @Mock
     private SearchResultProcessor<OpportunityDto> resultProcessorMock;
     @Mock
     private SearchResultProcessor<ProjectEsDto> projectResultProcessorMock;
     @Mock
     private ProjectService projectServiceMock;
     @Mock
-    private RecommendationService recommendationServiceMock;
+    private AsyncRecommendationService asyncRecommendationServiceMock;
     @Mock
     private QueryBuilder queryBuilderMock;
     @Mock
@@ -97,25 +156,43 @@ class ElasticSearchServiceTest {
     private ProjectRepository projectRepositoryMock;
     @Mock
     private ProjectMapper projectMapperMock;
+    @Mock
+    private SearchTemplates searchTemplatesMock;
+    @Mock
+    private AuthorProfiles authorProfilesMock;
+    @Mock
+    private OpportunityMatches opportunityMatchesMock;
 
     @Captor
     private ArgumentCaptor<SearchInfo> infoCaptor;
     @Captor
     private ArgumentCaptor<SearchRequest> requestCaptor;
+    @Captor
+    private ArgumentCaptor<MsearchRequest> msearchRequestCaptor;
+    @Captor
+    private ArgumentCaptor<MgetRequest> mgetRequestCaptor;
+    @Captor
+    private ArgumentCaptor<MsearchTemplateRequest> msearchTemplateRequestCaptor;
+    @Captor
+    private ArgumentCaptor<SearchTemplateRequest> searchTemplateRequestCaptor;
 
     // tested class
-    private SearchService searchService;
+    private ElasticSearchService searchService;
 
     @BeforeEach
     void setUp() throws IOException {
         openMocks(this);
 
-        SearchPerformer<OpportunityDto> opportunitySearchPerformer = new SearchPerformer<>(elasticsearchClientMock);
-        SearchPerformer<ProjectEsDto> projectSearchPerformer = new SearchPerformer<>(elasticsearchClientMock);
+        SearchPerformer<OpportunityDto> opportunitySearchPerformer = new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, new SearchConfigProperties());
+        SearchPerformer<ProjectEsDto> projectSearchPerformer = new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, new SearchConfigProperties());
+        AuthorRecommendationsCollector recommendationsCollector = new AuthorRecommendationsCollector(
+                asyncRecommendationServiceMock, Runnable::run, new SearchConfigProperties());
         searchService = new ElasticSearchService(
                 resultProcessorMock, projectResultProcessorMock, projectServiceMock,
-                recommendationServiceMock, queryBuilderMock, textNormalizerMock, authorRepositoryMock, authorMapperMock,
-                projectRepositoryMock, projectMapperMock, opportunitySearchPerformer, projectSearchPerformer);
+                recommendationsCollector, queryBuilderMock, textNormalizerMock,
+                authorRepositoryMock, authorMapperMock, projectRepositoryMock, projectMapperMock,
+                opportunitySearchPerformer, projectSearchPerformer, Runnable::run, new SearchConfigProperties(), searchTemplatesMock, authorProfilesMock,
+                new ScatterGatherPlanner(new SearchConfigProperties()), new AuthorRankingAggregation(new SearchConfigProperties()), opportunityMatchesMock);
 
         // setup mocks
         AuthorDto authorDto1 = new AuthorDto("John Doe", "123456", "student");
@@ -152,8 +229,6 @@ class ElasticSearchServiceTest {
 
         assert hit2.source() != null;
         assert hit1.source() != null;
-        Map<String, List<Hit<OpportunityDto>>> topResultsMap = new HashMap<>();
-        topResultsMap.put(DESCRIPTION_FIELD, List.of(hit1, hit2));
 
         MoreLikeThisQuery mltQuery = MoreLikeThisQuery.of(b -> b
                 .like(l -> l
@@ -161,19 +236,31 @@ class ElasticSearchServiceTest {
                                 .index(someIndex)
                                 .id("someId"))));
 
-        when(projectServiceMock.getByAuthorUco(any())).thenReturn(List.of(project1, project2));
-        when(projectServiceMock.getById(1L)).thenReturn(project1);
-        when(projectServiceMock.getById(2L)).thenReturn(project2);
+        when(projectServiceMock.getByAuthorUcos(anyList())).thenReturn(List.of(project1, project2));
+        when(projectServiceMock.getByIds(List.of(1L, 2L))).thenReturn(List.of(project1, project2));
+        when(projectServiceMock.getByIds(List.of(1L))).thenReturn(List.of(project1));
 
         when(queryBuilderMock.getMoreLikeThisQuery(anyList())).thenReturn(mltQuery);
         when(queryBuilderMock.getMoreLikeThisQuery(anyList(), anyList())).thenReturn(mltQuery);
+        when(queryBuilderMock.getMoreLikeThisQueryByIds(anyList(), anyList(), anyString())).thenReturn(mltQuery);
         when(queryBuilderMock.getFilterQuery(any())).thenReturn(BoolQuery.of(b -> b));
 
         when(elasticsearchClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class))).thenReturn(searchResponse);
-        when(resultProcessorMock.aggregateResultsByScore(topResultsMap)).thenReturn(List.of(hit2.source(), hit1.source()));
-        when(resultProcessorMock.aggregateResultsAndRecommendations(anyList(), anyList())).thenReturn(List.of(opportunity2, opportunity1));
+        when(elasticsearchClientMock.msearch(any(MsearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getMultiSearchResponse(List.of(hit1, hit2), 2));
+        when(elasticsearchAsyncClientMock.msearch(any(MsearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(getMultiSearchResponse(List.of(hit1, hit2), 2)));
+        when(elasticsearchClientMock.mget(any(MgetRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getMultiGetResponse(List.of(hit2, hit1)));
+        when(elasticsearchAsyncClientMock.mget(any(MgetRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(getMultiGetResponse(List.of(hit2, hit1))));
+        List<BaseEsDto> rankedIds = List.of(getRankedId("bdca", 20.0), getRankedId("abcd", 10.0));
+        when(resultProcessorMock.aggregateIdsByScore(any(), any(), anyInt())).thenReturn(rankedIds);
+        when(resultProcessorMock.aggregateResultsAndRecommendations(anyList(), anyList(), anyInt())).thenReturn(rankedIds);
+        when(resultProcessorMock.withDocuments(anyList(), anyMap())).thenReturn(List.of(opportunity2, opportunity1));
 
-        when(recommendationServiceMock.recommendForAuthor(any(), anyList())).thenReturn(Collections.emptyList());
+        when(asyncRecommendationServiceMock.recommendForAuthorAsync(any(), anyList()))
+                .thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
     }
 
     @Test
@@ -190,24 +277,138 @@ class ElasticSearchServiceTest {
         assertThat(opportunityDtos.get(0).getScore(), equalTo(20.0));
         assertThat(opportunityDtos.get(1).getScore(), equalTo(10.0));
 
-        verify(projectServiceMock, times(2)).getById(any());
-        verify(recommendationServiceMock, times(2)).recommendForAuthor(any(), eq(List.of(1L, 2L)));
-        verify(resultProcessorMock, times(1)).aggregateResultsAndRecommendations(anyList(), anyList());
+        verify(projectServiceMock, times(1)).getByIds(List.of(1L, 2L));
+        verify(asyncRecommendationServiceMock, times(2)).recommendForAuthorAsync(any(), eq(List.of(1L, 2L)));
+        verify(resultProcessorMock, times(1)).aggregateResultsAndRecommendations(anyList(), anyList(), anyInt());
         verify(queryBuilderMock, times(1)).getMoreLikeThisQuery(anyList());
         verify(queryBuilderMock, times(1)).getMoreLikeThisQuery(anyList(), eq(List.of(DESCRIPTION_FIELD, TITLE_FIELD)));
 
-        verify(elasticsearchClientMock, times(2)).search(requestCaptor.capture(), eq(OpportunityDto.class));
-        assertThat(requestCaptor.getValue().size(), equalTo(MAX_DOCS_SIZE));
-        assertThat(requestCaptor.getValue().from(), equalTo(0));
-        assertThat(requestCaptor.getValue().sort(), empty());
-        assertThat(requestCaptor.getValue().index().get(0), equalTo(CROWDHELIX_INDEX));
+        verify(elasticsearchClientMock, times(0)).search(any(SearchRequest.class), eq(OpportunityDto.class));
+        verify(elasticsearchClientMock, times(1)).msearch(msearchRequestCaptor.capture(), eq(OpportunityDto.class));
+        List<RequestItem> searches = msearchRequestCaptor.getValue().searches();
+        assertThat(searches.size(), equalTo(2));
+        for (RequestItem search : searches) {
+            assertThat(search.body().size(), equalTo(MAX_DOCS_SIZE));
+            assertThat(search.body().sort(), empty());
+            assertThat(search.header().index().get(0), equalTo(CROWDHELIX_INDEX));
+            // scoring queries don't return the documents
+            assertThat(Objects.requireNonNull(search.body().source()).fetch(), is(false));
+        }
+        // unlimited ids, as the recommendations can boost any of the results into the top results
+        verify(resultProcessorMock).aggregateIdsByScore(any(), any(), eq(Integer.MAX_VALUE));
+
+        // only the documents of the final top results are fetched
+        verify(elasticsearchClientMock, times(1)).mget(mgetRequestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(mgetRequestCaptor.getValue().ids(), equalTo(List.of("bdca", "abcd")));
+        assertThat(mgetRequestCaptor.getValue().index(), equalTo(CROWDHELIX_INDEX));
 
         verify(queryBuilderMock).getFilterQuery(infoCaptor.capture());
         assertThat(infoCaptor.getValue(), equalTo(info));
     }
 
     @Test
-    void searchByAuthors() {
+    void searchByProjectsAsync() throws IOException {
+        // prepare
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                null, List.of(1L, 2L), true, null);
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = searchService.searchByProjectsAsync(info).join();
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        assertThat(opportunityDtos.get(0).getScore(), equalTo(20.0));
+        assertThat(opportunityDtos.get(1).getScore(), equalTo(10.0));
+
+        verify(asyncRecommendationServiceMock, times(2)).recommendForAuthorAsync(any(), eq(List.of(1L, 2L)));
+        verify(resultProcessorMock, times(1)).aggregateResultsAndRecommendations(anyList(), anyList(), anyInt());
+        verify(elasticsearchAsyncClientMock, times(1)).msearch(any(MsearchRequest.class), eq(OpportunityDto.class));
+        verify(elasticsearchAsyncClientMock, times(1)).mget(any(MgetRequest.class), eq(OpportunityDto.class));
+        verifyNoInteractions(elasticsearchClientMock);
+    }
+
+    @Test
+    void searchByProjectsAsyncDeferred() {
+        // prepare
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        searchService = new ElasticSearchService(
+                resultProcessorMock, projectResultProcessorMock, projectServiceMock,
+                new AuthorRecommendationsCollector(asyncRecommendationServiceMock, Runnable::run, new SearchConfigProperties()),
+                queryBuilderMock, textNormalizerMock, authorRepositoryMock, authorMapperMock, projectRepositoryMock, projectMapperMock,
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, new SearchConfigProperties()),
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, new SearchConfigProperties()),
+                executor, new SearchConfigProperties(), searchTemplatesMock, authorProfilesMock,
+                new ScatterGatherPlanner(new SearchConfigProperties()), new AuthorRankingAggregation(new SearchConfigProperties()), opportunityMatchesMock);
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                null, List.of(1L, 2L), true, null);
+
+        // tested method
+        searchService.searchByProjectsAsync(info);
+
+        // verify
+        // the projects are read on the search executor, not on the caller's thread
+        verify(projectServiceMock, never()).getByIds(anyList());
+        assertThat(tasks.size(), equalTo(1));
+        tasks.get(0).run();
+        verify(projectServiceMock).getByIds(List.of(1L, 2L));
+    }
+
+    @Test
+    void searchByProjectsNotPersonalized() throws IOException {
+        // prepare
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                null, List.of(1L, 2L), false, null);
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = searchService.searchByProjects(info);
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        verify(resultProcessorMock).aggregateIdsByScore(any(), any(), eq(30));
+        verify(resultProcessorMock, times(0)).aggregateResultsAndRecommendations(anyList(), anyList(), anyInt());
+        verify(elasticsearchClientMock, times(1)).mget(any(MgetRequest.class), eq(OpportunityDto.class));
+        verifyNoInteractions(asyncRecommendationServiceMock);
+    }
+
+    @Test
+    void searchByProjectsTemplate() throws IOException {
+        // prepare
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                null, List.of(1L, 2L), false, null);
+        Map<String, JsonData> params = Map.of("size", JsonData.of(MAX_DOCS_SIZE));
+        when(searchTemplatesMock.isReady()).thenReturn(true);
+        when(searchTemplatesMock.getMoreLikeThisParams(anyList(), anyList(), any(), anyInt(), anyList())).thenReturn(params);
+        when(queryBuilderMock.getLikeTexts(anyList())).thenReturn(List.of("pruned"));
+        when(elasticsearchClientMock.msearchTemplate(any(MsearchTemplateRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getMultiSearchTemplateResponse(Collections.emptyList(), 2));
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = searchService.searchByProjects(info);
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        verify(searchTemplatesMock).getMoreLikeThisParams(anyList(), eq(List.of(DESCRIPTION_FIELD, TITLE_FIELD)),
+                eq(info), eq(MAX_DOCS_SIZE), eq(List.of()));
+        verify(searchTemplatesMock).getMoreLikeThisParams(eq(List.of("pruned")), eq(List.of(DESCRIPTION_FIELD)),
+                eq(info), eq(MAX_DOCS_SIZE), eq(List.of()));
+        verify(elasticsearchClientMock).msearchTemplate(msearchTemplateRequestCaptor.capture(), eq(OpportunityDto.class));
+        MsearchTemplateRequest templateRequest = msearchTemplateRequestCaptor.getValue();
+        assertThat(templateRequest.searchTemplates().size(), equalTo(2));
+        templateRequest.searchTemplates().forEach(search -> {
+            assertThat(search.header().index().get(0), equalTo(CROWDHELIX_INDEX));
+            assertThat(search.body().id(), equalTo(MLT_TEMPLATE_ID));
+            assertThat(search.body().params(), equalTo(params));
+        });
+
+        // no query objects are built and sent
+        verify(queryBuilderMock, times(0)).getMoreLikeThisQuery(anyList());
+        verify(elasticsearchClientMock, times(0)).msearch(any(MsearchRequest.class), eq(OpportunityDto.class));
+        verify(elasticsearchClientMock, times(1)).mget(any(MgetRequest.class), eq(OpportunityDto.class));
+    }
+
+    @Test
+    void searchByAuthors() throws IOException {
         // prepare
         SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
                 List.of("uco1", "uco2"), List.of(1L), true, null);
@@ -219,10 +420,12 @@ class ElasticSearchServiceTest {
         assertThat(opportunityDtos.size(), equalTo(2));
         assertThat(opportunityDtos.get(0).getScore(), equalTo(20.0));
         assertThat(opportunityDtos.get(1).getScore(), equalTo(10.0));
-        verify(projectServiceMock, times(1)).getById(any());
-        verify(projectServiceMock, times(2)).getByAuthorUco(any());
-        verify(resultProcessorMock, times(1)).aggregateResultsAndRecommendations(anyList(), anyList());
-        verify(resultProcessorMock, times(2)).aggregateResultsByScore(any());
+        verify(projectServiceMock, times(1)).getByIds(List.of(1L));
+        verify(projectServiceMock, times(1)).getByAuthorUcos(List.of("uco1", "uco2"));
+        verify(resultProcessorMock, times(1)).aggregateResultsAndRecommendations(anyList(), anyList(), anyInt());
+        verify(resultProcessorMock, times(2)).aggregateIdsByScore(any(), any(), anyInt());
+        verify(elasticsearchClientMock, times(2)).msearch(any(MsearchRequest.class), eq(OpportunityDto.class));
+        verify(elasticsearchClientMock, times(1)).mget(any(MgetRequest.class), eq(OpportunityDto.class));
 
         verify(queryBuilderMock, times(2)).getMoreLikeThisQuery(anyList());
         verify(queryBuilderMock, times(2)).getMoreLikeThisQuery(anyList(), eq(List.of(DESCRIPTION_FIELD, TITLE_FIELD)));
@@ -230,6 +433,72 @@ class ElasticSearchServiceTest {
         assertThat(infoCaptor.getValue(), equalTo(info));
     }
 
+    @Test
+    void searchByAuthorsScattered() throws IOException {
+        // prepare
+        List<String> ucos = IntStream.range(0, 25).mapToObj(i -> "uco" + i).toList();
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                ucos, Collections.emptyList(), false, null);
+        when(authorProfilesMock.isReady()).thenReturn(true);
+        when(projectRepositoryMock.existsByAuthorUcoIn(ucos)).thenReturn(true);
+        when(elasticsearchClientMock.msearch(any(MsearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(getMultiSearchResponse(List.of(), 4));
+        when(resultProcessorMock.fuseByReciprocalRank(anyList(), anyInt()))
+                .thenReturn(List.of(getRankedId("bdca", 20.0), getRankedId("abcd", 10.0)));
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = searchService.searchByAuthors(info);
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        // the selection is split into two chunks searched by one multi-search
+        verify(queryBuilderMock).getMoreLikeThisQueryByIds(ucos.subList(0, 13), List.of(TITLE_FIELD), AUTHOR_PROFILE_INDEX);
+        verify(queryBuilderMock).getMoreLikeThisQueryByIds(ucos.subList(13, 25), List.of(DESCRIPTION_FIELD), AUTHOR_PROFILE_INDEX);
+        verify(elasticsearchClientMock).msearch(msearchRequestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(msearchRequestCaptor.getValue().searches().size(), equalTo(4));
+        assertThat(msearchRequestCaptor.getValue().maxConcurrentSearches(), equalTo(4L));
+        // every chunk is ranked on its own and the rankings are fused
+        verify(resultProcessorMock, times(2)).aggregateIdsByScore(any(), any(), eq(Integer.MAX_VALUE));
+        verify(resultProcessorMock).fuseByReciprocalRank(anyList(), eq(30));
+    }
+
+    @Test
+    void searchByAuthorsProfiles() throws IOException {
+        // prepare
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                List.of("uco1", "uco2"), Collections.emptyList(), false, null);
+        when(authorProfilesMock.isReady()).thenReturn(true);
+        when(projectRepositoryMock.existsByAuthorUcoIn(List.of("uco1", "uco2"))).thenReturn(true);
+
+        // tested method
+        List<OpportunityDto> opportunityDtos = searchService.searchByAuthors(info);
+
+        // verify
+        assertThat(opportunityDtos.size(), equalTo(2));
+        verify(projectServiceMock, never()).getByAuthorUcos(anyList());
+        verify(queryBuilderMock).getMoreLikeThisQueryByIds(List.of("uco1", "uco2"), List.of(TITLE_FIELD), AUTHOR_PROFILE_INDEX);
+        verify(queryBuilderMock).getMoreLikeThisQueryByIds(List.of("uco1", "uco2"), List.of(DESCRIPTION_FIELD), AUTHOR_PROFILE_INDEX);
+        verify(queryBuilderMock, never()).getMoreLikeThisQuery(anyList());
+        verify(elasticsearchClientMock, times(1)).msearch(any(MsearchRequest.class), eq(OpportunityDto.class));
+        verify(elasticsearchClientMock, times(1)).mget(any(MgetRequest.class), eq(OpportunityDto.class));
+    }
+
+    @Test
+    void searchByAuthorsProfilesNoProjects() {
+        // prepare
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                List.of("uco1"), Collections.emptyList(), false, null);
+        when(authorProfilesMock.isReady()).thenReturn(true);
+        when(projectRepositoryMock.existsByAuthorUcoIn(List.of("uco1"))).thenReturn(false);
+
+        // tested method
+        Throwable exception = assertThrows(AppException.class, () -> searchService.searchByAuthors(info));
+
+        // verify
+        assertThat(exception.getMessage(), equalTo("No projects data found for the selected authors"));
+        verify(queryBuilderMock, never()).getMoreLikeThisQueryByIds(anyList(), anyList(), anyString());
+    }
+
     @Test
     void searchByPhrase() throws IOException {
         // prepare
@@ -252,6 +521,35 @@ class ElasticSearchServiceTest {
         assertThat(Objects.requireNonNull(requestCaptor.getValue().query()).isMultiMatch(), is(true));
     }
 
+    @Test
+    void searchByPhraseTemplate() throws IOException {
+        // prepare
+        String phrase = "phrase";
+        Map<String, JsonData> params = Map.of("query", JsonData.of(phrase));
+        SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), false, phrase);
+        when(searchTemplatesMock.isReady()).thenReturn(true);
+        when(textNormalizerMock.normalize(phrase)).thenReturn(phrase);
+        when(searchTemplatesMock.getPhraseParams(phrase, info, 30)).thenReturn(params);
+        when(elasticsearchClientMock.searchTemplate(any(SearchTemplateRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(SearchTemplateResponse.of(r -> r
+                        .shards(s -> s.failed(0).successful(1).total(1))
+                        .took(10)
+                        .timedOut(false)
+                        .hits(h -> h.hits(Collections.emptyList()))));
+
+        // tested method
+        searchService.searchByPhrase(info);
+
+        // verify
+        verify(elasticsearchClientMock).searchTemplate(searchTemplateRequestCaptor.capture(), eq(OpportunityDto.class));
+        assertThat(searchTemplateRequestCaptor.getValue().id(), equalTo(PHRASE_TEMPLATE_ID));
+        assertThat(searchTemplateRequestCaptor.getValue().index(), equalTo(List.of(CROWDHELIX_INDEX)));
+        assertThat(searchTemplateRequestCaptor.getValue().params(), equalTo(params));
+        verify(queryBuilderMock, times(0)).getMultiMatchQuery(phrase);
+        verify(elasticsearchClientMock, times(0)).search(any(SearchRequest.class), eq(OpportunityDto.class));
+    }
+
     @Test
     void searchForAll1() throws IOException {
         // prepare
@@ -259,7 +557,7 @@ class ElasticSearchServiceTest {
         when(queryBuilderMock.getFilterQuery(eq("uco"), eq("someValue")))
                 .thenReturn(new WildcardQuery.Builder()
                         .field("uco")
-                        .wildcard("*uco*").build());
+                        .wildcard("*uco*").build()._toQuery());
 
         // tested method
         Page<OpportunityDto> result = searchService.searchForAll(0, 10, "uco", true, "uco", "someValue");
@@ -276,10 +574,13 @@ class ElasticSearchServiceTest {
         assertThat(requestCaptor.getValue().sort().get(0).field().order(), equalTo(SortOrder.Desc));
         assertThat(requestCaptor.getValue().index().get(0), equalTo(CROWDHELIX_INDEX));
 
-        assertThat(Objects.requireNonNull(requestCaptor.getValue().query()).isMatchAll(), is(true));
-        assertThat(Objects.requireNonNull(requestCaptor.getValue().postFilter()).isWildcard(), is(true));
-        WildcardQuery wcq = (WildcardQuery) requestCaptor.getValue().postFilter()._get();
+        // the filter is applied in the filter context of the query
+        BoolQuery query = Objects.requireNonNull(requestCaptor.getValue().query()).bool();
+        assertThat(query.must().get(0).isMatchAll(), is(true));
+        assertThat(query.filter().get(0).isWildcard(), is(true));
+        WildcardQuery wcq = query.filter().get(0).wildcard();
         assertThat(wcq.wildcard(), equalTo("*uco*"));
+        assertThat(requestCaptor.getValue().postFilter(), nullValue());
     }
 
     @Test
@@ -301,8 +602,112 @@ class ElasticSearchServiceTest {
 
         assertThat(requestCaptor.getValue().sort(), empty());
         assertThat(requestCaptor.getValue().index().get(0), equalTo(CROWDHELIX_INDEX));
+        // the empty filter is left out
+        assertThat(Objects.requireNonNull(requestCaptor.getValue().query()).isMatchAll(), is(true));
+        assertThat(requestCaptor.getValue().postFilter(), nullValue());
+    }
+
+    @Test
+    void searchForAllPostFilter() throws IOException {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setFilterContext(false);
+        searchService = new ElasticSearchService(
+                resultProcessorMock, projectResultProcessorMock, projectServiceMock,
+                mock(AuthorRecommendationsCollector.class), queryBuilderMock, textNormalizerMock,
+                authorRepositoryMock, authorMapperMock, projectRepositoryMock, projectMapperMock,
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, properties),
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, properties),
+                Runnable::run, properties, searchTemplatesMock, authorProfilesMock, new ScatterGatherPlanner(properties),
+                new AuthorRankingAggregation(properties), opportunityMatchesMock);
+        when(queryBuilderMock.getSearchAllQuery()).thenReturn(new MatchAllQuery.Builder().build());
+        when(queryBuilderMock.getFilterQuery(eq("uco"), eq("someValue")))
+                .thenReturn(new WildcardQuery.Builder()
+                        .field("uco")
+                        .wildcard("*uco*").build()._toQuery());
+
+        // tested method
+        searchService.searchForAll(0, 10, "uco", true, "uco", "someValue");
+
+        // verify
+        verify(elasticsearchClientMock, times(1)).search(requestCaptor.capture(), eq(OpportunityDto.class));
         assertThat(Objects.requireNonNull(requestCaptor.getValue().query()).isMatchAll(), is(true));
-        assertThat(Objects.requireNonNull(requestCaptor.getValue().postFilter()).isBool(), is(true));
+        assertThat(Objects.requireNonNull(requestCaptor.getValue().postFilter()).isWildcard(), is(true));
+    }
+
+    @Test
+    void searchForAllByCursorFirstPage() {
+        // prepare
+        when(queryBuilderMock.getSearchAllQuery()).thenReturn(new MatchAllQuery.Builder().build());
+        when(queryBuilderMock.getFilterQuery(eq(SearchInfo.empty()))).thenReturn(new BoolQuery.Builder().build());
+        when(elasticsearchAsyncClientMock.openPointInTime(any(OpenPointInTimeRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(OpenPointInTimeResponse.of(r -> r.id("pit1"))));
+        when(elasticsearchAsyncClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(getCursorSearchResponse("pit2", 2)));
+
+        // tested method
+        CursorPageDto<OpportunityDto> result = searchService.searchForAllByCursorAsync(null, 2, "uco", true, null, null).join();
+
+        // verify
+        assertThat(result.content().size(), equalTo(2));
+        assertThat(result.totalElements(), equalTo(12L));
+        SearchCursor nextCursor = SearchCursor.decode(result.nextCursor());
+        assertThat(nextCursor.pitId(), equalTo("pit2"));
+        assertThat(nextCursor.searchAfter().get(0).stringValue(), equalTo("uco2"));
+        assertThat(nextCursor.searchAfter().get(1).longValue(), equalTo(2L));
+
+        verify(elasticsearchAsyncClientMock, times(1)).search(requestCaptor.capture(), eq(OpportunityDto.class));
+        SearchRequest request = requestCaptor.getValue();
+        assertThat(Objects.requireNonNull(request.pit()).id(), equalTo("pit1"));
+        assertThat(request.index(), empty());
+        assertThat(request.from(), equalTo(null));
+        assertThat(request.searchAfter(), empty());
+        assertThat(request.sort().get(0).field().field(), equalTo("uco"));
+        assertThat(request.sort().get(0).field().order(), equalTo(SortOrder.Desc));
+        assertThat(request.sort().get(1).field().field(), equalTo(SHARD_DOC_FIELD));
+        verifyNoInteractions(elasticsearchClientMock);
+    }
+
+    @Test
+    void searchForAllByCursorLastPage() {
+        // prepare
+        when(queryBuilderMock.getSearchAllQuery()).thenReturn(new MatchAllQuery.Builder().build());
+        when(queryBuilderMock.getFilterQuery(eq(SearchInfo.empty()))).thenReturn(new BoolQuery.Builder().build());
+        when(elasticsearchAsyncClientMock.search(any(SearchRequest.class), eq(OpportunityDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(getCursorSearchResponse("pit2", 1)));
+        when(elasticsearchAsyncClientMock.closePointInTime(any(Function.class)))
+                .thenReturn(CompletableFuture.completedFuture(ClosePointInTimeResponse.of(r -> r.succeeded(true).numFreed(1))));
+        String cursor = new SearchCursor("pit2", List.of(FieldValue.of("uco1"), FieldValue.of(1L))).encode();
+
+        // tested method
+        CursorPageDto<OpportunityDto> result = searchService.searchForAllByCursorAsync(cursor, 2, null, false, null, null).join();
+
+        // verify
+        assertThat(result.content().size(), equalTo(1));
+        assertThat(result.nextCursor(), equalTo(null));
+
+        verify(elasticsearchAsyncClientMock, times(1)).search(requestCaptor.capture(), eq(OpportunityDto.class));
+        SearchRequest request = requestCaptor.getValue();
+        assertThat(Objects.requireNonNull(request.pit()).id(), equalTo("pit2"));
+        assertThat(request.searchAfter().get(0).stringValue(), equalTo("uco1"));
+        assertThat(request.sort().size(), equalTo(1));
+        verify(elasticsearchAsyncClientMock, times(0)).openPointInTime(any(OpenPointInTimeRequest.class));
+        verify(elasticsearchAsyncClientMock, times(1)).closePointInTime(any(Function.class));
+    }
+
+    @Test
+    void searchForAllByInvalidCursor() {
+        // prepare
+        when(queryBuilderMock.getSearchAllQuery()).thenReturn(new MatchAllQuery.Builder().build());
+        when(queryBuilderMock.getFilterQuery(eq(SearchInfo.empty()))).thenReturn(new BoolQuery.Builder().build());
+
+        // tested method
+        Throwable exception = assertThrows(AppException.class,
+                () -> searchService.searchForAllByCursorAsync("not-a-cursor", 2, null, false, null, null));
+
+        // verify
+        assertThat(exception.getMessage(), equalTo(SearchCursor.INVALID_CURSOR));
+        verifyNoInteractions(elasticsearchAsyncClientMock);
     }
 
     @Test
@@ -310,7 +715,7 @@ class ElasticSearchServiceTest {
         // prepare
         SearchInfo info = new SearchInfo(30, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
                 List.of("uco1"), List.of(1L), true, null);
-        when(projectServiceMock.getByAuthorUco("uco1")).thenReturn(Collections.emptyList());
+        when(projectServiceMock.getByAuthorUcos(List.of("uco1"))).thenReturn(Collections.emptyList());
 
         // tested method
         Throwable exception = assertThrows(AppException.class, () -> searchService.searchByAuthors(info));
@@ -327,7 +732,7 @@ class ElasticSearchServiceTest {
         when(queryBuilderMock.getFilterQuery(eq("uco"), eq("someValue")))
                 .thenReturn(new WildcardQuery.Builder()
                         .field("uco")
-                        .wildcard("*uco*").build());
+                        .wildcard("*uco*").build()._toQuery());
 
         // tested method
         Throwable exception = assertThrows(ConnectionException.class, () ->
@@ -353,7 +758,7 @@ class ElasticSearchServiceTest {
         when(queryBuilderMock.getFilterQuery(eq("uco"), eq("someValue")))
                 .thenReturn(new WildcardQuery.Builder()
                         .field("uco")
-                        .wildcard("*uco*").build());
+                        .wildcard("*uco*").build()._toQuery());
 
         // tested method
         Throwable exception = assertThrows(AppException.class, () ->
@@ -405,12 +810,7 @@ class ElasticSearchServiceTest {
                 .score(score3)
                 .source(project3));
 
-        SearchResponse<ProjectEsDto> searchResponse = SearchResponse.of(r -> r
-                .shards(s -> s.failed(0).successful(3).total(3))
-                .took(10)
-                .timedOut(false)
-                .hits(h -> h
-                        .hits(List.of(hit1, hit2, hit3))));
+        MsearchResponse<ProjectEsDto> multiSearchResponse = getMultiSearchResponse(List.of(hit1, hit2, hit3), 2);
 
         assert hit1.source() != null;
         assert hit2.source() != null;
@@ -431,10 +831,17 @@ class ElasticSearchServiceTest {
         when(queryBuilderMock.getMoreLikeThisQuery(eq(someId),
                 anyList(), eq(CROWDHELIX_INDEX))).thenReturn(mltQuery);
         when(queryBuilderMock.getMoreLikeThisQuery(someId, CROWDHELIX_INDEX)).thenReturn(mltQuery);
-        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(ProjectEsDto.class))).thenReturn(searchResponse);
+        when(elasticsearchClientMock.msearch(any(MsearchRequest.class), eq(ProjectEsDto.class)))
+                .thenReturn(multiSearchResponse);
         when(projectResultProcessorMock.aggregateResultsByScore(any())).thenReturn(List.of(hit2.source(), hit3.source(), hit1.source()));
 
-        when(projectRepositoryMock.findByProjId(any())).thenReturn(List.of(new Project()));
+        List<Project> storedProjects = new ArrayList<>();
+        for (String projId : List.of(proj1Id, proj2Id, proj3Id)) {
+            Project project = new Project();
+            project.setProjId(projId);
+            storedProjects.add(project);
+        }
+        when(projectRepositoryMock.findByProjIdIn(anyCollection())).thenReturn(storedProjects);
         when(projectMapperMock.toDto(any())).thenReturn(new ProjectDto());
 
         Author author = new Author();
@@ -445,9 +852,8 @@ class ElasticSearchServiceTest {
         author2.setUco(uco2);
         AuthorDto authorDto2 = new AuthorDto();
         authorDto2.setUco(uco2);
-        when(authorRepositoryMock.findByUco(uco1)).thenReturn(Optional.of(author));
+        when(authorRepositoryMock.findByUcoIn(anyCollection())).thenReturn(List.of(author, author2));
         when(authorMapperMock.toDto(author)).thenReturn(authorDto);
-        when(authorRepositoryMock.findByUco(uco2)).thenReturn(Optional.of(author2));
         when(authorMapperMock.toDto(author2)).thenReturn(authorDto2);
 
         // tested method
@@ -476,5 +882,225 @@ class ElasticSearchServiceTest {
         OpportunitySearchResultDto result32 = result3SUM.get(1);
         assertThat(result31.authorDto().getUco(), equalTo(uco1));
         assertThat(result32.authorDto().getUco(), equalTo(uco2));
+        assertThat(result31.relevantProjects().size(), equalTo(2));
+        assertThat(result32.relevantProjects().size(), equalTo(1));
+
+        // one batched lookup of the projects and the authors per search
+        verify(projectRepositoryMock, times(4)).findByProjIdIn(anyCollection());
+        verify(authorRepositoryMock, times(4)).findByUcoIn(anyCollection());
+        verify(projectRepositoryMock, times(0)).findByProjId(any());
+        verify(authorRepositoryMock, times(0)).findByUco(any());
+    }
+
+    @Test
+    void searchByOpportunityAggregated() throws IOException {
+        // prepare
+        SearchConfigProperties properties = new SearchConfigProperties();
+        properties.setAuthorAggregation(true);
+        searchService = new ElasticSearchService(
+                resultProcessorMock, projectResultProcessorMock, projectServiceMock,
+                mock(AuthorRecommendationsCollector.class), queryBuilderMock, textNormalizerMock,
+                authorRepositoryMock, authorMapperMock, projectRepositoryMock, projectMapperMock,
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, properties),
+                new SearchPerformer<>(elasticsearchClientMock, elasticsearchAsyncClientMock, properties),
+                Runnable::run, properties, searchTemplatesMock, authorProfilesMock, new ScatterGatherPlanner(properties),
+                new AuthorRankingAggregation(properties), opportunityMatchesMock);
+        String someId = "someId";
+        MoreLikeThisQuery mltQuery = MoreLikeThisQuery.of(m -> m
+                .fields(List.of(DESCRIPTION_FIELD, TITLE_FIELD))
+                .like(l -> l.document(d -> d
+                        .index(CROWDHELIX_INDEX)
+                        .id(someId))));
+        when(queryBuilderMock.getMoreLikeThisQuery(eq(someId), anyList(), eq(CROWDHELIX_INDEX))).thenReturn(mltQuery);
+        when(queryBuilderMock.getMoreLikeThisQuery(someId, CROWDHELIX_INDEX)).thenReturn(mltQuery);
+
+        ProjectEsDto project1 = new ProjectEsDto();
+        project1.setProjId("proj1");
+        project1.setUco("uco1");
+        ProjectEsDto project2 = new ProjectEsDto();
+        project2.setProjId("proj2");
+        project2.setUco("uco1");
+        ProjectEsDto project3 = new ProjectEsDto();
+        project3.setProjId("proj3");
+        project3.setUco("uco2");
+        Aggregate authorsAggregate = Aggregate.of(a -> a
+                .sterms(t -> t
+                        .sumOtherDocCount(0L)
+                        .buckets(b -> b.array(List.of(
+                                getAuthorBucket("uco1", 25.0, 15.0, 12.5, List.of(project2, project1), List.of(15.0, 10.0)),
+                                getAuthorBucket("uco2", 20.0, 20.0, 20.0, List.of(project3), List.of(20.0)))))));
+        SearchResponse<ProjectEsDto> searchResponse = SearchResponse.of(r -> r
+                .shards(s -> s.failed(0).successful(1).total(1))
+                .took(10)
+                .timedOut(false)
+                .hits(h -> h
+                        .total(t -> t.value(3).relation(TotalHitsRelation.Eq))
+                        .hits(List.of()))
+                .aggregations(getAggName(AuthorProjectsSortType.SUM), authorsAggregate));
+        when(elasticsearchClientMock.search(any(SearchRequest.class), eq(ProjectEsDto.class))).thenReturn(searchResponse);
+
+        List<Project> storedProjects = new ArrayList<>();
+        for (String projId : List.of("proj1", "proj2", "proj3")) {
+            Project project = new Project();
+            project.setProjId(projId);
+            storedProjects.add(project);
+        }
+        when(projectRepositoryMock.findByProjIdIn(anyCollection())).thenReturn(storedProjects);
+        when(projectMapperMock.toDto(any())).thenAnswer(invocation -> new ProjectDto());
+        Author author1 = new Author();
+        author1.setUco("uco1");
+        Author author2 = new Author();
+        author2.setUco("uco2");
+        when(authorRepositoryMock.findByUcoIn(anyCollection())).thenReturn(List.of(author1, author2));
+        when(authorMapperMock.toDto(author1)).thenReturn(new AuthorDto("John Doe", "uco1", "student"));
+        when(authorMapperMock.toDto(author2)).thenReturn(new AuthorDto("Jenna Doe", "uco2", "employee"));
+
+        // tested method
+        List<OpportunitySearchResultDto> results = searchService.searchByOpportunity(someId, 20, AuthorProjectsSortType.SUM);
+
+        // verify
+        verify(elasticsearchClientMock).search(requestCaptor.capture(), eq(ProjectEsDto.class));
+        SearchRequest request = requestCaptor.getValue();
+        assertThat(request.index(), equalTo(List.of(MU_INDEX)));
+        assertThat(request.size(), equalTo(0));
+        assertThat(request.aggregations().get(getAggName(AuthorProjectsSortType.SUM)).terms().size(), equalTo(20));
+        // the title sub-query has the weight of the title results
+        BoolQuery query = Objects.requireNonNull(request.query()).bool();
+        assertThat(query.should().size(), equalTo(2));
+        assertThat(query.should().get(0).bool().boost(), equalTo((float) TITLE_SCORE_COEFFICIENT));
+        verify(elasticsearchClientMock, never()).msearch(any(MsearchRequest.class), eq(ProjectEsDto.class));
+
+        // the order of the aggregation buckets is kept
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).authorDto().getUco(), equalTo("uco1"));
+        assertThat(results.get(0).relevantProjects().size(), equalTo(2));
+        assertThat(results.get(0).relevantProjects().get(0).getScore(), equalTo(15.0));
+        assertThat(results.get(0).sumScore(), equalTo(25.0));
+        assertThat(results.get(0).maxScore(), equalTo(15.0));
+        assertThat(results.get(0).averageScore(), equalTo(12.5));
+        assertThat(results.get(1).authorDto().getUco(), equalTo("uco2"));
+        verify(projectRepositoryMock, times(1)).findByProjIdIn(anyCollection());
+    }
+
+    @Test
+    void searchByOpportunityFromStoredMatches() throws IOException {
+        // prepare
+        String someId = "someId";
+        ProjectEsDto project1 = new ProjectEsDto();
+        project1.setProjId("proj1");
+        project1.setUco("uco1");
+        project1.setScore(10.0);
+        ProjectEsDto project2 = new ProjectEsDto();
+        project2.setProjId("proj2");
+        project2.setUco("uco2");
+        project2.setScore(20.0);
+        // stored by the best sum and by the best count
+        when(opportunityMatchesMock.find(someId, 1)).thenReturn(Optional.of(List.of(
+                new AuthorRanking("uco1", 30.0, 10.0, 7.5, 4, List.of(project1)),
+                new AuthorRanking("uco2", 20.0, 20.0, 20.0, 1, List.of(project2)))));
+
+        Project storedProject = new Project();
+        storedProject.setProjId("proj2");
+        when(projectRepositoryMock.findByProjIdIn(anyCollection())).thenReturn(List.of(storedProject));
+        when(projectMapperMock.toDto(any())).thenAnswer(invocation -> new ProjectDto());
+        Author author = new Author();
+        author.setUco("uco2");
+        when(authorRepositoryMock.findByUcoIn(anyCollection())).thenReturn(List.of(author));
+        when(authorMapperMock.toDto(author)).thenReturn(new AuthorDto("Jenna Doe", "uco2", "employee"));
+
+        // tested method
+        List<OpportunitySearchResultDto> results = searchService.searchByOpportunity(someId, 1, AuthorProjectsSortType.MAX);
+
+        // verify
+        // the stored matches are ranked by the requested sort type
+        assertThat(results.size(), equalTo(1));
+        assertThat(results.get(0).authorDto().getUco(), equalTo("uco2"));
+        assertThat(results.get(0).maxScore(), equalTo(20.0));
+        assertThat(results.get(0).relevantProjects().get(0).getScore(), equalTo(20.0));
+        verify(elasticsearchClientMock, never()).msearch(any(MsearchRequest.class), eq(ProjectEsDto.class));
+        verify(elasticsearchClientMock, never()).search(any(SearchRequest.class), eq(ProjectEsDto.class));
+    }
+
+    private static StringTermsBucket getAuthorBucket(String uco, double sum, double max, double avg,
+                                                     List<ProjectEsDto> projects, List<Double> scores) {
+        JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+        List<Hit<JsonData>> hits = new ArrayList<>();
+        for (int i = 0; i < projects.size(); i++) {
+            double score = scores.get(i);
+            JsonData source = JsonData.of(projects.get(i), mapper);
+            hits.add(Hit.of(h -> h
+                    .id(source.to(ProjectEsDto.class).getProjId())
+                    .index(MU_INDEX)
+                    .score(score)
+                    .source(source)));
+        }
+        return StringTermsBucket.of(b -> b
+                .key(uco)
+                .docCount(projects.size())
+                .aggregations(SUM_AGG, a -> a.sum(s -> s.value(sum)))
+                .aggregations(MAX_AGG, a -> a.max(s -> s.value(max)))
+                .aggregations(AVG_AGG, a -> a.avg(s -> s.value(avg)))
+                .aggregations(PROJECTS_AGG, a -> a.topHits(t -> t.hits(h -> h.hits(hits)))));
+    }
+
+    private static BaseEsDto getRankedId(String esId, double score) {
+        BaseEsDto rankedId = new BaseEsDto();
+        rankedId.setEsId(esId);
+        rankedId.setScore(score);
+        return rankedId;
+    }
+
+    private static <T> MgetResponse<T> getMultiGetResponse(List<Hit<T>> hits) {
+        return MgetResponse.of(r -> r
+                .docs(hits.stream()
+                        .map(hit -> MultiGetResponseItem.<T>of(item -> item
+                                .result(GetResult.<T>getResultOf(g -> g
+                                        .id(hit.id())
+                                        .index(hit.index())
+                                        .found(true)
+                                        .source(hit.source())))))
+                        .toList()));
+    }
+
+    private static SearchResponse<OpportunityDto> getCursorSearchResponse(String pitId, int hitsCount) {
+        List<Hit<OpportunityDto>> hits = new ArrayList<>();
+        for (int i = 1; i <= hitsCount; i++) {
+            long shardDoc = i;
+            hits.add(Hit.of(h -> h
+                    .id("id" + shardDoc)
+                    .index(CROWDHELIX_INDEX)
+                    .source(new OpportunityDto())
+                    .sort(FieldValue.of("uco" + shardDoc), FieldValue.of(shardDoc))));
+        }
+        return SearchResponse.of(r -> r
+                .shards(s -> s.failed(0).successful(1).total(1))
+                .took(10)
+                .timedOut(false)
+                .pitId(pitId)
+                .hits(h -> h
+                        .total(t -> t.value(12).relation(TotalHitsRelation.Eq))
+                        .hits(hits)));
+    }
+
+    private static <T> MsearchTemplateResponse<T> getMultiSearchTemplateResponse(List<Hit<T>> hits, int searchesCount) {
+        return MsearchTemplateResponse.of(r -> r
+                .took(10)
+                .responses(getMultiSearchResponse(hits, searchesCount).responses()));
+    }
+
+    private static <T> MsearchResponse<T> getMultiSearchResponse(List<Hit<T>> hits, int searchesCount) {
+        List<MultiSearchResponseItem<T>> items = new ArrayList<>();
+        for (int i = 0; i < searchesCount; i++) {
+            items.add(MultiSearchResponseItem.of(item -> item
+                    .result(MultiSearchItem.of(r -> r
+                            .status(200)
+                            .shards(s -> s.failed(0).successful(1).total(1))
+                            .took(10)
+                            .timedOut(false)
+                            .hits(h -> h.hits(hits))))));
+        }
+        return MsearchResponse.of(r -> r
+                .took(10)
+                .responses(items));
     }
 }
@@ -0,0 +1,152 @@
+package muni.fi.bl.service.impl;
+
+import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.config.ImportConfigProperties;
+import muni.fi.bl.exceptions.AppException;
+import muni.fi.bl.exceptions.NotFoundException;
+import muni.fi.bl.service.ImportJobService;
+import muni.fi.bl.service.OpportunityService;
+import muni.fi.bl.service.ProjectService;
+import muni.fi.dtos.ImportJobDto;
+import muni.fi.enums.ImportJobType;
+import muni.fi.enums.ImportPhase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class ImportJobServiceImplTest {
+
+    private static final String FILE_NAME = "projects.csv";
+
+    @Mock
+    private ProjectService projectServiceMock;
+    @Mock
+    private OpportunityService opportunityServiceMock;
+
+    @TempDir
+    private Path spoolDirectory;
+
+    private ImportConfigProperties importProperties;
+
+    // tested class
+    private ImportJobService importJobService;
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+
+        importProperties = new ImportConfigProperties();
+        importProperties.setSpoolDirectory(spoolDirectory.toString());
+        importJobService = new ImportJobServiceImpl(projectServiceMock, opportunityServiceMock, importProperties, Runnable::run);
+    }
+
+    @Test
+    void submit() throws IOException {
+        // prepare
+        when(projectServiceMock.loadProjectsFromCsv(any(), eq(FILE_NAME), any()))
+                .thenReturn(new ProjectLoadResult(3, 2, 1, List.of()));
+
+        // tested method
+        ImportJobDto job = importJobService.submit(ImportJobType.PROJECTS_APPEND, FILE_NAME, getData(), false);
+
+        // verify
+        assertThat(job.phase(), equalTo(ImportPhase.FINISHED));
+        assertThat(job.message(), equalTo("Successfully loaded 2/3 project records (1 failed)"));
+        assertThat(job.startedAt(), notNullValue());
+        assertThat(importJobService.get(job.id()), notNullValue());
+        // the spooled file is deleted
+        try (var files = Files.list(spoolDirectory)) {
+            assertThat(files.count(), equalTo(0L));
+        }
+    }
+
+    @Test
+    void submitAsyncFailed() {
+        // prepare
+        when(projectServiceMock.replaceProjectsFromCsv(any(), eq(FILE_NAME), any()))
+                .thenThrow(new AppException("Error reading csv file"));
+
+        // tested method
+        CompletableFuture<String> result = importJobService.submitAsync(ImportJobType.PROJECTS_REPLACE, FILE_NAME, getData(), false);
+
+        // verify
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertThat(exception.getCause(), instanceOf(AppException.class));
+        ImportJobDto job = importJobService.getAll().get(0);
+        assertThat(job.phase(), equalTo(ImportPhase.FAILED));
+        assertThat(job.error(), equalTo("Error reading csv file"));
+    }
+
+    @Test
+    void submitInvalidExtension() {
+        // tested method
+        assertThrows(AppException.class,
+                () -> importJobService.submit(ImportJobType.PROJECTS_APPEND, "projects.json", getData(), false));
+
+        // verify
+        verify(projectServiceMock, never()).loadProjectsFromCsv(any(), any(), any());
+        assertThat(importJobService.getAll().size(), equalTo(0));
+    }
+
+    @Test
+    void submitSameIndexSerialized() {
+        // prepare
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        importJobService = new ImportJobServiceImpl(projectServiceMock, opportunityServiceMock, importProperties, executor);
+        when(projectServiceMock.loadProjectsFromCsv(any(), any(), any()))
+                .thenReturn(new ProjectLoadResult(1, 1, 0, List.of()));
+        when(opportunityServiceMock.load(any(), any())).thenReturn("Successfully processed 1/1 records (0 failed)");
+
+        // tested method
+        ImportJobDto first = importJobService.submit(ImportJobType.PROJECTS_APPEND, FILE_NAME, getData(), false);
+        ImportJobDto second = importJobService.submit(ImportJobType.PROJECTS_APPEND, FILE_NAME, getData(), false);
+        importJobService.submit(ImportJobType.OPPORTUNITIES_APPEND, "opportunities.csv", getData(), false);
+
+        // verify
+        // the opportunities don't wait for the projects
+        assertThat(tasks.size(), equalTo(2));
+        assertThat(importJobService.get(second.id()).phase(), equalTo(ImportPhase.QUEUED));
+        tasks.get(0).run();
+        assertThat(importJobService.get(first.id()).phase(), equalTo(ImportPhase.FINISHED));
+        // the second projects job is started after the first one finishes
+        assertThat(tasks.size(), equalTo(3));
+        tasks.get(2).run();
+        assertThat(importJobService.get(second.id()).phase(), equalTo(ImportPhase.FINISHED));
+    }
+
+    @Test
+    void getNotFound() {
+        // tested method
+        assertThrows(NotFoundException.class, () -> importJobService.get("unknown"));
+    }
+
+    private static InputStream getData() {
+        return new ByteArrayInputStream("header\nrow".getBytes(StandardCharsets.UTF_8));
+    }
+}
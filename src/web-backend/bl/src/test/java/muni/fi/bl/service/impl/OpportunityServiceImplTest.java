@@ -8,9 +8,14 @@ import co.elastic.clients.elasticsearch.core.DeleteResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
 import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
 import muni.fi.bl.component.ElasticLoaderAccessor;
+import muni.fi.bl.component.IndexAnalysisManager;
+import muni.fi.bl.component.OpportunityMatches;
+import muni.fi.bl.component.RelatedOpportunities;
+import muni.fi.bl.component.SearchResultCache;
 import muni.fi.bl.config.ApiConfigProperties;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.exceptions.NotFoundException;
+import muni.fi.bl.service.AggregationService;
 import muni.fi.bl.service.OpportunityService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,6 +28,7 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Optional;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
@@ -57,6 +63,16 @@ class OpportunityServiceImplTest {
 
     @Mock
     private ElasticsearchIndicesClient elasticsearchIndicesClientMock;
+    @Mock
+    private SearchResultCache searchResultCacheMock;
+    @Mock
+    private AggregationService aggregationServiceMock;
+    @Mock
+    private IndexAnalysisManager indexAnalysisManagerMock;
+    @Mock
+    private OpportunityMatches opportunityMatchesMock;
+    @Mock
+    private RelatedOpportunities relatedOpportunitiesMock;
 
     @Captor
     private ArgumentCaptor<DeleteRequest> deleteRequestCaptor;
@@ -72,7 +88,7 @@ class OpportunityServiceImplTest {
 
         when(apiConfigPropertiesMock.getDataLoaderUrl()).thenReturn(LOADER_URL);
         when(apiConfigPropertiesMock.getDataLoaderPort()).thenReturn(LOADER_PORT);
-        opportunityService = new OpportunityServiceImpl(elasticsearchClientMock, restTemplateMock, elasticLoaderAccessor, apiConfigPropertiesMock);
+        opportunityService = new OpportunityServiceImpl(elasticsearchClientMock, restTemplateMock, elasticLoaderAccessor, apiConfigPropertiesMock, searchResultCacheMock, aggregationServiceMock, indexAnalysisManagerMock, opportunityMatchesMock, relatedOpportunitiesMock);
     }
 
     @Test
@@ -93,6 +109,8 @@ class OpportunityServiceImplTest {
 
         // verify
         verify(elasticsearchClientMock).delete(deleteRequestCaptor.capture());
+        verify(searchResultCacheMock).invalidateAll();
+        verify(aggregationServiceMock).invalidateUniqueAgg();
         assertThat(deleteRequestCaptor.getValue().id(), equalTo(ID));
         assertThat(deleteRequestCaptor.getValue().index(), equalTo(CROWDHELIX_INDEX));
         assertThat(deleteRequestCaptor.getValue().refresh(), equalTo(Refresh.True));
@@ -142,6 +160,8 @@ class OpportunityServiceImplTest {
 
         // verify
         verify(elasticsearchIndicesClientMock).delete(deleteIndexRequestCaptor.capture());
+        verify(searchResultCacheMock).invalidateAll();
+        verify(aggregationServiceMock).invalidateUniqueAgg();
         assertThat(deleteIndexRequestCaptor.getValue().index().get(0), equalTo(CROWDHELIX_INDEX));
         assertThat(deleteIndexRequestCaptor.getValue().allowNoIndices(), is(true));
         assertThat(deleteIndexRequestCaptor.getValue().ignoreUnavailable(), is(true));
@@ -197,14 +217,20 @@ class OpportunityServiceImplTest {
         // prepare
         String expected = "Result";
         String fileName = "fileName";
-        String data = "xxx";
-        when(elasticLoaderAccessor.sendDataToElasticLoader(fileName, data.getBytes(), UPLOAD_URL))
+        Path data = Path.of("import.tmp");
+        when(elasticLoaderAccessor.sendDataToElasticLoader(fileName, data, UPLOAD_URL))
                 .thenReturn(expected);
 
         // tested method
-        String result = opportunityService.load(fileName, data.getBytes());
+        String result = opportunityService.load(fileName, data);
 
         // verify
         assertThat(result, equalTo(expected));
+        verify(indexAnalysisManagerMock).ensureIndex(CROWDHELIX_INDEX);
+        verify(indexAnalysisManagerMock).ensureAnalyzer(CROWDHELIX_INDEX);
+        verify(searchResultCacheMock).invalidateAll();
+        verify(aggregationServiceMock).invalidateUniqueAgg();
+        // the stored matches of the reloaded opportunities are outdated
+        verify(opportunityMatchesMock).invalidateAll();
     }
 }
\ No newline at end of file
@@ -8,10 +8,19 @@ import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexResponse;
 import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import jakarta.persistence.EntityManager;
+import muni.fi.bl.ImportProgress;
 import muni.fi.bl.ProjectLoadResult;
+import muni.fi.bl.ProjectSyncResult;
+import muni.fi.bl.component.AuthorProfiles;
 import muni.fi.bl.component.ElasticLoaderAccessor;
+import muni.fi.bl.component.IndexAnalysisManager;
+import muni.fi.bl.component.OpportunityMatches;
 import muni.fi.bl.component.ProjectParser;
 import muni.fi.bl.component.QueryBuilder;
+import muni.fi.bl.component.SearchResultCache;
+import muni.fi.bl.component.TermStatistics;
+import muni.fi.bl.config.ImportConfigProperties;
 import muni.fi.bl.exceptions.ConnectionException;
 import muni.fi.bl.exceptions.NotFoundException;
 import muni.fi.bl.mappers.ProjectMapper;
@@ -22,12 +31,15 @@ import muni.fi.dal.entity.Project;
 import muni.fi.dal.repository.AuthorRepository;
 import muni.fi.dal.repository.DepartmentRepository;
 import muni.fi.dal.repository.ProjectRepository;
+import muni.fi.dal.repository.ProjectRepository.ProjectState;
 import muni.fi.dtos.AuthorDto;
 import muni.fi.dtos.DepartmentDto;
 import muni.fi.dtos.ProjectDto;
 import muni.fi.dtos.ProjectUpdateDto;
+import muni.fi.enums.ImportPhase;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mapstruct.factory.Mappers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -40,18 +52,27 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static muni.fi.bl.exceptions.ConnectionException.ELASTIC_CONNECTION_ERROR;
+import static muni.fi.bl.service.impl.ElasticSearchService.MU_INDEX;
+import static muni.fi.bl.service.impl.ProjectServiceImpl.UPLOAD_ENDPOINT;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -77,13 +98,32 @@ class ProjectServiceImplTest {
     private ElasticsearchClient elasticsearchClientMock;
     @Mock
     private QueryBuilder queryBuilderMock;
+    @Mock
+    private SearchResultCache searchResultCacheMock;
+    @Mock
+    private TermStatistics termStatisticsMock;
+    @Mock
+    private IndexAnalysisManager indexAnalysisManagerMock;
+    @Mock
+    private AuthorProfiles authorProfilesMock;
+    @Mock
+    private OpportunityMatches opportunityMatchesMock;
+    @Mock
+    private EntityManager entityManagerMock;
+    @Mock
+    private ImportProgress importProgressMock;
 
     @Captor
     private ArgumentCaptor<Specification<Project>> specificationCaptor;
     @Captor
     private ArgumentCaptor<Pageable> pageableCaptor;
 
+    @TempDir
+    private Path tempDir;
+    private Path csvFile;
+
     private ProjectLoadResult loadResult;
+    private ImportConfigProperties importProperties;
 
     // tested class
     private ProjectService projectService;
@@ -91,11 +131,15 @@ class ProjectServiceImplTest {
     private Project project2;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
         openMocks(this);
 
+        csvFile = Files.createFile(tempDir.resolve("projects.csv"));
+
+        importProperties = new ImportConfigProperties();
+        importProperties.setBulkLoad(false);
         projectService = new ProjectServiceImpl(projectRepositoryMock, authorRepositoryMock, departmentRepositoryMock,
-                Mappers.getMapper(ProjectMapper.class), csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock);
+                Mappers.getMapper(ProjectMapper.class), csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock, searchResultCacheMock, termStatisticsMock, indexAnalysisManagerMock, authorProfilesMock, opportunityMatchesMock, entityManagerMock, importProperties);
 
         Author author1 = new Author("John Doe", "123456", "student");
         Author author2 = new Author("Jenna Doe", "654321", "employee");
@@ -108,7 +152,7 @@ class ProjectServiceImplTest {
         project1.setDepartment(department1);
         project2.setDepartment(department2);
         project1.setProjId("123");
-        loadResult = new ProjectLoadResult(2, 1, 1, List.of(project1, project2));
+        loadResult = new ProjectLoadResult(2, 1, 1, List.of());
 
         Author authorReturned1 = new Author("John Doe", "123456", "student");
         Author authorReturned2 = new Author("Jenna Doe", "654321", "employee");
@@ -118,6 +162,12 @@ class ProjectServiceImplTest {
         Department departmentReturned2 = new Department("FI", "department2");
         departmentReturned1.setId(1L);
         departmentReturned2.setId(2L);
+        when(authorRepositoryMock.findAll()).thenReturn(List.of(authorReturned1, authorReturned2));
+        when(authorRepositoryMock.getReferenceById(1L)).thenReturn(authorReturned1);
+        when(authorRepositoryMock.getReferenceById(2L)).thenReturn(authorReturned2);
+        when(departmentRepositoryMock.findAll()).thenReturn(List.of(departmentReturned1, departmentReturned2));
+        when(departmentRepositoryMock.getReferenceById(1L)).thenReturn(departmentReturned1);
+        when(departmentRepositoryMock.getReferenceById(2L)).thenReturn(departmentReturned2);
         when(authorRepositoryMock.findByUco(author1.getUco())).thenReturn(Optional.of(authorReturned1));
         when(authorRepositoryMock.findByUco(author2.getUco())).thenReturn(Optional.of(authorReturned2));
         when(departmentRepositoryMock.findByOrgUnitAndDepartmentName(department1.getOrgUnit(), department1.getDepartmentName()))
@@ -133,21 +183,137 @@ class ProjectServiceImplTest {
     @Test
     void loadProjectsFromCsv() {
         // prepare
-        when(csvParserMock.parseProjects(any())).thenReturn(loadResult);
+        when(csvParserMock.parseProjects(any(), any())).thenAnswer(invocation -> {
+            Consumer<List<Project>> chunkConsumer = invocation.getArgument(1);
+            chunkConsumer.accept(List.of(project1));
+            chunkConsumer.accept(List.of(project2));
+            return loadResult;
+        });
+
+        // tested method
+        ProjectLoadResult result = projectService.loadProjectsFromCsv(csvFile, DUMMY_FILENAME,
+                importProgressMock);
+
+        // verify
+        assertThat(result, equalTo(loadResult));
+        verify(csvParserMock).parseProjects(any(), any());
+        verify(importProgressMock, times(2)).addProcessed(1);
+        verify(importProgressMock).addFailed(1);
+        verify(importProgressMock).setPhase(ImportPhase.INDEXING);
+        verify(projectRepositoryMock).saveAll(List.of(project1));
+        verify(projectRepositoryMock).saveAll(List.of(project2));
+        verify(entityManagerMock, times(2)).clear();
+        // the authors and departments are loaded once per import
+        verify(authorRepositoryMock).findAll();
+        verify(departmentRepositoryMock).findAll();
+        verify(authorRepositoryMock, never()).findByUco(any());
+        verify(termStatisticsMock).rebuild();
+        verify(indexAnalysisManagerMock).ensureIndex(MU_INDEX);
+        verify(indexAnalysisManagerMock).ensureAnalyzer(MU_INDEX);
+        verify(authorProfilesMock).updateProfiles(Set.of("123456", "654321"));
+
+        assertThat(project1.getAuthor().getId(), equalTo(1L));
+        assertThat(project2.getAuthor().getId(), equalTo(2L));
+        assertThat(project1.getDepartment().getId(), equalTo(1L));
+        assertThat(project2.getDepartment().getId(), equalTo(2L));
+    }
+
+    @Test
+    void loadProjectsFromCsvBulk() {
+        // prepare
+        importProperties.setBulkLoad(true);
+        when(csvParserMock.parseProjects(any(), any())).thenAnswer(invocation -> {
+            Consumer<List<Project>> chunkConsumer = invocation.getArgument(1);
+            chunkConsumer.accept(List.of(project1, project2));
+            return loadResult;
+        });
 
         // tested method
-        ProjectLoadResult result = projectService.loadProjectsFromCsv(InputStream.nullInputStream(), DUMMY_FILENAME);
+        ProjectLoadResult result = projectService.loadProjectsFromCsv(csvFile, DUMMY_FILENAME,
+                ImportProgress.NONE);
 
         // verify
         assertThat(result, equalTo(loadResult));
-        verify(csvParserMock).parseProjects(any());
-        verify(authorRepositoryMock, times(2)).findByUco(any());
-        verify(departmentRepositoryMock, times(2)).findByOrgUnitAndDepartmentName(any(), any());
-
-        assertThat(result.projects().get(0).getAuthor().getId(), equalTo(1L));
-        assertThat(result.projects().get(1).getAuthor().getId(), equalTo(2L));
-        assertThat(result.projects().get(0).getDepartment().getId(), equalTo(1L));
-        assertThat(result.projects().get(1).getDepartment().getId(), equalTo(2L));
+        verify(projectRepositoryMock).upsertAll(List.of(project1, project2));
+        verify(projectRepositoryMock, never()).saveAll(any());
+        verify(authorRepositoryMock, never()).findAll();
+        verify(authorProfilesMock).updateProfiles(Set.of("123456", "654321"));
+    }
+
+    @Test
+    void syncProjectsFromCsv() throws IOException {
+        // prepare
+        importProperties.setBulkLoad(true);
+        project1.setContentHash("hash1");
+        project2.setProjId("456");
+        project2.setContentHash("hash2");
+        ProjectState unchanged = projectState(4L, "123", "hash1", "123456");
+        ProjectState changed = projectState(5L, "456", "outdated", "111111");
+        ProjectState missing = projectState(7L, "789", "hash3", "222222");
+        when(projectRepositoryMock.findAllStates()).thenReturn(List.of(unchanged, changed, missing));
+        ProjectLoadResult parseResult = new ProjectLoadResult(2, 2, 0, List.of());
+        when(csvParserMock.parseProjects(any(), any())).thenAnswer(invocation -> {
+            Consumer<List<Project>> chunkConsumer = invocation.getArgument(1);
+            chunkConsumer.accept(List.of(project1, project2));
+            return parseResult;
+        });
+        byte[] changedData = new byte[]{1, 2, 3};
+        doAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write(changedData);
+            return null;
+        }).when(csvParserMock).selectProjects(any(), eq(Set.of("456")), any());
+        List<byte[]> sentData = new ArrayList<>();
+        when(elasticLoaderAccessorMock.sendDataToElasticLoader(eq(DUMMY_FILENAME), any(), eq(UPLOAD_ENDPOINT)))
+                .thenAnswer(invocation -> {
+                    sentData.add(Files.readAllBytes(invocation.getArgument(1)));
+                    return "";
+                });
+
+        // tested method
+        ProjectSyncResult result = projectService.syncProjectsFromCsv(csvFile, DUMMY_FILENAME, true,
+                ImportProgress.NONE);
+
+        // verify
+        assertThat(result, equalTo(new ProjectSyncResult(2, 2, 0, 1, 1)));
+        // the changed project is updated in place
+        verify(projectRepositoryMock).upsertAll(List.of(project2));
+        assertThat(project2.getId(), equalTo(5L));
+        verify(projectRepositoryMock).deleteAllByIdInBatch(List.of(7L));
+        verify(elasticsearchClientMock).deleteByQuery(any(DeleteByQueryRequest.class));
+        // only the changed records are sent, the temporary file is deleted afterwards
+        assertThat(sentData.size(), equalTo(1));
+        assertThat(sentData.get(0), equalTo(changedData));
+        try (var files = Files.list(tempDir)) {
+            assertThat(files.toList(), equalTo(List.of(csvFile)));
+        }
+        verify(termStatisticsMock).rebuild();
+        verify(authorProfilesMock).updateProfiles(Set.of("654321", "111111", "222222"));
+    }
+
+    @Test
+    void syncProjectsFromCsvUnchanged() {
+        // prepare
+        project1.setContentHash("hash1");
+        ProjectState unchanged = projectState(4L, "123", "hash1", "123456");
+        ProjectState missing = projectState(7L, "789", "hash3", "222222");
+        when(projectRepositoryMock.findAllStates()).thenReturn(List.of(unchanged, missing));
+        when(csvParserMock.parseProjects(any(), any())).thenAnswer(invocation -> {
+            Consumer<List<Project>> chunkConsumer = invocation.getArgument(1);
+            chunkConsumer.accept(List.of(project1));
+            return new ProjectLoadResult(2, 1, 1, List.of());
+        });
+
+        // tested method
+        ProjectSyncResult result = projectService.syncProjectsFromCsv(csvFile, DUMMY_FILENAME, true,
+                ImportProgress.NONE);
+
+        // verify
+        assertThat(result, equalTo(new ProjectSyncResult(2, 1, 1, 0, 0)));
+        // a record failed to parse, the missing projects are kept
+        verify(projectRepositoryMock, never()).deleteAllByIdInBatch(any());
+        verify(projectRepositoryMock, never()).saveAll(any());
+        verify(elasticLoaderAccessorMock, never()).sendDataToElasticLoader(any(), any(), any());
+        verify(termStatisticsMock, never()).rebuild();
     }
 
     @Test
@@ -180,7 +346,7 @@ class ProjectServiceImplTest {
     void getById() {
         // prepare
         projectService = new ProjectServiceImpl(projectRepositoryMock, authorRepositoryMock, departmentRepositoryMock,
-                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock);
+                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock, searchResultCacheMock, termStatisticsMock, indexAnalysisManagerMock, authorProfilesMock, opportunityMatchesMock, entityManagerMock, importProperties);
         when(projectRepositoryMock.findById(eq(1L))).thenReturn(Optional.of(project1));
 
         // tested method
@@ -203,11 +369,42 @@ class ProjectServiceImplTest {
         assertThat(exception.getMessage(), equalTo("Project with id 1 not found"));
     }
 
+    @Test
+    void getByIds() {
+        // prepare
+        project1.setId(1L);
+        project2.setId(2L);
+        when(projectRepositoryMock.findByIdIn(List.of(2L, 1L))).thenReturn(List.of(project1, project2));
+
+        // tested method
+        List<ProjectDto> projects = projectService.getByIds(List.of(2L, 1L));
+
+        // verify
+        assertThat(projects.size(), equalTo(2));
+        assertThat(projects.get(0).getId(), equalTo(2L));
+        assertThat(projects.get(1).getId(), equalTo(1L));
+        verify(projectRepositoryMock, times(1)).findByIdIn(List.of(2L, 1L));
+        verify(projectRepositoryMock, times(0)).findById(any());
+    }
+
+    @Test
+    void getByIdsNotFound() {
+        // prepare
+        project1.setId(1L);
+        when(projectRepositoryMock.findByIdIn(List.of(1L, 2L))).thenReturn(List.of(project1));
+
+        // tested method
+        Throwable exception = assertThrows(NotFoundException.class, () -> projectService.getByIds(List.of(1L, 2L)));
+
+        // verify
+        assertThat(exception.getMessage(), equalTo("Project with id 2 not found"));
+    }
+
     @Test
     void getByAuthorUco() {
         // prepare
         projectService = new ProjectServiceImpl(projectRepositoryMock, authorRepositoryMock, departmentRepositoryMock,
-                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock);
+                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock, searchResultCacheMock, termStatisticsMock, indexAnalysisManagerMock, authorProfilesMock, opportunityMatchesMock, entityManagerMock, importProperties);
         List<Project> projects = List.of(this.project1, project2);
         when(projectRepositoryMock.findByAuthorUco(eq("uco"))).thenReturn(projects);
 
@@ -230,6 +427,8 @@ class ProjectServiceImplTest {
 
         // verify
         verify(projectRepositoryMock).deleteAll();
+        verify(termStatisticsMock).invalidate();
+        verify(authorProfilesMock).deleteAll();
     }
 
     @Test
@@ -247,6 +446,7 @@ class ProjectServiceImplTest {
         // verify
         verify(projectRepositoryMock).findById(1L);
         verify(projectRepositoryMock).deleteById(1L);
+        verify(authorProfilesMock).updateProfiles(Set.of("123456"));
     }
 
     @Test
@@ -302,7 +502,7 @@ class ProjectServiceImplTest {
         when(projectMapperMock.toDto(any())).thenReturn(dto);
         when(projectMapperMock.toEntity(any())).thenReturn(entity);
         projectService = new ProjectServiceImpl(projectRepositoryMock, authorRepositoryMock, departmentRepositoryMock,
-                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock);
+                projectMapperMock, csvParserMock, elasticLoaderAccessorMock, elasticsearchClientMock, queryBuilderMock, searchResultCacheMock, termStatisticsMock, indexAnalysisManagerMock, authorProfilesMock, opportunityMatchesMock, entityManagerMock, importProperties);
         ProjectUpdateDto updateDto = new ProjectUpdateDto("id", "regCode", "title", new AuthorDto(),
                 "role", new DepartmentDto(), "annotation");
 
@@ -314,6 +514,7 @@ class ProjectServiceImplTest {
         verify(projectRepositoryMock).save(entity);
         verify(projectMapperMock).toDto(project1);
         verify(projectMapperMock).toEntity(dto);
+        verify(authorProfilesMock).updateProfiles(Set.of("123456"));
     }
 
     @Test
@@ -339,4 +540,12 @@ class ProjectServiceImplTest {
         verify(csvParserMock).getSample();
     }
 
-}
\ No newline at end of file
+    private static ProjectState projectState(Long id, String projId, String contentHash, String authorUco) {
+        ProjectState state = mock(ProjectState.class);
+        when(state.getId()).thenReturn(id);
+        when(state.getProjId()).thenReturn(projId);
+        when(state.getContentHash()).thenReturn(contentHash);
+        when(state.getAuthorUco()).thenReturn(authorUco);
+        return state;
+    }
+}
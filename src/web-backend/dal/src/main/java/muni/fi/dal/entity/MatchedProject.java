@@ -0,0 +1,24 @@
+package muni.fi.dal.entity;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Project of the author matching the opportunity of an {@link OpportunityMatch}
+ */
+@Embeddable
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+@AllArgsConstructor
+public class MatchedProject {
+
+    private String projId;
+
+    private double score;
+}
@@ -0,0 +1,49 @@
+package muni.fi.dal.entity;
+
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.OrderColumn;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precomputed ranking of an author for an opportunity, see the 'search by opportunity'
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class OpportunityMatch extends BaseEntity {
+
+    @Column(nullable = false)
+    private String opportunityId;
+
+    @Column(nullable = false)
+    private String authorUco;
+
+    private double sumScore;
+
+    private double maxScore;
+
+    private double avgScore;
+
+    private long projectCount;
+
+    private Instant computedAt;
+
+    @ElementCollection
+    @CollectionTable(name = "opportunity_match_project", joinColumns = @JoinColumn(name = "opportunity_match_id"))
+    @OrderColumn(name = "project_order")
+    @ToString.Exclude
+    private List<MatchedProject> projects = new ArrayList<>();
+}
@@ -0,0 +1,36 @@
+package muni.fi.dal.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Copy of an opportunity document from the ElasticSearch index, used for detecting the changed opportunities
+ * and for returning the related opportunities without searching ElasticSearch
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class OpportunitySnapshot {
+
+    @Id
+    private String opportunityId;
+
+    @Column(nullable = false)
+    private String contentHash;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    @ToString.Exclude
+    private String document;
+
+    // null until the related opportunities are computed
+    private Instant relatedComputedAt;
+}
@@ -51,6 +51,8 @@ public class Project extends BaseEntity {
     @Column(columnDefinition = "TEXT")
     private String processedAnnotation;
 
+    private String contentHash;
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,29 @@
+package muni.fi.dal.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Precomputed opportunity similar to another opportunity, see the 'more like this' recommendations
+ */
+@Entity
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class RelatedOpportunity extends BaseEntity {
+
+    @Column(nullable = false)
+    private String opportunityId;
+
+    @Column(nullable = false)
+    private String relatedId;
+
+    private double score;
+
+    private int position;
+}
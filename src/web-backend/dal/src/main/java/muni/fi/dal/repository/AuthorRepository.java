@@ -3,10 +3,14 @@ package muni.fi.dal.repository;
 import muni.fi.dal.entity.Author;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AuthorRepository extends JpaRepository<Author, Long> {
 
     Optional<Author> findByUco(String uco);
 
+    List<Author> findByUcoIn(Collection<String> ucos);
+
 }
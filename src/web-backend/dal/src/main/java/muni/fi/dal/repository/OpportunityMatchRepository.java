@@ -0,0 +1,23 @@
+package muni.fi.dal.repository;
+
+import muni.fi.dal.entity.OpportunityMatch;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OpportunityMatchRepository extends JpaRepository<OpportunityMatch, Long> {
+
+    @EntityGraph(attributePaths = {"projects"})
+    List<OpportunityMatch> findByOpportunityId(String opportunityId);
+
+    void deleteByOpportunityId(String opportunityId);
+
+    void deleteByOpportunityIdNotIn(Collection<String> opportunityIds);
+
+    @Query("select count(distinct m.opportunityId) from OpportunityMatch m")
+    long countOpportunities();
+
+}
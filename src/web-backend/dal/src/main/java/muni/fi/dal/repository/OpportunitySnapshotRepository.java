@@ -0,0 +1,42 @@
+package muni.fi.dal.repository;
+
+import muni.fi.dal.entity.OpportunitySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OpportunitySnapshotRepository extends JpaRepository<OpportunitySnapshot, String> {
+
+    /**
+     * @return The content hashes of all the snapshots, without the documents
+     */
+    List<SnapshotState> findAllBy();
+
+    long countByRelatedComputedAtNotNull();
+
+    @Modifying
+    @Query("update OpportunitySnapshot s set s.relatedComputedAt = :computedAt where s.opportunityId = :opportunityId")
+    void setRelatedComputedAt(@Param("opportunityId") String opportunityId, @Param("computedAt") Instant computedAt);
+
+    @Modifying
+    @Query("update OpportunitySnapshot s set s.relatedComputedAt = null where s.opportunityId in :opportunityIds")
+    void clearRelatedComputedAt(@Param("opportunityIds") Collection<String> opportunityIds);
+
+    @Modifying
+    @Query("delete from OpportunitySnapshot s where s.opportunityId in :opportunityIds")
+    void deleteByOpportunityIdIn(@Param("opportunityIds") Collection<String> opportunityIds);
+
+    interface SnapshotState {
+
+        String getOpportunityId();
+
+        String getContentHash();
+
+        Instant getRelatedComputedAt();
+    }
+}
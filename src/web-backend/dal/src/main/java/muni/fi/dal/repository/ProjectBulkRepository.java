@@ -0,0 +1,17 @@
+package muni.fi.dal.repository;
+
+import muni.fi.dal.entity.Project;
+
+import java.util.Collection;
+
+public interface ProjectBulkRepository {
+
+    /**
+     * Inserts the new projects and updates the projects with an id with the PostgreSQL COPY command instead
+     * of saving them one by one. The authors and departments are resolved by the author uco and by the org unit
+     * and department name, the missing ones are created. The passed entities are not updated with the generated ids
+     *
+     * @param projects The projects, the new ones in the order of their ids
+     */
+    void upsertAll(Collection<Project> projects);
+}
@@ -0,0 +1,216 @@
+package muni.fi.dal.repository;
+
+import jakarta.persistence.EntityManager;
+import muni.fi.dal.entity.Author;
+import muni.fi.dal.entity.Department;
+import muni.fi.dal.entity.Project;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HexFormat;
+
+/**
+ * Stages the projects in a temporary table with COPY and merges them into the project, author
+ * and department tables with a few set-based statements
+ */
+public class ProjectBulkRepositoryImpl implements ProjectBulkRepository {
+
+    private static final String CREATE_STAGING = """
+            CREATE TEMPORARY TABLE IF NOT EXISTS project_import
+            (
+                position             INTEGER,
+                id                   BIGINT,
+                proj_id              VARCHAR(255),
+                reg_code             VARCHAR(255),
+                title                TEXT,
+                state                VARCHAR(255),
+                date_begin           BYTEA,
+                date_end             BYTEA,
+                muni_role            VARCHAR(255),
+                investor             VARCHAR(255),
+                annotation           TEXT,
+                processed_annotation TEXT,
+                content_hash         VARCHAR(255),
+                author_name          VARCHAR(255),
+                author_uco           VARCHAR(255),
+                author_type          VARCHAR(255),
+                org_unit             VARCHAR(255),
+                department_name      VARCHAR(255)
+            ) ON COMMIT DROP""";
+
+    private static final String COPY_STAGING = """
+            COPY project_import (position, id, proj_id, reg_code, title, state, date_begin, date_end, muni_role, investor,
+                                 annotation, processed_annotation, content_hash, author_name, author_uco, author_type,
+                                 org_unit, department_name) FROM STDIN""";
+
+    // the first record of an author wins, like when saving the projects one by one
+    private static final String MERGE_AUTHORS = """
+            INSERT INTO author (name, uco, type)
+            SELECT DISTINCT ON (s.author_uco) s.author_name, s.author_uco, s.author_type
+            FROM project_import s
+            WHERE s.author_uco IS NOT NULL
+            ORDER BY s.author_uco, s.position
+            ON CONFLICT (uco) DO NOTHING""";
+
+    // departments are not unique in the schema, their columns are nullable (null never equals null)
+    private static final String MERGE_DEPARTMENTS = """
+            INSERT INTO department (org_unit, department_name)
+            SELECT DISTINCT s.org_unit, s.department_name
+            FROM project_import s
+            WHERE NOT EXISTS (SELECT 1
+                              FROM department d
+                              WHERE d.org_unit IS NOT DISTINCT FROM s.org_unit
+                                AND d.department_name IS NOT DISTINCT FROM s.department_name)""";
+
+    private static final String STAGED_PROJECTS = """
+            FROM project_import s
+                     LEFT JOIN author a ON a.uco = s.author_uco
+                     LEFT JOIN (SELECT org_unit, department_name, min(id) AS id
+                                FROM department
+                                GROUP BY org_unit, department_name) d
+                               ON d.org_unit IS NOT DISTINCT FROM s.org_unit
+                                   AND d.department_name IS NOT DISTINCT FROM s.department_name
+            """;
+
+    private static final String UPDATE_PROJECTS = """
+            UPDATE project p
+            SET proj_id              = s.proj_id,
+                reg_code             = s.reg_code,
+                title                = s.title,
+                author_id            = a.id,
+                state                = s.state,
+                date_begin           = s.date_begin,
+                date_end             = s.date_end,
+                muni_role            = s.muni_role,
+                investor             = s.investor,
+                department_id        = d.id,
+                annotation           = s.annotation,
+                processed_annotation = s.processed_annotation,
+                content_hash         = s.content_hash
+            """ + STAGED_PROJECTS + """
+            WHERE p.id = s.id""";
+
+    private static final String INSERT_PROJECTS = """
+            INSERT INTO project (proj_id, reg_code, title, author_id, state, date_begin, date_end, muni_role, investor,
+                                 department_id, annotation, processed_annotation, content_hash)
+            SELECT s.proj_id, s.reg_code, s.title, a.id, s.state, s.date_begin, s.date_end, s.muni_role, s.investor,
+                   d.id, s.annotation, s.processed_annotation, s.content_hash
+            """ + STAGED_PROJECTS + """
+            WHERE s.id IS NULL
+            ORDER BY s.position""";
+
+    private static final String CLEAR_STAGING = "TRUNCATE project_import";
+
+    private final EntityManager entityManager;
+
+    public ProjectBulkRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional
+    public void upsertAll(Collection<Project> projects) {
+        if (projects.isEmpty()) {
+            return;
+        }
+        // the pending changes have to be visible to the merge statements
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> upsertAll(connection, projects));
+    }
+
+    private void upsertAll(Connection connection, Collection<Project> projects) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING);
+            copy(connection, projects);
+            statement.execute(MERGE_AUTHORS);
+            statement.execute(MERGE_DEPARTMENTS);
+            statement.execute(UPDATE_PROJECTS);
+            statement.execute(INSERT_PROJECTS);
+            statement.execute(CLEAR_STAGING);
+        }
+    }
+
+    private void copy(Connection connection, Collection<Project> projects) throws SQLException {
+        StringBuilder data = new StringBuilder();
+        int position = 0;
+        for (Project project : projects) {
+            Author author = project.getAuthor();
+            Department department = project.getDepartment();
+            data.append(position++);
+            appendText(data, project.getId() == null ? null : project.getId().toString());
+            appendText(data, project.getProjId());
+            appendText(data, project.getRegCode());
+            appendText(data, project.getTitle());
+            appendText(data, project.getState());
+            appendBytes(data, project.getDateBegin());
+            appendBytes(data, project.getDateEnd());
+            appendText(data, project.getMuniRole());
+            appendText(data, project.getInvestor());
+            appendText(data, project.getAnnotation());
+            appendText(data, project.getProcessedAnnotation());
+            appendText(data, project.getContentHash());
+            appendText(data, author == null ? null : author.getName());
+            appendText(data, author == null ? null : author.getUco());
+            appendText(data, author == null ? null : author.getType());
+            appendText(data, department == null ? null : department.getOrgUnit());
+            appendText(data, department == null ? null : department.getDepartmentName());
+            data.append('\n');
+        }
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        try {
+            copyManager.copyIn(COPY_STAGING, new StringReader(data.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the value as a column of the COPY text format
+     */
+    private static void appendText(StringBuilder data, String value) {
+        data.append('\t');
+        if (value == null) {
+            data.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> data.append("\\\\");
+                case '\t' -> data.append("\\t");
+                case '\n' -> data.append("\\n");
+                case '\r' -> data.append("\\r");
+                default -> data.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends the serialized value as a bytea column, the same way Hibernate stores serializable attributes
+     */
+    private static void appendBytes(StringBuilder data, Serializable value) {
+        if (value == null) {
+            appendText(data, null);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        appendText(data, "\\x" + HexFormat.of().formatHex(bytes.toByteArray()));
+    }
+}
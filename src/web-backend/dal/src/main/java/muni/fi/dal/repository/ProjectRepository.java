@@ -1,15 +1,57 @@
 package muni.fi.dal.repository;
 
 import muni.fi.dal.entity.Project;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ProjectRepository extends JpaRepository<Project, Long>, JpaSpecificationExecutor<Project> {
+public interface ProjectRepository extends JpaRepository<Project, Long>, JpaSpecificationExecutor<Project>, ProjectBulkRepository {
 
     List<Project> findByAuthorUco(String uco);
 
     List<Project> findByProjId(String projId);
 
+    @EntityGraph(attributePaths = {"author", "department"})
+    List<Project> findByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = {"author", "department"})
+    List<Project> findByAuthorUcoIn(Collection<String> ucos);
+
+    @EntityGraph(attributePaths = {"author", "department"})
+    List<Project> findByProjIdIn(Collection<String> projIds);
+
+    @Query("select p.processedAnnotation from Project p where p.processedAnnotation is not null")
+    List<String> findAllProcessedAnnotations();
+
+    /**
+     * @return The UCOs of all the authors having any projects, in ascending order
+     */
+    @Query("select distinct a.uco from Project p join p.author a where a.uco is not null order by a.uco")
+    List<String> findAllAuthorUcos();
+
+    boolean existsByAuthorUcoIn(Collection<String> ucos);
+
+    boolean existsByAuthorUcoAndIdIn(String uco, Collection<Long> ids);
+
+    /**
+     * @return The content hashes of all the projects in the order of their ids, without the project data
+     */
+    @Query("select p.id as id, p.projId as projId, p.contentHash as contentHash, a.uco as authorUco " +
+            "from Project p left join p.author a order by p.id")
+    List<ProjectState> findAllStates();
+
+    interface ProjectState {
+
+        Long getId();
+
+        String getProjId();
+
+        String getContentHash();
+
+        String getAuthorUco();
+    }
 }
@@ -0,0 +1,26 @@
+package muni.fi.dal.repository;
+
+import muni.fi.dal.entity.RelatedOpportunity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface RelatedOpportunityRepository extends JpaRepository<RelatedOpportunity, Long> {
+
+    List<RelatedOpportunity> findByOpportunityIdOrderByPosition(String opportunityId);
+
+    /**
+     * @return The ids of the opportunities having any of the opportunities among their related ones
+     */
+    @Query("select distinct r.opportunityId from RelatedOpportunity r where r.relatedId in :relatedIds")
+    Set<String> findOpportunityIdsByRelatedIdIn(@Param("relatedIds") Collection<String> relatedIds);
+
+    @Modifying
+    @Query("delete from RelatedOpportunity r where r.opportunityId in :opportunityIds")
+    void deleteByOpportunityIdIn(@Param("opportunityIds") Collection<String> opportunityIds);
+}
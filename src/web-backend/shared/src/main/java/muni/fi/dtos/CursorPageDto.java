@@ -0,0 +1,12 @@
+package muni.fi.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Page of results retrieved by a continuation cursor")
+public record CursorPageDto<T>(
+        @Schema(description = "Results of the page") List<T> content,
+        @Schema(description = "Opaque cursor of the next page, null if this is the last page") String nextCursor,
+        @Schema(description = "Total number of results", example = "1520") long totalElements) {
+}
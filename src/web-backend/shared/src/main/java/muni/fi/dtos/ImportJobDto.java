@@ -0,0 +1,23 @@
+package muni.fi.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import muni.fi.enums.ImportJobType;
+import muni.fi.enums.ImportPhase;
+
+import java.time.Instant;
+
+@Schema(description = "State of a file import processed in the background")
+public record ImportJobDto(
+        @Schema(description = "Id of the job", example = "1f0c2b4e-8a5d-4c3b-9f1e-2d7a6b5c4e3f") String id,
+        @Schema(description = "What the job imports and how", example = "PROJECTS_SYNC") ImportJobType type,
+        @Schema(description = "Name of the imported file", example = "projects.csv") String fileName,
+        @Schema(description = "Current phase of the job", example = "LOADING") ImportPhase phase,
+        @Schema(description = "Number of the records processed so far", example = "2000") long rowsProcessed,
+        @Schema(description = "Number of the records that failed to import", example = "3") long rowsFailed,
+        @Schema(description = "Records processed per second since the job started", example = "850.5") double throughput,
+        @Schema(description = "When the job was submitted", example = "2023-05-01T10:15:30Z") Instant submittedAt,
+        @Schema(description = "When the job started, after the previous imports of the same index", example = "2023-05-01T10:15:31Z") Instant startedAt,
+        @Schema(description = "When the job finished or failed", example = "2023-05-01T10:15:40Z") Instant finishedAt,
+        @Schema(description = "Result message of the finished job", example = "Successfully loaded 2000/2003 project records (3 failed)") String message,
+        @Schema(description = "Error message of the failed job", example = "Error reading csv file") String error) {
+}
@@ -0,0 +1,16 @@
+package muni.fi.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+@Schema(description = "Statistics of the precomputed opportunity matches")
+public record OpportunityMatchStatsDto(
+        @Schema(description = "Whether the matches are being computed right now", example = "false") boolean running,
+        @Schema(description = "Number of opportunities with stored matches", example = "850") long storedOpportunities,
+        @Schema(description = "When the last computation finished", example = "2023-05-01T10:15:30Z") Instant lastRunFinishedAt,
+        @Schema(description = "Duration of the last computation in milliseconds", example = "42000") long lastRunDurationMs,
+        @Schema(description = "Number of opportunities matched by the last computation", example = "850") long lastRunMatched,
+        @Schema(description = "Number of opportunities the last computation failed for", example = "0") long lastRunFailed,
+        @Schema(description = "Opportunities matched per second by the last computation", example = "20.2") double lastRunThroughput) {
+}
@@ -0,0 +1,13 @@
+package muni.fi.dtos;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Statistics of the search result cache")
+public record SearchCacheStatsDto(
+        @Schema(description = "Number of requests served from the cache", example = "120") long hitCount,
+        @Schema(description = "Number of requests that had to perform the search", example = "30") long missCount,
+        @Schema(description = "Number of failed searches served with the last good result", example = "2") long staleHitCount,
+        @Schema(description = "Number of entries evicted because of size or age", example = "5") long evictionCount,
+        @Schema(description = "Ratio of hits to all the requests", example = "0.8") double hitRate,
+        @Schema(description = "Current number of cached entries", example = "25") long size) {
+}
@@ -0,0 +1,9 @@
+package muni.fi.enums;
+
+public enum ImportJobType {
+    PROJECTS_APPEND,
+    PROJECTS_REPLACE,
+    PROJECTS_SYNC,
+    OPPORTUNITIES_APPEND,
+    OPPORTUNITIES_REPLACE
+}
@@ -0,0 +1,9 @@
+package muni.fi.enums;
+
+public enum ImportPhase {
+    QUEUED,
+    LOADING,
+    INDEXING,
+    FINISHED,
+    FAILED
+}